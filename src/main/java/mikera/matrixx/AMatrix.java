@@ -14,6 +14,7 @@ import mikera.arrayz.impl.AbstractArray;
 import mikera.arrayz.impl.IDense;
 import mikera.arrayz.impl.JoinedArray;
 import mikera.arrayz.impl.SliceArray;
+import mikera.matrixx.algo.Determinant;
 import mikera.matrixx.algo.Multiplications;
 import mikera.matrixx.impl.ADenseArrayMatrix;
 import mikera.matrixx.impl.IFastRows;
@@ -43,7 +44,6 @@ import mikera.vectorz.impl.AArrayVector;
 import mikera.vectorz.impl.Vector0;
 import mikera.vectorz.util.DoubleArrays;
 import mikera.vectorz.util.ErrorMessages;
-import mikera.vectorz.util.IntArrays;
 import mikera.vectorz.util.VectorzException;
 
 /**
@@ -625,34 +625,40 @@ public abstract class AMatrix extends AbstractArray<AVector> implements IMatrix
 
 	/**
 	 * Calculates the determinant of the matrix.
+	 * 
+	 * Uses an LU or Cholesky factorisation for all but the smallest matrices, so takes O(n^3) time.
 	 */
 	public double determinant() {
 		if (!isSquare())
 			throw new UnsupportedOperationException(
 					"Cannot take determinant of non-square matrix!");
-
-		int rc = rowCount();
-		int[] inds = new int[rc];
-		for (int i = 0; i < rc; i++) {
-			inds[i] = i;
-		}
-		return calcDeterminant(inds, 0);
+		return Determinant.calculate(this);
 	}
 
-	private double calcDeterminant(int[] inds, int offset) {
-		int rc = rowCount();
-		if (offset == (rc - 1))
-			return unsafeGet(offset, inds[offset]);
+	/**
+	 * Calculates the natural logarithm of the absolute value of the determinant of the matrix.
+	 * 
+	 * Unlike determinant(), this does not overflow or underflow for large matrices. Returns negative
+	 * infinity for a singular matrix.
+	 */
+	public double logDeterminant() {
+		if (!isSquare())
+			throw new UnsupportedOperationException(
+					"Cannot take determinant of non-square matrix!");
+		return Determinant.logDeterminant(this);
+	}
 
-		double det = unsafeGet(offset, inds[offset])
-				* calcDeterminant(inds, offset + 1);
-		for (int i = 1; i < (rc - offset); i++) {
-			IntArrays.swap(inds, offset, offset + i);
-			det -= unsafeGet(offset, inds[offset])
-					* calcDeterminant(inds, offset + 1);
-			IntArrays.swap(inds, offset, offset + i);
-		}
-		return det;
+	/**
+	 * Calculates the sign and the log of the absolute value of the determinant of the matrix, so
+	 * that determinant = sign * exp(logDeterminant).
+	 * 
+	 * @return Array containing the sign (1, -1, or 0 if singular) and the log-determinant
+	 */
+	public double[] signedLogDeterminant() {
+		if (!isSquare())
+			throw new UnsupportedOperationException(
+					"Cannot take determinant of non-square matrix!");
+		return Determinant.signedLogDeterminant(this);
 	}
 
 	/**
@@ -1286,6 +1292,27 @@ public abstract class AMatrix extends AbstractArray<AVector> implements IMatrix
 		return r;
 	}	
 	
+	/**
+	 * Computes the inner product of this matrix with another matrix, storing the result in dest.
+	 * 
+	 * dest must have the correct shape, and must not be the same matrix as this or b.
+	 */
+	public void multiplyInto(AMatrix b, AMatrix dest) {
+		Multiplications.multiplyInto(this, b, dest, 1.0, 0.0, false, false);
+	}
+	
+	/**
+	 * Performs a general matrix multiplication, storing the result in dest:
+	 * 
+	 * dest = alpha * op(this) * op(b) + beta * dest
+	 * 
+	 * where op(x) is the transpose of x if the corresponding flag is set. Does not allocate when
+	 * all arguments are dense Matrix instances. If beta is zero, the initial contents of dest are ignored.
+	 */
+	public void multiplyInto(AMatrix b, AMatrix dest, double alpha, double beta, boolean transA, boolean transB) {
+		Multiplications.multiplyInto(this, b, dest, alpha, beta, transA, transB);
+	}
+	
 	public AMatrix transposeInnerProduct(AMatrix s) {
 		if (s instanceof Matrix) return transposeInnerProduct((Matrix)s);
 		if (isSparse()) {
@@ -1293,14 +1320,17 @@ public abstract class AMatrix extends AbstractArray<AVector> implements IMatrix
 			Matrix r= toMatrixTranspose();
 			return Multiplications.multiply(r, s);
 		} else {
-			Matrix r= toMatrixTranspose();
-			return Multiplications.multiply(r, s);			
+			// transposed views of dense matrices are multiplied without copying
+			return Multiplications.multiply(getTransposeView(), s);			
 		}
 	}
 	
 	public Matrix transposeInnerProduct(Matrix s) {
-		Matrix r= toMatrixTranspose();
-		return Multiplications.multiply(r, s);
+		if (isSparse()) {
+			Matrix r= toMatrixTranspose();
+			return Multiplications.multiply(r, s);
+		}
+		return Multiplications.multiply(getTransposeView(), s);
 	}
 	
 	public INDArray innerProduct(INDArray a) {
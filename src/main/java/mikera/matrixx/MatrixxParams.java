@@ -53,8 +53,8 @@ public class MatrixxParams {
    * At what point does it switch from a small matrix multiply to the reorder
    * version.
    */
-  public static int MULT_COLUMN_SWITCH = 15;
-  public static int MULT_TRANAB_COLUMN_SWITCH = 40;
+  public static volatile int MULT_COLUMN_SWITCH = 15;
+  public static volatile int MULT_TRANAB_COLUMN_SWITCH = 40;
   public static int MULT_INNER_SWITCH = 100;
   /**
    * <p>
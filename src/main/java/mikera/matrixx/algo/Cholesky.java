@@ -2,7 +2,10 @@ package mikera.matrixx.algo;
 
 import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.chol.impl.BlockCholesky;
+import mikera.matrixx.algo.decompose.chol.impl.CholeskyUpdate;
 import mikera.util.Maths;
+import mikera.vectorz.AVector;
 
 /**
  * Class implementing a standard Cholesky decomposition
@@ -15,9 +18,14 @@ public class Cholesky {
 		return decompose(Matrix.create(a));
 	}
 	
+	/**
+	 * Computes the lower triangular Cholesky factor L such that A = L.L^T
+	 * @throws IllegalArgumentException if the matrix is not square or not positive definite
+	 */
 	public static final Matrix decompose(Matrix a) {
 		if (!a.isSquare()) throw new IllegalArgumentException("Matrix must be square for Cholesky decomposition");
 		int n=a.rowCount();
+		if (n>=BlockCholesky.BLOCKED_THRESHOLD) return decomposeBlocked(a);
 		
 		Matrix u=Matrix.create(n,n);
 		for (int i=0; i<n;i++) {
@@ -37,10 +45,52 @@ public class Cholesky {
 			}	
 			
 			double aii =a.get(i,i);
-			double uii=Maths.sqrt(aii-squareSum);
+			double pivot=aii-squareSum;
+			if (!(pivot>0.0)) throw new IllegalArgumentException("Matrix is not positive definite");
+			double uii=Maths.sqrt(pivot);
 			u.set(i,i,uii);
 		}
 		
 		return u;
 	}
+	
+	/**
+	 * Updates a lower triangular factor L in place so that L.L^T becomes L.L^T + x.x^T
+	 */
+	public static void update(Matrix l, AVector x) {
+		CholeskyUpdate.update(l, x, true);
+	}
+
+	/**
+	 * Updates a lower triangular factor L in place so that L.L^T becomes L.L^T + X.X^T
+	 */
+	public static void update(Matrix l, AMatrix x) {
+		CholeskyUpdate.update(l, x, true);
+	}
+
+	/**
+	 * Downdates a lower triangular factor L in place so that L.L^T becomes L.L^T - x.x^T
+	 * @throws IllegalArgumentException if the result would not be positive definite. L is unchanged in this case.
+	 */
+	public static void downdate(Matrix l, AVector x) {
+		if (!CholeskyUpdate.downdate(l, x, true)) throw new IllegalArgumentException("Downdate would make the matrix not positive definite");
+	}
+
+	/**
+	 * Downdates a lower triangular factor L in place so that L.L^T becomes L.L^T - X.X^T
+	 * @throws IllegalArgumentException if the result would not be positive definite. L is unchanged in this case.
+	 */
+	public static void downdate(Matrix l, AMatrix x) {
+		if (!CholeskyUpdate.downdate(l, x, true)) throw new IllegalArgumentException("Downdate would make the matrix not positive definite");
+	}
+
+	/**
+	 * Computes the Cholesky decomposition of a large matrix using the parallel blocked algorithm.
+	 * @throws IllegalArgumentException if the matrix is not positive definite
+	 */
+	private static Matrix decomposeBlocked(Matrix a) {
+		BlockCholesky chol=new BlockCholesky(true);
+		if (!chol.decompose(a.clone())) throw new IllegalArgumentException("Matrix is not positive definite");
+		return chol.getT();
+	}
 }
@@ -0,0 +1,117 @@
+package mikera.matrixx.algo;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.chol.impl.BlockCholesky;
+import mikera.matrixx.algo.decompose.lu.impl.BlockedLU;
+import mikera.matrixx.algo.misc.UnrolledDeterminantFromMinor;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+
+/**
+ * Determinant and log-determinant calculations in O(n^3) time.
+ *
+ * Very small matrices use unrolled expansion by minors. Triangular matrices use the product of the
+ * diagonal. Symmetric matrices with a positive diagonal are first tried with a Cholesky
+ * factorisation, which is about twice as fast as LU and succeeds for any positive definite matrix.
+ * All other matrices use a partially pivoted LU factorisation.
+ *
+ * @author Mike
+ */
+public class Determinant {
+
+	/**
+	 * Calculates the determinant of a square matrix
+	 */
+	public static double calculate(AMatrix a) {
+		int n=checkSquare(a);
+		if (n==0) return 1.0;
+		if (n==1) return a.unsafeGet(0, 0);
+		if (n<=UnrolledDeterminantFromMinor.MAX) return UnrolledDeterminantFromMinor.det(Matrix.create(a));
+
+		double[] factors=new double[n];
+		double det=factor(a,factors);
+		for (int i=0; i<n; i++) {
+			det*=factors[i];
+		}
+		return det;
+	}
+
+	/**
+	 * Calculates the natural logarithm of the absolute value of the determinant of a square matrix.
+	 * This does not overflow or underflow for large matrices. Returns negative infinity if the matrix
+	 * is singular.
+	 */
+	public static double logDeterminant(AMatrix a) {
+		return signedLogDeterminant(a)[1];
+	}
+
+	/**
+	 * Calculates the sign and the natural logarithm of the absolute value of the determinant of a
+	 * square matrix, so that det = sign * exp(logdet).
+	 *
+	 * @return Array containing the sign (1, -1, or 0 if singular) and log|det|
+	 */
+	public static double[] signedLogDeterminant(AMatrix a) {
+		int n=checkSquare(a);
+		double[] factors=new double[n];
+		double sign=factor(a,factors);
+		double logDet=0.0;
+		for (int i=0; i<n; i++) {
+			double f=factors[i];
+			if (f==0.0) return new double[] {0.0,Double.NEGATIVE_INFINITY};
+			if (f<0.0) sign=-sign;
+			logDet+=Math.log(Math.abs(f));
+		}
+		return new double[] {sign,logDet};
+	}
+
+	private static int checkSquare(AMatrix a) {
+		int n=a.rowCount();
+		if (a.columnCount()!=n) throw new IllegalArgumentException("Cannot take determinant of non-square matrix!");
+		return n;
+	}
+
+	/**
+	 * Factorises a square matrix so that its determinant is sign * product(factors)
+	 *
+	 * @return The sign
+	 */
+	private static double factor(AMatrix a, double[] factors) {
+		int n=factors.length;
+		if (a.isUpperTriangular()||a.isLowerTriangular()) {
+			for (int i=0; i<n; i++) {
+				factors[i]=a.unsafeGet(i, i);
+			}
+			return 1.0;
+		}
+
+		Matrix m=Matrix.create(a);
+		double[] data=m.data;
+		if (hasPositiveDiagonal(m)&&m.isSymmetric()) {
+			if (BlockCholesky.decomposeInPlace(m, ParallelMatrixMult.getDefaultPool())) {
+				// det = product of L(i,i)^2
+				for (int i=0; i<n; i++) {
+					double lii=data[i*n+i];
+					factors[i]=lii*lii;
+				}
+				return 1.0;
+			}
+			// not positive definite, so fall back to LU on a fresh copy
+			m=Matrix.create(a);
+			data=m.data;
+		}
+		double sign=BlockedLU.decomposeInPlace(m, new int[n], new int[n], ParallelMatrixMult.getDefaultPool());
+		for (int i=0; i<n; i++) {
+			factors[i]=data[i*n+i];
+		}
+		return sign;
+	}
+
+	private static boolean hasPositiveDiagonal(Matrix m) {
+		int n=m.rowCount();
+		for (int i=0; i<n; i++) {
+			if (!(m.data[i*n+i]>0.0)) return false;
+		}
+		return true;
+	}
+}
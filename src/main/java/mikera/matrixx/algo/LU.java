@@ -21,10 +21,12 @@
 
 package mikera.matrixx.algo;
 
-import mikera.vectorz.Vector;
+import java.util.Arrays;
 
 import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.lu.impl.BlockedLU;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
 import mikera.matrixx.impl.PermutationMatrix;
 
 public class LU {
@@ -43,59 +45,23 @@ public class LU {
 
 		int n = lu.rowCount();
 
-		PermutationMatrix p = PermutationMatrix.createIdentity(n);
-
-		for (int j = 0; j < n; j++) {
-
-			Vector jcolumn = lu.getColumn(j).toVector();
-
-			for (int i = 0; i < n; i++) {
-
-				int kmax = Math.min(i, j);
-
-				double s = 0.0;
-				for (int k = 0; k < kmax; k++) {
-					s += lu.get(i, k) * jcolumn.unsafeGet(k);
-				}
-
-				jcolumn.set(i, jcolumn.unsafeGet(i) - s);
-				lu.set(i, j, jcolumn.unsafeGet(i));
-			}
-
-			int biggest = j;
-
-			for (int i = j + 1; i < n; i++) {
-				if (Math.abs(jcolumn.unsafeGet(i)) > Math.abs(jcolumn.unsafeGet(biggest)))
-					biggest = i;
-			}
-
-			if (biggest != j) {
-				lu.swapRows(biggest, j);
-				p.swapRows(biggest, j);
-			}
-
-			if ((j < n) && (lu.get(j, j) != 0.0)) {
-				for (int i = j + 1; i < n; i++) {
-					lu.set(i, j, lu.get(i, j) / lu.get(j, j));
-				}
-			}
-		}
+		int[] perm = new int[n];
+		BlockedLU.decomposeInPlace(lu, new int[n], perm, ParallelMatrixMult.getDefaultPool());
+		PermutationMatrix p = PermutationMatrix.create(perm);
 
 		Matrix l = Matrix.create(n, n);
-
+		double[] ld = l.data;
+		double[] ud = lu.data;
 		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < i; j++) {
-				l.set(i, j, lu.get(i, j));
-			}
-			l.set(i, i, 1.0);
+			int ri = i * n;
+			System.arraycopy(ud, ri, ld, ri, i);
+			ld[ri + i] = 1.0;
 		}
 
 		// clear low elements to ensure upper triangle only is populated
 		Matrix u = lu;
 		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < i; j++) {
-				u.set(i, j, 0.0);
-			}
+			Arrays.fill(ud, i * n, i * n + i, 0.0);
 		}
 
 		return new AMatrix[] { l, u, p };
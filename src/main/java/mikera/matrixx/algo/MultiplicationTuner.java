@@ -0,0 +1,383 @@
+package mikera.matrixx.algo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+import mikera.matrixx.EjmlParameters;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.MatrixxParams;
+import mikera.matrixx.algo.mult.MatrixMatrixMult;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+import mikera.matrixx.algo.mult.StrassenMatrixMult;
+import mikera.vectorz.util.VectorzException;
+
+/**
+ * Runtime tuning of the thresholds and block sizes used to select matrix multiplication algorithms.
+ *
+ * The defaults are reasonable for typical hardware, but the best switch points depend on the cache sizes
+ * and JIT behaviour of the host. {@link #calibrate()} micro-benchmarks the candidate kernels on the current
+ * machine and applies the best settings. The resulting profile can be saved to a properties file and loaded
+ * again on startup, either explicitly with {@link #load(File)} or automatically by setting the system
+ * property "vectorz.multiply.profile" to the file path.
+ *
+ * @author Mike
+ */
+public class MultiplicationTuner {
+	/**
+	 * System property giving the path of a profile to load when multiplication is first used
+	 */
+	public static final String PROFILE_PROPERTY="vectorz.multiply.profile";
+
+	private static final String[] KEYS={
+		"mult.column.switch",
+		"mult.tranab.column.switch",
+		"working.set.target",
+		"packed.threshold",
+		"packed.block.m",
+		"packed.block.k",
+		"packed.block.n",
+		"parallel.threshold",
+		"parallel.task.size",
+		"strassen.cutoff",
+		"strassen.threshold"
+	};
+
+	// minimum time per benchmark measurement in nanoseconds
+	private static final long MIN_SAMPLE_TIME=2000000L;
+
+	// consecutive sizes at which a candidate kernel must win before calibration switches to it
+	private static final int REQUIRED_WINS=2;
+
+	private static volatile Exception profileError=null;
+
+	/**
+	 * Loads the profile named by the system property "vectorz.multiply.profile", if any.
+	 * Failure to load the profile, including a malformed profile, leaves the default settings in place
+	 * and is reported by {@link #getProfileLoadError()}.
+	 */
+	static void loadDefaultProfile() {
+		String path;
+		try {
+			path=System.getProperty(PROFILE_PROPERTY);
+		} catch (SecurityException e) {
+			return;
+		}
+		if (path==null) return;
+		try {
+			load(new File(path));
+		} catch (IOException e) {
+			profileError=e;
+		} catch (RuntimeException e) {
+			profileError=e;
+		}
+	}
+
+	/**
+	 * Returns the error that prevented the profile named by "vectorz.multiply.profile" from loading,
+	 * or null if no profile was named or it loaded successfully
+	 */
+	public static Exception getProfileLoadError() {
+		return profileError;
+	}
+
+	/**
+	 * Gets the current multiplication settings as a profile
+	 */
+	public static Properties getProfile() {
+		Properties p=new Properties();
+		p.setProperty("mult.column.switch", Integer.toString(EjmlParameters.MULT_COLUMN_SWITCH));
+		p.setProperty("mult.tranab.column.switch", Integer.toString(EjmlParameters.MULT_TRANAB_COLUMN_SWITCH));
+		p.setProperty("working.set.target", Integer.toString(Multiplications.WORKING_SET_TARGET));
+		p.setProperty("packed.threshold", Long.toString(Multiplications.PACKED_MULT_THRESHOLD));
+		p.setProperty("packed.block.m", Integer.toString(PackedMatrixMult.BLOCK_M));
+		p.setProperty("packed.block.k", Integer.toString(PackedMatrixMult.BLOCK_K));
+		p.setProperty("packed.block.n", Integer.toString(PackedMatrixMult.BLOCK_N));
+		p.setProperty("parallel.threshold", Long.toString(ParallelMatrixMult.PARALLEL_THRESHOLD));
+		p.setProperty("parallel.task.size", Long.toString(ParallelMatrixMult.TASK_SIZE));
+		p.setProperty("strassen.cutoff", Integer.toString(StrassenMatrixMult.CUTOFF));
+		p.setProperty("strassen.threshold", Integer.toString(StrassenMatrixMult.THRESHOLD));
+		return p;
+	}
+
+	/**
+	 * Applies a profile to the current multiplication settings. Settings not present in the
+	 * profile are left unchanged. The whole profile is validated first, so if any key or value is
+	 * invalid then no settings are changed.
+	 *
+	 * @throws VectorzException if the profile contains an unknown key or a non-positive or non-numeric value
+	 */
+	public static void applyProfile(Properties p) {
+		for (String key: p.stringPropertyNames()) {
+			if (!Arrays.asList(KEYS).contains(key)) throw new VectorzException("Unknown multiplication setting: "+key);
+		}
+		long[] values=new long[KEYS.length];
+		for (int i=0; i<KEYS.length; i++) {
+			String key=KEYS[i];
+			String value=p.getProperty(key);
+			if (value==null) continue;
+			long v;
+			try {
+				v=Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				throw new VectorzException("Invalid value for "+key+": "+value);
+			}
+			if (v<=0) throw new VectorzException("Invalid value for "+key+": "+value);
+			values[i]=v;
+		}
+		for (int i=0; i<KEYS.length; i++) {
+			if (values[i]>0) set(KEYS[i],values[i]);
+		}
+	}
+
+	private static void set(String key, long v) {
+		int iv=(int)Math.min(v, Integer.MAX_VALUE);
+		if (key.equals("mult.column.switch")) {
+			EjmlParameters.MULT_COLUMN_SWITCH=iv;
+			MatrixxParams.MULT_COLUMN_SWITCH=iv;
+		} else if (key.equals("mult.tranab.column.switch")) {
+			EjmlParameters.MULT_TRANAB_COLUMN_SWITCH=iv;
+			MatrixxParams.MULT_TRANAB_COLUMN_SWITCH=iv;
+		} else if (key.equals("working.set.target")) {
+			Multiplications.WORKING_SET_TARGET=iv;
+		} else if (key.equals("packed.threshold")) {
+			Multiplications.PACKED_MULT_THRESHOLD=v;
+		} else if (key.equals("packed.block.m")) {
+			PackedMatrixMult.BLOCK_M=iv;
+		} else if (key.equals("packed.block.k")) {
+			PackedMatrixMult.BLOCK_K=iv;
+		} else if (key.equals("packed.block.n")) {
+			PackedMatrixMult.BLOCK_N=iv;
+		} else if (key.equals("parallel.threshold")) {
+			ParallelMatrixMult.PARALLEL_THRESHOLD=v;
+		} else if (key.equals("parallel.task.size")) {
+			ParallelMatrixMult.TASK_SIZE=v;
+		} else if (key.equals("strassen.cutoff")) {
+			StrassenMatrixMult.CUTOFF=iv;
+		} else if (key.equals("strassen.threshold")) {
+			StrassenMatrixMult.THRESHOLD=iv;
+		}
+	}
+
+	/**
+	 * Saves the current multiplication settings to a file
+	 */
+	public static void save(File file) throws IOException {
+		OutputStream out=new FileOutputStream(file);
+		try {
+			save(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the current multiplication settings to an output stream in properties format
+	 */
+	public static void save(OutputStream out) throws IOException {
+		getProfile().store(out, "Vectorz multiplication profile");
+	}
+
+	/**
+	 * Loads multiplication settings from a file and applies them
+	 */
+	public static void load(File file) throws IOException {
+		InputStream in=new FileInputStream(file);
+		try {
+			load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads multiplication settings in properties format from an input stream and applies them
+	 */
+	public static void load(InputStream in) throws IOException {
+		Properties p=new Properties();
+		p.load(in);
+		applyProfile(p);
+	}
+
+	/**
+	 * Micro-benchmarks the candidate multiplication kernels on this machine, applies the best
+	 * thresholds and block sizes, and returns the resulting profile.
+	 *
+	 * A threshold only switches to a candidate kernel once it wins at two consecutive sizes. If it
+	 * never does, the threshold is set to the maximum value so that the slower kernel is never used.
+	 *
+	 * Takes a few seconds to run. Should be called before any time-critical work, not concurrently
+	 * with other matrix multiplications.
+	 */
+	public static Properties calibrate() {
+		EjmlParameters.MULT_COLUMN_SWITCH=calibrateColumnSwitch();
+		MatrixxParams.MULT_COLUMN_SWITCH=EjmlParameters.MULT_COLUMN_SWITCH;
+		EjmlParameters.MULT_TRANAB_COLUMN_SWITCH=calibrateTransABSwitch();
+		MatrixxParams.MULT_TRANAB_COLUMN_SWITCH=EjmlParameters.MULT_TRANAB_COLUMN_SWITCH;
+		Multiplications.WORKING_SET_TARGET=calibrateWorkingSet();
+		calibratePackedBlocks();
+		Multiplications.PACKED_MULT_THRESHOLD=calibratePackedThreshold();
+		if (Runtime.getRuntime().availableProcessors()>1) {
+			ParallelMatrixMult.PARALLEL_THRESHOLD=calibrateParallelThreshold();
+		}
+		return getProfile();
+	}
+
+	/**
+	 * Finds the column count at which mult_reorder overtakes mult_small, or Integer.MAX_VALUE if it never does
+	 */
+	private static int calibrateColumnSwitch() {
+		int[] sizes={4,8,12,16,24,32,48,64};
+		int wins=0;
+		for (int i=0; i<sizes.length; i++) {
+			int n=sizes[i];
+			final Matrix a=Matrix.createRandom(n, n);
+			final Matrix b=Matrix.createRandom(n, n);
+			final Matrix c=Matrix.create(n, n);
+			double small=time(new Runnable() {public void run() {MatrixMatrixMult.mult_small(a, b, c);}});
+			double reorder=time(new Runnable() {public void run() {MatrixMatrixMult.mult_reorder(a, b, c);}});
+			wins=(reorder<small)?(wins+1):0;
+			if (wins==REQUIRED_WINS) return sizes[i-REQUIRED_WINS+1];
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Finds the inner size at which multTransAB_aux overtakes multTransAB, or Integer.MAX_VALUE if it never does
+	 */
+	private static int calibrateTransABSwitch() {
+		int[] sizes={8,16,24,32,48,64,96,128};
+		final double[] aux=new double[128];
+		int wins=0;
+		for (int i=0; i<sizes.length; i++) {
+			int n=sizes[i];
+			final Matrix a=Matrix.createRandom(n, n);
+			final Matrix b=Matrix.createRandom(n, n);
+			final Matrix c=Matrix.create(n, n);
+			double plain=time(new Runnable() {public void run() {MatrixMatrixMult.multTransAB(a, b, c);}});
+			double withAux=time(new Runnable() {public void run() {MatrixMatrixMult.multTransAB_aux(a, b, c, aux);}});
+			wins=(withAux<plain)?(wins+1):0;
+			if (wins==REQUIRED_WINS) return sizes[i-REQUIRED_WINS+1];
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Finds the best working set size for blockedMultiply
+	 */
+	private static int calibrateWorkingSet() {
+		final Matrix a=Matrix.createRandom(256, 256);
+		final Matrix b=Matrix.createRandom(256, 256);
+		int[] candidates={2048,4096,8192,16384,32768,65536};
+		int best=Multiplications.WORKING_SET_TARGET;
+		double bestTime=Double.MAX_VALUE;
+		for (int ws: candidates) {
+			Multiplications.WORKING_SET_TARGET=ws;
+			double t=time(new Runnable() {public void run() {Multiplications.blockedMultiply(a, b);}});
+			if (t<bestTime) {
+				bestTime=t;
+				best=ws;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the best panel sizes for the packed GEMM kernel
+	 */
+	private static void calibratePackedBlocks() {
+		final Matrix a=Matrix.createRandom(384, 384);
+		final Matrix b=Matrix.createRandom(384, 384);
+		final Matrix c=Matrix.create(384, 384);
+		Runnable r=new Runnable() {public void run() {PackedMatrixMult.multiply(a, b, c);}};
+
+		int[] ms={32,64,128,256};
+		int bestM=PackedMatrixMult.BLOCK_M;
+		double bestTime=Double.MAX_VALUE;
+		for (int m: ms) {
+			PackedMatrixMult.BLOCK_M=m;
+			double t=time(r);
+			if (t<bestTime) {bestTime=t; bestM=m;}
+		}
+		PackedMatrixMult.BLOCK_M=bestM;
+
+		int[] ks={64,128,256,384};
+		int bestK=PackedMatrixMult.BLOCK_K;
+		bestTime=Double.MAX_VALUE;
+		for (int k: ks) {
+			PackedMatrixMult.BLOCK_K=k;
+			double t=time(r);
+			if (t<bestTime) {bestTime=t; bestK=k;}
+		}
+		PackedMatrixMult.BLOCK_K=bestK;
+	}
+
+	/**
+	 * Finds the product size at which the packed kernel overtakes blockedMultiply, or Long.MAX_VALUE if it never does
+	 */
+	private static long calibratePackedThreshold() {
+		int[] sizes={8,16,24,32,48,64,96};
+		int wins=0;
+		for (int i=0; i<sizes.length; i++) {
+			int n=sizes[i];
+			final Matrix a=Matrix.createRandom(n, n);
+			final Matrix b=Matrix.createRandom(n, n);
+			double blocked=time(new Runnable() {public void run() {Multiplications.blockedMultiply(a, b);}});
+			double packed=time(new Runnable() {public void run() {PackedMatrixMult.multiply(a, b);}});
+			wins=(packed<blocked)?(wins+1):0;
+			if (wins==REQUIRED_WINS) return cube(sizes[i-REQUIRED_WINS+1]);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Finds the product size at which parallel multiplication overtakes the packed kernel, or Long.MAX_VALUE if it never does
+	 */
+	private static long calibrateParallelThreshold() {
+		int[] sizes={32,48,64,96,128,192,256};
+		int wins=0;
+		for (int i=0; i<sizes.length; i++) {
+			int n=sizes[i];
+			final Matrix a=Matrix.createRandom(n, n);
+			final Matrix b=Matrix.createRandom(n, n);
+			double serial=time(new Runnable() {public void run() {PackedMatrixMult.multiply(a, b);}});
+			double parallel=time(new Runnable() {public void run() {ParallelMatrixMult.multiply(a, b);}});
+			wins=(parallel<serial)?(wins+1):0;
+			if (wins==REQUIRED_WINS) return cube(sizes[i-REQUIRED_WINS+1]);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	private static long cube(int n) {
+		return ((long)n)*n*n;
+	}
+
+	/**
+	 * Returns the best observed time per call in nanoseconds, after warming up.
+	 */
+	private static double time(Runnable r) {
+		// warm up so that the JIT has compiled the kernel
+		long start=System.nanoTime();
+		int runs=0;
+		while ((System.nanoTime()-start)<MIN_SAMPLE_TIME) {
+			r.run();
+			runs++;
+		}
+		double best=Double.MAX_VALUE;
+		for (int sample=0; sample<3; sample++) {
+			start=System.nanoTime();
+			for (int i=0; i<runs; i++) {
+				r.run();
+			}
+			double t=((double)(System.nanoTime()-start))/runs;
+			best=Math.min(best, t);
+		}
+		return best;
+	}
+}
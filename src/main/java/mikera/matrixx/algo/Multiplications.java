@@ -2,19 +2,40 @@ package mikera.matrixx.algo;
 
 import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.MatrixMatrixMult;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+import mikera.matrixx.algo.mult.StrassenMatrixMult;
+import mikera.matrixx.impl.AStridedMatrix;
 import mikera.matrixx.impl.ImmutableMatrix;
+import mikera.matrixx.impl.TransposedMatrix;
+import mikera.matrixx.ops.CommonOps;
 import mikera.vectorz.util.DoubleArrays;
 import mikera.vectorz.util.ErrorMessages;
 
 public class Multiplications {
 	// target number of elements in working set group
 	// aim for around 200kb => fits comfortably in L2 cache in modern machines
-	protected static final int WORKING_SET_TARGET=8192;
+	// may be adjusted for the host machine, see MultiplicationTuner
+	public static volatile int WORKING_SET_TARGET=8192;
+	
+	// number of multiply-adds (rows*cols*inner) above which the packed GEMM kernel is used
+	// below this, the cost of packing outweighs the benefit of register blocking
+	public static volatile long PACKED_MULT_THRESHOLD=32*32*32;
+	
+	static {
+		MultiplicationTuner.loadDefaultProfile();
+	}
 	
 	/** 
 	 * General purpose matrix multiplication, with smart selection of algorithm based
 	 * on matrix size and type.
 	 * 
+	 * Large products are computed in parallel, see {@link ParallelMatrixMult#PARALLEL_THRESHOLD}
+	 * 
+	 * Very large, roughly square dense products use Strassen-Winograd, which trades a slightly
+	 * weaker (normwise rather than componentwise) error bound for fewer operations, see {@link StrassenMatrixMult}
+	 * 
 	 * @param a
 	 * @param b
 	 * @return
@@ -22,17 +43,199 @@ public class Multiplications {
 	public static Matrix multiply(AMatrix a, AMatrix b) {
 		if (a instanceof Matrix) {
 			return multiply((Matrix)a,b);
+		}
+		Matrix at=denseTransposeSource(a);
+		if (at!=null) {
+			return transposeMultiply(at,b);
 		} else if (a instanceof ImmutableMatrix) {
 			return multiply(Matrix.wrap(a.rowCount(),a.columnCount(),((ImmutableMatrix)a).getInternalData()),b);
+		} else if ((a instanceof AStridedMatrix)&&usePacked(a,b)) {
+			return packedMultiply(a,b);
 		} else {
 			return blockedMultiply(a.toMatrix(),b);
 		}
 	}
 	
 	public static Matrix multiply(Matrix a, AMatrix b) {
+		Matrix bt=denseTransposeSource(b);
+		if (bt!=null) return multiplyTranspose(a,bt);
+		if ((b instanceof Matrix)&&StrassenMatrixMult.isStrassenWorthwhile(a, b)) {
+			return StrassenMatrixMult.multiply(a, (Matrix)b);
+		}
+		if (usePacked(a,b)) return packedMultiply(a,b);
 		return blockedMultiply(a,b);
 	}
 	
+	/**
+	 * Computes a<sup>T</sup> * b without materialising the transpose of a.
+	 * 
+	 * Transposed views of dense matrices are recognised in b as well, so X<sup>T</sup>*X style products
+	 * can be computed directly from a single dense matrix.
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static Matrix transposeMultiply(Matrix a, AMatrix b) {
+		if ((a.rowCount()!=b.rowCount())) {
+			throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a.getTransposeView(),b));
+		}
+		Matrix bt=denseTransposeSource(b);
+		AMatrix at=a.getTransposeView();
+		if (usePacked(at,b)) {
+			return packedMultiply(at,(bt!=null)?bt.getTransposeView():b);
+		}
+		Matrix result=Matrix.create(a.columnCount(),b.columnCount());
+		if (bt!=null) {
+			multiplyInto(a,bt,result,1.0,0.0,true,true);
+		} else {
+			multiplyInto(a,b.toMatrix(),result,1.0,0.0,true,false);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes a * b<sup>T</sup> without materialising the transpose of b.
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static Matrix multiplyTranspose(Matrix a, Matrix b) {
+		if ((a.columnCount()!=b.columnCount())) {
+			throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a,b.getTransposeView()));
+		}
+		AMatrix bt=b.getTransposeView();
+		if (usePacked(a,bt)) {
+			return packedMultiply(a,bt);
+		}
+		Matrix result=Matrix.create(a.rowCount(),b.rowCount());
+		multiplyInto(a,b,result,1.0,0.0,false,true);
+		return result;
+	}
+	
+	/**
+	 * Returns the dense Matrix of which m is a transposed view, or null if m is not
+	 * a transposed view of a densely packed matrix.
+	 * 
+	 * Recognises both TransposedMatrix wrappers and the strided views returned by
+	 * Matrix.getTransposeView()
+	 */
+	private static Matrix denseTransposeSource(AMatrix m) {
+		if (m instanceof TransposedMatrix) {
+			AMatrix source=m.getTransposeView();
+			if (source instanceof Matrix) return (Matrix)source;
+			return null;
+		}
+		if (m instanceof AStridedMatrix) {
+			AStridedMatrix sm=(AStridedMatrix)m;
+			int rc=sm.rowCount();
+			int cc=sm.columnCount();
+			if ((sm.rowStride()==1)&&(sm.columnStride()==rc)&&(sm.getArrayOffset()==0)&&(sm.data.length==rc*cc)) {
+				return Matrix.wrap(cc, rc, sm.data);
+			}
+		}
+		return null;
+	}
+	
+	private static boolean usePacked(AMatrix a, AMatrix b) {
+		long flops=((long)a.rowCount())*a.columnCount()*b.columnCount();
+		return flops>=PACKED_MULT_THRESHOLD;
+	}
+	
+	/**
+	 * Performs fast matrix multiplication by packing panels of both matrices into contiguous
+	 * buffers and running a register-blocked micro-kernel. Best for medium to large dense matrices.
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static Matrix packedMultiply(AMatrix a, AMatrix b) {
+		if ((a.columnCount()!=b.rowCount())) {
+			throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a,b));
+		}
+		if (ParallelMatrixMult.isParallelWorthwhile(a, b)) {
+			return ParallelMatrixMult.multiply(a, b);
+		}
+		return PackedMatrixMult.multiply(a, b);
+	}
+	
+	/**
+	 * Performs the general matrix multiplication c = alpha*op(a)*op(b) + beta*c, where op(x) is
+	 * either x or the transpose of x according to the transA and transB flags.
+	 * 
+	 * The result is written into the existing matrix c. When a, b and c are all dense Matrix
+	 * instances, this dispatches to the appropriate kernel in MatrixMatrixMult and does not
+	 * allocate any new matrices.
+	 * 
+	 * If beta is zero, the initial contents of c are ignored. c must not be the same matrix as a or b.
+	 */
+	public static void multiplyInto(AMatrix a, AMatrix b, AMatrix c, double alpha, double beta, boolean transA, boolean transB) {
+		int rc=transA?a.columnCount():a.rowCount();
+		int ic=transA?a.rowCount():a.columnCount();
+		int cc=transB?b.rowCount():b.columnCount();
+		if (ic!=(transB?b.columnCount():b.rowCount())) {
+			throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a,b));
+		}
+		if ((c.rowCount()!=rc)||(c.columnCount()!=cc)) {
+			throw new IllegalArgumentException(ErrorMessages.incompatibleShape(c));
+		}
+		if ((a==c)||(b==c)) throw new IllegalArgumentException("Destination cannot be the same matrix as a source");
+		
+		if ((a instanceof Matrix)&&(b instanceof Matrix)&&(c instanceof Matrix)) {
+			multiplyInto((Matrix)a,(Matrix)b,(Matrix)c,alpha,beta,transA,transB);
+			return;
+		}
+		
+		AMatrix opA=transA?a.getTransposeView():a;
+		AMatrix opB=transB?b.getTransposeView():b;
+		if (c instanceof Matrix) {
+			PackedMatrixMult.gemm(alpha, opA, opB, beta, (Matrix)c);
+		} else {
+			Matrix product=multiply(opA,opB);
+			if (beta==0.0) {
+				c.fill(0.0);
+			} else if (beta!=1.0) {
+				c.multiply(beta);
+			}
+			c.addMultiple(product, alpha);
+		}
+	}
+	
+	private static void multiplyInto(Matrix a, Matrix b, Matrix c, double alpha, double beta, boolean transA, boolean transB) {
+		if (beta==0.0) {
+			if (transA) {
+				if (transB) {
+					// CommonOps switches to the aux kernel for wide inputs, which allocates a work array
+					MatrixMatrixMult.multTransAB(alpha, a, b, c);
+				} else {
+					CommonOps.multTransA(alpha, a, b, c);
+				}
+			} else {
+				if (transB) {
+					CommonOps.multTransB(alpha, a, b, c);
+				} else {
+					CommonOps.mult(alpha, a, b, c);
+				}
+			}
+			return;
+		}
+		
+		if (beta!=1.0) c.multiply(beta);
+		if (transA) {
+			if (transB) {
+				// as above, avoid the allocating aux kernel
+				MatrixMatrixMult.multAddTransAB(alpha, a, b, c);
+			} else {
+				CommonOps.multAddTransA(alpha, a, b, c);
+			}
+		} else {
+			if (transB) {
+				CommonOps.multAddTransB(alpha, a, b, c);
+			} else {
+				CommonOps.multAdd(alpha, a, b, c);
+			}
+		}
+	}
+	
 	/**
 	 * Performs fast matrix multiplication using temporary working storage for the second matrix
 	 * @param a
@@ -23,7 +23,7 @@ package mikera.matrixx.algo;
 
 import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
-import mikera.vectorz.Vector;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
 
 public class QR {
 
@@ -39,86 +39,10 @@ public class QR {
 		if (rc < cc) { throw new IllegalArgumentException("Wrong matrix size: "
 				+ "rows < columns"); }
 
-		Matrix qr = matrix.toMatrix();
-
-		Vector rdiag = Vector.createLength(cc);
-
-		for (int k = 0; k < cc; k++) {
-
-			double norm = 0.0;
-
-			for (int i = k; i < rc; i++) {
-				norm = Math.hypot(norm, qr.get(i, k));
-			}
-
-			if (Math.abs(norm) > Decompositions.EPS) {
-
-				if (qr.get(k, k) < 0.0) {
-					norm = -norm;
-				}
-
-				for (int i = k; i < rc; i++) {
-					qr.set(i, k, qr.get(i,k)/norm);
-				}
-
-				qr.addAt(k, k, 1.0);
-
-				for (int j = k + 1; j < cc; j++) {
-
-					double summand = 0.0;
-
-					for (int i = k; i < rc; i++) {
-						summand += qr.unsafeGet(i, k) * qr.unsafeGet(i, j);
-					}
-
-					summand = -summand / qr.get(k, k);
-
-					for (int i = k; i < rc; i++) {
-						qr.addAt(i, j,summand * qr.unsafeGet(i, k));
-					}
-				}
-			}
-
-			rdiag.set(k, -norm);
-		}
-
-		Matrix q = Matrix.create(rc, cc);
-
-		for (int k = cc - 1; k >= 0; k--) {
-
-			q.set(k, k, 1.0);
-
-			for (int j = k; j < cc; j++) {
-
-				if (Math.abs(qr.unsafeGet(k, k)) > Decompositions.EPS) {
-
-					double summand = 0.0;
-
-					for (int i = k; i < rc; i++) {
-						summand += qr.get(i, k) * q.unsafeGet(i, j);
-					}
-
-					summand = -summand / qr.unsafeGet(k, k);
-
-					for (int i = k; i < rc; i++) {
-						q.addAt(i, j,summand * qr.unsafeGet(i, k));
-					}
-				}
-			}
-		}
-
-		// create square matrix
-		Matrix r = Matrix.create(cc,cc);
-
-		for (int i = 0; i < cc; i++) {
-			for (int j = i; j < cc; j++) {
-				if (i < j) {
-					r.set(i, j, qr.unsafeGet(i, j));
-				} else if (i == j) {
-					r.set(i, j, rdiag.unsafeGet(i));
-				}
-			}
-		}
+		BlockHouseholderQR qr = new BlockHouseholderQR();
+		qr.decompose(matrix);
+		Matrix q = qr.getQ(true);
+		Matrix r = qr.getR(true);
 
 		return new Matrix[] { q, r };
 	}
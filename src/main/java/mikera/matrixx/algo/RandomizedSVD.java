@@ -0,0 +1,97 @@
+package mikera.matrixx.algo;
+
+import java.util.Random;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
+
+/**
+ * Randomized truncated SVD computing only the top k singular triplets of a matrix.
+ *
+ * Uses the range finder of Halko, Martinsson and Tropp: A is multiplied by a Gaussian test matrix
+ * with k+p columns to sample its range, optionally refined by power iterations, and orthonormalised
+ * to Q. The small matrix B = Q^T.A then has approximately the same leading singular values as A, and
+ * its SVD is computed exactly.
+ *
+ * A is only accessed through products with dense matrices (A.X and A^T.Y), so sparse matrices
+ * are supported without being densified.
+ *
+ * @author Mike
+ */
+public class RandomizedSVD {
+	/**
+	 * Default number of extra sample columns beyond k
+	 */
+	public static int DEFAULT_OVERSAMPLING=10;
+
+	/**
+	 * Default number of power iterations. Each iteration costs two further products with A, but
+	 * greatly improves accuracy when the singular values decay slowly.
+	 */
+	public static int DEFAULT_POWER_ITERATIONS=2;
+
+	/**
+	 * Computes the top k singular triplets of a matrix using default settings
+	 *
+	 * @return Array containing U (m x k), S (k x k diagonal) and V (n x k), with A ~= U.S.V^T
+	 */
+	public static Matrix[] decompose(AMatrix a, int k) {
+		return decompose(a, k, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS, new Random());
+	}
+
+	/**
+	 * Computes the top k singular triplets of a matrix
+	 *
+	 * @param a The matrix to decompose, dense or sparse
+	 * @param k Number of singular values to compute
+	 * @param oversampling Number of extra random samples used to capture the range of A
+	 * @param powerIterations Number of power iterations used to sharpen the sampled range
+	 * @param random Source of random numbers for the test matrix
+	 * @return Array containing U (m x k), S (k x k diagonal) and V (n x k), with A ~= U.S.V^T
+	 */
+	public static Matrix[] decompose(AMatrix a, int k, int oversampling, int powerIterations, Random random) {
+		int m=a.rowCount();
+		int n=a.columnCount();
+		int minDim=Math.min(m, n);
+		if ((k<1)||(k>minDim)) throw new IllegalArgumentException("Number of singular values must be in range 1.."+minDim+" but was "+k);
+		if ((oversampling<0)||(powerIterations<0)) throw new IllegalArgumentException("Oversampling and power iterations must be non-negative");
+		int l=Math.min(k+oversampling, minDim);
+
+		Matrix omega=Matrix.create(n, l);
+		double[] od=omega.data;
+		for (int i=0; i<od.length; i++) {
+			od[i]=random.nextGaussian();
+		}
+
+		// Q = orth(A.omega), re-orthonormalised between each power iteration for stability
+		Matrix q=orthonormalise(multiply(a,omega));
+		for (int i=0; i<powerIterations; i++) {
+			Matrix z=orthonormalise(transposeMultiply(a,q));
+			q=orthonormalise(multiply(a,z));
+		}
+
+		// B^T = A^T.Q = Ub.S.Vb^T, so A ~= Q.B = (Q.Vb).S.Ub^T
+		Matrix bt=transposeMultiply(a,q);
+		Matrix[] svd=ThinSVD.decompose(bt);
+		Matrix u=Multiplications.multiply(q, svd[2].subMatrix(0, l, 0, k));
+		Matrix s=Matrix.create(svd[1].subMatrix(0, k, 0, k));
+		Matrix v=Matrix.create(svd[0].subMatrix(0, n, 0, k));
+		return new Matrix[] {u,s,v};
+	}
+
+	private static Matrix orthonormalise(Matrix y) {
+		BlockHouseholderQR qr=new BlockHouseholderQR();
+		qr.decompose(y);
+		return qr.getQ(true);
+	}
+
+	private static Matrix multiply(AMatrix a, Matrix x) {
+		return a.innerProduct(x);
+	}
+
+	private static Matrix transposeMultiply(AMatrix a, Matrix y) {
+		if (a instanceof Matrix) return Multiplications.transposeMultiply((Matrix)a, y);
+		return a.getTransposeView().innerProduct(y);
+	}
+}
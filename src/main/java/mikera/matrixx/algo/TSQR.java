@@ -0,0 +1,265 @@
+package mikera.matrixx.algo;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Tall-skinny QR (TSQR) decomposition for matrices with many more rows than columns.
+ *
+ * The rows are split into blocks which are factored independently, and the resulting small
+ * n x n R factors are combined pairwise in a reduction tree. Q is recovered by pushing the
+ * n x n Q factors of the tree back down to the leaves.
+ *
+ * Two modes are supported:
+ * - In-memory: blocks and tree nodes are computed in parallel on a ForkJoinPool
+ * - Streaming: row chunks are read from an iterator and folded into a running R, so only
+ *   O(n^2) memory plus one chunk is needed. Q is not available in this mode.
+ *
+ * TSQR is also used as a front end to ThinSVD for tall matrices: A = Q.R, R = U'.S.V^T gives
+ * A = (Q.U').S.V^T with the SVD only computed on the small R factor.
+ *
+ * @author Mike
+ */
+public class TSQR {
+	/**
+	 * Target number of rows in each leaf block. Leaves always have at least 2n rows.
+	 */
+	public static int BLOCK_ROWS=4096;
+
+	/**
+	 * Ratio of rows to columns at or above which ThinSVD uses TSQR as a front end
+	 */
+	public static int TALL_RATIO=8;
+
+	/**
+	 * Minimum number of rows for ThinSVD to use TSQR as a front end
+	 */
+	public static int TALL_MIN_ROWS=1000;
+
+	/**
+	 * Computes the thin QR decomposition A = Q.R in parallel using the default pool
+	 *
+	 * @return Array containing Q (m x n) and R (n x n)
+	 */
+	public static Matrix[] decompose(AMatrix a) {
+		return decompose(a, ParallelMatrixMult.getDefaultPool());
+	}
+
+	/**
+	 * Computes the thin QR decomposition A = Q.R in parallel using the given pool
+	 *
+	 * @return Array containing Q (m x n) and R (n x n)
+	 */
+	public static Matrix[] decompose(AMatrix a, ForkJoinPool pool) {
+		int m=a.rowCount();
+		int n=a.columnCount();
+		if (m<n) throw new IllegalArgumentException("TSQR requires rows >= columns");
+		Node root=pool.invoke(new FactorTask(a,0,m,leafRows(n),true));
+		Matrix q=Matrix.create(m, n);
+		Matrix identity=Matrix.create(n, n);
+		for (int i=0; i<n; i++) identity.unsafeSet(i, i, 1.0);
+		pool.invoke(new ExpandTask(root,identity,q));
+		return new Matrix[] {q,root.r};
+	}
+
+	/**
+	 * Computes only the R factor of A = Q.R in parallel. This avoids storing any Q factors.
+	 */
+	public static Matrix computeR(AMatrix a) {
+		int m=a.rowCount();
+		int n=a.columnCount();
+		if (m<n) throw new IllegalArgumentException("TSQR requires rows >= columns");
+		return ParallelMatrixMult.getDefaultPool().invoke(new FactorTask(a,0,m,leafRows(n),false)).r;
+	}
+
+	/**
+	 * Computes the R factor of a matrix supplied as a sequence of row chunks. Chunks may have any
+	 * number of rows, but must all have the same number of columns.
+	 *
+	 * If fewer rows than columns are supplied in total, the trailing rows of R are zero.
+	 */
+	public static Matrix computeR(Iterator<? extends AMatrix> chunks) {
+		Accumulator acc=new Accumulator();
+		while (chunks.hasNext()) {
+			acc.add(chunks.next());
+		}
+		return acc.getR();
+	}
+
+	/**
+	 * Computes the thin SVD of a tall matrix by first reducing it with TSQR.
+	 *
+	 * @return Array containing U (m x n), S (n x n) and V (n x n), as for ThinSVD
+	 */
+	public static Matrix[] thinSVD(AMatrix a) {
+		Matrix[] qr=decompose(a);
+		Matrix[] svd=ThinSVD.decomposeInternal(qr[1].clone());
+		Matrix u=Multiplications.multiply(qr[0], svd[0]);
+		return new Matrix[] {u,svd[1],svd[2]};
+	}
+
+	/**
+	 * Returns true if a matrix is tall enough for TSQR to be a good front end to ThinSVD
+	 */
+	public static boolean isTall(AMatrix a) {
+		int m=a.rowCount();
+		return (m>=TALL_MIN_ROWS)&&(((long)m)>=((long)TALL_RATIO)*a.columnCount());
+	}
+
+	private static int leafRows(int n) {
+		return Math.max(BLOCK_ROWS, 2*n);
+	}
+
+	/**
+	 * Streaming accumulator for the R factor. Each chunk is stacked under the current R and
+	 * re-factored, so memory use is independent of the total number of rows.
+	 */
+	public static class Accumulator {
+		private Matrix r=null;
+		private int n=-1;
+		private long rowCount=0;
+
+		/**
+		 * Adds a chunk of rows to the accumulated matrix
+		 */
+		public void add(AMatrix chunk) {
+			int cc=chunk.columnCount();
+			if (n<0) {
+				n=cc;
+			} else if (cc!=n) {
+				throw new IllegalArgumentException(ErrorMessages.incompatibleShape(chunk));
+			}
+			int rc=chunk.rowCount();
+			if (rc==0) return;
+			rowCount+=rc;
+			int rr=(r==null)?0:r.rowCount();
+			Matrix stacked=Matrix.create(rr+rc, n);
+			if (r!=null) System.arraycopy(r.data, 0, stacked.data, 0, rr*n);
+			stacked.subMatrix(rr, rc, 0, n).set(chunk);
+			r=factorR(stacked);
+		}
+
+		/**
+		 * Returns the total number of rows added so far
+		 */
+		public long rowCount() {
+			return rowCount;
+		}
+
+		/**
+		 * Returns the n x n R factor of all rows added so far. This is zero if only empty chunks
+		 * have been added.
+		 */
+		public Matrix getR() {
+			if (n<0) throw new IllegalStateException("No rows have been added");
+			Matrix result=Matrix.create(n, n);
+			if (r!=null) System.arraycopy(r.data, 0, result.data, 0, r.rowCount()*n);
+			return result;
+		}
+	}
+
+	private static Matrix factorR(Matrix a) {
+		BlockHouseholderQR qr=new BlockHouseholderQR(false);
+		qr.decompose(a);
+		return qr.getR(true);
+	}
+
+	/**
+	 * Node of the reduction tree. Leaves hold the Q factor of their row block, internal nodes hold
+	 * the two n x n halves of the Q factor of their stacked child R factors.
+	 */
+	private static final class Node {
+		private int rowStart;
+		private Matrix r;
+		private Matrix q;
+		private Matrix qTop;
+		private Matrix qBottom;
+		private Node left;
+		private Node right;
+	}
+
+	@SuppressWarnings("serial")
+	private static final class FactorTask extends RecursiveTask<Node> {
+		private final AMatrix a;
+		private final int r0,r1,leafRows;
+		private final boolean keepQ;
+
+		private FactorTask(AMatrix a, int r0, int r1, int leafRows, boolean keepQ) {
+			this.a=a;
+			this.r0=r0;
+			this.r1=r1;
+			this.leafRows=leafRows;
+			this.keepQ=keepQ;
+		}
+
+		@Override
+		protected Node compute() {
+			int n=a.columnCount();
+			int rows=r1-r0;
+			Node node=new Node();
+			node.rowStart=r0;
+			if (rows<2*leafRows) {
+				BlockHouseholderQR qr=new BlockHouseholderQR(false);
+				qr.decompose(Matrix.create(a.subMatrix(r0, rows, 0, n)));
+				node.r=qr.getR(true);
+				if (keepQ) node.q=qr.getQ(true);
+				return node;
+			}
+			int mid=r0+rows/2;
+			FactorTask leftTask=new FactorTask(a,r0,mid,leafRows,keepQ);
+			leftTask.fork();
+			Node right=new FactorTask(a,mid,r1,leafRows,keepQ).compute();
+			Node left=leftTask.join();
+
+			Matrix stacked=Matrix.create(2*n, n);
+			System.arraycopy(left.r.data, 0, stacked.data, 0, n*n);
+			System.arraycopy(right.r.data, 0, stacked.data, n*n, n*n);
+			BlockHouseholderQR qr=new BlockHouseholderQR(false);
+			qr.decompose(stacked);
+			node.r=qr.getR(true);
+			if (keepQ) {
+				Matrix q=qr.getQ(true);
+				node.qTop=Matrix.create(q.subMatrix(0, n, 0, n));
+				node.qBottom=Matrix.create(q.subMatrix(n, n, 0, n));
+				node.left=left;
+				node.right=right;
+			}
+			return node;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class ExpandTask extends RecursiveAction {
+		private final Node node;
+		private final Matrix m;
+		private final Matrix result;
+
+		private ExpandTask(Node node, Matrix m, Matrix result) {
+			this.node=node;
+			this.m=m;
+			this.result=result;
+		}
+
+		@Override
+		protected void compute() {
+			int n=m.rowCount();
+			if (node.q!=null) {
+				// leaf: rows of Q are q.M
+				PackedMatrixMult.gemm(node.q.rowCount(),n,n,1.0,node.q,0,0,m,0,0,0.0,result.data,node.rowStart*n,n);
+				return;
+			}
+			ExpandTask leftTask=new ExpandTask(node.left,PackedMatrixMult.multiply(node.qTop, m),result);
+			ExpandTask rightTask=new ExpandTask(node.right,PackedMatrixMult.multiply(node.qBottom, m),result);
+			invokeAll(leftTask,rightTask);
+		}
+	}
+}
@@ -31,6 +31,8 @@ public class ThinSVD {
 	}
 
 	public static Matrix[] decompose(Matrix matrix) {
+		// reduce tall matrices to a small R factor first
+		if (TSQR.isTall(matrix)) return TSQR.thinSVD(matrix);
 		return decomposeInternal(matrix.clone());
 	}
 
@@ -133,6 +135,10 @@ public class ThinSVD {
 
 				if ((k + 1 < rc) && (Math.abs(e.get(k)) > Decompositions.EPS)) {
 
+					for (int i = k + 1; i < rc; i++) {
+						work.set(i, 0.0);
+					}
+
 					for (int j = k + 1; j < cc; j++) {
 						for (int i = k + 1; i < rc; i++) {
 							work.addAt(i, (e.get(j) * a.get(i, j)));
@@ -18,6 +18,10 @@
 
 package mikera.matrixx.algo.decompose;
 
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+
 /**
  * <p>
  * This contains algorithms for solving systems of equations where T is a
@@ -37,6 +41,18 @@ package mikera.matrixx.algo.decompose;
  */
 public class TriangularSolver {
 
+  /**
+   * Number of rows of the triangular matrix solved directly before the
+   * remaining rows are updated with a matrix-matrix multiply
+   */
+  public static int BLOCK_SIZE = 64;
+
+  /**
+   * Number of right hand side columns processed at once inside a diagonal
+   * block, so that the rows being updated stay in cache
+   */
+  public static int COLUMN_BLOCK = 512;
+
   /**
    * <p>
    * Inverts a square lower triangular matrix: L = L<sup>-1</sup>
@@ -237,4 +253,153 @@ public class TriangularSolver {
 
     // todo comment out the above and optimize it
   }
+
+  /**
+   * <p>
+   * Blocked forward substitution for many right hand sides: B = L<sup>-1</sup>B
+   * <br>
+   * where L is the leading n by n lower triangle of the matrix and B is an n by
+   * nc row major matrix stored in b. Diagonal blocks are solved directly and
+   * the rows below each block are updated with a single matrix-matrix
+   * multiply, rather than solving each column of B separately.
+   * </p>
+   * 
+   * @param L Matrix containing the lower triangle. Not modified.
+   * @param unitDiagonal If true the diagonal of L is taken to be one and is
+   *          not read, as for the L factor of an LU decomposition.
+   * @param b Row major matrix with nc columns and at least n rows. The first n
+   *          rows are overwritten with the solution.
+   * @param n The size of the triangular system.
+   * @param nc Number of columns in b.
+   */
+  public static void solveLowerMulti(Matrix L, boolean unitDiagonal,
+      double[] b, int n, int nc) {
+    solveLowerMulti(L.data, L.columnCount(), 1, L, unitDiagonal, b, n, nc);
+  }
+
+  /**
+   * <p>
+   * Blocked backward substitution for many right hand sides: B = U<sup>-1</sup>B
+   * <br>
+   * where U is the leading n by n upper triangle of the matrix and B is an n by
+   * nc row major matrix stored in b.
+   * </p>
+   * 
+   * @param U Matrix containing the upper triangle. Not modified.
+   * @param b Row major matrix with nc columns and at least n rows. The first n
+   *          rows are overwritten with the solution.
+   * @param n The size of the triangular system.
+   * @param nc Number of columns in b.
+   */
+  public static void solveUpperMulti(Matrix U, double[] b, int n, int nc) {
+    solveUpperMulti(U.data, U.columnCount(), 1, U, false, b, n, nc);
+  }
+
+  /**
+   * <p>
+   * Blocked backward substitution for many right hand sides using the
+   * transpose of a lower triangular matrix: B = (L<sup>T</sup>)<sup>-1</sup>B
+   * </p>
+   * 
+   * @param L Matrix containing the lower triangle. Not modified.
+   * @param b Row major matrix with nc columns and at least n rows. The first n
+   *          rows are overwritten with the solution.
+   * @param n The size of the triangular system.
+   * @param nc Number of columns in b.
+   */
+  public static void solveTranLowerMulti(Matrix L, double[] b, int n, int nc) {
+    solveUpperMulti(L.data, 1, L.columnCount(), L.getTransposeView(), false,
+        b, n, nc);
+  }
+
+  /**
+   * <p>
+   * Blocked forward substitution for many right hand sides using the transpose
+   * of an upper triangular matrix: B = (U<sup>T</sup>)<sup>-1</sup>B
+   * </p>
+   * 
+   * @param U Matrix containing the upper triangle. Not modified.
+   * @param b Row major matrix with nc columns and at least n rows. The first n
+   *          rows are overwritten with the solution.
+   * @param n The size of the triangular system.
+   * @param nc Number of columns in b.
+   */
+  public static void solveTranUpperMulti(Matrix U, double[] b, int n, int nc) {
+    solveLowerMulti(U.data, 1, U.columnCount(), U.getTransposeView(), false,
+        b, n, nc);
+  }
+
+  /**
+   * Element T(i,j) of the triangular matrix is t[i*rs+j*cs], and the same
+   * matrix is passed as tm for the off-diagonal multiplies.
+   */
+  private static void solveLowerMulti(double[] t, int rs, int cs, AMatrix tm,
+      boolean unit, double[] b, int n, int nc) {
+    if ((n == 0) || (nc == 0)) return;
+    Matrix bm = Matrix.wrap(b.length / nc, nc, b);
+    for (int i0 = 0; i0 < n; i0 += BLOCK_SIZE) {
+      int i1 = Math.min(n, i0 + BLOCK_SIZE);
+      if (i0 > 0) {
+        // B[i0:i1] -= T[i0:i1, 0:i0] * X[0:i0], rows of b do not overlap
+        PackedMatrixMult.gemm(i1 - i0, nc, i0, -1.0, tm, i0, 0, bm, 0, 0, 1.0,
+            b, i0 * nc, nc);
+      }
+      for (int j0 = 0; j0 < nc; j0 += COLUMN_BLOCK) {
+        int j1 = Math.min(nc, j0 + COLUMN_BLOCK);
+        for (int i = i0; i < i1; i++) {
+          int bi = i * nc;
+          for (int k = i0; k < i; k++) {
+            double tik = t[i * rs + k * cs];
+            if (tik == 0.0) continue;
+            int bk = k * nc;
+            for (int j = j0; j < j1; j++) {
+              b[bi + j] -= tik * b[bk + j];
+            }
+          }
+          if (!unit) {
+            double d = t[i * rs + i * cs];
+            for (int j = j0; j < j1; j++) {
+              b[bi + j] /= d;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void solveUpperMulti(double[] t, int rs, int cs, AMatrix tm,
+      boolean unit, double[] b, int n, int nc) {
+    if ((n == 0) || (nc == 0)) return;
+    Matrix bm = Matrix.wrap(b.length / nc, nc, b);
+    int nb = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    for (int blk = nb - 1; blk >= 0; blk--) {
+      int i0 = blk * BLOCK_SIZE;
+      int i1 = Math.min(n, i0 + BLOCK_SIZE);
+      if (i1 < n) {
+        // B[i0:i1] -= T[i0:i1, i1:n] * X[i1:n]
+        PackedMatrixMult.gemm(i1 - i0, nc, n - i1, -1.0, tm, i0, i1, bm, i1, 0,
+            1.0, b, i0 * nc, nc);
+      }
+      for (int j0 = 0; j0 < nc; j0 += COLUMN_BLOCK) {
+        int j1 = Math.min(nc, j0 + COLUMN_BLOCK);
+        for (int i = i1 - 1; i >= i0; i--) {
+          int bi = i * nc;
+          for (int k = i + 1; k < i1; k++) {
+            double tik = t[i * rs + k * cs];
+            if (tik == 0.0) continue;
+            int bk = k * nc;
+            for (int j = j0; j < j1; j++) {
+              b[bi + j] -= tik * b[bk + j];
+            }
+          }
+          if (!unit) {
+            double d = t[i * rs + i * cs];
+            for (int j = j0; j < j1; j++) {
+              b[bi + j] /= d;
+            }
+          }
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,155 @@
+package mikera.matrixx.algo.decompose.banded;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Cholesky decomposition of a symmetric positive definite banded matrix, A = L.L^T
+ *
+ * For bandwidth k, L has the same bandwidth as A so no fill occurs outside the band. Decomposition
+ * takes O(n.k^2) time and O(n.(k+1)) memory. Only the diagonal and lower bands of A are read.
+ *
+ * @author Mike
+ */
+public class BandedCholesky {
+	private final int n;
+	private final int k;
+	private final int ld;
+
+	/**
+	 * Column-major lower band storage: element (i,j) with j<=i<=j+k is at j*(k+1)+i-j
+	 */
+	private final double[] lb;
+
+	private BandedCholesky(int n, int k) {
+		this.n=n;
+		this.k=k;
+		this.ld=k+1;
+		this.lb=new double[n*ld];
+	}
+
+	/**
+	 * Decomposes a symmetric matrix, using its lower bandwidth
+	 *
+	 * @throws IllegalArgumentException if the matrix is not positive definite
+	 */
+	public static BandedCholesky decompose(AMatrix a) {
+		return decompose(a, a.lowerBandwidth());
+	}
+
+	/**
+	 * Decomposes a symmetric matrix with the given bandwidth. Elements outside the band are ignored.
+	 *
+	 * @throws IllegalArgumentException if the matrix is not positive definite
+	 */
+	public static BandedCholesky decompose(AMatrix a, int bandwidth) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		int n=a.rowCount();
+		int k=Math.max(0, Math.min(bandwidth, n-1));
+		BandedCholesky chol=new BandedCholesky(n, k);
+		for (int t=0; t<=k; t++) {
+			AVector band=a.getBand(-t);
+			int len=band.length();
+			// band -t starts at row t, column 0
+			for (int j=0; j<len; j++) {
+				chol.lb[j*chol.ld+t]=band.unsafeGet(j);
+			}
+		}
+		chol.factor();
+		return chol;
+	}
+
+	private void factor() {
+		for (int j=0; j<n; j++) {
+			int dj=j*ld;
+			double d=lb[dj];
+			if (!(d>0.0)) throw new IllegalArgumentException("Matrix is not positive definite (pivot "+j+")");
+			d=Math.sqrt(d);
+			lb[dj]=d;
+			int kn=Math.min(k, n-1-j);
+			for (int t=1; t<=kn; t++) {
+				lb[dj+t]/=d;
+			}
+			// symmetric rank-1 update of the trailing band
+			for (int c=1; c<=kn; c++) {
+				double lc=lb[dj+c];
+				if (lc==0.0) continue;
+				int dc=(j+c)*ld;
+				for (int r=c; r<=kn; r++) {
+					lb[dc+r-c]-=lb[dj+r]*lc;
+				}
+			}
+		}
+	}
+
+	public int bandwidth() {
+		return k;
+	}
+
+	/**
+	 * Computes the determinant of the decomposed matrix
+	 */
+	public double determinant() {
+		double result=1.0;
+		for (int j=0; j<n; j++) {
+			double d=lb[j*ld];
+			result*=d*d;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the diagonal element L(i,i) of the lower triangular factor
+	 */
+	public double getDiagonalValue(int i) {
+		return lb[i*ld];
+	}
+
+	/**
+	 * Solves A.x = b, returning a new vector
+	 */
+	public Vector solve(AVector b) {
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		Vector x=Vector.create(b);
+		solveInPlace(x.getArray(), 0);
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b, storing the result in x. b and x may be the same vector.
+	 */
+	public void solve(AVector b, AVector x) {
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		if (x.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(x));
+		double[] y=b.toDoubleArray();
+		solveInPlace(y, 0);
+		x.setElements(y);
+	}
+
+	/**
+	 * Solves A.x = b in place, where b is stored in the array y starting at the given offset
+	 */
+	public void solveInPlace(double[] y, int offset) {
+		for (int j=0; j<n; j++) {
+			int dj=j*ld;
+			double yj=y[offset+j]/lb[dj];
+			y[offset+j]=yj;
+			if (yj==0.0) continue;
+			int kn=Math.min(k, n-1-j);
+			for (int t=1; t<=kn; t++) {
+				y[offset+j+t]-=lb[dj+t]*yj;
+			}
+		}
+		for (int j=n-1; j>=0; j--) {
+			int dj=j*ld;
+			double acc=y[offset+j];
+			int kn=Math.min(k, n-1-j);
+			for (int t=1; t<=kn; t++) {
+				acc-=lb[dj+t]*y[offset+j+t];
+			}
+			y[offset+j]=acc/lb[dj];
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package mikera.matrixx.algo.decompose.banded;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * LU decomposition with partial pivoting of a square banded matrix, P.A = L.U
+ *
+ * For lower bandwidth kl and upper bandwidth ku, L has at most kl sub-diagonals and row pivoting
+ * widens U to at most kl+ku super-diagonals. The factors are kept in compact band storage, so
+ * decomposition takes O(n.kl.(kl+ku)) time and O(n.(2kl+ku+1)) memory.
+ *
+ * The matrix is read band by band with getBand(), which is efficient for ABandedMatrix instances
+ * such as BandedMatrix.
+ *
+ * @author Mike
+ */
+public class BandedLU {
+	private final int n;
+	private final int kl;
+	private final int ku;
+	private final int ldab;
+
+	/**
+	 * Column-major band storage: element (i,j) is at j*ldab+kl+ku+i-j
+	 */
+	private final double[] ab;
+	private final int[] pivots;
+	private int swaps=0;
+
+	private BandedLU(int n, int kl, int ku) {
+		this.n=n;
+		this.kl=kl;
+		this.ku=ku;
+		this.ldab=2*kl+ku+1;
+		this.ab=new double[n*ldab];
+		this.pivots=new int[n];
+	}
+
+	/**
+	 * Decomposes a square matrix using its actual lower and upper bandwidths
+	 *
+	 * @throws IllegalArgumentException if the matrix is singular
+	 */
+	public static BandedLU decompose(AMatrix a) {
+		return decompose(a, a.lowerBandwidth(), a.upperBandwidth());
+	}
+
+	/**
+	 * Decomposes a square matrix with the given lower and upper bandwidths. Elements outside the
+	 * bands are ignored.
+	 *
+	 * @throws IllegalArgumentException if the matrix is singular
+	 */
+	public static BandedLU decompose(AMatrix a, int lowerBandwidth, int upperBandwidth) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		int n=a.rowCount();
+		int kl=Math.max(0, Math.min(lowerBandwidth, n-1));
+		int ku=Math.max(0, Math.min(upperBandwidth, n-1));
+		BandedLU lu=new BandedLU(n, kl, ku);
+		for (int b=-kl; b<=ku; b++) {
+			AVector band=a.getBand(b);
+			int len=band.length();
+			int row=(b<0)?-b:0;
+			for (int t=0; t<len; t++) {
+				int i=row+t;
+				lu.ab[lu.index(i, i+b)]=band.unsafeGet(t);
+			}
+		}
+		lu.factor();
+		return lu;
+	}
+
+	private int index(int i, int j) {
+		return j*ldab+kl+ku+i-j;
+	}
+
+	private void factor() {
+		// last column that has been affected by row interchanges so far
+		int ju=0;
+		for (int j=0; j<n; j++) {
+			int km=Math.min(kl, n-1-j);
+			int dj=index(j, j);
+			int jp=0;
+			double max=Math.abs(ab[dj]);
+			for (int t=1; t<=km; t++) {
+				double v=Math.abs(ab[dj+t]);
+				if (v>max) {
+					max=v;
+					jp=t;
+				}
+			}
+			pivots[j]=j+jp;
+			if (max==0.0) throw new IllegalArgumentException(ErrorMessages.singularMatrix());
+			ju=Math.max(ju, Math.min(j+ku+jp, n-1));
+
+			if (jp!=0) {
+				swaps++;
+				for (int c=j; c<=ju; c++) {
+					int p1=index(j, c);
+					int p2=p1+jp;
+					double t=ab[p1];
+					ab[p1]=ab[p2];
+					ab[p2]=t;
+				}
+			}
+
+			double pivot=ab[dj];
+			for (int t=1; t<=km; t++) {
+				ab[dj+t]/=pivot;
+			}
+			for (int c=j+1; c<=ju; c++) {
+				int pc=index(j, c);
+				double ujc=ab[pc];
+				if (ujc==0.0) continue;
+				for (int t=1; t<=km; t++) {
+					ab[pc+t]-=ab[dj+t]*ujc;
+				}
+			}
+		}
+	}
+
+	public int lowerBandwidth() {
+		return kl;
+	}
+
+	public int upperBandwidth() {
+		return ku;
+	}
+
+	/**
+	 * Computes the determinant of the decomposed matrix
+	 */
+	public double determinant() {
+		double result=((swaps&1)==0)?1.0:-1.0;
+		for (int j=0; j<n; j++) {
+			result*=ab[index(j, j)];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the diagonal element U(i,i) of the upper triangular factor
+	 */
+	public double getPivotValue(int i) {
+		return ab[index(i, i)];
+	}
+
+	/**
+	 * Solves A.x = b, returning a new vector
+	 */
+	public Vector solve(AVector b) {
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		Vector x=Vector.create(b);
+		solveInPlace(x.getArray(), 0);
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b, storing the result in x. b and x may be the same vector.
+	 */
+	public void solve(AVector b, AVector x) {
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		if (x.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(x));
+		double[] y=b.toDoubleArray();
+		solveInPlace(y, 0);
+		x.setElements(y);
+	}
+
+	/**
+	 * Solves A.x = b in place, where b is stored in the array y starting at the given offset
+	 */
+	public void solveInPlace(double[] y, int offset) {
+		for (int j=0; j<n; j++) {
+			int p=pivots[j];
+			double yj=y[offset+p];
+			if (p!=j) {
+				y[offset+p]=y[offset+j];
+				y[offset+j]=yj;
+			}
+			if (yj==0.0) continue;
+			int km=Math.min(kl, n-1-j);
+			int dj=index(j, j);
+			for (int t=1; t<=km; t++) {
+				y[offset+j+t]-=ab[dj+t]*yj;
+			}
+		}
+		int kw=kl+ku;
+		for (int j=n-1; j>=0; j--) {
+			int dj=index(j, j);
+			double yj=y[offset+j]/ab[dj];
+			y[offset+j]=yj;
+			if (yj==0.0) continue;
+			int start=Math.max(0, j-kw);
+			for (int i=start; i<j; i++) {
+				y[offset+i]-=ab[dj-(j-i)]*yj;
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package mikera.matrixx.algo.decompose.banded;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Tridiagonal solver using the Thomas algorithm, O(n) per decomposition and per solve.
+ *
+ * The Thomas algorithm does not pivot, so it is only guaranteed to be stable for diagonally dominant
+ * or symmetric positive definite matrices. Use BandedLU for general tridiagonal matrices.
+ *
+ * @author Mike
+ */
+public class TridiagonalSolver {
+	private final int n;
+	private final double[] lower;
+	private final double[] denom;
+
+	/**
+	 * Super-diagonal scaled by the preceding pivot, upper[i]/denom[i]
+	 */
+	private final double[] scaledUpper;
+
+	private TridiagonalSolver(double[] lower, double[] diag, double[] upper) {
+		this.n=diag.length;
+		this.lower=lower;
+		this.denom=new double[n];
+		this.scaledUpper=new double[Math.max(0, n-1)];
+		double c=0.0;
+		for (int i=0; i<n; i++) {
+			double d=diag[i];
+			if (i>0) d-=lower[i-1]*c;
+			if (d==0.0) throw new IllegalArgumentException(ErrorMessages.singularMatrix());
+			denom[i]=d;
+			if (i<n-1) c=scaledUpper[i]=upper[i]/d;
+		}
+	}
+
+	/**
+	 * Decomposes a tridiagonal matrix. Elements outside the three central bands are ignored.
+	 *
+	 * @throws IllegalArgumentException if a zero pivot is encountered
+	 */
+	public static TridiagonalSolver decompose(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		int n=a.rowCount();
+		double[] lower=new double[Math.max(0, n-1)];
+		double[] upper=new double[Math.max(0, n-1)];
+		if (n>1) {
+			a.getBand(-1).getElements(lower, 0);
+			a.getBand(1).getElements(upper, 0);
+		}
+		return new TridiagonalSolver(lower, a.getBand(0).toDoubleArray(), upper);
+	}
+
+	/**
+	 * Decomposes a tridiagonal matrix given by its three bands
+	 *
+	 * @param lower Sub-diagonal, of length n-1
+	 * @param diag Diagonal, of length n
+	 * @param upper Super-diagonal, of length n-1
+	 */
+	public static TridiagonalSolver decompose(AVector lower, AVector diag, AVector upper) {
+		int n=diag.length();
+		if ((lower.length()!=Math.max(0, n-1))||(upper.length()!=Math.max(0, n-1))) {
+			throw new IllegalArgumentException("Off-diagonal bands must have length "+(n-1));
+		}
+		return new TridiagonalSolver(lower.toDoubleArray(), diag.toDoubleArray(), upper.toDoubleArray());
+	}
+
+	/**
+	 * Solves a tridiagonal system A.x = b directly, without retaining a decomposition
+	 */
+	public static Vector solve(AVector lower, AVector diag, AVector upper, AVector b) {
+		return decompose(lower, diag, upper).solve(b);
+	}
+
+	/**
+	 * Computes the determinant of the decomposed matrix
+	 */
+	public double determinant() {
+		double result=1.0;
+		for (int i=0; i<n; i++) {
+			result*=denom[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the i-th pivot of the elimination, i.e. the diagonal element U(i,i) of the implied LU factorisation
+	 */
+	public double getPivotValue(int i) {
+		return denom[i];
+	}
+
+	/**
+	 * Solves A.x = b, returning a new vector
+	 */
+	public Vector solve(AVector b) {
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		Vector x=Vector.create(b);
+		solveInPlace(x.getArray(), 0);
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b, storing the result in x. b and x may be the same vector.
+	 */
+	public void solve(AVector b, AVector x) {
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		if (x.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(x));
+		double[] y=b.toDoubleArray();
+		solveInPlace(y, 0);
+		x.setElements(y);
+	}
+
+	/**
+	 * Solves A.x = b in place, where b is stored in the array y starting at the given offset
+	 */
+	public void solveInPlace(double[] y, int offset) {
+		if (n==0) return;
+		y[offset]/=denom[0];
+		for (int i=1; i<n; i++) {
+			y[offset+i]=(y[offset+i]-lower[i-1]*y[offset+i-1])/denom[i];
+		}
+		for (int i=n-2; i>=0; i--) {
+			y[offset+i]-=scaledUpper[i]*y[offset+i+1];
+		}
+	}
+}
@@ -18,9 +18,11 @@
 
 package mikera.matrixx.algo.decompose.chol.impl;
 
+import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
 import mikera.matrixx.algo.decompose.chol.ICholesky;
 import mikera.matrixx.ops.CommonOps;
+import mikera.vectorz.AVector;
 
 /**
  * 
@@ -186,4 +188,47 @@ public abstract class ACholesky implements ICholesky {
   public double[] _getVV() {
     return vv;
   }
+
+  /**
+   * Updates the decomposition in place to that of A + x*x<sup>T</sup>, in
+   * O(n<sup>2</sup>) time.
+   * 
+   * @param x The update vector. Not modified.
+   */
+  public void update(AVector x) {
+    CholeskyUpdate.update(T, x, lower);
+  }
+
+  /**
+   * Updates the decomposition in place to that of A + X*X<sup>T</sup>, in
+   * O(k*n<sup>2</sup>) time for k columns.
+   * 
+   * @param X The update matrix. Not modified.
+   */
+  public void update(AMatrix X) {
+    CholeskyUpdate.update(T, X, lower);
+  }
+
+  /**
+   * Downdates the decomposition in place to that of A - x*x<sup>T</sup>, in
+   * O(n<sup>2</sup>) time.
+   * 
+   * @param x The downdate vector. Not modified.
+   * @return false if the result would not be positive definite, in which case
+   *         the decomposition is unchanged.
+   */
+  public boolean downdate(AVector x) {
+    return CholeskyUpdate.downdate(T, x, lower);
+  }
+
+  /**
+   * Downdates the decomposition in place to that of A - X*X<sup>T</sup>.
+   * 
+   * @param X The downdate matrix. Not modified.
+   * @return false if the result would not be positive definite, in which case
+   *         the decomposition is unchanged.
+   */
+  public boolean downdate(AMatrix X) {
+    return CholeskyUpdate.downdate(T, X, lower);
+  }
 }
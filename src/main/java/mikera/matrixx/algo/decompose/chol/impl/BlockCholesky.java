@@ -0,0 +1,250 @@
+package mikera.matrixx.algo.decompose.chol.impl;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+
+/**
+ * Blocked right-looking Cholesky decomposition for large symmetric positive definite matrices.
+ *
+ * Each step factors a BLOCK_SIZE diagonal block, solves the panel below it against the diagonal
+ * block (L21 = A21.L11^-T), then applies a SYRK-style update to the lower triangle of the
+ * trailing matrix (A22 = A22 - L21.L21^T) using the packed GEMM kernel. Panel rows and trailing
+ * row blocks are independent tiles, and are scheduled on a ForkJoinPool when the step is large
+ * enough.
+ *
+ * Only the lower triangle of the input is read. Matrices no larger than one block are factored
+ * with the same arithmetic as {@link InnerCholesky}.
+ *
+ * @author Mike
+ */
+public class BlockCholesky extends ACholesky {
+	/**
+	 * Size of the diagonal blocks and of the row tiles in the trailing update
+	 */
+	public static int BLOCK_SIZE=128;
+
+	/**
+	 * Matrix size at or above which the blocked algorithm is preferred over InnerCholesky
+	 */
+	public static int BLOCKED_THRESHOLD=200;
+
+	private boolean parallel=true;
+
+	public BlockCholesky() {
+		super(true);
+	}
+
+	/**
+	 * Creates a blocked Cholesky decomposition
+	 *
+	 * @param lower If true L is computed, otherwise the upper triangular R=L^T
+	 */
+	public BlockCholesky(boolean lower) {
+		super(lower);
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel=parallel;
+	}
+
+	@Override
+	protected boolean decomposeLower() {
+		if (!decomposeInPlace(T,parallel?ParallelMatrixMult.getDefaultPool():null)) return false;
+		for (int i=0; i<n; i++) {
+			for (int j=i+1; j<n; j++) {
+				t[i*n+j]=0.0;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected boolean decomposeUpper() {
+		if (!decomposeInPlace(T,parallel?ParallelMatrixMult.getDefaultPool():null)) return false;
+		for (int i=0; i<n; i++) {
+			for (int j=i+1; j<n; j++) {
+				t[i*n+j]=t[j*n+i];
+				t[j*n+i]=0.0;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Overwrites the lower triangle of a square matrix with its Cholesky factor L. The strict
+	 * upper triangle is used as workspace and is left undefined.
+	 *
+	 * @param a A symmetric positive definite matrix, of which only the lower triangle is read
+	 * @param pool Pool used for parallel tiles, or null to run on the current thread
+	 * @return false if the matrix is not positive definite
+	 */
+	public static boolean decomposeInPlace(Matrix a, ForkJoinPool pool) {
+		int n=a.rowCount();
+		double[] data=a.data;
+		AMatrix at=a.getTransposeView();
+		int nb=Math.max(1, BLOCK_SIZE);
+		boolean canFork=(pool!=null)&&(Runtime.getRuntime().availableProcessors()>1);
+
+		for (int k0=0; k0<n; k0+=nb) {
+			int kb=Math.min(nb, n-k0);
+			int k1=k0+kb;
+			if (!factorDiagonal(data,n,k0,kb)) return false;
+			int m2=n-k1;
+			if (m2==0) break;
+
+			if (canFork&&(((long)m2)*m2*kb>=ParallelMatrixMult.PARALLEL_THRESHOLD)) {
+				ArrayList<RecursiveAction> panels=new ArrayList<RecursiveAction>();
+				for (int i0=k1; i0<n; i0+=nb) {
+					panels.add(new PanelTask(data,n,k0,kb,i0,Math.min(i0+nb, n)));
+				}
+				pool.invoke(new TileGroup(panels));
+				ArrayList<RecursiveAction> updates=new ArrayList<RecursiveAction>();
+				for (int i0=k1; i0<n; i0+=nb) {
+					updates.add(new UpdateTask(a,at,k0,kb,i0,Math.min(nb, n-i0)));
+				}
+				pool.invoke(new TileGroup(updates));
+			} else {
+				solvePanel(data,n,k0,kb,k1,n);
+				for (int i0=k1; i0<n; i0+=nb) {
+					updateRowBlock(a,at,k0,kb,i0,Math.min(nb, n-i0));
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Unblocked inner product Cholesky of the kb x kb diagonal block at (k0,k0), reading the lower triangle
+	 */
+	private static boolean factorDiagonal(double[] t, int n, int k0, int kb) {
+		int k1=k0+kb;
+		for (int i=k0; i<k1; i++) {
+			int ri=i*n;
+			double div=0.0;
+			for (int j=i; j<k1; j++) {
+				int rj=j*n;
+				double sum=t[rj+i];
+				for (int k=k0; k<i; k++) {
+					sum-=t[ri+k]*t[rj+k];
+				}
+				if (i==j) {
+					if (!(sum>0.0)) return false;
+					double lii=Math.sqrt(sum);
+					t[ri+i]=lii;
+					div=1.0/lii;
+				} else {
+					t[rj+i]=sum*div;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solves rows r0..r1-1 of the panel below the diagonal block, L21 = A21.L11^-T
+	 */
+	private static void solvePanel(double[] t, int n, int k0, int kb, int r0, int r1) {
+		int k1=k0+kb;
+		for (int i=r0; i<r1; i++) {
+			int ri=i*n;
+			for (int j=k0; j<k1; j++) {
+				int rj=j*n;
+				double sum=t[ri+j];
+				for (int p=k0; p<j; p++) {
+					sum-=t[ri+p]*t[rj+p];
+				}
+				t[ri+j]=sum/t[rj+j];
+			}
+		}
+	}
+
+	/**
+	 * Updates the lower triangle of rows i0..i0+ib-1 of the trailing matrix, A22 = A22 - L21.L21^T
+	 */
+	private static void updateRowBlock(Matrix a, AMatrix at, int k0, int kb, int i0, int ib) {
+		int n=a.rowCount();
+		double[] t=a.data;
+		int k1=k0+kb;
+		int width=i0+ib-k1;
+		if (((long)ib)*width>=PackedMatrixMult.MR*PackedMatrixMult.NR*4L) {
+			PackedMatrixMult.gemm(ib,width,kb,-1.0,a,i0,k0,at,k0,k1,1.0,t,i0*n+k1,n);
+			return;
+		}
+		for (int i=i0; i<i0+ib; i++) {
+			int ri=i*n;
+			for (int j=k1; j<=i; j++) {
+				int rj=j*n;
+				double sum=0.0;
+				for (int p=k0; p<k1; p++) {
+					sum+=t[ri+p]*t[rj+p];
+				}
+				t[ri+j]-=sum;
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class TileGroup extends RecursiveAction {
+		private final ArrayList<RecursiveAction> tiles;
+
+		private TileGroup(ArrayList<RecursiveAction> tiles) {
+			this.tiles=tiles;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tiles);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class PanelTask extends RecursiveAction {
+		private final double[] t;
+		private final int n,k0,kb,r0,r1;
+
+		private PanelTask(double[] t, int n, int k0, int kb, int r0, int r1) {
+			this.t=t;
+			this.n=n;
+			this.k0=k0;
+			this.kb=kb;
+			this.r0=r0;
+			this.r1=r1;
+		}
+
+		@Override
+		protected void compute() {
+			solvePanel(t,n,k0,kb,r0,r1);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class UpdateTask extends RecursiveAction {
+		private final Matrix a;
+		private final AMatrix at;
+		private final int k0,kb,i0,ib;
+
+		private UpdateTask(Matrix a, AMatrix at, int k0, int kb, int i0, int ib) {
+			this.a=a;
+			this.at=at;
+			this.k0=k0;
+			this.kb=kb;
+			this.i0=i0;
+			this.ib=ib;
+		}
+
+		@Override
+		protected void compute() {
+			updateRowBlock(a,at,k0,kb,i0,ib);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package mikera.matrixx.algo.decompose.chol.impl;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.vectorz.AVector;
+
+/**
+ * In-place rank-1 and rank-k updates and downdates of a Cholesky factor, in O(n^2) time per rank.
+ *
+ * Given A = L.L^T (or A = R^T.R), an update computes the factor of A + x.x^T and a downdate computes
+ * the factor of A - x.x^T. Updates use Givens rotations and always succeed. Downdates use the LINPACK
+ * method: L.p = x is solved first, and the downdate is rejected without changing the factor if
+ * ||p|| >= 1, since A - x.x^T would then not be positive definite.
+ *
+ * Only the triangle holding the factor is read or written.
+ *
+ * @author Mike
+ */
+public class CholeskyUpdate {
+
+	/**
+	 * Updates a lower triangular Cholesky factor in place so that L.L^T becomes L.L^T + x.x^T
+	 */
+	public static void update(Matrix l, AVector x) {
+		update(l,x,true);
+	}
+
+	/**
+	 * Updates a Cholesky factor in place to include x.x^T
+	 *
+	 * @param t The factor, L (lower) or R=L^T (upper)
+	 * @param x The update vector, not modified
+	 * @param lower True if the factor is lower triangular
+	 */
+	public static void update(Matrix t, AVector x, boolean lower) {
+		int n=checkShape(t,x.length());
+		double[] w=x.toDoubleArray();
+		updateInternal(t.data,n,lower,w,null,0,null);
+	}
+
+	/**
+	 * Updates a Cholesky factor in place to include X.X^T, i.e. a rank-1 update for each column of X
+	 */
+	public static void update(Matrix t, AMatrix x, boolean lower) {
+		int n=checkShape(t,x.rowCount());
+		int k=x.columnCount();
+		double[] w=new double[n];
+		for (int j=0; j<k; j++) {
+			x.getColumn(j).getElements(w, 0);
+			updateInternal(t.data,n,lower,w,null,0,null);
+		}
+	}
+
+	/**
+	 * Downdates a lower triangular Cholesky factor in place so that L.L^T becomes L.L^T - x.x^T
+	 *
+	 * @return false if the downdated matrix would not be positive definite, in which case L is unchanged
+	 */
+	public static boolean downdate(Matrix l, AVector x) {
+		return downdate(l,x,true);
+	}
+
+	/**
+	 * Downdates a Cholesky factor in place to remove x.x^T
+	 *
+	 * @param t The factor, L (lower) or R=L^T (upper)
+	 * @param x The downdate vector, not modified
+	 * @param lower True if the factor is lower triangular
+	 * @return false if the downdated matrix would not be positive definite, in which case t is unchanged
+	 */
+	public static boolean downdate(Matrix t, AVector x, boolean lower) {
+		int n=checkShape(t,x.length());
+		return downdateInternal(t.data,n,lower,x.toDoubleArray(),null,0,null);
+	}
+
+	/**
+	 * Downdates a Cholesky factor in place to remove X.X^T, i.e. a rank-1 downdate for each column of X.
+	 *
+	 * @return false if any downdate would lose positive definiteness, in which case t is unchanged
+	 */
+	public static boolean downdate(Matrix t, AMatrix x, boolean lower) {
+		int n=checkShape(t,x.rowCount());
+		int k=x.columnCount();
+		double[] data=(k==1)?t.data:t.data.clone();
+		double[] w=new double[n];
+		for (int j=0; j<k; j++) {
+			x.getColumn(j).getElements(w, 0);
+			if (!downdateInternal(data,n,lower,w,null,0,null)) return false;
+		}
+		if (data!=t.data) System.arraycopy(data, 0, t.data, 0, n*n);
+		return true;
+	}
+
+	/**
+	 * Updates an upper triangular factor R in place for a new row x of A, applying the same rotations
+	 * to Z, the first n rows of Q^T.B, with y the matching new row of B. This inserts a row into a thin
+	 * QR factorisation A = Q.R without needing Q, in O(n^2+n.p) time.
+	 *
+	 * @param r The upper triangular factor (n x n)
+	 * @param x The new row of A, not modified
+	 * @param z The first n rows of Q^T.B (n x p), updated in place
+	 * @param y The new row of B, not modified
+	 */
+	public static void update(Matrix r, AVector x, Matrix z, AVector y) {
+		int n=checkShape(r,x.length());
+		int p=checkRHS(z,y,n);
+		updateInternal(r.data,n,false,x.toDoubleArray(),z.data,p,y.toDoubleArray());
+	}
+
+	/**
+	 * Downdates an upper triangular factor R in place for the row x being removed from A, updating Z,
+	 * the first n rows of Q^T.B, for the matching row y of B. This removes a row from a thin QR
+	 * factorisation A = Q.R without needing Q, in O(n^2+n.p) time.
+	 *
+	 * @return false if A would lose full column rank, in which case r and z are unchanged
+	 */
+	public static boolean downdate(Matrix r, AVector x, Matrix z, AVector y) {
+		int n=checkShape(r,x.length());
+		int p=checkRHS(z,y,n);
+		return downdateInternal(r.data,n,false,x.toDoubleArray(),z.data,p,y.toDoubleArray());
+	}
+
+	private static int checkRHS(Matrix z, AVector y, int n) {
+		int p=z.columnCount();
+		if (z.rowCount()!=n) throw new IllegalArgumentException("Z must have "+n+" rows");
+		if (y.length()!=p) throw new IllegalArgumentException("Right hand side length "+y.length()+" does not match "+p+" columns");
+		return p;
+	}
+
+	private static int checkShape(Matrix t, int length) {
+		int n=t.rowCount();
+		if (t.columnCount()!=n) throw new IllegalArgumentException("Cholesky factor must be square");
+		if (length!=n) throw new IllegalArgumentException("Update length "+length+" does not match factor size "+n);
+		return n;
+	}
+
+	/**
+	 * Rank-1 update of the factor with work vector w, which is overwritten. The factor is treated as
+	 * R = L^T with element R(i,j) at data[i*rs+j*cs]. If zd is not null, the same rotations are applied
+	 * to the n x nz row-major matrix zd and the work vector y.
+	 */
+	private static void updateInternal(double[] data, int n, boolean lower, double[] w, double[] zd, int nz, double[] y) {
+		int rs=lower?1:n;
+		int cs=lower?n:1;
+		for (int k=0; k<n; k++) {
+			double wk=w[k];
+			if (wk==0.0) continue;
+			int kk=k*rs+k*cs;
+			double rkk=data[kk];
+			double r=Math.hypot(rkk, wk);
+			double c=rkk/r;
+			double s=wk/r;
+			data[kk]=r;
+			for (int j=k+1; j<n; j++) {
+				int kj=k*rs+j*cs;
+				double rkj=data[kj];
+				double wj=w[j];
+				data[kj]=c*rkj+s*wj;
+				w[j]=c*wj-s*rkj;
+			}
+			if (zd==null) continue;
+			int zk=k*nz;
+			for (int j=0; j<nz; j++) {
+				double zkj=zd[zk+j];
+				double yj=y[j];
+				zd[zk+j]=c*zkj+s*yj;
+				y[j]=c*yj-s*zkj;
+			}
+		}
+	}
+
+	/**
+	 * Rank-1 downdate with work vector w, which is overwritten. Uses the LINPACK dchdd method: solve
+	 * R^T.p = w, form rotations taking (p, sqrt(1-p.p)) to a unit vector, and apply them to R. If zd is
+	 * not null, the n x nz row-major matrix zd is updated for the removed right hand side row y.
+	 */
+	private static boolean downdateInternal(double[] data, int n, boolean lower, double[] w, double[] zd, int nz, double[] y) {
+		int rs=lower?1:n;
+		int cs=lower?n:1;
+
+		// forward substitution R^T.p = w, overwriting w with p
+		double norm=0.0;
+		for (int i=0; i<n; i++) {
+			double sum=w[i];
+			for (int j=0; j<i; j++) {
+				sum-=data[j*rs+i*cs]*w[j];
+			}
+			double p=sum/data[i*rs+i*cs];
+			w[i]=p;
+			norm+=p*p;
+		}
+		double alpha=1.0-norm;
+		if (!(alpha>0.0)) return false;
+		double q=Math.sqrt(alpha);
+
+		// rotations in the planes (q, p_i), from the last element up
+		double[] c=new double[n];
+		double[] s=new double[n];
+		for (int i=n-1; i>=0; i--) {
+			double scale=q+Math.abs(w[i]);
+			double a=q/scale;
+			double b=w[i]/scale;
+			double norm2=Math.sqrt(a*a+b*b);
+			c[i]=a/norm2;
+			s[i]=b/norm2;
+			q=scale*norm2;
+		}
+
+		// apply the rotations to each column of R
+		for (int j=0; j<n; j++) {
+			double xx=0.0;
+			for (int i=j; i>=0; i--) {
+				int ij=i*rs+j*cs;
+				double t=c[i]*xx+s[i]*data[ij];
+				data[ij]=c[i]*data[ij]-s[i]*xx;
+				xx=t;
+			}
+		}
+
+		// the same rotations applied to Z, as in LINPACK dchdd
+		if (zd!=null) {
+			for (int j=0; j<nz; j++) {
+				double zeta=y[j];
+				for (int i=0; i<n; i++) {
+					int ij=i*nz+j;
+					double zij=(zd[ij]-s[i]*zeta)/c[i];
+					zd[ij]=zij;
+					zeta=c[i]*zeta-s[i]*zij;
+				}
+			}
+		}
+
+		// keep a positive diagonal by flipping the sign of any row of R with a negative pivot
+		for (int i=0; i<n; i++) {
+			if (data[i*rs+i*cs]<0.0) {
+				for (int j=i; j<n; j++) {
+					int ij=i*rs+j*cs;
+					data[ij]=-data[ij];
+				}
+				if (zd==null) continue;
+				for (int j=0; j<nz; j++) {
+					zd[i*nz+j]=-zd[i*nz+j];
+				}
+			}
+		}
+		return true;
+	}
+}
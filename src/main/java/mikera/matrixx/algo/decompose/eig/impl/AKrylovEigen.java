@@ -0,0 +1,396 @@
+package mikera.matrixx.algo.decompose.eig.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.data.Eigenpair;
+import mikera.vectorz.Vector;
+
+/**
+ * Base class for implicitly restarted Krylov eigensolvers.
+ *
+ * An orthonormal basis V of size m is built with A.V = V.H + f.e_m^T, where H is the small
+ * projection of A onto the Krylov space and f is the residual. The Ritz values of H approximate the
+ * extreme eigenvalues of A. When they have not yet converged the m-k unwanted Ritz values are used
+ * as exact shifts in QR steps on H, which compresses the basis to the k wanted directions without
+ * any further products with A. The basis is then extended back to size m and the process repeats.
+ *
+ * The matrix is only accessed through matrix-vector products, so sparse matrices are supported
+ * directly. The basis is reorthogonalised in full with two passes of classical Gram-Schmidt.
+ *
+ * @author Mike
+ */
+public abstract class AKrylovEigen {
+	/**
+	 * Which end of the spectrum to compute
+	 */
+	public static enum Which {
+		/** Algebraically largest eigenvalues */
+		LARGEST,
+		/** Algebraically smallest eigenvalues */
+		SMALLEST,
+		/** Eigenvalues of largest absolute value */
+		LARGEST_MAGNITUDE
+	}
+
+	private static final double EPS=Math.ulp(1.0);
+
+	protected final int k;
+	protected final Which which;
+	private int subspaceSize=0;
+	private int maxRestarts=1000;
+	private double tolerance=1e-10;
+	private Random random=new Random();
+
+	private int restarts;
+	private boolean converged;
+
+	// Krylov factorisation state
+	private int n;
+	private int m;
+	private Vector[] basis;
+	private double[][] h;
+	private Vector f;
+	private double fnorm;
+	private double hnorm;
+
+	protected AKrylovEigen(int k, Which which) {
+		if (k<1) throw new IllegalArgumentException("Number of eigenpairs must be positive");
+		this.k=k;
+		this.which=which;
+	}
+
+	/**
+	 * Sets the size of the Krylov subspace. Zero selects a default of about 2k. Larger subspaces use
+	 * more memory but usually need fewer restarts.
+	 */
+	public void setSubspaceSize(int size) {
+		if (size<0) throw new IllegalArgumentException("Subspace size must be non-negative");
+		subspaceSize=size;
+	}
+
+	public void setMaxRestarts(int maxRestarts) {
+		this.maxRestarts=maxRestarts;
+	}
+
+	/**
+	 * Sets the tolerance on the residual ||A.x - lambda.x|| of each eigenpair, relative to the
+	 * estimated norm of A
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance=tolerance;
+	}
+
+	/**
+	 * Sets the random number generator used for the starting vector
+	 */
+	public void setRandom(Random random) {
+		this.random=random;
+	}
+
+	/**
+	 * Returns the number of restarts used by the last call to compute
+	 */
+	public int getRestarts() {
+		return restarts;
+	}
+
+	/**
+	 * Returns true if all requested eigenpairs converged in the last call to compute
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * Computes the k extreme eigenpairs of a square matrix. The eigenpairs are ordered from the
+	 * most extreme, and each vector is a unit length column matrix.
+	 *
+	 * If the solver does not converge within the maximum number of restarts, the current best
+	 * approximations are returned and isConverged() returns false.
+	 */
+	public Eigenpair[] compute(AMatrix a) {
+		n=a.rowCount();
+		if (a.columnCount()!=n) throw new IllegalArgumentException("Matrix must be square");
+		if (k>n) throw new IllegalArgumentException("Cannot compute "+k+" eigenpairs of a matrix of size "+n);
+		m=(subspaceSize>0)?subspaceSize:Math.max(2*k+1, 21);
+		m=Math.min(n, Math.max(m, k+2));
+		// an odd subspace size guarantees at least one real Ritz value
+		if ((m<n)&&(m%2==0)) m++;
+
+		basis=new Vector[m];
+		h=new double[m][m];
+		f=Vector.createLength(n);
+		hnorm=0.0;
+		restarts=0;
+		converged=false;
+
+		basis[0]=randomVector(0);
+		expand(a,0);
+
+		double[] re=new double[m];
+		double[] im=new double[m];
+		double[] y=new double[m];
+		while (true) {
+			ritzValues(h,m,re,im);
+			Integer[] order=sortOrder(re,im);
+
+			// count converged wanted values, using residual ||A.V.y - lambda.V.y|| = fnorm*|y[m-1]|
+			int nconv=0;
+			int nreal=0;
+			for (int i=0; i<m; i++) {
+				if (im[order[i]]==0.0) nreal++;
+			}
+			for (int i=0; i<Math.min(k, nreal); i++) {
+				int ix=order[i];
+				ritzVector(h,m,ix,re[ix],y);
+				if (fnorm*Math.abs(y[m-1])<=tolerance*hnorm) nconv++;
+			}
+			converged=(nconv>=k);
+			if (converged||(fnorm==0.0)||(restarts>=maxRestarts)) {
+				return results(order,re,im,y);
+			}
+
+			// keep some extra converged directions to speed up later restarts
+			int kk=Math.min(nreal, Math.min(k+Math.min(nconv, (m-k)/2), m-1));
+			kk=Math.max(kk, 1);
+			double[][] q=new double[m][m];
+			for (int i=0; i<m; i++) q[i][i]=1.0;
+			for (int i=kk; i<m; i++) {
+				int ix=order[i];
+				if (im[ix]==0.0) {
+					applyShift(q,re[ix]);
+				} else if (im[ix]>0.0) {
+					applyDoubleShift(q,re[ix],im[ix]);
+				}
+			}
+			compress(q,kk);
+			expand(a,kk);
+			restarts++;
+		}
+	}
+
+	/**
+	 * Computes the Ritz values (eigenvalues of the m x m projection H), as real and imaginary parts
+	 */
+	protected abstract void ritzValues(double[][] h, int m, double[] re, double[] im);
+
+	/**
+	 * Computes the unit length eigenvector y of H for the real Ritz value at the given index, as
+	 * returned by the last call to ritzValues
+	 */
+	protected abstract void ritzVector(double[][] h, int m, int index, double value, double[] y);
+
+	/**
+	 * Orders Ritz values from most to least wanted. Real values come first since only they can be
+	 * returned as eigenpairs, so complex pairs are always shifted away.
+	 */
+	private Integer[] sortOrder(final double[] re, final double[] im) {
+		Integer[] order=new Integer[m];
+		for (int i=0; i<m; i++) order[i]=i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				boolean ra=(im[a]==0.0);
+				boolean rb=(im[b]==0.0);
+				if (ra!=rb) return ra?-1:1;
+				switch (which) {
+					case LARGEST: return Double.compare(re[b], re[a]);
+					case SMALLEST: return Double.compare(re[a], re[b]);
+					default: return Double.compare(Math.hypot(re[b], im[b]), Math.hypot(re[a], im[a]));
+				}
+			}
+		});
+		return order;
+	}
+
+	private Eigenpair[] results(Integer[] order, double[] re, double[] im, double[] y) {
+		int count=0;
+		while ((count<Math.min(k, m))&&(im[order[count]]==0.0)) count++;
+		Eigenpair[] result=new Eigenpair[count];
+		for (int i=0; i<count; i++) {
+			int ix=order[i];
+			ritzVector(h,m,ix,re[ix],y);
+			Vector x=Vector.createLength(n);
+			for (int j=0; j<m; j++) {
+				if (y[j]!=0.0) x.addMultiple(basis[j], y[j]);
+			}
+			x.multiply(1.0/x.magnitude());
+			Matrix v=Matrix.create(n, 1);
+			x.getElements(v.data, 0);
+			result[i]=new Eigenpair(re[ix],v);
+		}
+		return result;
+	}
+
+	/**
+	 * Extends the Krylov factorisation from j0 basis vectors to m basis vectors
+	 */
+	private void expand(AMatrix a, int j0) {
+		for (int j=j0; j<m; j++) {
+			if (j>0) {
+				if (fnorm==0.0) {
+					// invariant subspace found, so continue with a new orthogonal direction
+					basis[j]=randomVector(j);
+					h[j][j-1]=0.0;
+				} else {
+					if (basis[j]==null) basis[j]=Vector.createLength(n);
+					basis[j].set(f);
+					basis[j].multiply(1.0/fnorm);
+					h[j][j-1]=fnorm;
+				}
+			}
+			a.transform(basis[j], f);
+			double anorm=f.magnitude();
+			for (int i=0; i<=j; i++) {
+				h[i][j]=0.0;
+			}
+			orthogonalise(f,j+1,h,j);
+			fnorm=f.magnitude();
+			hnorm=Math.max(hnorm, anorm);
+			if (fnorm<=EPS*hnorm) fnorm=0.0;
+		}
+	}
+
+	/**
+	 * Orthogonalises w against the first count basis vectors, with two passes of classical
+	 * Gram-Schmidt. Coefficients are accumulated into column col of c if c is not null.
+	 */
+	private void orthogonalise(Vector w, int count, double[][] c, int col) {
+		for (int pass=0; pass<2; pass++) {
+			for (int i=0; i<count; i++) {
+				double d=w.dotProduct(basis[i]);
+				if (c!=null) c[i][col]+=d;
+				w.addMultiple(basis[i], -d);
+			}
+		}
+	}
+
+	private Vector randomVector(int count) {
+		Vector v=Vector.createLength(n);
+		double norm=0.0;
+		while (norm==0.0) {
+			for (int i=0; i<n; i++) {
+				v.unsafeSet(i, random.nextGaussian());
+			}
+			orthogonalise(v,count,null,0);
+			norm=v.magnitude();
+		}
+		v.multiply(1.0/norm);
+		return v;
+	}
+
+	/**
+	 * Applies a single shifted QR step H = Q^T.H.Q with Q from the QR factorisation of H - mu.I
+	 */
+	private void applyShift(double[][] q, double mu) {
+		double[][] s=new double[m][];
+		for (int i=0; i<m; i++) {
+			s[i]=h[i].clone();
+			s[i][i]-=mu;
+		}
+		applyRotations(s,1,q);
+	}
+
+	/**
+	 * Applies a double shifted QR step for the complex pair re +- i.im in real arithmetic, with Q from
+	 * the QR factorisation of (H - mu.I).(H - conj(mu).I) = H^2 - 2.re.H + |mu|^2.I
+	 */
+	private void applyDoubleShift(double[][] q, double re, double im) {
+		double[][] s=new double[m][m];
+		double t=re*re+im*im;
+		for (int i=0; i<m; i++) {
+			for (int j=Math.max(0, i-2); j<m; j++) {
+				double sum=0.0;
+				for (int p=Math.max(0, i-1); p<=Math.min(j+1, m-1); p++) {
+					sum+=h[i][p]*h[p][j];
+				}
+				s[i][j]=sum-2.0*re*h[i][j];
+			}
+			s[i][i]+=t;
+		}
+		applyRotations(s,2,q);
+	}
+
+	/**
+	 * Reduces s (with the given number of sub-diagonals) to upper triangular form with Givens
+	 * rotations of adjacent rows, and applies the same rotations as a similarity transform to H
+	 * and to the columns of Q.
+	 */
+	private void applyRotations(double[][] s, int band, double[][] q) {
+		for (int j=0; j<m-1; j++) {
+			for (int i=Math.min(j+band, m-1); i>j; i--) {
+				double a=s[i-1][j];
+				double b=s[i][j];
+				if (b==0.0) continue;
+				double r=Math.hypot(a, b);
+				double c=a/r;
+				double sn=b/r;
+				rotateRows(s,i-1,c,sn,j);
+				rotateRows(h,i-1,c,sn,0);
+				rotateColumns(h,i-1,c,sn);
+				rotateColumns(q,i-1,c,sn);
+			}
+		}
+		// restore exact Hessenberg form
+		for (int i=2; i<m; i++) {
+			for (int j=0; j<i-1; j++) {
+				h[i][j]=0.0;
+			}
+		}
+	}
+
+	private void rotateRows(double[][] a, int p, double c, double s, int start) {
+		double[] r0=a[p];
+		double[] r1=a[p+1];
+		for (int j=start; j<m; j++) {
+			double x=r0[j];
+			double y=r1[j];
+			r0[j]=c*x+s*y;
+			r1[j]=-s*x+c*y;
+		}
+	}
+
+	private void rotateColumns(double[][] a, int p, double c, double s) {
+		for (int i=0; i<m; i++) {
+			double[] r=a[i];
+			double x=r[p];
+			double y=r[p+1];
+			r[p]=c*x+s*y;
+			r[p+1]=-s*x+c*y;
+		}
+	}
+
+	/**
+	 * Compresses the factorisation to kk basis vectors after the shifts accumulated in Q, using
+	 * V = V.Q(:,0:kk) and f = V.Q(:,kk).H(kk,kk-1) + f.Q(m-1,kk-1)
+	 */
+	private void compress(double[][] q, int kk) {
+		Vector[] nv=new Vector[kk+1];
+		for (int j=0; j<=kk; j++) {
+			nv[j]=Vector.createLength(n);
+			for (int i=0; i<m; i++) {
+				double qij=q[i][j];
+				if (qij!=0.0) nv[j].addMultiple(basis[i], qij);
+			}
+		}
+		Vector nf=nv[kk];
+		nf.multiply(h[kk][kk-1]);
+		nf.addMultiple(f, fnorm==0.0?0.0:q[m-1][kk-1]);
+		for (int j=0; j<kk; j++) {
+			basis[j]=nv[j];
+		}
+		f=nf;
+		for (int i=0; i<m; i++) {
+			for (int j=0; j<m; j++) {
+				if ((i>=kk)||(j>=kk)) h[i][j]=0.0;
+			}
+		}
+		orthogonalise(f,kk,h,kk-1);
+		fnorm=f.magnitude();
+		if (fnorm<=EPS*hnorm) fnorm=0.0;
+	}
+}
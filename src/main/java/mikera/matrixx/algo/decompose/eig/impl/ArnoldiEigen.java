@@ -0,0 +1,271 @@
+package mikera.matrixx.algo.decompose.eig.impl;
+
+/**
+ * Implicitly restarted Arnoldi eigensolver for the extreme eigenpairs of large non-symmetric matrices.
+ *
+ * The Krylov projection H is upper Hessenberg. Its eigenvalues are computed with the Francis double
+ * shift QR algorithm, and eigenvectors for real eigenvalues by inverse iteration. Complex conjugate
+ * Ritz pairs are used as double shifts in the restart, but are never returned since an Eigenpair
+ * is real valued: the result holds the k extreme real eigenpairs, ordered by real value or
+ * magnitude. Fewer may be returned if the matrix does not have k real eigenvalues.
+ *
+ * @author Mike
+ */
+public class ArnoldiEigen extends AKrylovEigen {
+
+	/**
+	 * Creates an Arnoldi solver for the k eigenpairs of largest magnitude
+	 */
+	public ArnoldiEigen(int k) {
+		this(k,Which.LARGEST_MAGNITUDE);
+	}
+
+	public ArnoldiEigen(int k, Which which) {
+		super(k,which);
+	}
+
+	@Override
+	protected void ritzValues(double[][] h, int m, double[] re, double[] im) {
+		double[][] a=new double[m][];
+		for (int i=0; i<m; i++) {
+			a[i]=h[i].clone();
+		}
+		hqr(a,m,re,im);
+	}
+
+	@Override
+	protected void ritzVector(double[][] h, int m, int index, double value, double[] y) {
+		double norm=0.0;
+		for (int i=0; i<m; i++) {
+			for (int j=Math.max(0, i-1); j<m; j++) {
+				norm=Math.max(norm, Math.abs(h[i][j]));
+			}
+		}
+		double tiny=Math.max(norm, 1e-300)*Math.ulp(1.0);
+		for (int i=0; i<m; i++) {
+			y[i]=1.0/Math.sqrt(m);
+		}
+		// two steps of inverse iteration with H - value.I are enough for an accurate eigenvalue
+		for (int iter=0; iter<2; iter++) {
+			solveShifted(h,m,value,tiny,y);
+			double s=0.0;
+			for (int i=0; i<m; i++) s+=y[i]*y[i];
+			s=1.0/Math.sqrt(s);
+			for (int i=0; i<m; i++) y[i]*=s;
+		}
+	}
+
+	/**
+	 * Solves (H - shift.I).x = y in place for upper Hessenberg H, using Gaussian elimination with
+	 * partial pivoting of adjacent rows. Zero pivots are replaced by a tiny value.
+	 */
+	private static void solveShifted(double[][] h, int m, double shift, double tiny, double[] y) {
+		double[][] a=new double[m][];
+		for (int i=0; i<m; i++) {
+			a[i]=h[i].clone();
+			a[i][i]-=shift;
+		}
+		for (int j=0; j<m-1; j++) {
+			if (Math.abs(a[j+1][j])>Math.abs(a[j][j])) {
+				double[] t=a[j];
+				a[j]=a[j+1];
+				a[j+1]=t;
+				double ty=y[j];
+				y[j]=y[j+1];
+				y[j+1]=ty;
+			}
+			if (a[j][j]==0.0) a[j][j]=tiny;
+			double factor=a[j+1][j]/a[j][j];
+			if (factor!=0.0) {
+				for (int c=j; c<m; c++) {
+					a[j+1][c]-=factor*a[j][c];
+				}
+				y[j+1]-=factor*y[j];
+			}
+		}
+		for (int i=m-1; i>=0; i--) {
+			double sum=y[i];
+			for (int c=i+1; c<m; c++) {
+				sum-=a[i][c]*y[c];
+			}
+			double d=a[i][i];
+			y[i]=sum/((d==0.0)?tiny:d);
+		}
+	}
+
+	/**
+	 * Eigenvalues of an upper Hessenberg matrix by the Francis double shift QR algorithm, adapted
+	 * from the eigenvalue part of hqr2 in JAMA (public domain). The matrix is overwritten.
+	 */
+	static void hqr(double[][] h, int nn, double[] d, double[] e) {
+		int n=nn-1;
+		double eps=Math.ulp(1.0);
+		double exshift=0.0;
+		double p=0, q=0, r=0, s=0, z=0, w, x, y;
+
+		double norm=0.0;
+		for (int i=0; i<nn; i++) {
+			for (int j=Math.max(i-1, 0); j<nn; j++) {
+				norm+=Math.abs(h[i][j]);
+			}
+		}
+
+		int iter=0;
+		while (n>=0) {
+			// look for single small sub-diagonal element
+			int l=n;
+			while (l>0) {
+				s=Math.abs(h[l-1][l-1])+Math.abs(h[l][l]);
+				if (s==0.0) s=norm;
+				if (Math.abs(h[l][l-1])<eps*s) break;
+				l--;
+			}
+
+			if (l==n) {
+				// one root found
+				d[n]=h[n][n]+exshift;
+				e[n]=0.0;
+				n--;
+				iter=0;
+			} else if (l==n-1) {
+				// two roots found
+				w=h[n][n-1]*h[n-1][n];
+				p=(h[n-1][n-1]-h[n][n])/2.0;
+				q=p*p+w;
+				z=Math.sqrt(Math.abs(q));
+				x=h[n][n]+exshift;
+				if (q>=0) {
+					z=(p>=0)?(p+z):(p-z);
+					d[n-1]=x+z;
+					d[n]=d[n-1];
+					if (z!=0.0) d[n]=x-w/z;
+					e[n-1]=0.0;
+					e[n]=0.0;
+				} else {
+					d[n-1]=x+p;
+					d[n]=x+p;
+					e[n-1]=z;
+					e[n]=-z;
+				}
+				n-=2;
+				iter=0;
+			} else {
+				// form shift
+				x=h[n][n];
+				y=0.0;
+				w=0.0;
+				if (l<n) {
+					y=h[n-1][n-1];
+					w=h[n][n-1]*h[n-1][n];
+				}
+
+				// Wilkinson's original ad hoc shift
+				if (iter==10) {
+					exshift+=x;
+					for (int i=0; i<=n; i++) {
+						h[i][i]-=x;
+					}
+					s=Math.abs(h[n][n-1])+Math.abs(h[n-1][n-2]);
+					x=y=0.75*s;
+					w=-0.4375*s*s;
+				}
+
+				// MATLAB's ad hoc shift
+				if (iter==30) {
+					s=(y-x)/2.0;
+					s=s*s+w;
+					if (s>0) {
+						s=Math.sqrt(s);
+						if (y<x) s=-s;
+						s=x-w/((y-x)/2.0+s);
+						for (int i=0; i<=n; i++) {
+							h[i][i]-=s;
+						}
+						exshift+=s;
+						x=y=w=0.964;
+					}
+				}
+
+				iter++;
+				if (iter>1000*nn) throw new IllegalStateException("Hessenberg QR failed to converge");
+
+				// look for two consecutive small sub-diagonal elements
+				int m=n-2;
+				while (m>=l) {
+					z=h[m][m];
+					r=x-z;
+					s=y-z;
+					p=(r*s-w)/h[m+1][m]+h[m][m+1];
+					q=h[m+1][m+1]-z-r-s;
+					r=h[m+2][m+1];
+					s=Math.abs(p)+Math.abs(q)+Math.abs(r);
+					p/=s;
+					q/=s;
+					r/=s;
+					if (m==l) break;
+					if (Math.abs(h[m][m-1])*(Math.abs(q)+Math.abs(r))<eps*(Math.abs(p)*(Math.abs(h[m-1][m-1])+Math.abs(z)+Math.abs(h[m+1][m+1])))) {
+						break;
+					}
+					m--;
+				}
+
+				for (int i=m+2; i<=n; i++) {
+					h[i][i-2]=0.0;
+					if (i>m+2) h[i][i-3]=0.0;
+				}
+
+				// double QR step involving rows l:n and columns m:n
+				for (int k=m; k<=n-1; k++) {
+					boolean notlast=(k!=n-1);
+					if (k!=m) {
+						p=h[k][k-1];
+						q=h[k+1][k-1];
+						r=notlast?h[k+2][k-1]:0.0;
+						x=Math.abs(p)+Math.abs(q)+Math.abs(r);
+						if (x==0.0) continue;
+						p/=x;
+						q/=x;
+						r/=x;
+					}
+					s=Math.sqrt(p*p+q*q+r*r);
+					if (p<0) s=-s;
+					if (s!=0) {
+						if (k!=m) {
+							h[k][k-1]=-s*x;
+						} else if (l!=m) {
+							h[k][k-1]=-h[k][k-1];
+						}
+						p+=s;
+						x=p/s;
+						y=q/s;
+						z=r/s;
+						q/=p;
+						r/=p;
+
+						// row modification
+						for (int j=k; j<nn; j++) {
+							p=h[k][j]+q*h[k+1][j];
+							if (notlast) {
+								p+=r*h[k+2][j];
+								h[k+2][j]-=p*z;
+							}
+							h[k][j]-=p*x;
+							h[k+1][j]-=p*y;
+						}
+
+						// column modification
+						for (int i=0; i<=Math.min(n, k+3); i++) {
+							p=x*h[i][k]+y*h[i][k+1];
+							if (notlast) {
+								p+=z*h[i][k+2];
+								h[i][k+2]-=p*r;
+							}
+							h[i][k]-=p;
+							h[i][k+1]-=p*q;
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package mikera.matrixx.algo.decompose.eig.impl;
+
+/**
+ * Implicitly restarted Lanczos eigensolver for the extreme eigenpairs of large symmetric matrices.
+ *
+ * For a symmetric matrix the Krylov projection H is tridiagonal, and its eigenpairs are computed
+ * with the implicit QL algorithm. Only the diagonal and sub-diagonal of H are read, so the upper
+ * triangle of A is assumed to mirror the lower triangle.
+ *
+ * @author Mike
+ */
+public class LanczosEigen extends AKrylovEigen {
+	private double[][] vectors;
+
+	/**
+	 * Creates a Lanczos solver for the k algebraically largest eigenpairs
+	 */
+	public LanczosEigen(int k) {
+		this(k,Which.LARGEST);
+	}
+
+	public LanczosEigen(int k, Which which) {
+		super(k,which);
+	}
+
+	@Override
+	protected void ritzValues(double[][] h, int m, double[] re, double[] im) {
+		double[] e=new double[m];
+		for (int i=0; i<m; i++) {
+			re[i]=h[i][i];
+			im[i]=0.0;
+			if (i<m-1) e[i]=h[i+1][i];
+		}
+		vectors=new double[m][m];
+		for (int i=0; i<m; i++) vectors[i][i]=1.0;
+		tql2(re,e,vectors,m);
+	}
+
+	@Override
+	protected void ritzVector(double[][] h, int m, int index, double value, double[] y) {
+		for (int i=0; i<m; i++) {
+			y[i]=vectors[i][index];
+		}
+	}
+
+	/**
+	 * Symmetric tridiagonal QL algorithm with implicit shifts, adapted from JAMA (public domain).
+	 *
+	 * On entry d holds the diagonal and e[0..n-2] the sub-diagonal. On exit d holds the eigenvalues
+	 * and the columns of v the corresponding eigenvectors (v should initially be the identity).
+	 */
+	static void tql2(double[] d, double[] e, double[][] v, int n) {
+		if (n>0) e[n-1]=0.0;
+		double f=0.0;
+		double tst1=0.0;
+		double eps=Math.ulp(1.0);
+		for (int l=0; l<n; l++) {
+			// find small sub-diagonal element
+			tst1=Math.max(tst1, Math.abs(d[l])+Math.abs(e[l]));
+			int m=l;
+			while (m<n-1) {
+				if (Math.abs(e[m])<=eps*tst1) break;
+				m++;
+			}
+
+			// if m == l, d[l] is an eigenvalue, otherwise iterate
+			if (m>l) {
+				do {
+					// compute implicit shift
+					double g=d[l];
+					double p=(d[l+1]-g)/(2.0*e[l]);
+					double r=Math.hypot(p, 1.0);
+					if (p<0) r=-r;
+					d[l]=e[l]/(p+r);
+					d[l+1]=e[l]*(p+r);
+					double dl1=d[l+1];
+					double hh=g-d[l];
+					for (int i=l+2; i<n; i++) {
+						d[i]-=hh;
+					}
+					f+=hh;
+
+					// implicit QL transformation
+					p=d[m];
+					double c=1.0;
+					double c2=c;
+					double c3=c;
+					double el1=e[l+1];
+					double s=0.0;
+					double s2=0.0;
+					for (int i=m-1; i>=l; i--) {
+						c3=c2;
+						c2=c;
+						s2=s;
+						g=c*e[i];
+						hh=c*p;
+						r=Math.hypot(p, e[i]);
+						e[i+1]=s*r;
+						s=e[i]/r;
+						c=p/r;
+						p=c*d[i]-s*g;
+						d[i+1]=hh+s*(c*g+s*d[i]);
+
+						// accumulate transformation
+						for (int k=0; k<n; k++) {
+							double[] vk=v[k];
+							hh=vk[i+1];
+							vk[i+1]=s*vk[i]+c*hh;
+							vk[i]=c*vk[i]-s*hh;
+						}
+					}
+					p=-s*s2*c3*el1*e[l]/dl1;
+					e[l]=s*p;
+					d[l]=c*p;
+				} while (Math.abs(e[l])>eps*tst1);
+			}
+			d[l]+=f;
+			e[l]=0.0;
+		}
+	}
+}
@@ -155,7 +155,11 @@ public abstract class ALU implements ILU {
     m = a.rowCount();
     n = a.columnCount();
 
-    LU.reshape(m, n);
+    if (LU.rowCount() != m || LU.columnCount() != n) {
+      LU = Matrix.create(m, n);
+      dataLU = LU.data;
+    }
+    LU.set(a);
     for (int i = 0; i < m; i++) {
       pivot[i] = i;
     }
@@ -0,0 +1,191 @@
+package mikera.matrixx.algo.decompose.lu.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+
+/**
+ * Cache-blocked, right-looking LU decomposition with partial pivoting, P.A = L.U
+ *
+ * The matrix is processed in column panels of BLOCK_SIZE columns. Each panel is factored with
+ * an unblocked algorithm, the matching block row of U is computed with a triangular solve, and
+ * the trailing matrix is then updated with a single GEMM call (A22 = A22 - L21.U12). Almost all
+ * of the work for large matrices is in the GEMM update, which runs on the packed kernel in
+ * {@link PackedMatrixMult} and optionally in parallel via {@link ParallelMatrixMult}.
+ *
+ * Decomposition is performed in place on the row-major data array of the matrix. Rectangular
+ * matrices are supported.
+ *
+ * @author Mike
+ */
+public class BlockedLU extends ALU {
+	/**
+	 * Number of columns in each panel
+	 */
+	public static int BLOCK_SIZE=64;
+
+	private boolean parallel=true;
+
+	public BlockedLU() {
+	}
+
+	/**
+	 * Creates a blocked LU decomposition
+	 *
+	 * @param parallel If true, large trailing matrix updates are computed in parallel
+	 */
+	public BlockedLU(boolean parallel) {
+		this.parallel=parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel=parallel;
+	}
+
+	@Override
+	public boolean decompose(Matrix a) {
+		decomposeCommonInit(a);
+		pivsign=decomposeInPlace(LU,indx,pivot,parallel?ParallelMatrixMult.getDefaultPool():null);
+		return true;
+	}
+
+	/**
+	 * Performs an in-place LU decomposition of a dense matrix. On return, the strictly lower part
+	 * of lu contains L (with an implied unit diagonal) and the upper part contains U.
+	 *
+	 * @param lu The matrix to decompose, overwritten with the L and U factors
+	 * @param indx Receives the row interchanges: row i was swapped with row indx[i] at step i,
+	 *   length at least min(rows,columns)
+	 * @param perm Receives the row permutation: row i of P.A is row perm[i] of A, length at least rows
+	 * @param pool Pool used for parallel trailing updates, or null to run on the current thread
+	 * @return The sign of the permutation (+1 or -1)
+	 */
+	public static double decomposeInPlace(Matrix lu, int[] indx, int[] perm, ForkJoinPool pool) {
+		int m=lu.rowCount();
+		int n=lu.columnCount();
+		double[] data=lu.data;
+		int mn=Math.min(m,n);
+		for (int i=0; i<m; i++) {
+			perm[i]=i;
+		}
+		double sign=1.0;
+		int nb=Math.max(1, BLOCK_SIZE);
+		boolean useParallel=(pool!=null)&&(Runtime.getRuntime().availableProcessors()>1);
+
+		for (int k0=0; k0<mn; k0+=nb) {
+			int kb=Math.min(nb, mn-k0);
+			int k1=k0+kb;
+			sign*=factorPanel(data,m,n,k0,kb,indx,perm);
+			if (k1>=n) continue;
+
+			solveBlockRow(data,n,k0,kb);
+
+			int m2=m-k1;
+			int n2=n-k1;
+			if (m2==0) continue;
+			long work=((long)m2)*n2*kb;
+			if (useParallel&&(work>=ParallelMatrixMult.PARALLEL_THRESHOLD)) {
+				ParallelMatrixMult.gemm(m2,n2,kb,-1.0,lu,k1,k0,lu,k0,k1,1.0,data,k1*n+k1,n,pool);
+			} else if (work>=PackedMatrixMult.MR*PackedMatrixMult.NR*kb*4L) {
+				PackedMatrixMult.gemm(m2,n2,kb,-1.0,lu,k1,k0,lu,k0,k1,1.0,data,k1*n+k1,n);
+			} else {
+				updateTrailing(data,m,n,k0,kb);
+			}
+		}
+		return sign;
+	}
+
+	/**
+	 * Unblocked factorisation of the panel of columns k0..k0+kb-1, rows k0..m-1. Row interchanges
+	 * are applied across the full width of the matrix.
+	 */
+	private static double factorPanel(double[] data, int m, int n, int k0, int kb, int[] indx, int[] perm) {
+		double sign=1.0;
+		int k1=k0+kb;
+		for (int j=k0; j<k1; j++) {
+			int p=j;
+			double max=Math.abs(data[j*n+j]);
+			for (int i=j+1; i<m; i++) {
+				double v=Math.abs(data[i*n+j]);
+				if (v>max) {
+					p=i;
+					max=v;
+				}
+			}
+			indx[j]=p;
+			if (p!=j) {
+				swapRows(data,n,p,j);
+				int t=perm[p];
+				perm[p]=perm[j];
+				perm[j]=t;
+				sign=-sign;
+			}
+
+			double pivot=data[j*n+j];
+			if (pivot==0.0) continue;
+			double scale=1.0/pivot;
+			for (int i=j+1; i<m; i++) {
+				int ri=i*n;
+				double lij=(data[ri+j]*=scale);
+				if (lij==0.0) continue;
+				int rj=j*n;
+				for (int c=j+1; c<k1; c++) {
+					data[ri+c]-=lij*data[rj+c];
+				}
+			}
+		}
+		return sign;
+	}
+
+	private static void swapRows(double[] data, int n, int a, int b) {
+		int ra=a*n;
+		int rb=b*n;
+		for (int c=0; c<n; c++) {
+			double t=data[ra+c];
+			data[ra+c]=data[rb+c];
+			data[rb+c]=t;
+		}
+	}
+
+	/**
+	 * Computes the block row U12 = L11^-1 . A12, where L11 is the unit lower triangular diagonal block
+	 */
+	private static void solveBlockRow(double[] data, int n, int k0, int kb) {
+		int k1=k0+kb;
+		for (int i=k0+1; i<k1; i++) {
+			int ri=i*n;
+			for (int p=k0; p<i; p++) {
+				double l=data[ri+p];
+				if (l==0.0) continue;
+				int rp=p*n;
+				for (int c=k1; c<n; c++) {
+					data[ri+c]-=l*data[rp+c];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Simple trailing update A22 = A22 - L21.U12, used when the trailing matrix is too small for GEMM
+	 */
+	private static void updateTrailing(double[] data, int m, int n, int k0, int kb) {
+		int k1=k0+kb;
+		for (int i=k1; i<m; i++) {
+			int ri=i*n;
+			for (int p=k0; p<k1; p++) {
+				double l=data[ri+p];
+				if (l==0.0) continue;
+				int rp=p*n;
+				for (int c=k1; c<n; c++) {
+					data[ri+c]-=l*data[rp+c];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package mikera.matrixx.algo.decompose.qr.impl;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.qr.IQR;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+
+/**
+ * Blocked Householder QR decomposition using the compact WY representation.
+ *
+ * Columns are processed in panels of BLOCK_SIZE. Each panel is factored with unblocked Householder
+ * reflections in a column-major buffer, and the panel reflectors H_1..H_k are then accumulated into
+ * the form Q_panel = I - V.T.V^T, where V holds the Householder vectors and T is a small upper
+ * triangular matrix. The trailing matrix is updated with two matrix-matrix products
+ * (A = A - V.(T^T.(V^T.A))), so almost all of the work runs on the packed GEMM kernel rather than
+ * as rank-1 updates.
+ *
+ * Reflectors are stored below the diagonal of the factored matrix with an implied unit leading
+ * element, as in LAPACK, and R is stored in the upper triangle.
+ *
+ * @author Mike
+ */
+public class BlockHouseholderQR implements IQR {
+	/**
+	 * Number of columns in each panel
+	 */
+	public static int BLOCK_SIZE=32;
+
+	private Matrix qr;
+	private double[] tau;
+	private double[][] blockT;
+	private int numRows;
+	private int numCols;
+	private int minLength;
+	private int blockSize;
+	private boolean parallel=true;
+
+	public BlockHouseholderQR() {
+	}
+
+	/**
+	 * Creates a blocked QR decomposition
+	 *
+	 * @param parallel If true, large matrix products are computed in parallel
+	 */
+	public BlockHouseholderQR(boolean parallel) {
+		this.parallel=parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel=parallel;
+	}
+
+	@Override
+	public boolean decompose(Matrix a) {
+		numRows=a.rowCount();
+		numCols=a.columnCount();
+		minLength=Math.min(numRows, numCols);
+		blockSize=Math.max(1, BLOCK_SIZE);
+		qr=a.clone();
+		tau=new double[minLength];
+		blockT=new double[(minLength+blockSize-1)/blockSize][];
+
+		double[] data=qr.data;
+		int n=numCols;
+		for (int k0=0, b=0; k0<minLength; k0+=blockSize, b++) {
+			int kb=Math.min(blockSize, minLength-k0);
+			int k1=k0+kb;
+			int mk=numRows-k0;
+
+			// copy the panel into column-major storage
+			double[][] p=new double[kb][mk];
+			for (int i=0; i<mk; i++) {
+				int ri=(k0+i)*n+k0;
+				for (int j=0; j<kb; j++) {
+					p[j][i]=data[ri+j];
+				}
+			}
+			factorPanel(p,mk,kb,k0);
+			for (int i=0; i<mk; i++) {
+				int ri=(k0+i)*n+k0;
+				for (int j=0; j<kb; j++) {
+					data[ri+j]=p[j][i];
+				}
+			}
+			Matrix v=buildV(k0,kb);
+			blockT[b]=buildT(v,kb,k0);
+
+			if (k1<n) applyBlock(qr,v,k0,kb,b,k1,n,true);
+		}
+		return true;
+	}
+
+	/**
+	 * Unblocked Householder QR of a column-major panel, storing reflectors below the diagonal
+	 */
+	private void factorPanel(double[][] p, int mk, int kb, int k0) {
+		for (int j=0; j<kb; j++) {
+			double[] x=p[j];
+			double alpha=x[j];
+			double xnorm=norm(x,j+1,mk);
+			if (xnorm==0.0) {
+				tau[k0+j]=0.0;
+				continue;
+			}
+			double beta=-Math.copySign(Math.hypot(alpha, xnorm), alpha);
+			double t=(beta-alpha)/beta;
+			double scale=1.0/(alpha-beta);
+			for (int i=j+1; i<mk; i++) {
+				x[i]*=scale;
+			}
+			x[j]=beta;
+			tau[k0+j]=t;
+
+			// apply H = I - t.v.v^T to the remaining panel columns
+			for (int c=j+1; c<kb; c++) {
+				double[] y=p[c];
+				double w=y[j];
+				for (int i=j+1; i<mk; i++) {
+					w+=x[i]*y[i];
+				}
+				w*=t;
+				y[j]-=w;
+				for (int i=j+1; i<mk; i++) {
+					y[i]-=w*x[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the 2-norm of x[start..end), scaling to avoid overflow
+	 */
+	private static double norm(double[] x, int start, int end) {
+		double max=0.0;
+		for (int i=start; i<end; i++) {
+			max=Math.max(max, Math.abs(x[i]));
+		}
+		if (max==0.0) return 0.0;
+		double scale=1.0/max;
+		double ss=0.0;
+		for (int i=start; i<end; i++) {
+			double d=x[i]*scale;
+			ss+=d*d;
+		}
+		return max*Math.sqrt(ss);
+	}
+
+	/**
+	 * Builds the upper triangular factor T such that H_1.H_2...H_k = I - V.T.V^T, stored row-major.
+	 * The inner products V^T.V are computed with a single matrix product.
+	 */
+	private double[] buildT(Matrix v, int kb, int k0) {
+		int mk=v.rowCount();
+		double[] vtv=new double[kb*kb];
+		gemm(kb,kb,mk,1.0,v.getTransposeView(),0,0,v,0,0,0.0,vtv,0,kb);
+		double[] t=new double[kb*kb];
+		for (int i=0; i<kb; i++) {
+			double ti=tau[k0+i];
+			t[i*kb+i]=ti;
+			if (ti==0.0) continue;
+			// T(0:i,i) = -tau_i * T(0:i,0:i) * V(:,0:i)^T.v_i
+			for (int r=0; r<i; r++) {
+				double sum=0.0;
+				for (int c=r; c<i; c++) {
+					sum+=t[r*kb+c]*vtv[c*kb+i];
+				}
+				t[r*kb+i]=-ti*sum;
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Returns the Householder vectors of a block as an explicit mk x kb matrix with unit diagonal
+	 */
+	private Matrix buildV(int k0, int kb) {
+		int mk=numRows-k0;
+		Matrix v=Matrix.create(mk, kb);
+		double[] vd=v.data;
+		double[] data=qr.data;
+		for (int i=0; i<mk; i++) {
+			int ri=(k0+i)*numCols+k0;
+			int lim=Math.min(i, kb);
+			for (int j=0; j<lim; j++) {
+				vd[i*kb+j]=data[ri+j];
+			}
+			if (i<kb) vd[i*kb+i]=1.0;
+		}
+		return v;
+	}
+
+	/**
+	 * Applies the reflectors of block b to columns c0..c1-1 of rows k0.. of the target matrix.
+	 * If transpose is true the target is multiplied by Q_block^T = I - V.T^T.V^T, otherwise by
+	 * Q_block = I - V.T.V^T.
+	 */
+	private void applyBlock(Matrix target, int k0, int kb, int b, int c0, int c1, boolean transpose) {
+		if (c1<=c0) return;
+		applyBlock(target,buildV(k0,kb),k0,kb,b,c0,c1,transpose);
+	}
+
+	private void applyBlock(Matrix target, Matrix v, int k0, int kb, int b, int c0, int c1, boolean transpose) {
+		int mk=numRows-k0;
+		int n2=c1-c0;
+		if (n2<=0) return;
+		int ldc=target.columnCount();
+		double[] t=blockT[b];
+
+		// W = V^T.A
+		Matrix w=Matrix.create(kb, n2);
+		gemm(kb,n2,mk,1.0,v.getTransposeView(),0,0,target,k0,c0,0.0,w.data,0,n2);
+
+		// W = op(T).W, with T upper triangular
+		double[] wd=w.data;
+		if (transpose) {
+			for (int i=kb-1; i>=0; i--) {
+				int ri=i*n2;
+				double tii=t[i*kb+i];
+				for (int c=0; c<n2; c++) wd[ri+c]*=tii;
+				for (int s=0; s<i; s++) {
+					double tsi=t[s*kb+i];
+					if (tsi==0.0) continue;
+					int rs=s*n2;
+					for (int c=0; c<n2; c++) wd[ri+c]+=tsi*wd[rs+c];
+				}
+			}
+		} else {
+			for (int i=0; i<kb; i++) {
+				int ri=i*n2;
+				double tii=t[i*kb+i];
+				for (int c=0; c<n2; c++) wd[ri+c]*=tii;
+				for (int s=i+1; s<kb; s++) {
+					double tis=t[i*kb+s];
+					if (tis==0.0) continue;
+					int rs=s*n2;
+					for (int c=0; c<n2; c++) wd[ri+c]+=tis*wd[rs+c];
+				}
+			}
+		}
+
+		// A = A - V.W
+		gemm(mk,n2,kb,-1.0,v,0,0,w,0,0,1.0,target.data,k0*ldc+c0,ldc);
+	}
+
+	private void gemm(int m, int n, int k, double alpha, AMatrix a, int ai, int aj,
+			AMatrix b, int bi, int bj, double beta, double[] c, int cOffset, int ldc) {
+		long work=((long)m)*n*k;
+		if (parallel&&(work>=ParallelMatrixMult.PARALLEL_THRESHOLD)&&(Runtime.getRuntime().availableProcessors()>1)) {
+			ParallelMatrixMult.gemm(m,n,k,alpha,a,ai,aj,b,bi,bj,beta,c,cOffset,ldc,ParallelMatrixMult.getDefaultPool());
+		} else {
+			PackedMatrixMult.gemm(m,n,k,alpha,a,ai,aj,b,bi,bj,beta,c,cOffset,ldc);
+		}
+	}
+
+	/**
+	 * Overwrites B with Q^T.B, where B has the same number of rows as the decomposed matrix
+	 */
+	public void applyQTranspose(Matrix b) {
+		if (b.rowCount()!=numRows) throw new IllegalArgumentException("Expected "+numRows+" rows");
+		int nc=b.columnCount();
+		for (int k0=0, blk=0; k0<minLength; k0+=blockSize, blk++) {
+			applyBlock(b,k0,Math.min(blockSize, minLength-k0),blk,0,nc,true);
+		}
+	}
+
+	/**
+	 * Overwrites B with Q.B, where B has the same number of rows as the decomposed matrix
+	 */
+	public void applyQ(Matrix b) {
+		if (b.rowCount()!=numRows) throw new IllegalArgumentException("Expected "+numRows+" rows");
+		int nc=b.columnCount();
+		int nBlocks=blockT.length;
+		for (int blk=nBlocks-1; blk>=0; blk--) {
+			int k0=blk*blockSize;
+			applyBlock(b,k0,Math.min(blockSize, minLength-k0),blk,0,nc,false);
+		}
+	}
+
+	@Override
+	public Matrix getQ(boolean compact) {
+		int cols=compact?minLength:numRows;
+		Matrix q=Matrix.create(numRows, cols);
+		for (int i=0; i<cols; i++) {
+			q.unsafeSet(i, i, 1.0);
+		}
+		// columns before k0 are unaffected by block reflectors applied in reverse order
+		for (int blk=blockT.length-1; blk>=0; blk--) {
+			int k0=blk*blockSize;
+			applyBlock(q,k0,Math.min(blockSize, minLength-k0),blk,k0,cols,false);
+		}
+		return q;
+	}
+
+	@Override
+	public Matrix getR(boolean compact) {
+		int rows=compact?minLength:numRows;
+		Matrix r=Matrix.create(rows, numCols);
+		double[] data=qr.data;
+		for (int i=0; i<minLength; i++) {
+			System.arraycopy(data, i*numCols+i, r.data, i*numCols+i, numCols-i);
+		}
+		return r;
+	}
+
+	/**
+	 * Returns the factored matrix, with R in the upper triangle and the Householder vectors below the diagonal
+	 */
+	public Matrix getQR() {
+		return qr;
+	}
+
+	/**
+	 * Returns the scaling factors of the Householder reflectors, H_i = I - tau_i.v_i.v_i^T
+	 */
+	public double[] getTau() {
+		return tau;
+	}
+
+	@Override
+	public boolean inputModified() {
+		return false;
+	}
+}
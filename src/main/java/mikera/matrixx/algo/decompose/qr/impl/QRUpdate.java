@@ -0,0 +1,271 @@
+package mikera.matrixx.algo.decompose.qr.impl;
+
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.chol.impl.CholeskyUpdate;
+import mikera.vectorz.AVector;
+
+/**
+ * Givens rotation updates of a full QR decomposition A = Q.R, where Q is m x m orthogonal and R
+ * is m x n upper triangular, for the insertion or deletion of a single row or column of A.
+ *
+ * Each update costs O(m^2) or less, compared to O(m.n^2) for a new decomposition. The algorithms
+ * follow Golub and Van Loan, "Matrix Computations", section 12.5. Each method returns the new
+ * factors as an array {Q, R}; the input factors may be overwritten.
+ *
+ * The *Thin methods update a thin factorisation instead, which keeps only the n x n factor R and
+ * C, the first n rows of Q^T.B for a set of right hand sides B. They cost O(n^2+n.p) per change
+ * whatever the number of rows, so suit long sliding windows where m is much larger than n.
+ *
+ * @author Mike
+ */
+public class QRUpdate {
+
+	/**
+	 * Updates the factors for a new row inserted into A at the given index
+	 *
+	 * @return Array containing the new Q ((m+1) x (m+1)) and R ((m+1) x n)
+	 */
+	public static Matrix[] addRow(Matrix q, Matrix r, int index, AVector row) {
+		int m=checkFactors(q,r);
+		int n=r.columnCount();
+		if ((index<0)||(index>m)) throw new IndexOutOfBoundsException("Row index "+index+" out of range 0.."+m);
+		if (row.length()!=n) throw new IllegalArgumentException("Row length "+row.length()+" does not match "+n+" columns");
+
+		// A' = Q'.[R; w] where Q' is Q with a unit row and column for the new row
+		int m1=m+1;
+		Matrix nq=Matrix.create(m1, m1);
+		double[] qd=q.data;
+		double[] nqd=nq.data;
+		for (int i=0; i<m; i++) {
+			int ni=(i<index)?i:(i+1);
+			System.arraycopy(qd, i*m, nqd, ni*m1, m);
+		}
+		nqd[index*m1+m]=1.0;
+		Matrix nr=Matrix.create(m1, n);
+		System.arraycopy(r.data, 0, nr.data, 0, m*n);
+		row.getElements(nr.data, m*n);
+
+		// rotate the new last row into R
+		int lim=Math.min(m, n);
+		for (int j=0; j<lim; j++) {
+			rotate(nq,nr,j,m,j);
+		}
+		return new Matrix[] {nq,nr};
+	}
+
+	/**
+	 * Updates the factors for the row of A at the given index being deleted
+	 *
+	 * @return Array containing the new Q ((m-1) x (m-1)) and R ((m-1) x n)
+	 */
+	public static Matrix[] removeRow(Matrix q, Matrix r, int index) {
+		int m=checkFactors(q,r);
+		int n=r.columnCount();
+		if ((index<0)||(index>=m)) throw new IndexOutOfBoundsException("Row index "+index+" out of range 0.."+(m-1));
+
+		// rotate row index of Q to e_1^T, applying the same rotations to the rows of R
+		double[] qd=q.data;
+		double[] rd=r.data;
+		int qi=index*m;
+		for (int i=m-1; i>0; i--) {
+			double a=qd[qi+i-1];
+			double b=qd[qi+i];
+			if (b==0.0) continue;
+			double h=Math.hypot(a, b);
+			double c=a/h;
+			double s=b/h;
+			rotateColumns(qd,m,m,i-1,i,c,s);
+			rotateRows(rd,n,i-1,i,c,s,Math.max(0, i-2));
+		}
+
+		// Q = [[1,0],[0,Q']] up to the row order, and the first row of R belongs to the deleted row
+		int m1=m-1;
+		Matrix nq=Matrix.create(m1, m1);
+		double[] nqd=nq.data;
+		for (int i=0; i<m; i++) {
+			if (i==index) continue;
+			int ni=(i<index)?i:(i-1);
+			System.arraycopy(qd, i*m+1, nqd, ni*m1, m1);
+		}
+		Matrix nr=Matrix.create(m1, n);
+		System.arraycopy(rd, n, nr.data, 0, m1*n);
+		// clean up rounding below the diagonal
+		for (int i=1; i<m1; i++) {
+			for (int j=0; j<Math.min(i, n); j++) {
+				nr.data[i*n+j]=0.0;
+			}
+		}
+		return new Matrix[] {nq,nr};
+	}
+
+	/**
+	 * Updates the factors for a new column inserted into A at the given index
+	 *
+	 * @return Array containing the new Q (m x m) and R (m x (n+1))
+	 */
+	public static Matrix[] addColumn(Matrix q, Matrix r, int index, AVector column) {
+		int m=checkFactors(q,r);
+		int n=r.columnCount();
+		if ((index<0)||(index>n)) throw new IndexOutOfBoundsException("Column index "+index+" out of range 0.."+n);
+		if (column.length()!=m) throw new IllegalArgumentException("Column length "+column.length()+" does not match "+m+" rows");
+
+		// R' = [R(:,0:k) Q^T.a R(:,k:n)]
+		int n1=n+1;
+		Matrix nr=Matrix.create(m, n1);
+		double[] rd=r.data;
+		double[] nrd=nr.data;
+		double[] qd=q.data;
+		for (int i=0; i<m; i++) {
+			System.arraycopy(rd, i*n, nrd, i*n1, index);
+			System.arraycopy(rd, i*n+index, nrd, i*n1+index+1, n-index);
+		}
+		for (int j=0; j<m; j++) {
+			double aj=column.unsafeGet(j);
+			if (aj==0.0) continue;
+			int rj=j*m;
+			for (int i=0; i<m; i++) {
+				nrd[i*n1+index]+=qd[rj+i]*aj;
+			}
+		}
+
+		// zero the new column below the diagonal from the bottom up
+		for (int i=m-1; i>index; i--) {
+			rotate(q,nr,i-1,i,index);
+		}
+		return new Matrix[] {q,nr};
+	}
+
+	/**
+	 * Updates the factors for the column of A at the given index being deleted
+	 *
+	 * @return Array containing the new Q (m x m) and R (m x (n-1))
+	 */
+	public static Matrix[] removeColumn(Matrix q, Matrix r, int index) {
+		int m=checkFactors(q,r);
+		int n=r.columnCount();
+		if ((index<0)||(index>=n)) throw new IndexOutOfBoundsException("Column index "+index+" out of range 0.."+(n-1));
+
+		int n1=n-1;
+		Matrix nr=Matrix.create(m, n1);
+		double[] rd=r.data;
+		double[] nrd=nr.data;
+		for (int i=0; i<m; i++) {
+			System.arraycopy(rd, i*n, nrd, i*n1, index);
+			System.arraycopy(rd, i*n+index+1, nrd, i*n1+index, n1-index);
+		}
+
+		// columns from index onwards are now upper Hessenberg
+		for (int j=index; j<Math.min(n1, m-1); j++) {
+			rotate(q,nr,j,j+1,j);
+		}
+		return new Matrix[] {q,nr};
+	}
+
+	/**
+	 * Updates a thin factorisation in place for a new row of A with matching right hand side row. The
+	 * row order of A does not affect R, so no index is needed.
+	 *
+	 * @param r The n x n upper triangular factor
+	 * @param c The first n rows of Q^T.B (n x p)
+	 */
+	public static void addRowThin(Matrix r, Matrix c, AVector row, AVector rhs) {
+		CholeskyUpdate.update(r, row, c, rhs);
+	}
+
+	/**
+	 * Updates a thin factorisation in place for a row of A and its right hand side row being removed.
+	 *
+	 * @return false if A would lose full column rank, in which case the factors are unchanged
+	 */
+	public static boolean removeRowThin(Matrix r, Matrix c, AVector row, AVector rhs) {
+		return CholeskyUpdate.downdate(r, row, c, rhs);
+	}
+
+	/**
+	 * Updates a thin factorisation for the column of A at the given index being deleted
+	 *
+	 * @return Array containing the new R ((n-1) x (n-1)) and C ((n-1) x p)
+	 */
+	public static Matrix[] removeColumnThin(Matrix r, Matrix c, int index) {
+		int n=r.columnCount();
+		if (r.rowCount()!=n) throw new IllegalArgumentException("R must be square");
+		if (c.rowCount()!=n) throw new IllegalArgumentException("C must have "+n+" rows");
+		if ((index<0)||(index>=n)) throw new IndexOutOfBoundsException("Column index "+index+" out of range 0.."+(n-1));
+		int p=c.columnCount();
+
+		int n1=n-1;
+		Matrix hr=Matrix.create(n, n1);
+		double[] rd=r.data;
+		double[] hd=hr.data;
+		for (int i=0; i<n; i++) {
+			System.arraycopy(rd, i*n, hd, i*n1, index);
+			System.arraycopy(rd, i*n+index+1, hd, i*n1+index, n1-index);
+		}
+		Matrix hc=c.clone();
+
+		// columns from index onwards are upper Hessenberg; the last row becomes part of the residual
+		for (int j=index; j<n1; j++) {
+			double a=hd[j*n1+j];
+			double b=hd[(j+1)*n1+j];
+			if (b==0.0) continue;
+			double h=Math.hypot(a, b);
+			double cs=a/h;
+			double sn=b/h;
+			rotateRows(hd,n1,j,j+1,cs,sn,j);
+			hd[(j+1)*n1+j]=0.0;
+			rotateRows(hc.data,p,j,j+1,cs,sn,0);
+		}
+		Matrix nr=Matrix.create(n1, n1);
+		System.arraycopy(hd, 0, nr.data, 0, n1*n1);
+		Matrix nc=Matrix.create(n1, p);
+		System.arraycopy(hc.data, 0, nc.data, 0, n1*p);
+		return new Matrix[] {nr,nc};
+	}
+
+	private static int checkFactors(Matrix q, Matrix r) {
+		int m=q.rowCount();
+		if (q.columnCount()!=m) throw new IllegalArgumentException("Q must be square");
+		if (r.rowCount()!=m) throw new IllegalArgumentException("R must have the same number of rows as Q");
+		return m;
+	}
+
+	/**
+	 * Applies a Givens rotation to rows p1 and p2 of R that zeros R(p2,col), and the same rotation to
+	 * columns p1 and p2 of Q, so that Q.R is unchanged
+	 */
+	private static void rotate(Matrix q, Matrix r, int p1, int p2, int col) {
+		int n=r.columnCount();
+		double[] rd=r.data;
+		double a=rd[p1*n+col];
+		double b=rd[p2*n+col];
+		if (b==0.0) return;
+		double h=Math.hypot(a, b);
+		double c=a/h;
+		double s=b/h;
+		rotateRows(rd,n,p1,p2,c,s,col);
+		rd[p2*n+col]=0.0;
+		int m=q.rowCount();
+		rotateColumns(q.data,m,m,p1,p2,c,s);
+	}
+
+	private static void rotateRows(double[] d, int cols, int p1, int p2, double c, double s, int start) {
+		int r1=p1*cols;
+		int r2=p2*cols;
+		for (int j=start; j<cols; j++) {
+			double x=d[r1+j];
+			double y=d[r2+j];
+			d[r1+j]=c*x+s*y;
+			d[r2+j]=-s*x+c*y;
+		}
+	}
+
+	private static void rotateColumns(double[] d, int rows, int cols, int p1, int p2, double c, double s) {
+		for (int i=0; i<rows; i++) {
+			int ri=i*cols;
+			double x=d[ri+p1];
+			double y=d[ri+p2];
+			d[ri+p1]=c*x+s*y;
+			d[ri+p2]=-s*x+c*y;
+		}
+	}
+}
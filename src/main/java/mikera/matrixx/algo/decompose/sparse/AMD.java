@@ -0,0 +1,230 @@
+package mikera.matrixx.algo.decompose.sparse;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.PermutationMatrix;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Approximate minimum degree (AMD) fill-reducing ordering.
+ *
+ * Orders the nodes of the symmetric graph of A+A^T (the diagonal is ignored) so that Cholesky or LU factors
+ * of the permuted matrix have few non-zeros. Elimination is simulated on the quotient graph: eliminated
+ * nodes become elements, so memory use never exceeds a small multiple of the non-zeros of A. Degrees are
+ * updated with the approximate external degree bound of Amestoy, Davis and Duff, and elements whose
+ * variables are all covered by the newest element are absorbed.
+ *
+ * The ordering is returned as an index array perm, where perm[k] is the original index of the k-th node
+ * to be eliminated, or as the PermutationMatrix P with (P.A.P^T)(k,l) = A(perm[k],perm[l]).
+ *
+ * @author Mike
+ */
+public class AMD {
+
+	/**
+	 * Computes an AMD ordering of a square matrix as a PermutationMatrix P, such that P.A.P^T
+	 * is the reordered matrix
+	 */
+	public static PermutationMatrix order(AMatrix a) {
+		return PermutationMatrix.create(orderIndexes(a));
+	}
+
+	/**
+	 * Computes an AMD ordering of a square matrix, returning the elimination order as an index array
+	 */
+	public static int[] orderIndexes(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		CompressedSparseColumnMatrix c=CompressedSparseColumnMatrix.create(a);
+		return orderIndexes(a.rowCount(), c.getColumnPointers(), c.getRowIndexes());
+	}
+
+	/**
+	 * Computes an AMD ordering from the pattern of a square matrix in compressed column (or row) form.
+	 * Entries need not be sorted, and the pattern need not be symmetric.
+	 */
+	public static int[] orderIndexes(int n, int[] colPointers, int[] rowIndexes) {
+		int[][] vars=symmetricPattern(n, colPointers, rowIndexes);
+		int[] nvars=new int[n];
+		for (int i=0; i<n; i++) nvars[i]=vars[i].length;
+
+		int[][] elems=new int[n][];
+		int[] nelems=new int[n];
+		int[][] elemVars=new int[n][];
+		boolean[] eliminated=new boolean[n];
+		boolean[] absorbed=new boolean[n];
+
+		// degree lists
+		int[] degree=new int[n];
+		int[] head=new int[n];
+		int[] next=new int[n];
+		int[] prev=new int[n];
+		Arrays.fill(head, -1);
+		for (int i=0; i<n; i++) {
+			elems[i]=new int[4];
+			degree[i]=nvars[i];
+			insert(i, degree, head, next, prev);
+		}
+
+		int[] mark=new int[n];
+		int[] wmark=new int[n];
+		int[] wval=new int[n];
+		Arrays.fill(mark, -1);
+		Arrays.fill(wmark, -1);
+
+		int[] perm=new int[n];
+		int[] lp=new int[n];
+		int mindeg=0;
+		for (int k=0; k<n; k++) {
+			while (head[mindeg]<0) mindeg++;
+			int p=head[mindeg];
+			remove(p, degree, head, next, prev);
+			perm[k]=p;
+			eliminated[p]=true;
+
+			// construct the variables of the new element p
+			int nlp=0;
+			mark[p]=k;
+			int[] vp=vars[p];
+			for (int t=0; t<nvars[p]; t++) {
+				int v=vp[t];
+				if (eliminated[v]||(mark[v]==k)) continue;
+				mark[v]=k;
+				lp[nlp++]=v;
+			}
+			int[] ep=elems[p];
+			for (int t=0; t<nelems[p]; t++) {
+				int e=ep[t];
+				if (absorbed[e]) continue;
+				int[] le=elemVars[e];
+				for (int s=0; s<le.length; s++) {
+					int v=le[s];
+					if (eliminated[v]||(mark[v]==k)) continue;
+					mark[v]=k;
+					lp[nlp++]=v;
+				}
+				absorbed[e]=true;
+				elemVars[e]=null;
+			}
+			elemVars[p]=Arrays.copyOf(lp, nlp);
+			vars[p]=null;
+			elems[p]=null;
+
+			// update adjacency of each variable in the new element, and count external variables of other elements
+			for (int t=0; t<nlp; t++) {
+				int i=lp[t];
+				remove(i, degree, head, next, prev);
+				int[] vi=vars[i];
+				int nv=0;
+				for (int s=0; s<nvars[i]; s++) {
+					int v=vi[s];
+					if (eliminated[v]||(mark[v]==k)) continue;
+					vi[nv++]=v;
+				}
+				nvars[i]=nv;
+				int[] ei=elems[i];
+				int ne=0;
+				for (int s=0; s<nelems[i]; s++) {
+					int e=ei[s];
+					if (absorbed[e]) continue;
+					ei[ne++]=e;
+					if (wmark[e]!=k) {
+						wmark[e]=k;
+						wval[e]=elemVars[e].length;
+					}
+					wval[e]--;
+				}
+				if (ne==ei.length) ei=elems[i]=Arrays.copyOf(ei, ne*2);
+				ei[ne++]=p;
+				nelems[i]=ne;
+			}
+
+			// approximate external degrees, absorbing elements contained in the new element
+			int live=n-k-1;
+			for (int t=0; t<nlp; t++) {
+				int i=lp[t];
+				int d=nvars[i]+nlp-1;
+				int[] ei=elems[i];
+				int ne=0;
+				for (int s=0; s<nelems[i]; s++) {
+					int e=ei[s];
+					if (e!=p) {
+						if (wval[e]==0) {
+							absorbed[e]=true;
+							continue;
+						}
+						d+=wval[e];
+					}
+					ei[ne++]=e;
+				}
+				nelems[i]=ne;
+				degree[i]=Math.min(d, live-1);
+				insert(i, degree, head, next, prev);
+				if (degree[i]<mindeg) mindeg=degree[i];
+			}
+		}
+		return perm;
+	}
+
+	/**
+	 * Builds the adjacency lists of the graph of A+A^T, excluding self loops and duplicates
+	 */
+	private static int[][] symmetricPattern(int n, int[] colPointers, int[] rowIndexes) {
+		int[] count=new int[n];
+		for (int j=0; j<n; j++) {
+			for (int p=colPointers[j], end=colPointers[j+1]; p<end; p++) {
+				int i=rowIndexes[p];
+				if (i==j) continue;
+				count[i]++;
+				count[j]++;
+			}
+		}
+		int[][] adj=new int[n][];
+		for (int i=0; i<n; i++) adj[i]=new int[count[i]];
+		Arrays.fill(count, 0);
+		for (int j=0; j<n; j++) {
+			for (int p=colPointers[j], end=colPointers[j+1]; p<end; p++) {
+				int i=rowIndexes[p];
+				if (i==j) continue;
+				adj[i][count[i]++]=j;
+				adj[j][count[j]++]=i;
+			}
+		}
+		// remove duplicate edges
+		int[] mark=new int[n];
+		Arrays.fill(mark, -1);
+		for (int i=0; i<n; i++) {
+			int[] a=adj[i];
+			int m=0;
+			for (int t=0; t<a.length; t++) {
+				int v=a[t];
+				if (mark[v]==i) continue;
+				mark[v]=i;
+				a[m++]=v;
+			}
+			if (m<a.length) adj[i]=Arrays.copyOf(a, m);
+		}
+		return adj;
+	}
+
+	private static void insert(int i, int[] degree, int[] head, int[] next, int[] prev) {
+		int d=degree[i];
+		int h=head[d];
+		next[i]=h;
+		prev[i]=-1;
+		if (h>=0) prev[h]=i;
+		head[d]=i;
+	}
+
+	private static void remove(int i, int[] degree, int[] head, int[] next, int[] prev) {
+		int nx=next[i];
+		int pv=prev[i];
+		if (nx>=0) prev[nx]=pv;
+		if (pv>=0) {
+			next[pv]=nx;
+		} else {
+			head[degree[i]]=nx;
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package mikera.matrixx.algo.decompose.sparse;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.PermutationMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Sparse direct Cholesky decomposition, P.A.P^T = L.L^T, for symmetric positive definite matrices.
+ *
+ * The decomposition is split into two phases:
+ * - analyse(): computes a fill-reducing ordering (AMD by default), the elimination tree and the exact
+ *   sparsity pattern of L. This depends only on the sparsity pattern of A.
+ * - factor(): computes the numerical values of L with an up-looking algorithm. This can be called repeatedly
+ *   for matrices with the same sparsity pattern but different values, reusing the symbolic analysis.
+ *
+ * Only the upper triangle of A (including the diagonal) is read; A is assumed to be symmetric. The matrix
+ * is never densified, so memory use is proportional to the number of non-zeros in L.
+ *
+ * @author Mike
+ */
+public class SparseCholesky {
+	private final int n;
+	private final int[] perm;
+	private final int[] pinv;
+	private final int[] parent;
+
+	// pattern of the permuted upper triangle that was analysed
+	private final int[] cp;
+	private final int[] ci;
+
+	// factor storage, in compressed column form with the diagonal first in each column
+	private final int[] lp;
+	private final int[] li;
+	private final double[] lx;
+	private boolean factored=false;
+
+	private SparseCholesky(int n, int[] perm, int[] cp, int[] ci) {
+		this.n=n;
+		this.perm=perm;
+		this.pinv=inverse(perm);
+		this.cp=cp;
+		this.ci=ci;
+		parent=etree(n, cp, ci);
+
+		// column counts of L, from the row patterns given by the elimination tree
+		int[] count=new int[n];
+		int[] s=new int[n];
+		int[] w=new int[n];
+		Arrays.fill(w, -1);
+		for (int k=0; k<n; k++) {
+			int top=ereach(k, s, w);
+			for (int t=top; t<n; t++) {
+				count[s[t]]++;
+			}
+			count[k]++;
+		}
+		lp=new int[n+1];
+		for (int j=0; j<n; j++) {
+			lp[j+1]=lp[j]+count[j];
+		}
+		li=new int[lp[n]];
+		lx=new double[lp[n]];
+	}
+
+	/**
+	 * Performs symbolic analysis of a symmetric matrix using an AMD ordering
+	 */
+	public static SparseCholesky analyse(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		CompressedSparseColumnMatrix c=CompressedSparseColumnMatrix.create(a);
+		return analyse(c, AMD.orderIndexes(c.columnCount(), c.getColumnPointers(), c.getRowIndexes()));
+	}
+
+	/**
+	 * Performs symbolic analysis of a symmetric matrix using the given ordering
+	 */
+	public static SparseCholesky analyse(AMatrix a, PermutationMatrix ordering) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		if (ordering.rowCount()!=a.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, ordering));
+		return analyse(CompressedSparseColumnMatrix.create(a), ordering.getPermutation().data);
+	}
+
+	private static SparseCholesky analyse(CompressedSparseColumnMatrix c, int[] perm) {
+		int n=c.columnCount();
+		int[] cp=new int[n+1];
+		int[] ci=new int[upperCount(c)];
+		permutedUpper(c, inverse(perm), cp, ci, null);
+		return new SparseCholesky(n, perm, cp, ci);
+	}
+
+	/**
+	 * Performs symbolic analysis and numerical factorisation in one step
+	 */
+	public static SparseCholesky decompose(AMatrix a) {
+		SparseCholesky result=analyse(a);
+		result.factor(a);
+		return result;
+	}
+
+	/**
+	 * Computes the numerical factorisation of A, which must have the same sparsity pattern as the
+	 * analysed matrix.
+	 *
+	 * @throws IllegalArgumentException if the pattern differs, or A is not positive definite
+	 */
+	public void factor(AMatrix a) {
+		if ((a.rowCount()!=n)||(a.columnCount()!=n)) throw new IllegalArgumentException(ErrorMessages.incompatibleShape(a));
+		factored=false;
+		CompressedSparseColumnMatrix c=CompressedSparseColumnMatrix.create(a);
+		int nz=upperCount(c);
+		if (nz!=ci.length) throw new IllegalArgumentException("Sparsity pattern differs from the analysed matrix");
+		int[] cp2=new int[n+1];
+		int[] ci2=new int[nz];
+		double[] cx=new double[nz];
+		permutedUpper(c, pinv, cp2, ci2, cx);
+		if (!(Arrays.equals(cp, cp2)&&Arrays.equals(ci, ci2))) throw new IllegalArgumentException("Sparsity pattern differs from the analysed matrix");
+
+		double[] x=new double[n];
+		int[] s=new int[n];
+		int[] w=new int[n];
+		Arrays.fill(w, -1);
+		int[] next=Arrays.copyOf(lp, n);
+		for (int k=0; k<n; k++) {
+			int top=ereach(k, s, w);
+			for (int p=cp[k]; p<cp[k+1]; p++) {
+				x[ci[p]]=cx[p];
+			}
+			double d=x[k];
+			x[k]=0.0;
+			for (int t=top; t<n; t++) {
+				int i=s[t];
+				double lki=x[i]/lx[lp[i]];
+				x[i]=0.0;
+				for (int p=lp[i]+1, end=next[i]; p<end; p++) {
+					x[li[p]]-=lx[p]*lki;
+				}
+				d-=lki*lki;
+				int p=next[i]++;
+				li[p]=k;
+				lx[p]=lki;
+			}
+			if (!(d>0.0)) throw new IllegalArgumentException("Matrix is not positive definite (pivot "+k+")");
+			int p=next[k]++;
+			li[p]=k;
+			lx[p]=Math.sqrt(d);
+		}
+		factored=true;
+	}
+
+	/**
+	 * Returns the fill-reducing permutation P, where P.A.P^T = L.L^T
+	 */
+	public PermutationMatrix getPermutation() {
+		return PermutationMatrix.create(perm.clone());
+	}
+
+	/**
+	 * Returns the elimination tree of the permuted matrix, as an array of parent indexes (-1 for roots)
+	 */
+	public int[] getEliminationTree() {
+		return parent.clone();
+	}
+
+	/**
+	 * Returns the number of non-zeros in L, which is known after analysis
+	 */
+	public int nonZeroCount() {
+		return lp[n];
+	}
+
+	/**
+	 * Returns the lower triangular factor L as a new compressed column matrix
+	 */
+	public CompressedSparseColumnMatrix getL() {
+		checkFactored();
+		return CompressedSparseColumnMatrix.create(n, n, lp, li, lx);
+	}
+
+	/**
+	 * Solves A.x = b using the factorisation, returning a new vector
+	 */
+	public Vector solve(AVector b) {
+		Vector x=Vector.createLength(n);
+		solve(b, x);
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b using the factorisation, storing the result in x
+	 */
+	public void solve(AVector b, AVector x) {
+		checkFactored();
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		if (x.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(x));
+		double[] y=new double[n];
+		for (int k=0; k<n; k++) {
+			y[k]=b.unsafeGet(perm[k]);
+		}
+		for (int j=0; j<n; j++) {
+			double yj=y[j]/lx[lp[j]];
+			y[j]=yj;
+			for (int p=lp[j]+1, end=lp[j+1]; p<end; p++) {
+				y[li[p]]-=lx[p]*yj;
+			}
+		}
+		for (int j=n-1; j>=0; j--) {
+			double acc=y[j];
+			for (int p=lp[j]+1, end=lp[j+1]; p<end; p++) {
+				acc-=lx[p]*y[li[p]];
+			}
+			y[j]=acc/lx[lp[j]];
+		}
+		for (int k=0; k<n; k++) {
+			x.unsafeSet(perm[k], y[k]);
+		}
+	}
+
+	private void checkFactored() {
+		if (!factored) throw new IllegalStateException("Numerical factorisation has not been computed");
+	}
+
+	/**
+	 * Computes the non-zero pattern of row k of L as a topologically ordered list of columns in s[top..n-1]
+	 */
+	private int ereach(int k, int[] s, int[] w) {
+		int top=n;
+		w[k]=k;
+		for (int p=cp[k]; p<cp[k+1]; p++) {
+			int i=ci[p];
+			if (i>=k) continue;
+			int len=0;
+			for (; w[i]!=k; i=parent[i]) {
+				s[len++]=i;
+				w[i]=k;
+			}
+			while (len>0) s[--top]=s[--len];
+		}
+		return top;
+	}
+
+	private static int[] etree(int n, int[] cp, int[] ci) {
+		int[] parent=new int[n];
+		int[] ancestor=new int[n];
+		for (int k=0; k<n; k++) {
+			parent[k]=-1;
+			ancestor[k]=-1;
+			for (int p=cp[k]; p<cp[k+1]; p++) {
+				int i=ci[p];
+				while ((i!=-1)&&(i<k)) {
+					int inext=ancestor[i];
+					ancestor[i]=k;
+					if (inext==-1) parent[i]=k;
+					i=inext;
+				}
+			}
+		}
+		return parent;
+	}
+
+	private static int upperCount(CompressedSparseColumnMatrix c) {
+		int[] p=c.getColumnPointers();
+		int[] r=c.getRowIndexes();
+		int count=0;
+		for (int j=0, n=c.columnCount(); j<n; j++) {
+			for (int k=p[j]; k<p[j+1]; k++) {
+				if (r[k]<=j) count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Computes the upper triangle of P.A.P^T in compressed column form from the upper triangle of A.
+	 * Values are only computed if cx is not null.
+	 */
+	private static void permutedUpper(CompressedSparseColumnMatrix c, int[] pinv, int[] cp, int[] ci, double[] cx) {
+		int n=c.columnCount();
+		int[] ap=c.getColumnPointers();
+		int[] ai=c.getRowIndexes();
+		double[] ax=c.getValues();
+		int[] count=new int[n+1];
+		for (int j=0; j<n; j++) {
+			int j2=pinv[j];
+			for (int p=ap[j]; p<ap[j+1]; p++) {
+				int i=ai[p];
+				if (i>j) continue;
+				count[Math.max(pinv[i], j2)]++;
+			}
+		}
+		cp[0]=0;
+		for (int j=0; j<n; j++) {
+			cp[j+1]=cp[j]+count[j];
+			count[j]=cp[j];
+		}
+		for (int j=0; j<n; j++) {
+			int j2=pinv[j];
+			for (int p=ap[j]; p<ap[j+1]; p++) {
+				int i=ai[p];
+				if (i>j) continue;
+				int i2=pinv[i];
+				int q=count[Math.max(i2, j2)]++;
+				ci[q]=Math.min(i2, j2);
+				if (cx!=null) cx[q]=ax[p];
+			}
+		}
+	}
+
+	static int[] inverse(int[] perm) {
+		int n=perm.length;
+		int[] result=new int[n];
+		Arrays.fill(result, -1);
+		for (int k=0; k<n; k++) {
+			int i=perm[k];
+			if ((i<0)||(i>=n)||(result[i]>=0)) throw new IllegalArgumentException("Not a valid permutation");
+			result[i]=k;
+		}
+		return result;
+	}
+}
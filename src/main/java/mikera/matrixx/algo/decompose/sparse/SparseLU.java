@@ -0,0 +1,323 @@
+package mikera.matrixx.algo.decompose.sparse;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.PermutationMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Sparse direct LU decomposition with partial pivoting, P.A.Q = L.U, where L is unit lower triangular
+ * and U is upper triangular.
+ *
+ * The decomposition is split into two phases:
+ * - analyse(): computes a fill-reducing column ordering Q (AMD applied to the pattern of A+A^T by default)
+ *   and initial storage estimates. This depends only on the sparsity pattern of A.
+ * - factor(): computes L, U and the row permutation P with a left-looking (Gilbert-Peierls) algorithm.
+ *   This can be called repeatedly for matrices with the same sparsity pattern, reusing the column ordering.
+ *
+ * Row pivots are chosen during factor() to keep the factorisation numerically stable. With a pivot tolerance
+ * below 1.0 the diagonal element is preferred whenever it is at least that fraction of the largest candidate,
+ * which usually preserves the sparsity benefit of a symmetric ordering.
+ *
+ * @author Mike
+ */
+public class SparseLU {
+	private final int n;
+	private final int[] q;
+	private double pivotTolerance=1.0;
+	private int lnzEstimate;
+	private int unzEstimate;
+
+	// factor storage, in compressed column form with sorted row indexes
+	private int[] lp, li, up, ui;
+	private double[] lx, ux;
+	private int[] pinv;
+	private boolean factored=false;
+
+	private SparseLU(int n, int[] q, int nz) {
+		this.n=n;
+		this.q=q;
+		lnzEstimate=4*nz+n;
+		unzEstimate=4*nz+n;
+	}
+
+	/**
+	 * Performs symbolic analysis of a square matrix using an AMD column ordering
+	 */
+	public static SparseLU analyse(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		CompressedSparseColumnMatrix c=CompressedSparseColumnMatrix.create(a);
+		int n=c.columnCount();
+		return new SparseLU(n, AMD.orderIndexes(n, c.getColumnPointers(), c.getRowIndexes()), c.storedElementCount());
+	}
+
+	/**
+	 * Performs symbolic analysis of a square matrix using the given column ordering, specified as a
+	 * PermutationMatrix whose transpose is Q
+	 */
+	public static SparseLU analyse(AMatrix a, PermutationMatrix ordering) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		if (ordering.rowCount()!=a.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, ordering));
+		int[] q=ordering.getPermutation().data;
+		return new SparseLU(a.rowCount(), q, (int)Math.min(Integer.MAX_VALUE/8, a.nonZeroCount()));
+	}
+
+	/**
+	 * Performs symbolic analysis and numerical factorisation in one step
+	 */
+	public static SparseLU decompose(AMatrix a) {
+		SparseLU result=analyse(a);
+		result.factor(a);
+		return result;
+	}
+
+	/**
+	 * Sets the relative threshold in (0,1] for accepting a diagonal pivot. 1.0 gives standard partial pivoting.
+	 */
+	public void setPivotTolerance(double tolerance) {
+		if (!((tolerance>0.0)&&(tolerance<=1.0))) throw new IllegalArgumentException("Pivot tolerance must be in range (0,1]: "+tolerance);
+		this.pivotTolerance=tolerance;
+	}
+
+	public double getPivotTolerance() {
+		return pivotTolerance;
+	}
+
+	/**
+	 * Computes the numerical factorisation of A using the analysed column ordering
+	 *
+	 * @throws IllegalArgumentException if A is singular
+	 */
+	public void factor(AMatrix a) {
+		if ((a.rowCount()!=n)||(a.columnCount()!=n)) throw new IllegalArgumentException(ErrorMessages.incompatibleShape(a));
+		factored=false;
+		CompressedSparseColumnMatrix c=CompressedSparseColumnMatrix.create(a);
+		int[] ap=c.getColumnPointers();
+		int[] ai=c.getRowIndexes();
+		double[] ax=c.getValues();
+
+		lp=new int[n+1];
+		up=new int[n+1];
+		li=new int[lnzEstimate];
+		lx=new double[lnzEstimate];
+		ui=new int[unzEstimate];
+		ux=new double[unzEstimate];
+		pinv=new int[n];
+		Arrays.fill(pinv, -1);
+
+		double[] x=new double[n];
+		int[] xi=new int[n];
+		int[] pstack=new int[n];
+		int[] mark=new int[n];
+		Arrays.fill(mark, -1);
+		int lnz=0;
+		int unz=0;
+		for (int k=0; k<n; k++) {
+			lp[k]=lnz;
+			up[k]=unz;
+			if (lnz+n>li.length) {
+				int size=2*li.length+n;
+				li=Arrays.copyOf(li, size);
+				lx=Arrays.copyOf(lx, size);
+			}
+			if (unz+n>ui.length) {
+				int size=2*ui.length+n;
+				ui=Arrays.copyOf(ui, size);
+				ux=Arrays.copyOf(ux, size);
+			}
+			int col=q[k];
+
+			// sparse triangular solve x = L \ A(:,col), with pattern xi[top..n-1] in topological order
+			int top=n;
+			for (int p=ap[col]; p<ap[col+1]; p++) {
+				int j=ai[p];
+				if (mark[j]!=k) top=dfs(j, k, top, xi, pstack, mark);
+			}
+			for (int p=top; p<n; p++) x[xi[p]]=0.0;
+			for (int p=ap[col]; p<ap[col+1]; p++) x[ai[p]]=ax[p];
+			for (int px=top; px<n; px++) {
+				int j=xi[px];
+				int jj=pinv[j];
+				if (jj<0) continue;
+				double xj=x[j];
+				for (int p=lp[jj]+1; p<lp[jj+1]; p++) {
+					x[li[p]]-=lx[p]*xj;
+				}
+			}
+
+			// choose a pivot from the rows that are not yet pivotal
+			int ipiv=-1;
+			double amax=-1.0;
+			for (int p=top; p<n; p++) {
+				int i=xi[p];
+				if (pinv[i]<0) {
+					double t=Math.abs(x[i]);
+					if (t>amax) {
+						amax=t;
+						ipiv=i;
+					}
+				} else {
+					ui[unz]=pinv[i];
+					ux[unz++]=x[i];
+				}
+			}
+			if ((ipiv<0)||(amax<=0.0)) throw new IllegalArgumentException(ErrorMessages.singularMatrix());
+			if ((pinv[col]<0)&&(Math.abs(x[col])>=amax*pivotTolerance)) ipiv=col;
+
+			double pivot=x[ipiv];
+			ui[unz]=k;
+			ux[unz++]=pivot;
+			pinv[ipiv]=k;
+			li[lnz]=ipiv;
+			lx[lnz++]=1.0;
+			for (int p=top; p<n; p++) {
+				int i=xi[p];
+				if (pinv[i]<0) {
+					li[lnz]=i;
+					lx[lnz++]=x[i]/pivot;
+				}
+				x[i]=0.0;
+			}
+		}
+		lp[n]=lnz;
+		up[n]=unz;
+		// size storage for the next refactorisation from the actual factors
+		lnzEstimate=lnz;
+		unzEstimate=unz;
+		for (int p=0; p<lnz; p++) li[p]=pinv[li[p]];
+		sortColumns(lp, li, lx);
+		sortColumns(up, ui, ux);
+		factored=true;
+	}
+
+	/**
+	 * Depth first search from row j through the columns of L computed so far. Nodes are added to
+	 * xi[..top-1] in reverse topological order.
+	 */
+	private int dfs(int j, int stamp, int top, int[] xi, int[] pstack, int[] mark) {
+		int head=0;
+		xi[0]=j;
+		while (head>=0) {
+			j=xi[head];
+			int jj=pinv[j];
+			if (mark[j]!=stamp) {
+				mark[j]=stamp;
+				pstack[head]=(jj<0)?0:lp[jj]+1;
+			}
+			boolean done=true;
+			int end=(jj<0)?0:lp[jj+1];
+			for (int p=pstack[head]; p<end; p++) {
+				int i=li[p];
+				if (mark[i]==stamp) continue;
+				pstack[head]=p+1;
+				xi[++head]=i;
+				done=false;
+				break;
+			}
+			if (done) {
+				head--;
+				xi[--top]=j;
+			}
+		}
+		return top;
+	}
+
+	private void sortColumns(int[] cp, int[] ci, double[] cx) {
+		for (int j=0; j<n; j++) {
+			int start=cp[j];
+			int end=cp[j+1];
+			for (int p=start+1; p<end; p++) {
+				int i=ci[p];
+				double v=cx[p];
+				int t=p-1;
+				while ((t>=start)&&(ci[t]>i)) {
+					ci[t+1]=ci[t];
+					cx[t+1]=cx[t];
+					t--;
+				}
+				ci[t+1]=i;
+				cx[t+1]=v;
+			}
+		}
+	}
+
+	/**
+	 * Returns the row permutation P, where P.A.Q = L.U
+	 */
+	public PermutationMatrix getRowPermutation() {
+		checkFactored();
+		return PermutationMatrix.create(SparseCholesky.inverse(pinv));
+	}
+
+	/**
+	 * Returns the column permutation Q, where P.A.Q = L.U
+	 */
+	public PermutationMatrix getColumnPermutation() {
+		return PermutationMatrix.create(SparseCholesky.inverse(q));
+	}
+
+	/**
+	 * Returns the unit lower triangular factor L as a new compressed column matrix
+	 */
+	public CompressedSparseColumnMatrix getL() {
+		checkFactored();
+		return CompressedSparseColumnMatrix.create(n, n, lp, li, lx);
+	}
+
+	/**
+	 * Returns the upper triangular factor U as a new compressed column matrix
+	 */
+	public CompressedSparseColumnMatrix getU() {
+		checkFactored();
+		return CompressedSparseColumnMatrix.create(n, n, up, ui, ux);
+	}
+
+	/**
+	 * Solves A.x = b using the factorisation, returning a new vector
+	 */
+	public Vector solve(AVector b) {
+		Vector x=Vector.createLength(n);
+		solve(b, x);
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b using the factorisation, storing the result in x
+	 */
+	public void solve(AVector b, AVector x) {
+		checkFactored();
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(b));
+		if (x.length()!=n) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(x));
+		double[] y=new double[n];
+		for (int i=0; i<n; i++) {
+			y[pinv[i]]=b.unsafeGet(i);
+		}
+		// L has a unit diagonal stored first in each column
+		for (int j=0; j<n; j++) {
+			double yj=y[j];
+			for (int p=lp[j]+1, end=lp[j+1]; p<end; p++) {
+				y[li[p]]-=lx[p]*yj;
+			}
+		}
+		// U has the diagonal stored last in each column
+		for (int j=n-1; j>=0; j--) {
+			int dp=up[j+1]-1;
+			double yj=y[j]/ux[dp];
+			y[j]=yj;
+			for (int p=up[j]; p<dp; p++) {
+				y[ui[p]]-=ux[p]*yj;
+			}
+		}
+		for (int k=0; k<n; k++) {
+			x.unsafeSet(q[k], y[k]);
+		}
+	}
+
+	private void checkFactored() {
+		if (!factored) throw new IllegalStateException("Numerical factorisation has not been computed");
+	}
+}
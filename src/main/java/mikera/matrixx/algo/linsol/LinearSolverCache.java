@@ -0,0 +1,287 @@
+package mikera.matrixx.algo.linsol;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.linsol.impl.ALinearSolver;
+import mikera.matrixx.algo.linsol.impl.CholLinearSolver;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Cache of factorised linear solvers, so that repeated solves against the same matrix reuse its
+ * LU, Cholesky or QR factorisation instead of decomposing it again.
+ *
+ * Entries are keyed on matrix identity through weak references, so the cache never keeps a caller's
+ * matrix alive: once a matrix is garbage collected its entry is dropped. Since matrices are mutable, a cached entry is only reused if
+ * the matrix is unchanged: either the caller supplies a version stamp that it changes whenever the
+ * matrix changes, or the cache keeps a copy of the matrix and compares contents, which costs O(m.n)
+ * rather than the O(n^3) of a new factorisation.
+ *
+ * The cache holds at most a fixed number of entries and evicts the least recently used one when
+ * full. It is thread safe, and factorisation happens outside the cache lock. Solvers returned by
+ * getSolver are shared with other users of the cache, so should not be used concurrently.
+ *
+ * @author Mike
+ */
+public class LinearSolverCache {
+	public static final int DEFAULT_CAPACITY=16;
+
+	/**
+	 * Capacity of the shared cache used by AMatrix.inverse(). Kept small since each entry holds a
+	 * copy of the matrix and its factorisation.
+	 */
+	public static final int SHARED_CAPACITY=4;
+
+	private static final LinearSolverCache SHARED=new LinearSolverCache(SHARED_CAPACITY);
+
+	private final int capacity;
+	private final LinkedHashMap<Key,CachedSolver> entries;
+	private final ReferenceQueue<AMatrix> collected=new ReferenceQueue<AMatrix>();
+	private long hits=0;
+	private long misses=0;
+	private long evictions=0;
+
+	public LinearSolverCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a cache holding up to the given number of factorised matrices
+	 */
+	@SuppressWarnings("serial")
+	public LinearSolverCache(int capacity) {
+		if (capacity<1) throw new IllegalArgumentException("Cache capacity must be positive");
+		this.capacity=capacity;
+		this.entries=new LinkedHashMap<Key,CachedSolver>(16,0.75f,true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,CachedSolver> eldest) {
+				if (size()<=LinearSolverCache.this.capacity) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the shared cache used by AMatrix.inverse(). Call clear() on it to release the
+	 * memory held by cached factorisations.
+	 */
+	public static LinearSolverCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns a solver with A already set, reusing a cached factorisation if the matrix is unchanged
+	 * since it was last seen. Contents are compared to detect changes.
+	 *
+	 * @throws IllegalArgumentException if the matrix cannot be factorised
+	 */
+	public ALinearSolver getSolver(AMatrix a) {
+		return lookup(a,false,0L).solver;
+	}
+
+	/**
+	 * Returns a solver with A already set, reusing a cached factorisation if the matrix has the same
+	 * version stamp as when it was last seen. The caller must change the version whenever the matrix
+	 * is modified; contents are not compared.
+	 *
+	 * @throws IllegalArgumentException if the matrix cannot be factorised
+	 */
+	public ALinearSolver getSolver(AMatrix a, long version) {
+		return lookup(a,true,version).solver;
+	}
+
+	private CachedSolver lookup(AMatrix a, boolean versioned, long version) {
+		Key key=new Key(a,null);
+		synchronized (this) {
+			purge();
+			CachedSolver e=entries.get(key);
+			if ((e!=null)&&e.matches(a,versioned,version)) {
+				hits++;
+				return e;
+			}
+			misses++;
+		}
+		CachedSolver e=new CachedSolver(a,versioned,version);
+		synchronized (this) {
+			entries.put(new Key(a,collected), e);
+		}
+		return e;
+	}
+
+	/**
+	 * Solves A.X = B using a cached factorisation of A where possible
+	 */
+	public Matrix solve(AMatrix a, AMatrix b) {
+		CachedSolver e=lookup(a,false,0L);
+		Matrix bm=Matrix.create(b);
+		Matrix x=Matrix.create(a.columnCount(), b.columnCount());
+		synchronized (e) {
+			e.solver.solve(bm, x);
+		}
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b using a cached factorisation of A where possible
+	 */
+	public Vector solve(AMatrix a, AVector b) {
+		CachedSolver e=lookup(a,false,0L);
+		Matrix bm=Matrix.create(b.length(), 1);
+		b.getElements(bm.data, 0);
+		Matrix x=Matrix.create(a.columnCount(), 1);
+		synchronized (e) {
+			e.solver.solve(bm, x);
+		}
+		return Vector.wrap(x.data);
+	}
+
+	/**
+	 * Computes the inverse of a square matrix using a cached factorisation where possible
+	 *
+	 * @throws IllegalArgumentException if the matrix is not square or is singular
+	 */
+	public Matrix inverse(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException("Matrix must be square for inverse!");
+		CachedSolver e=lookup(a,false,0L);
+		Matrix inv=Matrix.create(a.rowCount(), a.columnCount());
+		synchronized (e) {
+			if (e.solver.quality()==0.0) throw new IllegalArgumentException(ErrorMessages.singularMatrix());
+			e.solver.invert(inv);
+		}
+		return inv;
+	}
+
+	/**
+	 * Removes any cached factorisation of the given matrix
+	 */
+	public synchronized void invalidate(AMatrix a) {
+		purge();
+		entries.remove(new Key(a,null));
+	}
+
+	/**
+	 * Removes all cached factorisations. Counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		purge();
+		return entries.size();
+	}
+
+	/**
+	 * Removes entries whose matrices have been garbage collected
+	 */
+	private void purge() {
+		Reference<? extends AMatrix> ref;
+		while ((ref=collected.poll())!=null) {
+			entries.remove(ref);
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void resetCounters() {
+		hits=0;
+		misses=0;
+		evictions=0;
+	}
+
+	/**
+	 * Creates and factorises a solver for a matrix. Symmetric matrices with a positive diagonal try
+	 * Cholesky first, falling back to the factory choice if they are not positive definite.
+	 */
+	private static ALinearSolver createSolver(Matrix a) {
+		if (a.isSquare()&&hasPositiveDiagonal(a)&&a.isSymmetric()) {
+			ALinearSolver chol=new CholLinearSolver();
+			if (chol.setA(chol.modifiesA()?a.clone():a)) return chol;
+		}
+		ALinearSolver solver=LinearSolverFactory.linear(a);
+		if (!solver.setA(solver.modifiesA()?a.clone():a)) {
+			throw new IllegalArgumentException(ErrorMessages.singularMatrix());
+		}
+		return solver;
+	}
+
+	private static boolean hasPositiveDiagonal(Matrix a) {
+		int n=a.rowCount();
+		for (int i=0; i<n; i++) {
+			if (!(a.data[i*n+i]>0.0)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Weak identity based key, so that equal but distinct matrices have separate entries and cached
+	 * matrices can still be collected. Keys used only for lookup are not registered with a queue.
+	 */
+	private static final class Key extends WeakReference<AMatrix> {
+		private final int hash;
+
+		private Key(AMatrix matrix, ReferenceQueue<AMatrix> queue) {
+			super(matrix,queue);
+			this.hash=System.identityHashCode(matrix);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o==this) return true;
+			if (!(o instanceof Key)) return false;
+			AMatrix m=get();
+			return (m!=null)&&(m==((Key)o).get());
+		}
+	}
+
+	private static final class CachedSolver {
+		private final boolean versioned;
+		private final long version;
+		private final Matrix snapshot;
+		private final ALinearSolver solver;
+
+		private CachedSolver(AMatrix a, boolean versioned, long version) {
+			this.versioned=versioned;
+			this.version=version;
+			Matrix copy=Matrix.create(a);
+			this.solver=createSolver(copy);
+			// the solver does not modify its copy, so it doubles as the snapshot
+			this.snapshot=versioned?null:copy;
+		}
+
+		private boolean matches(AMatrix a, boolean versioned, long version) {
+			if (versioned) return this.versioned&&(version==this.version);
+			if (snapshot==null) return false;
+			if (a instanceof Matrix) return Arrays.equals(snapshot.data, ((Matrix)a).data);
+			return snapshot.equals(a);
+		}
+	}
+}
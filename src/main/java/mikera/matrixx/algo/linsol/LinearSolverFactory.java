@@ -0,0 +1,46 @@
+package mikera.matrixx.algo.linsol;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.algo.linsol.impl.ALinearSolver;
+import mikera.matrixx.algo.linsol.impl.BandedLinearSolver;
+import mikera.matrixx.algo.linsol.impl.BlockQRLinearSolver;
+import mikera.matrixx.algo.linsol.impl.LULinearSolver;
+
+/**
+ * Factory for choosing a linear solver suited to the structure of a matrix.
+ *
+ * @author Mike
+ */
+public class LinearSolverFactory {
+	/**
+	 * Banded solvers are chosen for square matrices where the total bandwidth (lower+upper) is at most
+	 * this fraction of the matrix size
+	 */
+	public static double BANDED_FRACTION=0.25;
+
+	/**
+	 * Creates a linear solver appropriate for the given matrix. The matrix is only examined, setA()
+	 * must still be called on the returned solver.
+	 *
+	 * - Non-square matrices use a least squares blocked QR solver
+	 * - Square matrices with small bandwidth use BandedLinearSolver
+	 * - Other square matrices use LU decomposition
+	 */
+	public static ALinearSolver linear(AMatrix a) {
+		if (!a.isSquare()) return new BlockQRLinearSolver();
+		if (isSmallBandwidth(a)) return new BandedLinearSolver();
+		return new LULinearSolver();
+	}
+
+	/**
+	 * Returns true if a square matrix has a small enough bandwidth for a banded solver to be preferable
+	 * to a dense one
+	 */
+	public static boolean isSmallBandwidth(AMatrix a) {
+		int n=a.rowCount();
+		int limit=(int)(n*BANDED_FRACTION);
+		int ku=a.upperBandwidth();
+		if (ku>limit) return false;
+		return (ku+a.lowerBandwidth())<=limit;
+	}
+}
@@ -18,7 +18,10 @@
 
 package mikera.matrixx.algo.linsol.impl;
 
+import java.util.Arrays;
+
 import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.TriangularSolver;
 import mikera.matrixx.algo.decompose.lu.impl.ALU;
 
 /**
@@ -47,7 +50,6 @@ public abstract class ALULinearSolver extends ALinearSolver {
 
   @Override
   public void invert(Matrix A_inv) {
-    double[] vv = decomp._getVV();
     Matrix LU = decomp.getLU();
 
     if (A_inv.columnCount() != LU.columnCount()
@@ -57,17 +59,41 @@ public abstract class ALULinearSolver extends ALinearSolver {
     int n = A.columnCount();
 
     double dataInv[] = A_inv.data;
+    Arrays.fill(dataInv, 0, n * n, 0.0);
+    for (int i = 0; i < n; i++)
+      dataInv[i * n + i] = 1;
+    solveInPlace(dataInv, n);
+  }
 
-    for (int j = 0; j < n; j++) {
-      // don't need to change inv into an identity matrix before hand
-      for (int i = 0; i < n; i++)
-        vv[i] = i == j ? 1 : 0;
-      decomp._solveVectorInternal(vv);
-      // for( int i = 0; i < n; i++ ) dataInv[i* n +j] = vv[i];
-      int index = j;
-      for (int i = 0; i < n; i++, index += n)
-        dataInv[index] = vv[i];
+  /**
+   * Solves L*U*X = P*B for all columns of B at once, overwriting B with X.
+   * The row interchanges are applied to B first, then blocked forward and
+   * backward substitution is performed with the LU factors.
+   * 
+   * @param dataB Row major n by nc matrix. Modified.
+   * @param nc Number of columns in B.
+   */
+  protected void solveInPlace(double[] dataB, int nc) {
+    Matrix LU = decomp.getLU();
+    int n = LU.columnCount();
+    int[] indx = decomp.getIndx();
+
+    // apply the same sequence of row swaps as the decomposition
+    for (int i = 0; i < n; i++) {
+      int ip = indx[i];
+      if (ip == i)
+        continue;
+      int ri = i * nc;
+      int rp = ip * nc;
+      for (int j = 0; j < nc; j++) {
+        double tmp = dataB[ri + j];
+        dataB[ri + j] = dataB[rp + j];
+        dataB[rp + j] = tmp;
+      }
     }
+
+    TriangularSolver.solveLowerMulti(LU, true, dataB, n, nc);
+    TriangularSolver.solveUpperMulti(LU, dataB, n, nc);
   }
 
   /**
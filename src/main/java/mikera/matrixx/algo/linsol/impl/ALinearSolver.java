@@ -52,6 +52,15 @@ public abstract class ALinearSolver implements ILinearSolver {
         this.numCols = A.columnCount();
     }
 
+    /**
+     * Solves for X in the linear system, A*X=B, returning X as a new matrix
+     */
+    public Matrix solve(Matrix B) {
+        Matrix X = Matrix.create(numCols, B.columnCount());
+        solve(B, X);
+        return X;
+    }
+
     @Override
     public void invert(Matrix A_inv) {
         InvertUsingSolve.invert(this, A, A_inv);
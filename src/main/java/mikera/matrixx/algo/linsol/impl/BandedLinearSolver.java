@@ -0,0 +1,162 @@
+package mikera.matrixx.algo.linsol.impl;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.banded.BandedCholesky;
+import mikera.matrixx.algo.decompose.banded.BandedLU;
+import mikera.matrixx.algo.decompose.banded.TridiagonalSolver;
+
+/**
+ * Linear solver for square banded matrices, working directly on band storage.
+ *
+ * The decomposition is chosen from the structure of A:
+ * - Diagonally dominant tridiagonal matrices use the Thomas algorithm
+ * - Symmetric matrices use banded Cholesky, falling back to LU if A is not positive definite
+ * - Other matrices use banded LU with partial pivoting
+ *
+ * setA(AMatrix) accepts any matrix type, and reads only the bands, so a BandedMatrix is never densified.
+ *
+ * @author Mike
+ */
+public class BandedLinearSolver extends ALinearSolver {
+	private int n;
+	private TridiagonalSolver tridiagonal;
+	private BandedCholesky cholesky;
+	private BandedLU lu;
+
+	@Override
+	public boolean setA(Matrix A) {
+		return setA((AMatrix)A);
+	}
+
+	/**
+	 * Decomposes a square banded matrix of any type. Returns false if the matrix is singular.
+	 */
+	public boolean setA(AMatrix A) {
+		if (!A.isSquare()) throw new IllegalArgumentException("Banded solver requires a square matrix");
+		n=A.rowCount();
+		numRows=n;
+		numCols=n;
+		tridiagonal=null;
+		cholesky=null;
+		lu=null;
+		int kl=A.lowerBandwidth();
+		int ku=A.upperBandwidth();
+		try {
+			if ((kl<=1)&&(ku<=1)&&isDiagonallyDominant(A)) {
+				tridiagonal=TridiagonalSolver.decompose(A);
+				return true;
+			}
+			if ((kl==ku)&&isBandSymmetric(A, kl)) {
+				try {
+					cholesky=BandedCholesky.decompose(A, kl);
+					return true;
+				} catch (IllegalArgumentException e) {
+					// not positive definite, so use LU instead
+				}
+			}
+			lu=BandedLU.decompose(A, kl, ku);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static boolean isBandSymmetric(AMatrix a, int k) {
+		for (int t=1; t<=k; t++) {
+			if (!a.getBand(t).equals(a.getBand(-t))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isDiagonallyDominant(AMatrix a) {
+		int n=a.rowCount();
+		double[] d=a.getBand(0).toDoubleArray();
+		double[] off=new double[n];
+		if (n>1) {
+			double[] lower=a.getBand(-1).toDoubleArray();
+			double[] upper=a.getBand(1).toDoubleArray();
+			for (int i=0; i<n-1; i++) {
+				off[i+1]+=Math.abs(lower[i]);
+				off[i]+=Math.abs(upper[i]);
+			}
+		}
+		for (int i=0; i<n; i++) {
+			if (Math.abs(d[i])<=off[i]) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public double quality() {
+		double[] pivots=new double[n];
+		for (int i=0; i<n; i++) {
+			if (tridiagonal!=null) {
+				pivots[i]=tridiagonal.getPivotValue(i);
+			} else if (cholesky!=null) {
+				double d=cholesky.getDiagonalValue(i);
+				pivots[i]=d*d;
+			} else {
+				pivots[i]=lu.getPivotValue(i);
+			}
+		}
+		double max=0.0;
+		for (int i=0; i<n; i++) max=Math.max(max, Math.abs(pivots[i]));
+		if (max==0.0) return 0.0;
+		double quality=1.0;
+		for (int i=0; i<n; i++) {
+			quality*=pivots[i]/max;
+		}
+		return Math.abs(quality);
+	}
+
+	private void solveInPlace(double[] y) {
+		if (tridiagonal!=null) {
+			tridiagonal.solveInPlace(y, 0);
+		} else if (cholesky!=null) {
+			cholesky.solveInPlace(y, 0);
+		} else {
+			lu.solveInPlace(y, 0);
+		}
+	}
+
+	@Override
+	public void solve(Matrix B, Matrix X) {
+		if ((B.rowCount()!=n)||(X.rowCount()!=n)||(B.columnCount()!=X.columnCount())) {
+			throw new IllegalArgumentException("Unexpected matrix dimensions");
+		}
+		int nc=B.columnCount();
+		double[] y=new double[n];
+		for (int j=0; j<nc; j++) {
+			B.copyColumnTo(j, y, 0);
+			solveInPlace(y);
+			X.getColumnView(j).setElements(y);
+		}
+	}
+
+	@Override
+	public void invert(Matrix A_inv) {
+		if ((A_inv.rowCount()!=n)||(A_inv.columnCount()!=n)) {
+			throw new IllegalArgumentException("Unexpected matrix dimensions");
+		}
+		double[] y=new double[n];
+		for (int j=0; j<n; j++) {
+			Arrays.fill(y, 0.0);
+			y[j]=1.0;
+			solveInPlace(y);
+			A_inv.getColumnView(j).setElements(y);
+		}
+	}
+
+	@Override
+	public boolean modifiesA() {
+		return false;
+	}
+
+	@Override
+	public boolean modifiesB() {
+		return false;
+	}
+}
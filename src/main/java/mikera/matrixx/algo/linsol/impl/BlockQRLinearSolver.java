@@ -0,0 +1,70 @@
+package mikera.matrixx.algo.linsol.impl;
+
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.TriangularSolver;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
+import mikera.matrixx.ops.SpecializedOps;
+
+/**
+ * Least squares linear solver using a blocked Householder QR decomposition.
+ *
+ * Solves A.X = B (or minimises ||A.X - B|| when A has more rows than columns) by computing
+ * Q^T.B with blocked reflector updates and then back-substituting against R. All columns of B
+ * are processed together.
+ *
+ * @author Mike
+ */
+public class BlockQRLinearSolver extends ALinearSolver {
+	private final BlockHouseholderQR decomposer;
+	private Matrix R;
+
+	public BlockQRLinearSolver() {
+		this(new BlockHouseholderQR());
+	}
+
+	public BlockQRLinearSolver(BlockHouseholderQR decomposer) {
+		this.decomposer=decomposer;
+	}
+
+	@Override
+	public boolean setA(Matrix A) {
+		if (A.rowCount()<A.columnCount()) throw new IllegalArgumentException("Least squares solver requires rows >= columns");
+		_setA(A);
+		if (!decomposer.decompose(A)) return false;
+		R=decomposer.getR(true);
+		return true;
+	}
+
+	@Override
+	public double quality() {
+		return SpecializedOps.qualityTriangular(true, R);
+	}
+
+	@Override
+	public void solve(Matrix B, Matrix X) {
+		if (X.rowCount()!=numCols) {
+			throw new IllegalArgumentException("Unexpected dimensions for X: X rows = "+X.rowCount()+" expected = "+numCols);
+		} else if ((B.rowCount()!=numRows)||(B.columnCount()!=X.columnCount())) {
+			throw new IllegalArgumentException("Unexpected dimensions for B");
+		}
+		int nc=B.columnCount();
+		Matrix c=B.clone();
+		decomposer.applyQTranspose(c);
+
+		// blocked back substitution R.X = (Q^T.B)[0..n)
+		double[] cd=c.data;
+		int n=numCols;
+		TriangularSolver.solveUpperMulti(R, cd, n, nc);
+		System.arraycopy(cd, 0, X.data, 0, n*nc);
+	}
+
+	@Override
+	public boolean modifiesA() {
+		return false;
+	}
+
+	@Override
+	public boolean modifiesB() {
+		return false;
+	}
+}
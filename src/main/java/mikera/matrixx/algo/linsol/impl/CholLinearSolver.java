@@ -21,6 +21,8 @@ package mikera.matrixx.algo.linsol.impl;
 import mikera.matrixx.Matrix;
 import mikera.matrixx.algo.decompose.TriangularSolver;
 import mikera.matrixx.algo.decompose.chol.impl.ACholesky;
+import mikera.matrixx.algo.decompose.chol.impl.BlockCholesky;
+import mikera.matrixx.algo.decompose.chol.impl.InnerCholesky;
 import mikera.matrixx.ops.SpecializedOps;
 
 /**
@@ -30,9 +32,19 @@ public class CholLinearSolver extends ALinearSolver {
 
   ACholesky decomp;
   int n;
-  double vv[];
   double t[];
 
+  // if true the decomposition is chosen from the size of A
+  boolean autoSelect = false;
+
+  /**
+   * Creates a solver that picks a blocked Cholesky decomposition for large
+   * matrices and an inner product decomposition for small ones.
+   */
+  public CholLinearSolver() {
+    this.autoSelect = true;
+  }
+
   public CholLinearSolver(ACholesky decomp) {
     this.decomp = decomp;
   }
@@ -41,9 +53,15 @@ public class CholLinearSolver extends ALinearSolver {
   public boolean setA(Matrix A) {
     _setA(A);
 
+    if (autoSelect) {
+      boolean large = A.rowCount() >= BlockCholesky.BLOCKED_THRESHOLD;
+      if (decomp == null || large != (decomp instanceof BlockCholesky)) {
+        decomp = large ? new BlockCholesky(true) : new InnerCholesky(true);
+      }
+    }
+
     if (decomp.decompose(A)) {
       n = A.columnCount();
-      vv = decomp._getVV();
       t = decomp.getT().data;
       return true;
     } else {
@@ -74,40 +92,29 @@ public class CholLinearSolver extends ALinearSolver {
    */
   @Override
   public void solve(Matrix B, Matrix X) {
-    if (B.columnCount() != X.columnCount() && B.rowCount() != n
-        && X.rowCount() != n) {
+    if (B.columnCount() != X.columnCount() || B.rowCount() != n
+        || X.rowCount() != n) {
       throw new IllegalArgumentException("Unexpected matrix size");
     }
 
     int numCols = B.columnCount();
 
-    double dataB[] = B.data;
-    double dataX[] = X.data;
-
+    // all columns are solved together using blocked triangular solves
+    if (X.data != B.data) {
+      System.arraycopy(B.data, 0, X.data, 0, n * numCols);
+    }
+    Matrix T = decomp.getT();
     if (decomp.isLower()) {
-      for (int j = 0; j < numCols; j++) {
-        for (int i = 0; i < n; i++)
-          vv[i] = dataB[i * numCols + j];
-        solveInternalL();
-        for (int i = 0; i < n; i++)
-          dataX[i * numCols + j] = vv[i];
-      }
+      // solve L*Y=B then L^T*X=Y
+      TriangularSolver.solveLowerMulti(T, false, X.data, n, numCols);
+      TriangularSolver.solveTranLowerMulti(T, X.data, n, numCols);
     } else {
-      throw new RuntimeException("Implement");
+      // solve R^T*Y=B then R*X=Y
+      TriangularSolver.solveTranUpperMulti(T, X.data, n, numCols);
+      TriangularSolver.solveUpperMulti(T, X.data, n, numCols);
     }
   }
 
-  /**
-   * Used internally to find the solution to a single column vector.
-   */
-  private void solveInternalL() {
-    // solve L*y=b storing y in x
-    TriangularSolver.solveL(t, vv, n);
-
-    // solve L^T*x=y
-    TriangularSolver.solveTranL(t, vv, n);
-  }
-
   /**
    * Sets the matrix 'inv' equal to the inverse of the matrix that was
    * decomposed.
@@ -169,7 +176,8 @@ public class CholLinearSolver extends ALinearSolver {
 
   @Override
   public boolean modifiesA() {
-    return decomp.inputModified();
+    // all Cholesky decompositions work in place
+    return decomp == null || decomp.inputModified();
   }
 
   @Override
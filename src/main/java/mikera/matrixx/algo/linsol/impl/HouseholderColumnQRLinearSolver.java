@@ -49,8 +49,6 @@ public class HouseholderColumnQRLinearSolver extends ALinearSolver {
   protected int maxRows = -1;
   protected int maxCols = -1;
   private HouseholderColumnQR decomposer;
-  private Matrix a = Matrix.create(1, 1);
-  private Matrix temp = Matrix.create(1, 1);
   private double[][] QR; // a column major QR matrix
   private Matrix R = Matrix.create(1, 1);
   private double gammas[];
@@ -78,8 +76,6 @@ public class HouseholderColumnQRLinearSolver extends ALinearSolver {
       setMaxSize(A.rowCount(), A.columnCount());
 
     R.reshape(A.columnCount(), A.columnCount());
-    a.reshape(A.rowCount(), 1);
-    temp.reshape(A.rowCount(), 1);
 
     _setA(A);
     if (!decomposer.decompose(A))
@@ -87,7 +83,7 @@ public class HouseholderColumnQRLinearSolver extends ALinearSolver {
 
     gammas = decomposer.getGammas();
     QR = decomposer.getQR();
-    decomposer.getR(true);
+    R = decomposer.getR(true);
     return true;
   }
 
@@ -113,37 +109,23 @@ public class HouseholderColumnQRLinearSolver extends ALinearSolver {
 
     int BnumCols = B.columnCount();
 
-    // solve each column one by one
-    for (int colB = 0; colB < BnumCols; colB++) {
-
-      // make a copy of this column in the vector
-      for (int i = 0; i < numRows; i++) {
-        a.data[i] = B.data[i * BnumCols + colB];
-      }
-
-      // Solve Qa=b
-      // a = Q'b
-      // a = Q_{n-1}...Q_2*Q_1*b
-      //
-      // Q_n*b = (I-gamma*u*u^T)*b = b - u*(gamma*U^T*b)
-      for (int n = 0; n < numCols; n++) {
-        double[] u = QR[n];
-
-        double vv = u[n];
-        u[n] = 1;
-        QrHelperFunctions.rank1UpdateMultR(a, u, gammas[n], 0, n, numRows,
-            temp.data);
-        u[n] = vv;
-      }
-
-      // solve for Rx = b using the standard upper triangular solver
-      TriangularSolver.solveU(R.data, a.data, numCols);
-
-      // save the results
-      for (int i = 0; i < numCols; i++) {
-        X.data[i * X.columnCount() + colB] = a.data[i];
-      }
+    // apply Q^T = Q_{n-1}...Q_2*Q_1 to all columns of a copy of B, where
+    // Q_n*b = (I-gamma*u*u^T)*b = b - u*(gamma*U^T*b)
+    Matrix c = B.clone();
+    double[] work = new double[BnumCols];
+    for (int n = 0; n < numCols; n++) {
+      double[] u = QR[n];
+
+      double vv = u[n];
+      u[n] = 1;
+      QrHelperFunctions.rank1UpdateMultR(c, u, gammas[n], 0, n, numRows,
+          work);
+      u[n] = vv;
     }
+
+    // solve R*X = (Q^T*B)[0..n) using blocked triangular solves
+    TriangularSolver.solveUpperMulti(R, c.data, numCols, BnumCols);
+    System.arraycopy(c.data, 0, X.data, 0, numCols * BnumCols);
   }
 
   @Override
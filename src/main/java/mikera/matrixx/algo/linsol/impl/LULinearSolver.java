@@ -20,10 +20,12 @@ package mikera.matrixx.algo.linsol.impl;
 
 import mikera.matrixx.Matrix;
 import mikera.matrixx.algo.decompose.lu.impl.ALU;
+import mikera.matrixx.algo.decompose.lu.impl.BlockedLU;
 
 /**
- * For each column in the B matrix it makes a copy, which is then solved for and
- * writen into X. By making a copy of the column cpu cache issues are reduced.
+ * Solves for all columns of the B matrix at once. The row interchanges are
+ * applied to a copy of B, which is then solved with blocked triangular solves
+ * against the L and U factors.
  * 
  * @author Peter Abeles
  */
@@ -31,6 +33,13 @@ public class LULinearSolver extends ALULinearSolver {
 
   boolean doImprove = false;
 
+  /**
+   * Creates a solver using a cache-blocked LU decomposition
+   */
+  public LULinearSolver() {
+    this(new BlockedLU());
+  }
+
   public LULinearSolver(ALU decomp) {
     super(decomp);
   }
@@ -42,32 +51,18 @@ public class LULinearSolver extends ALULinearSolver {
 
   @Override
   public void solve(Matrix b, Matrix x) {
-    if (b.columnCount() != x.columnCount() && b.rowCount() != numCols
-        && x.rowCount() != numCols) {
+    if (b.columnCount() != x.columnCount() || b.rowCount() != numCols
+        || x.rowCount() != numCols) {
       throw new IllegalArgumentException("Unexpected matrix size");
     }
 
     int numCols = b.columnCount();
 
-    double dataB[] = b.data;
-    double dataX[] = x.data;
-
-    double[] vv = decomp._getVV();
-
-    // for( int j = 0; j < numCols; j++ ) {
-    // for( int i = 0; i < this.numCols; i++ ) vv[i] = dataB[i*numCols+j];
-    // decomp._solveVectorInternal(vv);
-    // for( int i = 0; i < this.numCols; i++ ) dataX[i*numCols+j] = vv[i];
-    // }
-    for (int j = 0; j < numCols; j++) {
-      int index = j;
-      for (int i = 0; i < this.numCols; i++, index += numCols)
-        vv[i] = dataB[index];
-      decomp._solveVectorInternal(vv);
-      index = j;
-      for (int i = 0; i < this.numCols; i++, index += numCols)
-        dataX[index] = vv[i];
+    // all columns are solved together using blocked triangular solves
+    if (x.data != b.data) {
+      System.arraycopy(b.data, 0, x.data, 0, this.numCols * numCols);
     }
+    solveInPlace(x.data, numCols);
 
     if (doImprove) {
       improveSol(b, x);
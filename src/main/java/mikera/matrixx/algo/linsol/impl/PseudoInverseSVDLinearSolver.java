@@ -125,6 +125,15 @@ public class PseudoInverseSVDLinearSolver implements ILinearSolver {
     CommonOps.mult(pinv, b, x);
   }
 
+  /**
+   * Solves for X in the linear system, A*X=B, returning X as a new matrix
+   */
+  public Matrix solve(Matrix b) {
+    Matrix x = Matrix.create(pinv.rowCount(), b.columnCount());
+    solve(b, x);
+    return x;
+  }
+
   @Override
   public void invert(Matrix A_inv) {
     A_inv.set(pinv);
@@ -35,6 +35,8 @@ public class SafeLinearSolver implements ILinearSolver {
   // local copies of input matrices that can be modified.
   private Matrix A;
   private Matrix B;
+  // number of columns in the last A, which is the number of rows in X
+  private int numCols;
 
   /**
    * 
@@ -46,6 +48,7 @@ public class SafeLinearSolver implements ILinearSolver {
 
   @Override
   public boolean setA(Matrix A) {
+    numCols = A.columnCount();
 
     if (alg.modifiesA()) {
       if (this.A == null) {
@@ -86,6 +89,16 @@ public class SafeLinearSolver implements ILinearSolver {
     alg.solve(B, X);
   }
 
+  /**
+   * Solves for X in the linear system, A*X=B, returning X as a new matrix. B is
+   * not modified.
+   */
+  public Matrix solve(Matrix B) {
+    Matrix X = Matrix.create(numCols, B.columnCount());
+    solve(B, X);
+    return X;
+  }
+
   @Override
   public void invert(Matrix A_inv) {
     alg.invert(A_inv);
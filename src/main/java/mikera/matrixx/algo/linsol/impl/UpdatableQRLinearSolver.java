@@ -0,0 +1,240 @@
+package mikera.matrixx.algo.linsol.impl;
+
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.TriangularSolver;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
+import mikera.matrixx.algo.decompose.qr.impl.QRUpdate;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.ops.CommonOps;
+import mikera.matrixx.ops.SpecializedOps;
+import mikera.vectorz.AVector;
+
+/**
+ * Least squares linear solver whose QR factorisation can be updated as rows and columns of A are
+ * added or removed, for example in a sliding window of observations.
+ *
+ * By default only the n x n factor R and C = Q^T.B for the right hand sides given to setA(A,B)
+ * are kept. Adding or removing a row then costs O(n^2+n.p) using {@link QRUpdate}, however many
+ * rows A has, and getSolution() returns the updated least squares solution.
+ *
+ * With keepQ, the full factors Q (m x m) and R (m x n) are kept instead. This allows solve(B,X) for
+ * any B and insertion of columns, but each row change costs O(m^2) time and memory, which is only
+ * worthwhile for small m.
+ *
+ * A itself is not kept in either case, so getA() returns null.
+ *
+ * @author Mike
+ */
+public class UpdatableQRLinearSolver extends ALinearSolver {
+	private final boolean keepQ;
+	private Matrix Q;
+	private Matrix R;
+	private Matrix C;
+
+	/**
+	 * Creates a solver keeping only R and Q^T.B
+	 */
+	public UpdatableQRLinearSolver() {
+		this(false);
+	}
+
+	/**
+	 * Creates a solver, keeping the full m x m factor Q if keepQ is true
+	 */
+	public UpdatableQRLinearSolver(boolean keepQ) {
+		this.keepQ=keepQ;
+	}
+
+	@Override
+	public boolean setA(Matrix A) {
+		if (keepQ) {
+			BlockHouseholderQR qr=new BlockHouseholderQR();
+			if (!qr.decompose(A)) return false;
+			Q=qr.getQ(false);
+			R=qr.getR(false);
+			setSize(A.rowCount(), A.columnCount());
+			return true;
+		}
+		return setA(A, Matrix.create(A.rowCount(), 0));
+	}
+
+	/**
+	 * Factorises A and computes Q^T.B for the right hand sides B, so that getSolution() returns the
+	 * least squares solution of A.X = B as rows are added and removed. Only R and Q^T.B are kept.
+	 */
+	public boolean setA(Matrix A, Matrix B) {
+		if (keepQ) throw new UnsupportedOperationException("Right hand sides are not tracked when Q is kept");
+		int m=A.rowCount();
+		int n=A.columnCount();
+		if (B.rowCount()!=m) throw new IllegalArgumentException("Unexpected dimensions for B");
+		int p=B.columnCount();
+		BlockHouseholderQR qr=new BlockHouseholderQR();
+		if (!qr.decompose(A)) return false;
+
+		// R and C have n rows, with any rows beyond m left as zero
+		int k=Math.min(m, n);
+		R=Matrix.create(n, n);
+		System.arraycopy(qr.getR(true).data, 0, R.data, 0, k*n);
+		Matrix qtb=B.clone();
+		qr.applyQTranspose(qtb);
+		C=Matrix.create(n, p);
+		System.arraycopy(qtb.data, 0, C.data, 0, k*p);
+		setSize(m, n);
+		return true;
+	}
+
+	private void setSize(int rows, int cols) {
+		numRows=rows;
+		numCols=cols;
+	}
+
+	/**
+	 * Adds a row to A with the matching row of B, updating R and Q^T.B in O(n^2+n.p)
+	 */
+	public void addRow(AVector row, AVector rhs) {
+		checkThin();
+		QRUpdate.addRowThin(R, C, row, rhs);
+		numRows++;
+	}
+
+	/**
+	 * Removes a row of A with the matching row of B, updating R and Q^T.B in O(n^2+n.p). The row
+	 * values must be given since A is not kept.
+	 *
+	 * @throws IllegalArgumentException if A would lose full column rank
+	 */
+	public void removeRow(AVector row, AVector rhs) {
+		checkThin();
+		if (!QRUpdate.removeRowThin(R, C, row, rhs)) {
+			throw new IllegalArgumentException("Removing the row would leave A rank deficient");
+		}
+		numRows--;
+	}
+
+	/**
+	 * Inserts a row into A at the given index, updating the full factors in O(m^2)
+	 */
+	public void addRow(int index, AVector row) {
+		checkFull();
+		setFactors(QRUpdate.addRow(Q, R, index, row));
+		numRows++;
+	}
+
+	/**
+	 * Removes the row of A at the given index, updating the full factors in O(m^2)
+	 */
+	public void removeRow(int index) {
+		checkFull();
+		setFactors(QRUpdate.removeRow(Q, R, index));
+		numRows--;
+	}
+
+	/**
+	 * Inserts a column into A at the given index, updating the full factors. Requires Q to be kept.
+	 */
+	public void addColumn(int index, AVector column) {
+		checkFull();
+		setFactors(QRUpdate.addColumn(Q, R, index, column));
+		numCols++;
+	}
+
+	/**
+	 * Removes the column of A at the given index, updating the factors
+	 */
+	public void removeColumn(int index) {
+		Matrix[] f=keepQ?QRUpdate.removeColumn(Q, R, index):QRUpdate.removeColumnThin(R, C, index);
+		if (keepQ) {
+			setFactors(f);
+		} else {
+			R=f[0];
+			C=f[1];
+		}
+		numCols--;
+	}
+
+	private void setFactors(Matrix[] qr) {
+		Q=qr[0];
+		R=qr[1];
+	}
+
+	private void checkFull() {
+		if (!keepQ) throw new UnsupportedOperationException("Operation requires a solver created with keepQ");
+	}
+
+	private void checkThin() {
+		if (keepQ) throw new UnsupportedOperationException("Operation requires a solver created without keepQ");
+	}
+
+	/**
+	 * Returns the least squares solution X (n x p) for the right hand sides given to setA(A,B), as
+	 * updated by any later row and column changes
+	 */
+	public Matrix getSolution() {
+		checkThin();
+		int n=numCols;
+		int p=C.columnCount();
+		Matrix X=C.clone();
+		if (p>0) TriangularSolver.solveUpperMulti(R, X.data, n, p);
+		return X;
+	}
+
+	/**
+	 * Returns the current orthogonal factor Q (m x m), or null if Q is not kept
+	 */
+	public Matrix getQ() {
+		return Q;
+	}
+
+	/**
+	 * Returns the current upper triangular factor R, which is m x n if Q is kept and n x n otherwise
+	 */
+	public Matrix getR() {
+		return R;
+	}
+
+	@Override
+	public double quality() {
+		return SpecializedOps.qualityTriangular(true, R);
+	}
+
+	@Override
+	public void solve(Matrix B, Matrix X) {
+		if (!keepQ) throw new UnsupportedOperationException("Solving for a new B requires a solver created with keepQ; use getSolution()");
+		if (numRows<numCols) throw new IllegalArgumentException("Least squares solver requires rows >= columns");
+		if (X.rowCount()!=numCols) {
+			throw new IllegalArgumentException("Unexpected dimensions for X: X rows = "+X.rowCount()+" expected = "+numCols);
+		} else if ((B.rowCount()!=numRows)||(B.columnCount()!=X.columnCount())) {
+			throw new IllegalArgumentException("Unexpected dimensions for B");
+		}
+		int m=numRows;
+		int n=numCols;
+		int nc=B.columnCount();
+
+		// C = (Q^T.B)[0..n)
+		double[] cd=new double[n*nc];
+		PackedMatrixMult.gemm(n, nc, m, 1.0, Q.getTransposeView(), 0, 0, B, 0, 0, 0.0, cd, 0, nc);
+
+		// blocked back substitution R.X = C
+		TriangularSolver.solveUpperMulti(R, cd, n, nc);
+		System.arraycopy(cd, 0, X.data, 0, n*nc);
+	}
+
+	@Override
+	public void invert(Matrix A_inv) {
+		if ((numRows!=numCols)||(A_inv.rowCount()!=numRows)||(A_inv.columnCount()!=numCols)) {
+			throw new IllegalArgumentException("A and A_inv must be square with the same dimensions");
+		}
+		CommonOps.setIdentity(A_inv);
+		solve(A_inv, A_inv);
+	}
+
+	@Override
+	public boolean modifiesA() {
+		return false;
+	}
+
+	@Override
+	public boolean modifiesB() {
+		return false;
+	}
+}
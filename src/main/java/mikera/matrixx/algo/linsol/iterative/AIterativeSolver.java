@@ -0,0 +1,170 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Abstract base class for matrix-free iterative solvers of the linear system A.x = b
+ *
+ * The matrix is only accessed via AMatrix.transform(AVector, AVector), so any matrix type with an efficient
+ * transform (e.g. CompressedSparseRowMatrix) can be used without ever being densified.
+ *
+ * An optional IPreconditioner can be supplied to accelerate convergence. Preconditioning does not change
+ * the convergence criterion, which is always based on the residual of the original system.
+ *
+ * A solve stops when the residual norm ||b - A.x|| falls to tolerance * ||b||, or when the
+ * iteration cap is reached. Statistics for the most recent solve are available via getIterationCount(),
+ * getResidualNorm() and isConverged().
+ *
+ * Solver instances hold per-solve state and are not thread safe.
+ *
+ * @author Mike
+ */
+public abstract class AIterativeSolver {
+	protected double tolerance=1e-10;
+	protected int maxIterations=1000;
+	protected int restart=0;
+	protected IPreconditioner preconditioner=null;
+
+	protected int iterations;
+	protected double residualNorm;
+	protected boolean converged;
+
+	/**
+	 * Sets the relative residual tolerance used as the convergence criterion
+	 */
+	public void setTolerance(double tolerance) {
+		if (!(tolerance>=0.0)) throw new IllegalArgumentException("Tolerance must be non-negative: "+tolerance);
+		this.tolerance=tolerance;
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Sets the maximum number of iterations (matrix-vector products of the main recurrence) per solve
+	 */
+	public void setMaxIterations(int maxIterations) {
+		if (maxIterations<0) throw new IllegalArgumentException("Iteration cap must be non-negative: "+maxIterations);
+		this.maxIterations=maxIterations;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Sets the restart interval. After this many iterations the solver restarts from the current
+	 * iterate using the true residual. Zero means no periodic restarts.
+	 */
+	public void setRestart(int restart) {
+		if (restart<0) throw new IllegalArgumentException("Restart interval must be non-negative: "+restart);
+		this.restart=restart;
+	}
+
+	public int getRestart() {
+		return restart;
+	}
+
+	/**
+	 * Sets the preconditioner used by subsequent solves, or null for none
+	 */
+	public void setPreconditioner(IPreconditioner preconditioner) {
+		this.preconditioner=preconditioner;
+	}
+
+	public IPreconditioner getPreconditioner() {
+		return preconditioner;
+	}
+
+	/**
+	 * Returns the number of iterations performed by the most recent solve
+	 */
+	public int getIterationCount() {
+		return iterations;
+	}
+
+	/**
+	 * Returns the (absolute) residual norm at the end of the most recent solve
+	 */
+	public double getResidualNorm() {
+		return residualNorm;
+	}
+
+	/**
+	 * Returns true if the most recent solve reached the requested tolerance
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * Solves A.x = b starting from a zero initial guess, returning a new solution vector.
+	 * Use isConverged() to check whether the requested tolerance was reached.
+	 */
+	public Vector solve(AMatrix a, AVector b) {
+		Vector x=Vector.createLength(a.columnCount());
+		solve(a,b,x);
+		return x;
+	}
+
+	/**
+	 * Solves A.x = b, using the contents of x as the initial guess and storing the solution in x.
+	 *
+	 * @return true if the solve converged to the requested tolerance
+	 */
+	public boolean solve(AMatrix a, AVector b, AVector x) {
+		int n=a.rowCount();
+		if (n!=a.columnCount()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		if (b.length()!=n) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		if (x.length()!=n) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, x));
+		if ((preconditioner!=null)&&(preconditioner.dimension()!=n)) throw new IllegalArgumentException("Preconditioner has wrong dimension: "+preconditioner.dimension());
+
+		iterations=0;
+		converged=false;
+		Vector bv=Vector.create(b);
+		Vector xv=(x instanceof Vector)?(Vector)x:Vector.create(x);
+
+		double bnorm=bv.magnitude();
+		if (bnorm==0.0) {
+			xv.fill(0.0);
+			residualNorm=0.0;
+			converged=true;
+		} else {
+			converged=doSolve(a, bv, xv, tolerance*bnorm);
+		}
+		if (xv!=x) x.set(xv);
+		return converged;
+	}
+
+	/**
+	 * Runs the iteration. Implementations should update iterations and residualNorm as they proceed.
+	 *
+	 * @param threshold Absolute residual norm at which the solve is considered converged
+	 * @return true if converged
+	 */
+	protected abstract boolean doSolve(AMatrix a, Vector b, Vector x, double threshold);
+
+	/**
+	 * Applies the preconditioner, z = M^-1 r. With no preconditioner z is set to a copy of r.
+	 */
+	protected void precondition(Vector r, Vector z) {
+		if (preconditioner==null) {
+			z.set(r);
+		} else {
+			preconditioner.apply(r, z);
+		}
+	}
+
+	/**
+	 * Computes the true residual r = b - A.x
+	 */
+	protected static void residual(AMatrix a, Vector b, Vector x, Vector r) {
+		a.transform(x, r);
+		r.multiply(-1.0);
+		r.add(b);
+	}
+}
@@ -0,0 +1,66 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.impl.CompressedSparseRowMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Abstract base class for preconditioners built from the sparsity pattern of the system matrix.
+ *
+ * The matrix is copied into compressed sparse row form, which implementations may overwrite with
+ * factor values. Any matrix type is accepted, but sparse types (e.g. SparseRowMatrix, CompressedSparseRowMatrix)
+ * avoid examining every element. Every diagonal element must be stored and non-zero.
+ *
+ * @author Mike
+ */
+public abstract class ASparsePreconditioner implements IPreconditioner {
+	protected final int n;
+	protected final int[] pointers;
+	protected final int[] indexes;
+	protected final double[] values;
+
+	/**
+	 * Position of each diagonal element in the index / value arrays
+	 */
+	protected final int[] diagonal;
+
+	protected ASparsePreconditioner(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		CompressedSparseRowMatrix m=CompressedSparseRowMatrix.create(a);
+		n=m.rowCount();
+		pointers=m.getRowPointers();
+		indexes=m.getColumnIndexes();
+		values=m.getValues();
+		diagonal=new int[n];
+		for (int i=0; i<n; i++) {
+			int k=Arrays.binarySearch(indexes, pointers[i], pointers[i+1], i);
+			if ((k<0)||(values[k]==0.0)) throw new IllegalArgumentException("Zero diagonal element at position "+i);
+			diagonal[i]=k;
+		}
+	}
+
+	@Override
+	public void apply(AVector r, AVector z) {
+		if ((r instanceof Vector)&&(z instanceof Vector)) {
+			apply(((Vector)r).getArray(),((Vector)z).getArray());
+			return;
+		}
+		double[] result=new double[n];
+		apply(r.toDoubleArray(),result);
+		z.setElements(result);
+	}
+
+	/**
+	 * Computes z = M^-1 r on arrays of length dimension()
+	 */
+	protected abstract void apply(double[] r, double[] z);
+
+	@Override
+	public int dimension() {
+		return n;
+	}
+}
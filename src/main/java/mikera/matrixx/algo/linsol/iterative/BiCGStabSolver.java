@@ -0,0 +1,99 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.Vector;
+
+/**
+ * Stabilised bi-conjugate gradient (BiCGSTAB) solver for general non-symmetric systems.
+ *
+ * Uses two matrix-vector products per iteration. The solver restarts from the true residual with a fresh
+ * shadow residual on breakdown, and additionally every getRestart() iterations if a restart interval is set.
+ *
+ * A preconditioner, if set, is applied on the right so that the monitored residual is that of the original system.
+ *
+ * @author Mike
+ */
+public class BiCGStabSolver extends AIterativeSolver {
+
+	@Override
+	protected boolean doSolve(AMatrix a, Vector b, Vector x, double threshold) {
+		int n=b.length();
+		Vector r=Vector.createLength(n);
+		Vector rhat=Vector.createLength(n);
+		Vector p=Vector.createLength(n);
+		Vector v=Vector.createLength(n);
+		Vector s=Vector.createLength(n);
+		Vector t=Vector.createLength(n);
+		// preconditioned search directions, aliased when there is no preconditioner
+		Vector phat=(preconditioner==null)?p:Vector.createLength(n);
+		Vector shat=(preconditioner==null)?s:Vector.createLength(n);
+
+		residual(a,b,x,r);
+		residualNorm=r.magnitude();
+		if (residualNorm<=threshold) return true;
+
+		double rho=1.0, alpha=1.0, omega=1.0;
+		boolean fresh=true;
+		boolean restarting=true;
+
+		while (iterations<maxIterations) {
+			if (restarting) {
+				if (!fresh) residual(a,b,x,r);
+				rhat.set(r);
+				p.fill(0.0);
+				v.fill(0.0);
+				rho=1.0; alpha=1.0; omega=1.0;
+				restarting=false;
+				fresh=true;
+			}
+
+			double rhoNew=rhat.dotProduct(r);
+			if (rhoNew==0.0) {
+				// breakdown immediately after a restart cannot be recovered
+				if (fresh) return false;
+				restarting=true;
+				continue;
+			}
+			double beta=(rhoNew/rho)*(alpha/omega);
+			p.addMultiple(v, -omega);
+			p.multiply(beta);
+			p.add(r);
+
+			if (phat!=p) precondition(p, phat);
+			a.transform(phat, v);
+			double rv=rhat.dotProduct(v);
+			if (rv==0.0) {
+				if (fresh) return false;
+				restarting=true;
+				continue;
+			}
+			alpha=rhoNew/rv;
+			s.set(r);
+			s.addMultiple(v, -alpha);
+			iterations++;
+			fresh=false;
+
+			double snorm=s.magnitude();
+			if (snorm<=threshold) {
+				x.addMultiple(phat, alpha);
+				residualNorm=snorm;
+				return true;
+			}
+
+			if (shat!=s) precondition(s, shat);
+			a.transform(shat, t);
+			double tt=t.dotProduct(t);
+			omega=(tt==0.0)?0.0:t.dotProduct(s)/tt;
+			x.addMultiple(phat, alpha);
+			x.addMultiple(shat, omega);
+			r.set(s);
+			r.addMultiple(t, -omega);
+			rho=rhoNew;
+
+			residualNorm=r.magnitude();
+			if (residualNorm<=threshold) return true;
+			if ((omega==0.0)||((restart>0)&&(iterations%restart==0))) restarting=true;
+		}
+		return false;
+	}
+}
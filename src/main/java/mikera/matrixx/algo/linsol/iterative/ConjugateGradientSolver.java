@@ -0,0 +1,60 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.Vector;
+
+/**
+ * Conjugate gradient solver for symmetric positive definite systems.
+ *
+ * Uses one matrix-vector product per iteration. A preconditioner, if set, must be symmetric positive
+ * definite (e.g. JacobiPreconditioner, SSORPreconditioner or IncompleteCholeskyPreconditioner).
+ *
+ * If a restart interval is set, the recursively updated residual is periodically replaced by the true
+ * residual and the search direction is reset, which limits the effect of accumulated rounding error on long runs.
+ *
+ * @author Mike
+ */
+public class ConjugateGradientSolver extends AIterativeSolver {
+
+	@Override
+	protected boolean doSolve(AMatrix a, Vector b, Vector x, double threshold) {
+		int n=b.length();
+		Vector r=Vector.createLength(n);
+		Vector ap=Vector.createLength(n);
+		residual(a,b,x,r);
+		residualNorm=r.magnitude();
+		if (residualNorm<=threshold) return true;
+		// without a preconditioner z is the residual itself
+		Vector z=(preconditioner==null)?r:Vector.createLength(n);
+		if (z!=r) precondition(r,z);
+		double rz=r.dotProduct(z);
+		Vector p=z.clone();
+
+		while (iterations<maxIterations) {
+			a.transform(p, ap);
+			double pap=p.dotProduct(ap);
+			// matrix is not positive definite along p, so CG cannot make progress
+			if (!(pap>0.0)) return false;
+			double alpha=rz/pap;
+			x.addMultiple(p, alpha);
+			r.addMultiple(ap, -alpha);
+			iterations++;
+
+			boolean restarting=(restart>0)&&(iterations%restart==0);
+			if (restarting) residual(a,b,x,r);
+			residualNorm=r.magnitude();
+			if (residualNorm<=threshold) return true;
+
+			if (z!=r) precondition(r,z);
+			double rzNew=r.dotProduct(z);
+			if (restarting) {
+				p.set(z);
+			} else {
+				p.multiply(rzNew/rz);
+				p.add(z);
+			}
+			rz=rzNew;
+		}
+		return false;
+	}
+}
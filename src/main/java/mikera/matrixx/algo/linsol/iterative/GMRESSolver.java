@@ -0,0 +1,124 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.Vector;
+
+/**
+ * Restarted GMRES(m) solver for general non-symmetric systems.
+ *
+ * Builds an orthonormal Krylov basis with modified Gram-Schmidt and minimises the residual using
+ * Givens rotations of the Hessenberg matrix. Storage grows with the restart length m (m+1 basis vectors),
+ * so the restart interval bounds memory use. A restart interval of zero disables restarts.
+ *
+ * A preconditioner, if set, is applied on the right so that the minimised residual is that of the original system.
+ *
+ * @author Mike
+ */
+public class GMRESSolver extends AIterativeSolver {
+	public static final int DEFAULT_RESTART=30;
+
+	public GMRESSolver() {
+		this(DEFAULT_RESTART);
+	}
+
+	public GMRESSolver(int restart) {
+		setRestart(restart);
+	}
+
+	@Override
+	protected boolean doSolve(AMatrix a, Vector b, Vector x, double threshold) {
+		int n=b.length();
+		int m=(restart>0)?restart:maxIterations;
+		m=Math.max(1, Math.min(m, n));
+
+		Vector[] basis=new Vector[m+1];
+		double[][] h=new double[m+1][m];
+		double[] cs=new double[m];
+		double[] sn=new double[m];
+		double[] g=new double[m+1];
+		double[] y=new double[m];
+		Vector w=Vector.createLength(n);
+		Vector z=(preconditioner==null)?null:Vector.createLength(n);
+		Vector r=basis[0]=Vector.createLength(n);
+
+		while (true) {
+			residual(a,b,x,r);
+			double beta=r.magnitude();
+			residualNorm=beta;
+			if (beta<=threshold) return true;
+			if (iterations>=maxIterations) return false;
+			r.multiply(1.0/beta);
+			Arrays.fill(g, 0.0);
+			g[0]=beta;
+
+			int k=0;
+			while ((k<m)&&(iterations<maxIterations)) {
+				if (z==null) {
+					a.transform(basis[k], w);
+				} else {
+					precondition(basis[k], z);
+					a.transform(z, w);
+				}
+				for (int i=0; i<=k; i++) {
+					double hik=w.dotProduct(basis[i]);
+					h[i][k]=hik;
+					w.addMultiple(basis[i], -hik);
+				}
+				double hnext=w.magnitude();
+
+				// apply previous rotations to the new Hessenberg column
+				for (int i=0; i<k; i++) {
+					double t=cs[i]*h[i][k]+sn[i]*h[i+1][k];
+					h[i+1][k]=-sn[i]*h[i][k]+cs[i]*h[i+1][k];
+					h[i][k]=t;
+				}
+				double hkk=h[k][k];
+				double d=Math.hypot(hkk, hnext);
+				if (d==0.0) break;
+				cs[k]=hkk/d;
+				sn[k]=hnext/d;
+				h[k][k]=d;
+				h[k+1][k]=0.0;
+				g[k+1]=-sn[k]*g[k];
+				g[k]=cs[k]*g[k];
+
+				iterations++;
+				k++;
+				residualNorm=Math.abs(g[k]);
+				// stop on convergence or lucky breakdown (Krylov space is invariant)
+				if ((residualNorm<=threshold)||(hnext==0.0)) break;
+				if (k<m) {
+					if (basis[k]==null) basis[k]=Vector.createLength(n);
+					basis[k].set(w);
+					basis[k].multiply(1.0/hnext);
+				}
+			}
+			if (k==0) return false;
+
+			// back substitution for the least squares coefficients, then update x
+			for (int i=k-1; i>=0; i--) {
+				double acc=g[i];
+				for (int j=i+1; j<k; j++) {
+					acc-=h[i][j]*y[j];
+				}
+				y[i]=acc/h[i][i];
+			}
+			if (z==null) {
+				for (int i=0; i<k; i++) {
+					x.addMultiple(basis[i], y[i]);
+				}
+			} else {
+				// with right preconditioning the update is M^-1 V.y
+				w.fill(0.0);
+				for (int i=0; i<k; i++) {
+					w.addMultiple(basis[i], y[i]);
+				}
+				precondition(w, z);
+				x.add(z);
+			}
+			if (residualNorm<=threshold) return true;
+		}
+	}
+}
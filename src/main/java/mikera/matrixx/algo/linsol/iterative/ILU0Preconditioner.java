@@ -0,0 +1,67 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import java.util.Arrays;
+
+import mikera.matrixx.AMatrix;
+
+/**
+ * Incomplete LU preconditioner with zero fill-in, ILU(0).
+ *
+ * Computes M = L.U where L is unit lower triangular, U is upper triangular, and both are restricted
+ * to the sparsity pattern of A. The factors are stored in place of a copy of A, so memory use
+ * equals that of the matrix itself. Suitable for general non-symmetric systems.
+ *
+ * @author Mike
+ */
+public class ILU0Preconditioner extends ASparsePreconditioner {
+
+	public ILU0Preconditioner(AMatrix a) {
+		super(a);
+		factor();
+	}
+
+	private void factor() {
+		// position of each column within the current row, or -1 if not stored
+		int[] pos=new int[n];
+		Arrays.fill(pos, -1);
+		for (int i=0; i<n; i++) {
+			int start=pointers[i];
+			int end=pointers[i+1];
+			for (int k=start; k<end; k++) pos[indexes[k]]=k;
+
+			for (int k=start; k<diagonal[i]; k++) {
+				int c=indexes[k];
+				double lik=values[k]/values[diagonal[c]];
+				values[k]=lik;
+				// subtract lik * (row c of U) within the pattern of row i
+				for (int kk=diagonal[c]+1, cend=pointers[c+1]; kk<cend; kk++) {
+					int p=pos[indexes[kk]];
+					if (p>=0) values[p]-=lik*values[kk];
+				}
+			}
+			if (values[diagonal[i]]==0.0) throw new IllegalArgumentException("Zero pivot in ILU(0) factorisation at row "+i);
+
+			for (int k=start; k<end; k++) pos[indexes[k]]=-1;
+		}
+	}
+
+	@Override
+	protected void apply(double[] r, double[] z) {
+		// forward substitution with unit lower triangular L
+		for (int i=0; i<n; i++) {
+			double acc=r[i];
+			for (int k=pointers[i], end=diagonal[i]; k<end; k++) {
+				acc-=values[k]*z[indexes[k]];
+			}
+			z[i]=acc;
+		}
+		// backward substitution with U
+		for (int i=n-1; i>=0; i--) {
+			double acc=z[i];
+			for (int k=diagonal[i]+1, end=pointers[i+1]; k<end; k++) {
+				acc-=values[k]*z[indexes[k]];
+			}
+			z[i]=acc/values[diagonal[i]];
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.vectorz.AVector;
+
+/**
+ * Interface for preconditioners used by iterative solvers.
+ *
+ * A preconditioner represents an approximation M to the system matrix A that is cheap to invert.
+ * Iterative solvers call apply() to compute z = M^-1 r once or twice per iteration.
+ *
+ * @author Mike
+ */
+public interface IPreconditioner {
+	/**
+	 * Computes z = M^-1 r. The vectors r and z are distinct and both have length dimension().
+	 * Must not modify r.
+	 */
+	public void apply(AVector r, AVector z);
+
+	/**
+	 * Returns the dimension of the (square) system this preconditioner was built for
+	 */
+	public int dimension();
+}
@@ -0,0 +1,74 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.matrixx.AMatrix;
+
+/**
+ * Incomplete Cholesky preconditioner with zero fill-in, IC(0).
+ *
+ * Computes M = L.L^T where L is lower triangular with the sparsity pattern of the lower triangle of A.
+ * A must be symmetric positive definite; only its lower triangle is used. The factorisation can break
+ * down for some positive definite matrices that are not diagonally dominant, in which case an
+ * IllegalArgumentException is thrown and SSORPreconditioner or JacobiPreconditioner may be used instead.
+ *
+ * @author Mike
+ */
+public class IncompleteCholeskyPreconditioner extends ASparsePreconditioner {
+
+	public IncompleteCholeskyPreconditioner(AMatrix a) {
+		super(a);
+		factor();
+	}
+
+	private void factor() {
+		for (int i=0; i<n; i++) {
+			int start=pointers[i];
+			int di=diagonal[i];
+			for (int k=start; k<di; k++) {
+				int j=indexes[k];
+				// sparse dot product of rows i and j of L over columns < j
+				double acc=values[k];
+				int a=start;
+				int b=pointers[j];
+				int bend=diagonal[j];
+				while ((a<k)&&(b<bend)) {
+					int ca=indexes[a];
+					int cb=indexes[b];
+					if (ca==cb) {
+						acc-=values[a++]*values[b++];
+					} else if (ca<cb) {
+						a++;
+					} else {
+						b++;
+					}
+				}
+				values[k]=acc/values[diagonal[j]];
+			}
+			double d=values[di];
+			for (int k=start; k<di; k++) {
+				d-=values[k]*values[k];
+			}
+			if (!(d>0.0)) throw new IllegalArgumentException("IC(0) factorisation broke down at row "+i+": matrix may not be positive definite");
+			values[di]=Math.sqrt(d);
+		}
+	}
+
+	@Override
+	protected void apply(double[] r, double[] z) {
+		// forward substitution with L
+		for (int i=0; i<n; i++) {
+			double acc=r[i];
+			for (int k=pointers[i], end=diagonal[i]; k<end; k++) {
+				acc-=values[k]*z[indexes[k]];
+			}
+			z[i]=acc/values[diagonal[i]];
+		}
+		// backward substitution with L^T, using rows of L as columns of L^T
+		for (int i=n-1; i>=0; i--) {
+			double zi=z[i]/values[diagonal[i]];
+			z[i]=zi;
+			for (int k=pointers[i], end=diagonal[i]; k<end; k++) {
+				z[indexes[k]]-=values[k]*zi;
+			}
+		}
+	}
+}
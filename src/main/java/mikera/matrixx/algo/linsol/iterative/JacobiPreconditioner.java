@@ -0,0 +1,39 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.matrixx.AMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Jacobi (diagonal) preconditioner, M = diag(A).
+ *
+ * Works with any matrix type, since only getLeadingDiagonal() is used.
+ *
+ * @author Mike
+ */
+public class JacobiPreconditioner implements IPreconditioner {
+	private final Vector inverseDiagonal;
+
+	public JacobiPreconditioner(AMatrix a) {
+		if (!a.isSquare()) throw new IllegalArgumentException(ErrorMessages.squareMatrixRequired(a));
+		inverseDiagonal=Vector.create(a.getLeadingDiagonal());
+		int n=inverseDiagonal.length();
+		for (int i=0; i<n; i++) {
+			double d=inverseDiagonal.unsafeGet(i);
+			if (d==0.0) throw new IllegalArgumentException("Zero diagonal element at position "+i);
+			inverseDiagonal.unsafeSet(i, 1.0/d);
+		}
+	}
+
+	@Override
+	public void apply(AVector r, AVector z) {
+		z.set(r);
+		z.multiply(inverseDiagonal);
+	}
+
+	@Override
+	public int dimension() {
+		return inverseDiagonal.length();
+	}
+}
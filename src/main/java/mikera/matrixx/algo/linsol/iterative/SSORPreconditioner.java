@@ -0,0 +1,54 @@
+package mikera.matrixx.algo.linsol.iterative;
+
+import mikera.matrixx.AMatrix;
+
+/**
+ * Symmetric successive over-relaxation (SSOR) preconditioner.
+ *
+ * With A = L + D + U, uses M = w/(2-w) (D/w + L) (D/w)^-1 (D/w + U) for a relaxation factor 0 < w < 2.
+ * Requires no factorisation: applying it is one forward and one backward sweep over the matrix.
+ * M is symmetric positive definite whenever A is, so it can be used with ConjugateGradientSolver.
+ *
+ * @author Mike
+ */
+public class SSORPreconditioner extends ASparsePreconditioner {
+	private final double omega;
+
+	public SSORPreconditioner(AMatrix a) {
+		this(a, 1.0);
+	}
+
+	public SSORPreconditioner(AMatrix a, double omega) {
+		super(a);
+		if (!((omega>0.0)&&(omega<2.0))) throw new IllegalArgumentException("Relaxation factor must be in range (0,2): "+omega);
+		this.omega=omega;
+	}
+
+	public double getOmega() {
+		return omega;
+	}
+
+	@Override
+	protected void apply(double[] r, double[] z) {
+		double scale=(2.0-omega)/omega;
+		// forward sweep: (D/w + L) y = r, then scale by (2-w)/w * D/w
+		for (int i=0; i<n; i++) {
+			double acc=r[i];
+			for (int k=pointers[i], end=diagonal[i]; k<end; k++) {
+				acc-=values[k]*z[indexes[k]];
+			}
+			z[i]=acc*omega/values[diagonal[i]];
+		}
+		for (int i=0; i<n; i++) {
+			z[i]*=scale*values[diagonal[i]]/omega;
+		}
+		// backward sweep: (D/w + U) z = y
+		for (int i=n-1; i>=0; i--) {
+			double acc=z[i];
+			for (int k=diagonal[i]+1, end=pointers[i+1]; k<end; k++) {
+				acc-=values[k]*z[indexes[k]];
+			}
+			z[i]=acc*omega/values[diagonal[i]];
+		}
+	}
+}
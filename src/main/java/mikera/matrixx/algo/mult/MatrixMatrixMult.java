@@ -92,10 +92,10 @@ public class MatrixMatrixMult {
       int indexC = indexCbase;
       int end = indexB + b.columnCount();
 
-      valA = a.get(indexA++);
+      valA = a.data[indexA++];
 
       while (indexB < end) {
-        c.set(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] = valA * b.data[indexB++];
       }
 
       // now add to it
@@ -103,10 +103,10 @@ public class MatrixMatrixMult {
         indexC = indexCbase;
         end = indexB + b.columnCount();
 
-        valA = a.get(indexA++);
+        valA = a.data[indexA++];
 
         while (indexB < end) { // j loop
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
       indexCbase += c.columnCount();
@@ -141,11 +141,11 @@ public class MatrixMatrixMult {
         int indexB = j;
         int end = indexA + b.rowCount();
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB);
+          total += a.data[indexA++] * b.data[indexB];
           indexB += b.columnCount();
         }
 
-        c.set(cIndex++, total);
+        c.data[cIndex++] = total;
       }
       aIndexStart += a.columnCount();
     }
@@ -181,9 +181,9 @@ public class MatrixMatrixMult {
       for (int i = 0; i < a.rowCount(); i++) {
         double total = 0;
         for (int k = 0; k < b.rowCount();) {
-          total += a.get(indexA++) * aux[k++];
+          total += a.data[indexA++] * aux[k++];
         }
-        c.set(i * c.columnCount() + j, total);
+        c.data[i * c.columnCount() + j] = total;
       }
     }
   }
@@ -211,12 +211,12 @@ public class MatrixMatrixMult {
       int indexC_start = i * c.columnCount();
 
       // first assign R
-      valA = a.get(i);
+      valA = a.data[i];
       int indexB = 0;
       int end = indexB + b.columnCount();
       int indexC = indexC_start;
       while (indexB < end) {
-        c.set(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] = valA * b.data[indexB++];
       }
       // now increment it
       for (int k = 1; k < a.rowCount(); k++) {
@@ -225,7 +225,7 @@ public class MatrixMatrixMult {
         indexC = indexC_start;
         // this is the loop for j
         while (indexB < end) {
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
     }
@@ -260,11 +260,11 @@ public class MatrixMatrixMult {
 
         // loop for k
         for (; indexB < end; indexB += b.columnCount()) {
-          total += a.get(indexA) * b.get(indexB);
+          total += a.data[indexA] * b.data[indexB];
           indexA += a.columnCount();
         }
 
-        c.set(cIndex++, total);
+        c.data[cIndex++] = total;
       }
     }
   }
@@ -297,11 +297,11 @@ public class MatrixMatrixMult {
         double total = 0;
 
         for (; indexB < end;) {
-          total += a.get(indexA) * b.get(indexB++);
+          total += a.data[indexA] * b.data[indexB++];
           indexA += a.columnCount();
         }
 
-        c.set(cIndex++, total);
+        c.data[cIndex++] = total;
       }
     }
   }
@@ -338,7 +338,7 @@ public class MatrixMatrixMult {
         for (int k = 0; k < b.columnCount(); k++) {
           total += aux[k] * b.get(j, k);
         }
-        c.set(indexC++, total);
+        c.data[indexC++] = total;
       }
     }
   }
@@ -371,10 +371,10 @@ public class MatrixMatrixMult {
         double total = 0;
 
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB++);
+          total += a.data[indexA++] * b.data[indexB++];
         }
 
-        c.set(cIndex++, total);
+        c.data[cIndex++] = total;
       }
       aIndexStart += a.columnCount();
     }
@@ -409,10 +409,10 @@ public class MatrixMatrixMult {
       int indexC = indexCbase;
       int end = indexB + b.columnCount();
 
-      valA = a.get(indexA++);
+      valA = a.data[indexA++];
 
       while (indexB < end) {
-        c.addAt(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] += valA * b.data[indexB++];
       }
 
       // now add to it
@@ -420,10 +420,10 @@ public class MatrixMatrixMult {
         indexC = indexCbase;
         end = indexB + b.columnCount();
 
-        valA = a.get(indexA++);
+        valA = a.data[indexA++];
 
         while (indexB < end) { // j loop
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
       indexCbase += c.columnCount();
@@ -458,11 +458,11 @@ public class MatrixMatrixMult {
         int indexB = j;
         int end = indexA + b.rowCount();
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB);
+          total += a.data[indexA++] * b.data[indexB];
           indexB += b.columnCount();
         }
 
-        c.addAt(cIndex++, total);
+        c.data[cIndex++] += total;
       }
       aIndexStart += a.columnCount();
     }
@@ -498,9 +498,9 @@ public class MatrixMatrixMult {
       for (int i = 0; i < a.rowCount(); i++) {
         double total = 0;
         for (int k = 0; k < b.rowCount();) {
-          total += a.get(indexA++) * aux[k++];
+          total += a.data[indexA++] * aux[k++];
         }
-        c.addAt(i * c.columnCount() + j, total);
+        c.data[i * c.columnCount() + j] += total;
       }
     }
   }
@@ -528,12 +528,12 @@ public class MatrixMatrixMult {
       int indexC_start = i * c.columnCount();
 
       // first assign R
-      valA = a.get(i);
+      valA = a.data[i];
       int indexB = 0;
       int end = indexB + b.columnCount();
       int indexC = indexC_start;
       while (indexB < end) {
-        c.addAt(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] += valA * b.data[indexB++];
       }
       // now increment it
       for (int k = 1; k < a.rowCount(); k++) {
@@ -542,7 +542,7 @@ public class MatrixMatrixMult {
         indexC = indexC_start;
         // this is the loop for j
         while (indexB < end) {
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
     }
@@ -577,11 +577,11 @@ public class MatrixMatrixMult {
 
         // loop for k
         for (; indexB < end; indexB += b.columnCount()) {
-          total += a.get(indexA) * b.get(indexB);
+          total += a.data[indexA] * b.data[indexB];
           indexA += a.columnCount();
         }
 
-        c.addAt(cIndex++, total);
+        c.data[cIndex++] += total;
       }
     }
   }
@@ -614,11 +614,11 @@ public class MatrixMatrixMult {
         double total = 0;
 
         for (; indexB < end;) {
-          total += a.get(indexA) * b.get(indexB++);
+          total += a.data[indexA] * b.data[indexB++];
           indexA += a.columnCount();
         }
 
-        c.addAt(cIndex++, total);
+        c.data[cIndex++] += total;
       }
     }
   }
@@ -656,7 +656,7 @@ public class MatrixMatrixMult {
         for (int k = 0; k < b.columnCount(); k++) {
           total += aux[k] * b.get(j, k);
         }
-        c.addAt(indexC++, total);
+        c.data[indexC++] += total;
       }
     }
   }
@@ -689,10 +689,10 @@ public class MatrixMatrixMult {
         double total = 0;
 
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB++);
+          total += a.data[indexA++] * b.data[indexB++];
         }
 
-        c.addAt(cIndex++, total);
+        c.data[cIndex++] += total;
       }
       aIndexStart += a.columnCount();
     }
@@ -727,10 +727,10 @@ public class MatrixMatrixMult {
       int indexC = indexCbase;
       int end = indexB + b.columnCount();
 
-      valA = alpha * a.get(indexA++);
+      valA = alpha * a.data[indexA++];
 
       while (indexB < end) {
-        c.set(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] = valA * b.data[indexB++];
       }
 
       // now add to it
@@ -738,10 +738,10 @@ public class MatrixMatrixMult {
         indexC = indexCbase;
         end = indexB + b.columnCount();
 
-        valA = alpha * a.get(indexA++);
+        valA = alpha * a.data[indexA++];
 
         while (indexB < end) { // j loop
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
       indexCbase += c.columnCount();
@@ -776,11 +776,11 @@ public class MatrixMatrixMult {
         int indexB = j;
         int end = indexA + b.rowCount();
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB);
+          total += a.data[indexA++] * b.data[indexB];
           indexB += b.columnCount();
         }
 
-        c.set(cIndex++, alpha * total);
+        c.data[cIndex++] = alpha * total;
       }
       aIndexStart += a.columnCount();
     }
@@ -817,9 +817,9 @@ public class MatrixMatrixMult {
       for (int i = 0; i < a.rowCount(); i++) {
         double total = 0;
         for (int k = 0; k < b.rowCount();) {
-          total += a.get(indexA++) * aux[k++];
+          total += a.data[indexA++] * aux[k++];
         }
-        c.set(i * c.columnCount() + j, alpha * total);
+        c.data[i * c.columnCount() + j] = alpha * total;
       }
     }
   }
@@ -848,12 +848,12 @@ public class MatrixMatrixMult {
       int indexC_start = i * c.columnCount();
 
       // first assign R
-      valA = alpha * a.get(i);
+      valA = alpha * a.data[i];
       int indexB = 0;
       int end = indexB + b.columnCount();
       int indexC = indexC_start;
       while (indexB < end) {
-        c.set(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] = valA * b.data[indexB++];
       }
       // now increment it
       for (int k = 1; k < a.rowCount(); k++) {
@@ -862,7 +862,7 @@ public class MatrixMatrixMult {
         indexC = indexC_start;
         // this is the loop for j
         while (indexB < end) {
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
     }
@@ -897,11 +897,11 @@ public class MatrixMatrixMult {
 
         // loop for k
         for (; indexB < end; indexB += b.columnCount()) {
-          total += a.get(indexA) * b.get(indexB);
+          total += a.data[indexA] * b.data[indexB];
           indexA += a.columnCount();
         }
 
-        c.set(cIndex++, alpha * total);
+        c.data[cIndex++] = alpha * total;
       }
     }
   }
@@ -934,11 +934,11 @@ public class MatrixMatrixMult {
         double total = 0;
 
         for (; indexB < end;) {
-          total += a.get(indexA) * b.get(indexB++);
+          total += a.data[indexA] * b.data[indexB++];
           indexA += a.columnCount();
         }
 
-        c.set(cIndex++, alpha * total);
+        c.data[cIndex++] = alpha * total;
       }
     }
   }
@@ -976,7 +976,7 @@ public class MatrixMatrixMult {
         for (int k = 0; k < b.columnCount(); k++) {
           total += aux[k] * b.get(j, k);
         }
-        c.set(indexC++, alpha * total);
+        c.data[indexC++] = alpha * total;
       }
     }
   }
@@ -1009,10 +1009,10 @@ public class MatrixMatrixMult {
         double total = 0;
 
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB++);
+          total += a.data[indexA++] * b.data[indexB++];
         }
 
-        c.set(cIndex++, alpha * total);
+        c.data[cIndex++] = alpha * total;
       }
       aIndexStart += a.columnCount();
     }
@@ -1047,10 +1047,10 @@ public class MatrixMatrixMult {
       int indexC = indexCbase;
       int end = indexB + b.columnCount();
 
-      valA = alpha * a.get(indexA++);
+      valA = alpha * a.data[indexA++];
 
       while (indexB < end) {
-        c.addAt(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] += valA * b.data[indexB++];
       }
 
       // now add to it
@@ -1058,10 +1058,10 @@ public class MatrixMatrixMult {
         indexC = indexCbase;
         end = indexB + b.columnCount();
 
-        valA = alpha * a.get(indexA++);
+        valA = alpha * a.data[indexA++];
 
         while (indexB < end) { // j loop
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
       indexCbase += c.columnCount();
@@ -1096,11 +1096,11 @@ public class MatrixMatrixMult {
         int indexB = j;
         int end = indexA + b.rowCount();
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB);
+          total += a.data[indexA++] * b.data[indexB];
           indexB += b.columnCount();
         }
 
-        c.addAt(cIndex++, alpha * total);
+        c.data[cIndex++] += alpha * total;
       }
       aIndexStart += a.columnCount();
     }
@@ -1137,9 +1137,9 @@ public class MatrixMatrixMult {
       for (int i = 0; i < a.rowCount(); i++) {
         double total = 0;
         for (int k = 0; k < b.rowCount();) {
-          total += a.get(indexA++) * aux[k++];
+          total += a.data[indexA++] * aux[k++];
         }
-        c.addAt(i * c.columnCount() + j, alpha * total);
+        c.data[i * c.columnCount() + j] += alpha * total;
       }
     }
   }
@@ -1168,12 +1168,12 @@ public class MatrixMatrixMult {
       int indexC_start = i * c.columnCount();
 
       // first assign R
-      valA = alpha * a.get(i);
+      valA = alpha * a.data[i];
       int indexB = 0;
       int end = indexB + b.columnCount();
       int indexC = indexC_start;
       while (indexB < end) {
-        c.addAt(indexC++, valA * b.get(indexB++));
+        c.data[indexC++] += valA * b.data[indexB++];
       }
       // now increment it
       for (int k = 1; k < a.rowCount(); k++) {
@@ -1182,7 +1182,7 @@ public class MatrixMatrixMult {
         indexC = indexC_start;
         // this is the loop for j
         while (indexB < end) {
-          c.addAt(indexC++, valA * b.get(indexB++));
+          c.data[indexC++] += valA * b.data[indexB++];
         }
       }
     }
@@ -1218,11 +1218,11 @@ public class MatrixMatrixMult {
 
         // loop for k
         for (; indexB < end; indexB += b.columnCount()) {
-          total += a.get(indexA) * b.get(indexB);
+          total += a.data[indexA] * b.data[indexB];
           indexA += a.columnCount();
         }
 
-        c.addAt(cIndex++, alpha * total);
+        c.data[cIndex++] += alpha * total;
       }
     }
   }
@@ -1255,11 +1255,11 @@ public class MatrixMatrixMult {
         double total = 0;
 
         for (; indexB < end;) {
-          total += a.get(indexA) * b.get(indexB++);
+          total += a.data[indexA] * b.data[indexB++];
           indexA += a.columnCount();
         }
 
-        c.addAt(cIndex++, alpha * total);
+        c.data[cIndex++] += alpha * total;
       }
     }
   }
@@ -1297,7 +1297,7 @@ public class MatrixMatrixMult {
         for (int k = 0; k < b.columnCount(); k++) {
           total += aux[k] * b.get(j, k);
         }
-        c.addAt(indexC++, alpha * total);
+        c.data[indexC++] += alpha * total;
       }
     }
   }
@@ -1330,10 +1330,10 @@ public class MatrixMatrixMult {
         double total = 0;
 
         while (indexA < end) {
-          total += a.get(indexA++) * b.get(indexB++);
+          total += a.data[indexA++] * b.data[indexB++];
         }
 
-        c.addAt(cIndex++, alpha * total);
+        c.data[cIndex++] += alpha * total;
       }
       aIndexStart += a.columnCount();
     }
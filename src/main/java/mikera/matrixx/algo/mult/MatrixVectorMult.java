@@ -79,15 +79,15 @@ public class MatrixVectorMult {
 
     int indexA = 0;
     int cIndex = 0;
-    double b0 = b.get(0);
+    double b0 = b.data[0];
     for (int i = 0; i < a.rowCount(); i++) {
-      double total = a.get(indexA++) * b0;
+      double total = a.data[indexA++] * b0;
 
       for (int j = 1; j < a.columnCount(); j++) {
-        total += a.get(indexA++) * b.get(j);
+        total += a.data[indexA++] * b.data[j];
       }
 
-      c.set(cIndex++, total);
+      c.data[cIndex++] = total;
     }
   }
 
@@ -132,13 +132,13 @@ public class MatrixVectorMult {
     int indexA = 0;
     int cIndex = 0;
     for (int i = 0; i < A.rowCount(); i++) {
-      double total = A.get(indexA++) * B.get(0);
+      double total = A.data[indexA++] * B.data[0];
 
       for (int j = 1; j < A.columnCount(); j++) {
-        total += A.get(indexA++) * B.get(j);
+        total += A.data[indexA++] * B.data[j];
       }
 
-      C.addAt(cIndex++, total);
+      C.data[cIndex++] += total;
     }
   }
 
@@ -190,11 +190,11 @@ public class MatrixVectorMult {
 
       int indexA = i;
       for (int j = 0; j < A.rowCount(); j++) {
-        total += A.get(indexA) * B.get(j);
+        total += A.data[indexA] * B.data[j];
         indexA += A.columnCount();
       }
 
-      C.set(cIndex++, total);
+      C.data[cIndex++] = total;
     }
   }
 
@@ -225,16 +225,16 @@ public class MatrixVectorMult {
       throw new MatrixDimensionException("B is not a vector");
     }
 
-    double B_val = B.get(0);
+    double B_val = B.data[0];
     for (int i = 0; i < A.columnCount(); i++) {
-      C.set(i, A.get(i) * B_val);
+      C.data[i] = A.data[i] * B_val;
     }
 
     int indexA = A.columnCount();
     for (int i = 1; i < A.rowCount(); i++) {
-      B_val = B.get(i);
+      B_val = B.data[i];
       for (int j = 0; j < A.columnCount(); j++) {
-        C.addAt(j, A.get(indexA++) * B_val);
+        C.data[j] += A.data[indexA++] * B_val;
       }
     }
   }
@@ -286,11 +286,11 @@ public class MatrixVectorMult {
 
       int indexA = i;
       for (int j = 0; j < A.rowCount(); j++) {
-        total += A.get(indexA) * B.get(j);
+        total += A.data[indexA] * B.data[j];
         indexA += A.columnCount();
       }
 
-      C.addAt(cIndex++, total);
+      C.data[cIndex++] += total;
     }
   }
 
@@ -323,9 +323,9 @@ public class MatrixVectorMult {
 
     int indexA = 0;
     for (int j = 0; j < A.rowCount(); j++) {
-      double B_val = B.get(j);
+      double B_val = B.data[j];
       for (int i = 0; i < A.columnCount(); i++) {
-        C.addAt(i, A.get(indexA++) * B_val);
+        C.data[i] += A.data[indexA++] * B_val;
       }
     }
   }
@@ -0,0 +1,263 @@
+package mikera.matrixx.algo.mult;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.impl.AStridedMatrix;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Packed, register-blocked dense matrix multiplication engine.
+ *
+ * Computes C = alpha*A*B + beta*C by copying panels of A and B into contiguous packed
+ * buffers sized for the caches, then running an unrolled 4x4 micro-kernel over the packed
+ * panels. Each loaded element of A and B is reused four times from registers, and the packed
+ * panels are read sequentially, so throughput is much higher than a dot product per output cell.
+ *
+ * Products are accumulated in the same order as a simple dot product (k = 0,1,2...), so results
+ * are identical to the naive algorithm when alpha is 1.
+ *
+ * Any AMatrix can be used as an operand. Strided array matrices (including Matrix and transposed
+ * views of Matrix) are packed directly from their backing arrays.
+ *
+ * @author Mike
+ */
+public class PackedMatrixMult {
+	/**
+	 * Number of rows in a micro-kernel tile
+	 */
+	public static final int MR=4;
+
+	/**
+	 * Number of columns in a micro-kernel tile
+	 */
+	public static final int NR=4;
+
+	/**
+	 * Number of rows of A packed at a time. Packed A block (BLOCK_M * BLOCK_K) should fit in L2 cache.
+	 */
+	public static volatile int BLOCK_M=128;
+
+	/**
+	 * Depth of packed panels. A BLOCK_K * NR sliver of B should fit in L1 cache.
+	 */
+	public static volatile int BLOCK_K=256;
+
+	/**
+	 * Number of columns of B packed at a time. Packed B panel (BLOCK_K * BLOCK_N) should fit in L3 cache.
+	 */
+	public static volatile int BLOCK_N=4096;
+
+	/**
+	 * Multiplies two matrices, returning a new dense Matrix containing the result
+	 */
+	public static Matrix multiply(AMatrix a, AMatrix b) {
+		Matrix result=Matrix.create(a.rowCount(), b.columnCount());
+		multiply(a,b,result);
+		return result;
+	}
+
+	/**
+	 * Multiplies two matrices, storing the result in the destination matrix c.
+	 *
+	 * c must not share storage with a or b.
+	 */
+	public static void multiply(AMatrix a, AMatrix b, Matrix c) {
+		gemm(1.0,a,b,0.0,c);
+	}
+
+	/**
+	 * Performs the operation c = alpha*a*b + beta*c
+	 *
+	 * c must not share storage with a or b. If beta is zero, the initial contents of c are ignored.
+	 */
+	public static void gemm(double alpha, AMatrix a, AMatrix b, double beta, Matrix c) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		int k=a.columnCount();
+		if (k!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		if ((c.rowCount()!=m)||(c.columnCount()!=n)) throw new IllegalArgumentException(ErrorMessages.incompatibleShape(c));
+		gemm(m,n,k,alpha,a,0,0,b,0,0,beta,c.data,0,n);
+	}
+
+	/**
+	 * Performs the operation C = alpha*A*B + beta*C on sub-blocks of the given matrices, where:
+	 * <ul>
+	 * <li>A is the m x k block of a starting at (ai,aj)</li>
+	 * <li>B is the k x n block of b starting at (bi,bj)</li>
+	 * <li>C is the m x n block stored in the array c at offset cOffset with row stride cRowStride</li>
+	 * </ul>
+	 *
+	 * No bounds checking is performed on the blocks. The storage of C must not overlap A or B.
+	 */
+	public static void gemm(int m, int n, int k, double alpha,
+			AMatrix a, int ai, int aj,
+			AMatrix b, int bi, int bj,
+			double beta, double[] c, int cOffset, int cRowStride) {
+		if ((m==0)||(n==0)) return;
+		scale(m,n,beta,c,cOffset,cRowStride);
+		if ((k==0)||(alpha==0.0)) return;
+
+		int mc=Math.min(roundUp(BLOCK_M,MR),roundUp(m,MR));
+		int kc=Math.min(BLOCK_K,k);
+		int nc=Math.min(roundUp(BLOCK_N,NR),roundUp(n,NR));
+		double[] pa=new double[mc*kc];
+		double[] pb=new double[kc*nc];
+		double[] tmp=new double[MR*NR];
+
+		for (int j0=0; j0<n; j0+=nc) {
+			int nb=Math.min(nc, n-j0);
+			for (int p0=0; p0<k; p0+=kc) {
+				int kb=Math.min(kc, k-p0);
+				packB(b,bi+p0,bj+j0,kb,nb,pb);
+				for (int i0=0; i0<m; i0+=mc) {
+					int mb=Math.min(mc, m-i0);
+					packA(a,ai+i0,aj+p0,mb,kb,alpha,pa);
+					macroKernel(mb,nb,kb,pa,pb,c,cOffset+i0*cRowStride+j0,cRowStride,tmp);
+				}
+			}
+		}
+	}
+
+	private static int roundUp(int x, int multiple) {
+		return ((x+multiple-1)/multiple)*multiple;
+	}
+
+	private static void scale(int m, int n, double beta, double[] c, int cOffset, int cRowStride) {
+		if (beta==1.0) return;
+		for (int i=0; i<m; i++) {
+			int ci=cOffset+i*cRowStride;
+			if (beta==0.0) {
+				for (int j=0; j<n; j++) c[ci+j]=0.0;
+			} else {
+				for (int j=0; j<n; j++) c[ci+j]*=beta;
+			}
+		}
+	}
+
+	/**
+	 * Packs an mb x kb block of A into MR-row slivers, each stored column by column.
+	 * Rows beyond mb are zero padded.
+	 */
+	static void packA(AMatrix a, int i0, int k0, int mb, int kb, double alpha, double[] pa) {
+		int di=0;
+		if (a instanceof AStridedMatrix) {
+			AStridedMatrix sa=(AStridedMatrix)a;
+			double[] data=sa.data;
+			int rs=sa.rowStride();
+			int cs=sa.columnStride();
+			int base=sa.getArrayOffset()+i0*rs+k0*cs;
+			for (int r=0; r<mb; r+=MR) {
+				int rows=Math.min(MR, mb-r);
+				for (int p=0; p<kb; p++) {
+					int si=base+r*rs+p*cs;
+					for (int ii=0; ii<MR; ii++) {
+						pa[di++]=(ii<rows)?alpha*data[si+ii*rs]:0.0;
+					}
+				}
+			}
+		} else {
+			for (int r=0; r<mb; r+=MR) {
+				int rows=Math.min(MR, mb-r);
+				for (int p=0; p<kb; p++) {
+					for (int ii=0; ii<MR; ii++) {
+						pa[di++]=(ii<rows)?alpha*a.unsafeGet(i0+r+ii, k0+p):0.0;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Packs a kb x nb block of B into NR-column slivers, each stored row by row.
+	 * Columns beyond nb are zero padded.
+	 */
+	static void packB(AMatrix b, int k0, int j0, int kb, int nb, double[] pb) {
+		int di=0;
+		if (b instanceof AStridedMatrix) {
+			AStridedMatrix sb=(AStridedMatrix)b;
+			double[] data=sb.data;
+			int rs=sb.rowStride();
+			int cs=sb.columnStride();
+			int base=sb.getArrayOffset()+k0*rs+j0*cs;
+			for (int s=0; s<nb; s+=NR) {
+				int cols=Math.min(NR, nb-s);
+				for (int p=0; p<kb; p++) {
+					int si=base+p*rs+s*cs;
+					for (int jj=0; jj<NR; jj++) {
+						pb[di++]=(jj<cols)?data[si+jj*cs]:0.0;
+					}
+				}
+			}
+		} else {
+			for (int s=0; s<nb; s+=NR) {
+				int cols=Math.min(NR, nb-s);
+				for (int p=0; p<kb; p++) {
+					for (int jj=0; jj<NR; jj++) {
+						pb[di++]=(jj<cols)?b.unsafeGet(k0+p, j0+s+jj):0.0;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the micro-kernel over every tile of an mb x nb block of C, using packed A and B.
+	 * Edge tiles go through a temporary buffer so the kernel always works on full tiles.
+	 */
+	private static void macroKernel(int mb, int nb, int kb, double[] pa, double[] pb, double[] c, int cOffset, int ldc, double[] tmp) {
+		for (int s=0; s<nb; s+=NR) {
+			int cols=Math.min(NR, nb-s);
+			int bOff=s*kb;
+			for (int r=0; r<mb; r+=MR) {
+				int rows=Math.min(MR, mb-r);
+				int aOff=r*kb;
+				int ci=cOffset+r*ldc+s;
+				if ((rows==MR)&&(cols==NR)) {
+					kernel4x4(kb,pa,aOff,pb,bOff,c,ci,ldc);
+				} else {
+					for (int i=0; i<rows; i++) {
+						for (int j=0; j<cols; j++) {
+							tmp[i*NR+j]=c[ci+i*ldc+j];
+						}
+					}
+					kernel4x4(kb,pa,aOff,pb,bOff,tmp,0,NR);
+					for (int i=0; i<rows; i++) {
+						for (int j=0; j<cols; j++) {
+							c[ci+i*ldc+j]=tmp[i*NR+j];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Micro-kernel: C[4x4] += A[4xkb] * B[kbx4], with A and B packed as slivers.
+	 * All 16 accumulators are held in local variables.
+	 */
+	private static void kernel4x4(int kb, double[] pa, int aOff, double[] pb, int bOff, double[] c, int ci, int ldc) {
+		int c0=ci, c1=ci+ldc, c2=ci+2*ldc, c3=ci+3*ldc;
+		double c00=c[c0], c01=c[c0+1], c02=c[c0+2], c03=c[c0+3];
+		double c10=c[c1], c11=c[c1+1], c12=c[c1+2], c13=c[c1+3];
+		double c20=c[c2], c21=c[c2+1], c22=c[c2+2], c23=c[c2+3];
+		double c30=c[c3], c31=c[c3+1], c32=c[c3+2], c33=c[c3+3];
+
+		int ai=aOff;
+		int bi=bOff;
+		for (int p=0; p<kb; p++) {
+			double a0=pa[ai], a1=pa[ai+1], a2=pa[ai+2], a3=pa[ai+3];
+			double b0=pb[bi], b1=pb[bi+1], b2=pb[bi+2], b3=pb[bi+3];
+			c00+=a0*b0; c01+=a0*b1; c02+=a0*b2; c03+=a0*b3;
+			c10+=a1*b0; c11+=a1*b1; c12+=a1*b2; c13+=a1*b3;
+			c20+=a2*b0; c21+=a2*b1; c22+=a2*b2; c23+=a2*b3;
+			c30+=a3*b0; c31+=a3*b1; c32+=a3*b2; c33+=a3*b3;
+			ai+=MR;
+			bi+=NR;
+		}
+
+		c[c0]=c00; c[c0+1]=c01; c[c0+2]=c02; c[c0+3]=c03;
+		c[c1]=c10; c[c1+1]=c11; c[c1+2]=c12; c[c1+3]=c13;
+		c[c2]=c20; c[c2+1]=c21; c[c2+2]=c22; c[c2+3]=c23;
+		c[c3]=c30; c[c3+1]=c31; c[c3+2]=c32; c[c3+3]=c33;
+	}
+}
@@ -0,0 +1,174 @@
+package mikera.matrixx.algo.mult;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Parallel dense matrix multiplication using fork/join.
+ *
+ * The output matrix is recursively split into row / column tiles until each tile is below
+ * a target amount of work, and each tile is then computed with the packed GEMM kernel in
+ * {@link PackedMatrixMult}. Tiles write to disjoint regions of the result so no synchronisation
+ * is required.
+ *
+ * @author Mike
+ */
+public class ParallelMatrixMult {
+	/**
+	 * Number of multiply-adds (rows*cols*inner) above which multiplication is performed in parallel.
+	 * Smaller products are cheaper to compute on a single thread.
+	 */
+	public static volatile long PARALLEL_THRESHOLD=128L*128L*128L;
+
+	/**
+	 * Target number of multiply-adds for each leaf task
+	 */
+	public static volatile long TASK_SIZE=64L*64L*256L;
+
+	private static ForkJoinPool defaultPool=null;
+
+	/**
+	 * Gets the default pool used for parallel multiplication. Created on first use with
+	 * one worker per available processor.
+	 */
+	public static synchronized ForkJoinPool getDefaultPool() {
+		if (defaultPool==null) defaultPool=new ForkJoinPool();
+		return defaultPool;
+	}
+
+	/**
+	 * Sets the default pool used for parallel multiplication.
+	 */
+	public static synchronized void setDefaultPool(ForkJoinPool pool) {
+		if (pool==null) throw new IllegalArgumentException("Pool cannot be null");
+		defaultPool=pool;
+	}
+
+	/**
+	 * Returns true if the product of a and b is large enough to benefit from parallel multiplication
+	 */
+	public static boolean isParallelWorthwhile(AMatrix a, AMatrix b) {
+		long flops=((long)a.rowCount())*a.columnCount()*b.columnCount();
+		return (flops>=PARALLEL_THRESHOLD)&&(Runtime.getRuntime().availableProcessors()>1);
+	}
+
+	/**
+	 * Multiplies two matrices in parallel using the default pool
+	 */
+	public static Matrix multiply(AMatrix a, AMatrix b) {
+		return multiply(a,b,getDefaultPool());
+	}
+
+	/**
+	 * Multiplies two matrices in parallel using the given pool
+	 */
+	public static Matrix multiply(AMatrix a, AMatrix b, ForkJoinPool pool) {
+		Matrix result=Matrix.create(a.rowCount(), b.columnCount());
+		multiply(a,b,result,pool);
+		return result;
+	}
+
+	/**
+	 * Multiplies two matrices in parallel using the given pool, storing the result in c.
+	 *
+	 * c must not share storage with a or b.
+	 */
+	public static void multiply(AMatrix a, AMatrix b, Matrix c, ForkJoinPool pool) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		int k=a.columnCount();
+		if (k!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		if ((c.rowCount()!=m)||(c.columnCount()!=n)) throw new IllegalArgumentException(ErrorMessages.incompatibleShape(c));
+		multiply(m,n,k,a,0,0,b,0,0,c.data,0,n,pool);
+	}
+
+	/**
+	 * Computes C = A*B in parallel on sub-blocks of the given matrices, where A is the m x k block of a
+	 * starting at (ai,aj), B is the k x n block of b starting at (bi,bj) and C is the m x n block stored
+	 * in the array c at offset cOffset with row stride cRowStride.
+	 *
+	 * No bounds checking is performed on the blocks. The storage of C must not overlap A or B.
+	 */
+	public static void multiply(int m, int n, int k,
+			AMatrix a, int ai, int aj,
+			AMatrix b, int bi, int bj,
+			double[] c, int cOffset, int cRowStride, ForkJoinPool pool) {
+		gemm(m,n,k,1.0,a,ai,aj,b,bi,bj,0.0,c,cOffset,cRowStride,pool);
+	}
+
+	/**
+	 * Performs the operation C = alpha*A*B + beta*C in parallel on sub-blocks of the given matrices,
+	 * with blocks specified as for {@link PackedMatrixMult#gemm(int, int, int, double, AMatrix, int, int, AMatrix, int, int, double, double[], int, int)}
+	 *
+	 * No bounds checking is performed on the blocks. The storage of C must not overlap A or B.
+	 */
+	public static void gemm(int m, int n, int k, double alpha,
+			AMatrix a, int ai, int aj,
+			AMatrix b, int bi, int bj,
+			double beta, double[] c, int cOffset, int cRowStride, ForkJoinPool pool) {
+		if ((m==0)||(n==0)) return;
+		pool.invoke(new MultiplyTask(alpha,a,ai,aj,b,bi,bj,beta,c,cOffset,cRowStride,0,m,0,n,k));
+	}
+
+	@SuppressWarnings("serial")
+	private static final class MultiplyTask extends RecursiveAction {
+		private final double alpha,beta;
+		private final AMatrix a;
+		private final AMatrix b;
+		private final double[] c;
+		private final int ai,aj,bi,bj,cOffset,ldc;
+		private final int i0,m,j0,n,k;
+
+		private MultiplyTask(double alpha, AMatrix a, int ai, int aj, AMatrix b, int bi, int bj, double beta, double[] c, int cOffset, int ldc,
+				int i0, int m, int j0, int n, int k) {
+			this.alpha=alpha;
+			this.beta=beta;
+			this.a=a;
+			this.ai=ai;
+			this.aj=aj;
+			this.b=b;
+			this.bi=bi;
+			this.bj=bj;
+			this.c=c;
+			this.cOffset=cOffset;
+			this.ldc=ldc;
+			this.i0=i0;
+			this.m=m;
+			this.j0=j0;
+			this.n=n;
+			this.k=k;
+		}
+
+		private MultiplyTask subTask(int i0, int m, int j0, int n) {
+			return new MultiplyTask(alpha,a,ai,aj,b,bi,bj,beta,c,cOffset,ldc,i0,m,j0,n,k);
+		}
+
+		@Override
+		protected void compute() {
+			long work=((long)m)*n*k;
+			if ((work<=TASK_SIZE)||((m<=PackedMatrixMult.MR)&&(n<=PackedMatrixMult.NR))) {
+				PackedMatrixMult.gemm(m,n,k,alpha,a,ai+i0,aj,b,bi,bj+j0,beta,c,cOffset+i0*ldc+j0,ldc);
+				return;
+			}
+			// split the larger dimension, keeping tile edges aligned to the micro-kernel
+			if (m>=n) {
+				int half=split(m,PackedMatrixMult.MR);
+				invokeAll(subTask(i0,half,j0,n),
+						  subTask(i0+half,m-half,j0,n));
+			} else {
+				int half=split(n,PackedMatrixMult.NR);
+				invokeAll(subTask(i0,m,j0,half),
+						  subTask(i0,m,j0+half,n-half));
+			}
+		}
+
+		private static int split(int size, int align) {
+			int half=((size/2+align-1)/align)*align;
+			return (half>=size)?size/2:half;
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package mikera.matrixx.algo.mult;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import mikera.indexz.Index;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.impl.AStridedMatrix;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.CompressedSparseRowMatrix;
+import mikera.matrixx.impl.SparseColumnMatrix;
+import mikera.matrixx.impl.SparseRowMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.impl.ASparseVector;
+import mikera.vectorz.impl.SparseHashedVector;
+import mikera.vectorz.impl.SparseIndexedVector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Multiplication kernels for sparse matrices.
+ *
+ * Sparse-by-dense products are computed in "axpy" form: for each non-zero element a(i,k) of the
+ * sparse matrix, a(i,k) times row k of the dense operand is added into row i of the result. Each
+ * non-zero therefore costs one sequential pass over a row of the dense operand, and no column
+ * views or dot products are needed.
+ *
+ * Sparse-by-sparse products (SpGEMM) use Gustavson's row-wise algorithm: each result row is accumulated
+ * from the sparse rows of the right operand selected by the non-zeros in the corresponding row of the left
+ * operand, so the work is proportional to the number of non-trivial multiply-adds rather than to the size
+ * of the result. Row accumulation uses a dense array with a marker for touched columns, or a hashed
+ * accumulator for very wide results.
+ *
+ * @author Mike
+ */
+public class SparseMatrixMult {
+	/**
+	 * Maximum result width for which SpGEMM uses a dense row accumulator. Wider results use a hashed
+	 * accumulator, so memory use does not depend on the column count.
+	 */
+	public static int DENSE_ACCUMULATOR_LIMIT=1<<20;
+
+	/**
+	 * Multiplies a sparse row matrix by any matrix, returning a dense result.
+	 * Each result row is accumulated from the rows of b selected by the non-zeros of the corresponding row of a.
+	 */
+	public static Matrix multiply(SparseRowMatrix a, AMatrix b) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		if (a.columnCount()!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		Matrix c=Matrix.create(m, n);
+		if (n==0) return c;
+		double[] cd=c.data;
+		for (int i=0; i<m; i++) {
+			addRowCombination(a.getRow(i),b,cd,i*n);
+		}
+		return c;
+	}
+
+	/**
+	 * Multiplies a sparse column matrix by any matrix, returning a dense result.
+	 *
+	 * This is the transposed form of the sparse row kernel: for each column k of a, row k of b is
+	 * scattered into every result row i where a(i,k) is non-zero.
+	 */
+	public static Matrix multiply(SparseColumnMatrix a, AMatrix b) {
+		int m=a.rowCount();
+		int kk=a.columnCount();
+		int n=b.columnCount();
+		if (kk!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		Matrix c=Matrix.create(m, n);
+		if (n==0) return c;
+		double[] cd=c.data;
+		for (int k=0; k<kk; k++) {
+			AVector col=a.getColumn(k);
+			if (col instanceof ASparseVector) {
+				ASparseVector sv=(ASparseVector)col;
+				int[] ixs=sv.nonSparseIndexes().data;
+				AVector vals=sv.nonSparseValues();
+				for (int p=0; p<ixs.length; p++) {
+					double v=vals.unsafeGet(p);
+					if (v!=0.0) addMultipleOfRow(v,b,k,cd,ixs[p]*n,n);
+				}
+			} else {
+				for (int i=0; i<m; i++) {
+					double v=col.unsafeGet(i);
+					if (v!=0.0) addMultipleOfRow(v,b,k,cd,i*n,n);
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Multiplies a CSR matrix by any matrix, returning a dense result.
+	 */
+	public static Matrix multiply(CompressedSparseRowMatrix a, AMatrix b) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		if (a.columnCount()!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		Matrix c=Matrix.create(m, n);
+		if (n==0) return c;
+		double[] cd=c.data;
+		int[] ptr=a.getRowPointers();
+		int[] ixs=a.getColumnIndexes();
+		double[] vals=a.getValues();
+		for (int i=0; i<m; i++) {
+			int ci=i*n;
+			for (int p=ptr[i], end=ptr[i+1]; p<end; p++) {
+				double v=vals[p];
+				if (v!=0.0) addMultipleOfRow(v,b,ixs[p],cd,ci,n);
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Multiplies a CSC matrix by any matrix, returning a dense result.
+	 */
+	public static Matrix multiply(CompressedSparseColumnMatrix a, AMatrix b) {
+		int m=a.rowCount();
+		int kk=a.columnCount();
+		int n=b.columnCount();
+		if (kk!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		Matrix c=Matrix.create(m, n);
+		if (n==0) return c;
+		double[] cd=c.data;
+		int[] ptr=a.getColumnPointers();
+		int[] ixs=a.getRowIndexes();
+		double[] vals=a.getValues();
+		for (int k=0; k<kk; k++) {
+			for (int p=ptr[k], end=ptr[k+1]; p<end; p++) {
+				double v=vals[p];
+				if (v!=0.0) addMultipleOfRow(v,b,k,cd,ixs[p]*n,n);
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Adds x * b to a row-major destination row, i.e. adds x(k) times row k of b for each non-zero x(k).
+	 */
+	public static void addRowCombination(AVector x, AMatrix b, double[] dest, int destOffset) {
+		int n=b.columnCount();
+		if (x instanceof ASparseVector) {
+			ASparseVector sv=(ASparseVector)x;
+			int[] ixs=sv.nonSparseIndexes().data;
+			AVector vals=sv.nonSparseValues();
+			for (int p=0; p<ixs.length; p++) {
+				double v=vals.unsafeGet(p);
+				if (v!=0.0) addMultipleOfRow(v,b,ixs[p],dest,destOffset,n);
+			}
+		} else {
+			int len=x.length();
+			for (int k=0; k<len; k++) {
+				double v=x.unsafeGet(k);
+				if (v!=0.0) addMultipleOfRow(v,b,k,dest,destOffset,n);
+			}
+		}
+	}
+
+	/**
+	 * dest[destOffset+j] += factor * b(k,j) for j = 0..n-1
+	 */
+	private static void addMultipleOfRow(double factor, AMatrix b, int k, double[] dest, int destOffset, int n) {
+		if (b instanceof AStridedMatrix) {
+			AStridedMatrix sb=(AStridedMatrix)b;
+			double[] bd=sb.data;
+			int cs=sb.columnStride();
+			int bi=sb.getArrayOffset()+k*sb.rowStride();
+			if (cs==1) {
+				for (int j=0; j<n; j++) {
+					dest[destOffset+j]+=factor*bd[bi+j];
+				}
+			} else {
+				for (int j=0; j<n; j++) {
+					dest[destOffset+j]+=factor*bd[bi+j*cs];
+				}
+			}
+		} else {
+			b.getRow(k).addMultipleToArray(factor, 0, dest, destOffset, n);
+		}
+	}
+
+	/**
+	 * Sparse-sparse matrix multiplication of two sparse row matrices, returning a sparse row matrix.
+	 */
+	public static SparseRowMatrix multiply(SparseRowMatrix a, SparseRowMatrix b) {
+		if (a.columnCount()!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		return gustavson(a,CompressedSparseRowMatrix.create(b));
+	}
+
+	/**
+	 * Sparse-sparse matrix multiplication of a sparse row matrix by a sparse column matrix, returning a sparse row matrix.
+	 * The columns of b are first regrouped into rows, in time proportional to the number of non-zeros in b.
+	 */
+	public static SparseRowMatrix multiply(SparseRowMatrix a, SparseColumnMatrix b) {
+		if (a.columnCount()!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		return gustavson(a,CompressedSparseColumnMatrix.create(b).toCompressedRows());
+	}
+
+	/**
+	 * Sparse-sparse matrix multiplication of two CSR matrices, returning a CSR matrix.
+	 */
+	public static CompressedSparseRowMatrix multiply(CompressedSparseRowMatrix a, CompressedSparseRowMatrix b) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		if (a.columnCount()!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		int[] aptr=a.getRowPointers();
+		int[] aix=a.getColumnIndexes();
+		double[] avals=a.getValues();
+		RowAccumulator acc=new RowAccumulator(b);
+
+		int[] ptr=new int[m+1];
+		int capacity=Math.max(16, a.storedElementCount());
+		int[] ixs=new int[capacity];
+		double[] vals=new double[capacity];
+		int nnz=0;
+		for (int i=0; i<m; i++) {
+			acc.clear();
+			for (int p=aptr[i], end=aptr[i+1]; p<end; p++) {
+				acc.addRow(avals[p], aix[p]);
+			}
+			int cnt=acc.finish();
+			if (nnz+cnt>capacity) {
+				capacity=Math.max(capacity*2, nnz+cnt);
+				ixs=Arrays.copyOf(ixs, capacity);
+				vals=Arrays.copyOf(vals, capacity);
+			}
+			System.arraycopy(acc.resultIndexes, 0, ixs, nnz, cnt);
+			System.arraycopy(acc.resultValues, 0, vals, nnz, cnt);
+			nnz+=cnt;
+			ptr[i+1]=nnz;
+		}
+		return CompressedSparseRowMatrix.wrap(m, n, ptr, Arrays.copyOf(ixs, nnz), Arrays.copyOf(vals, nnz));
+	}
+
+	private static SparseRowMatrix gustavson(SparseRowMatrix a, CompressedSparseRowMatrix b) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		RowAccumulator acc=new RowAccumulator(b);
+		HashMap<Integer,AVector> rows=new HashMap<Integer,AVector>();
+		for (int i=0; i<m; i++) {
+			AVector row=a.getRow(i);
+			acc.clear();
+			if (row instanceof ASparseVector) {
+				ASparseVector sv=(ASparseVector)row;
+				int[] ixs=sv.nonSparseIndexes().data;
+				if (ixs.length==0) continue;
+				AVector vals=sv.nonSparseValues();
+				for (int p=0; p<ixs.length; p++) {
+					acc.addRow(vals.unsafeGet(p), ixs[p]);
+				}
+			} else {
+				int len=row.length();
+				for (int k=0; k<len; k++) {
+					acc.addRow(row.unsafeGet(k), k);
+				}
+			}
+			int cnt=acc.finish();
+			if (cnt==0) continue;
+			rows.put(i, SparseIndexedVector.wrap(n, Index.wrap(Arrays.copyOf(acc.resultIndexes, cnt)), Arrays.copyOf(acc.resultValues, cnt)));
+		}
+		return SparseRowMatrix.wrap(rows, m, n);
+	}
+
+	/**
+	 * Accumulates one sparse result row as a linear combination of the rows of a CSR matrix.
+	 */
+	private static final class RowAccumulator {
+		private final int[] bptr;
+		private final int[] bix;
+		private final double[] bvals;
+
+		// dense accumulator: values plus the columns touched in the current row
+		private final double[] dense;
+		private final boolean[] used;
+		private int[] touched;
+		private int touchedCount;
+
+		// hashed accumulator, used when the result is too wide for a dense accumulator
+		private final SparseHashedVector hashed;
+
+		int[] resultIndexes;
+		double[] resultValues;
+
+		private RowAccumulator(CompressedSparseRowMatrix b) {
+			bptr=b.getRowPointers();
+			bix=b.getColumnIndexes();
+			bvals=b.getValues();
+			int n=b.columnCount();
+			if (n<=DENSE_ACCUMULATOR_LIMIT) {
+				dense=new double[n];
+				used=new boolean[n];
+				touched=new int[16];
+				hashed=null;
+			} else {
+				dense=null;
+				used=null;
+				hashed=SparseHashedVector.createLength(n);
+			}
+			resultIndexes=new int[16];
+			resultValues=new double[16];
+		}
+
+		private void clear() {
+			if (hashed!=null) {
+				hashed.multiply(0.0);
+			} else {
+				touchedCount=0;
+			}
+		}
+
+		/**
+		 * Adds factor * row k of b to the accumulator
+		 */
+		private void addRow(double factor, int k) {
+			if (factor==0.0) return;
+			int start=bptr[k];
+			int end=bptr[k+1];
+			if (hashed!=null) {
+				for (int p=start; p<end; p++) {
+					hashed.addAt(bix[p], factor*bvals[p]);
+				}
+				return;
+			}
+			if (touchedCount+(end-start)>touched.length) {
+				touched=Arrays.copyOf(touched, Math.max(touched.length*2, touchedCount+(end-start)));
+			}
+			for (int p=start; p<end; p++) {
+				int j=bix[p];
+				double v=factor*bvals[p];
+				if (used[j]) {
+					dense[j]+=v;
+				} else {
+					used[j]=true;
+					dense[j]=v;
+					touched[touchedCount++]=j;
+				}
+			}
+		}
+
+		/**
+		 * Moves the non-zero accumulated values into resultIndexes / resultValues in column order,
+		 * resets the accumulator and returns the number of results
+		 */
+		private int finish() {
+			if (hashed!=null) {
+				int[] ixs=hashed.nonZeroIndices();
+				int cnt=ixs.length;
+				ensureResultCapacity(cnt);
+				for (int p=0; p<cnt; p++) {
+					resultIndexes[p]=ixs[p];
+					resultValues[p]=hashed.unsafeGet(ixs[p]);
+				}
+				return cnt;
+			}
+			int tc=touchedCount;
+			Arrays.sort(touched, 0, tc);
+			ensureResultCapacity(tc);
+			int cnt=0;
+			for (int p=0; p<tc; p++) {
+				int j=touched[p];
+				double v=dense[j];
+				used[j]=false;
+				if (v==0.0) continue; // exact cancellation
+				resultIndexes[cnt]=j;
+				resultValues[cnt++]=v;
+			}
+			touchedCount=0;
+			return cnt;
+		}
+
+		private void ensureResultCapacity(int n) {
+			if (n>resultIndexes.length) {
+				int cap=Math.max(n, resultIndexes.length*2);
+				resultIndexes=new int[cap];
+				resultValues=new double[cap];
+			}
+		}
+	}
+}
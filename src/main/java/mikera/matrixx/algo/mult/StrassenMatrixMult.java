@@ -0,0 +1,195 @@
+package mikera.matrixx.algo.mult;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.impl.StridedMatrix;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Strassen-Winograd matrix multiplication for large dense matrices.
+ *
+ * Each level of recursion splits A, B and C into 2x2 quadrants (as zero-copy views into the
+ * underlying arrays, in the same way as a QuadtreeMatrix) and forms the product with 7 quadrant
+ * multiplications and 15 additions instead of 8 multiplications. Recursion stops once any
+ * dimension falls below {@link #CUTOFF}, at which point the dense packed / parallel kernel is used.
+ * Odd dimensions are handled by peeling off the last row / column and fixing up with a dense
+ * multiply.
+ *
+ * Scheduling follows Boyer, Dumas, Pernet and Zhou (2009), which needs only two quadrant-sized
+ * temporaries per level plus one for the first product.
+ *
+ * Accuracy: the classical algorithm has a componentwise error bound |C - fl(AB)| <= n.u.|A||B|.
+ * Strassen-Winograd only satisfies a normwise bound of the form ||C - fl(AB)|| <= c.n^(log2 12).u.||A||.||B||
+ * (growing by a modest constant factor for each level of recursion). Results are therefore not bitwise
+ * identical to the classical algorithm, and small elements of the result may have large relative errors
+ * when A or B have rows / columns of widely differing scale. Use {@link PackedMatrixMult} directly if
+ * this is a concern.
+ *
+ * @author Mike
+ */
+public class StrassenMatrixMult {
+	/**
+	 * Minimum size of every dimension for a Strassen-Winograd recursion step. Below this the
+	 * dense kernel is faster.
+	 */
+	public static volatile int CUTOFF=1024;
+
+	/**
+	 * Minimum size of every dimension for Strassen-Winograd to be used automatically by
+	 * {@link mikera.matrixx.algo.Multiplications#multiply(AMatrix, AMatrix)}
+	 */
+	public static volatile int THRESHOLD=4096;
+
+	/**
+	 * Maximum ratio between the largest and smallest dimension for Strassen-Winograd to be used
+	 * automatically. Strongly rectangular products gain little from recursion.
+	 */
+	public static int MAX_ASPECT_RATIO=2;
+
+	/**
+	 * Returns true if the product of a and b is large and square enough to benefit from Strassen-Winograd
+	 */
+	public static boolean isStrassenWorthwhile(AMatrix a, AMatrix b) {
+		int m=a.rowCount();
+		int k=a.columnCount();
+		int n=b.columnCount();
+		int min=Math.min(m, Math.min(n, k));
+		int max=Math.max(m, Math.max(n, k));
+		return (min>=THRESHOLD)&&(max<=((long)min)*MAX_ASPECT_RATIO);
+	}
+
+	/**
+	 * Multiplies two dense matrices using Strassen-Winograd, returning a new matrix
+	 */
+	public static Matrix multiply(Matrix a, Matrix b) {
+		Matrix result=Matrix.create(a.rowCount(), b.columnCount());
+		multiply(a,b,result);
+		return result;
+	}
+
+	/**
+	 * Multiplies two dense matrices using Strassen-Winograd, storing the result in c.
+	 *
+	 * c must not share storage with a or b.
+	 */
+	public static void multiply(Matrix a, Matrix b, Matrix c) {
+		int m=a.rowCount();
+		int n=b.columnCount();
+		int k=a.columnCount();
+		if (k!=b.rowCount()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(a, b));
+		if ((c.rowCount()!=m)||(c.columnCount()!=n)) throw new IllegalArgumentException(ErrorMessages.incompatibleShape(c));
+		if ((m==0)||(n==0)) return;
+		mult(m,n,k,a.data,0,k,b.data,0,n,c.data,0,n);
+	}
+
+	/**
+	 * Computes C = A*B where A, B, C are row-major blocks within arrays with the given offsets and row strides
+	 */
+	private static void mult(int m, int n, int k,
+			double[] a, int ao, int lda,
+			double[] b, int bo, int ldb,
+			double[] c, int co, int ldc) {
+		if ((m<CUTOFF)||(n<CUTOFF)||(k<CUTOFF)) {
+			dense(m,n,k,a,ao,lda,b,bo,ldb,0.0,c,co,ldc);
+			return;
+		}
+
+		// peel off odd row / column so quadrants are all the same size
+		int m2=m/2, n2=n/2, k2=k/2;
+		int me=2*m2, ne=2*n2, ke=2*k2;
+		winograd(m2,n2,k2,a,ao,lda,b,bo,ldb,c,co,ldc);
+
+		if (ke<k) {
+			// C[0:me,0:ne] += A[0:me,ke:k] * B[ke:k,0:ne]
+			dense(me,ne,k-ke,a,ao+ke,lda,b,bo+ke*ldb,ldb,1.0,c,co,ldc);
+		}
+		if (ne<n) {
+			// C[0:me,ne:n] = A[0:me,:] * B[:,ne:n]
+			dense(me,n-ne,k,a,ao,lda,b,bo+ne,ldb,0.0,c,co+ne,ldc);
+		}
+		if (me<m) {
+			// C[me:m,:] = A[me:m,:] * B
+			dense(m-me,n,k,a,ao+me*lda,lda,b,bo,ldb,0.0,c,co+me*ldc,ldc);
+		}
+	}
+
+	/**
+	 * One level of Strassen-Winograd on quadrants of size (m2 x k2) * (k2 x n2)
+	 */
+	private static void winograd(int m2, int n2, int k2,
+			double[] a, int ao, int lda,
+			double[] b, int bo, int ldb,
+			double[] c, int co, int ldc) {
+		int a11=ao, a12=ao+k2, a21=ao+m2*lda, a22=a21+k2;
+		int b11=bo, b12=bo+n2, b21=bo+k2*ldb, b22=b21+n2;
+		int c11=co, c12=co+n2, c21=co+m2*ldc, c22=c21+n2;
+
+		double[] x=new double[m2*k2];
+		double[] y=new double[k2*n2];
+		double[] z=new double[m2*n2];
+
+		sub(m2,k2,a,a11,lda,a,a21,lda,x,0,k2);          // S3 = A11 - A21
+		sub(k2,n2,b,b22,ldb,b,b12,ldb,y,0,n2);          // T3 = B22 - B12
+		mult(m2,n2,k2,x,0,k2,y,0,n2,c,c21,ldc);          // P7 = S3*T3 -> C21
+		add(m2,k2,a,a21,lda,a,a22,lda,x,0,k2);          // S1 = A21 + A22
+		sub(k2,n2,b,b12,ldb,b,b11,ldb,y,0,n2);          // T1 = B12 - B11
+		mult(m2,n2,k2,x,0,k2,y,0,n2,c,c22,ldc);          // P5 = S1*T1 -> C22
+		sub(m2,k2,x,0,k2,a,a11,lda,x,0,k2);             // S2 = S1 - A11
+		sub(k2,n2,b,b22,ldb,y,0,n2,y,0,n2);             // T2 = B22 - T1
+		mult(m2,n2,k2,x,0,k2,y,0,n2,c,c12,ldc);          // P6 = S2*T2 -> C12
+		sub(m2,k2,a,a12,lda,x,0,k2,x,0,k2);             // S4 = A12 - S2
+		mult(m2,n2,k2,x,0,k2,b,b22,ldb,c,c11,ldc);       // P3 = S4*B22 -> C11
+		mult(m2,n2,k2,a,a11,lda,b,b11,ldb,z,0,n2);       // P1 = A11*B11 -> Z
+		add(m2,n2,z,0,n2,c,c12,ldc,c,c12,ldc);          // U2 = P1 + P6 -> C12
+		add(m2,n2,c,c12,ldc,c,c21,ldc,c,c21,ldc);       // U3 = U2 + P7 -> C21
+		add(m2,n2,c,c12,ldc,c,c22,ldc,c,c12,ldc);       // U4 = U2 + P5 -> C12
+		add(m2,n2,c,c21,ldc,c,c22,ldc,c,c22,ldc);       // U7 = U3 + P5 -> C22
+		add(m2,n2,c,c12,ldc,c,c11,ldc,c,c12,ldc);       // U5 = U4 + P3 -> C12
+		sub(k2,n2,y,0,n2,b,b21,ldb,y,0,n2);             // T4 = T2 - B21
+		mult(m2,n2,k2,a,a22,lda,y,0,n2,c,c11,ldc);       // P4 = A22*T4 -> C11
+		sub(m2,n2,c,c21,ldc,c,c11,ldc,c,c21,ldc);       // U6 = U3 - P4 -> C21
+		mult(m2,n2,k2,a,a12,lda,b,b21,ldb,c,c11,ldc);    // P2 = A12*B21 -> C11
+		add(m2,n2,z,0,n2,c,c11,ldc,c,c11,ldc);          // U1 = P1 + P2 -> C11
+	}
+
+	/**
+	 * Dense kernel for the base case and fix-ups: C = A*B + beta*C
+	 */
+	private static void dense(int m, int n, int k,
+			double[] a, int ao, int lda,
+			double[] b, int bo, int ldb,
+			double beta, double[] c, int co, int ldc) {
+		if ((m==0)||(n==0)) return;
+		AMatrix av=StridedMatrix.wrap(a, m, k, ao, lda, 1);
+		AMatrix bv=StridedMatrix.wrap(b, k, n, bo, ldb, 1);
+		if ((beta==0.0)&&ParallelMatrixMult.isParallelWorthwhile(av, bv)) {
+			ParallelMatrixMult.multiply(m,n,k,av,0,0,bv,0,0,c,co,ldc,ParallelMatrixMult.getDefaultPool());
+		} else {
+			PackedMatrixMult.gemm(m,n,k,1.0,av,0,0,bv,0,0,beta,c,co,ldc);
+		}
+	}
+
+	/**
+	 * Z = X + Y for row-major blocks. Z may be the same block as X or Y.
+	 */
+	private static void add(int rows, int cols, double[] x, int xo, int ldx, double[] y, int yo, int ldy, double[] z, int zo, int ldz) {
+		for (int i=0; i<rows; i++) {
+			int xi=xo+i*ldx, yi=yo+i*ldy, zi=zo+i*ldz;
+			for (int j=0; j<cols; j++) {
+				z[zi+j]=x[xi+j]+y[yi+j];
+			}
+		}
+	}
+
+	/**
+	 * Z = X - Y for row-major blocks. Z may be the same block as X or Y.
+	 */
+	private static void sub(int rows, int cols, double[] x, int xo, int ldx, double[] y, int yo, int ldy, double[] z, int zo, int ldz) {
+		for (int i=0; i<rows; i++) {
+			int xi=xo+i*ldx, yi=yo+i*ldy, zi=zo+i*ldz;
+			for (int j=0; j<cols; j++) {
+				z[zi+j]=x[xi+j]-y[yi+j];
+			}
+		}
+	}
+}
@@ -65,7 +65,7 @@ public class VectorVectorMult {
 
     double total = 0;
     for (int i = 0; i < m; i++) {
-      total += x.get(i) * y.get(i);
+      total += x.data[i] * y.data[i];
     }
 
     return total;
@@ -96,10 +96,10 @@ public class VectorVectorMult {
       double total = 0;
 
       for (int j = 0; j < n; j++) {
-        total += x.get(j) * A.get(j, i);
+        total += x.data[j] * A.get(j, i);
       }
 
-      result += total * y.get(i);
+      result += total * y.data[i];
     }
 
     return result;
@@ -133,10 +133,10 @@ public class VectorVectorMult {
       double total = 0;
 
       for (int j = 0; j < n; j++) {
-        total += x.get(j) * A.get(i, j);
+        total += x.data[j] * A.get(i, j);
       }
 
-      result += total * y.get(i);
+      result += total * y.data[i];
     }
 
     return result;
@@ -171,9 +171,9 @@ public class VectorVectorMult {
 
     int index = 0;
     for (int i = 0; i < m; i++) {
-      double xdat = x.get(i);
+      double xdat = x.data[i];
       for (int j = 0; j < n; j++) {
-        A.set(index++, xdat * y.get(j));
+        A.data[index++] = xdat * y.data[j];
       }
     }
   }
@@ -210,16 +210,16 @@ public class VectorVectorMult {
     int index = 0;
     if (gamma == 1.0) {
       for (int i = 0; i < m; i++) {
-        double xdat = x.get(i);
+        double xdat = x.data[i];
         for (int j = 0; j < n; j++) {
-          A.addAt(index++, xdat * y.get(j));
+          A.data[index++] += xdat * y.data[j];
         }
       }
     } else {
       for (int i = 0; i < m; i++) {
-        double xdat = x.get(i);
+        double xdat = x.data[i];
         for (int j = 0; j < n; j++) {
-          A.addAt(index++, gamma * xdat * y.get(j));
+          A.data[index++] += gamma * xdat * y.data[j];
         }
       }
     }
@@ -245,10 +245,10 @@ public class VectorVectorMult {
 
     double sum = 0;
     for (int i = 0; i < n; i++) {
-      sum += u.get(i) * x.get(i);
+      sum += u.data[i] * x.data[i];
     }
     for (int i = 0; i < n; i++) {
-      y.set(i, x.get(i) + gamma * u.get(i) * sum);
+      y.data[i] = x.data[i] + gamma * u.data[i] * sum;
     }
   }
 
@@ -0,0 +1,253 @@
+package mikera.matrixx.impl;
+
+import java.util.Arrays;
+
+import mikera.arrayz.ISparse;
+import mikera.indexz.Index;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.impl.SparseImmutableVector;
+import mikera.vectorz.impl.ZeroVector;
+import mikera.vectorz.util.ErrorMessages;
+import mikera.vectorz.util.VectorzException;
+
+/**
+ * Abstract base class for compressed sparse matrices (CSR / CSC).
+ *
+ * Non-zero elements are stored line by line (a line is a row for CSR, a column for CSC) in three
+ * primitive arrays:
+ * - pointers: for each line, the position of its first element in the index / value arrays. Length is lineCount()+1
+ * - indexes: the position of each element within its line, sorted within each line
+ * - values: the value of each element
+ *
+ * The sparsity structure is fixed once the matrix is created: existing elements may be changed freely, but
+ * setting a structurally zero element to a non-zero value is not supported.
+ *
+ * @author Mike
+ *
+ */
+public abstract class ACompressedSparseMatrix extends ARectangularMatrix implements ISparse {
+	private static final long serialVersionUID = -2640466893587137387L;
+
+	protected final int[] pointers;
+	protected final int[] indexes;
+	protected final double[] values;
+
+	protected ACompressedSparseMatrix(int rows, int cols, int[] pointers, int[] indexes, double[] values) {
+		super(rows, cols);
+		this.pointers=pointers;
+		this.indexes=indexes;
+		this.values=values;
+	}
+
+	protected abstract int lineCount();
+
+	protected abstract int lineLength();
+
+	/**
+	 * Returns the number of stored elements. Stored elements may include explicit zeros.
+	 */
+	public final int storedElementCount() {
+		return pointers[lineCount()];
+	}
+
+	/**
+	 * Returns the internal value array. Only the first storedElementCount() elements are used.
+	 */
+	public final double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Gets the position of an element in the index / value arrays, or a negative number if
+	 * it is not stored.
+	 */
+	protected final int find(int line, int pos) {
+		return Arrays.binarySearch(indexes, pointers[line], pointers[line+1], pos);
+	}
+
+	protected final double lineGet(int line, int pos) {
+		int k=find(line,pos);
+		return (k<0)?0.0:values[k];
+	}
+
+	/**
+	 * Sets an element within a line. Returns false if the element is not stored and the value is non-zero,
+	 * in which case the matrix is unchanged.
+	 */
+	protected final boolean lineSet(int line, int pos, double value) {
+		int k=find(line,pos);
+		if (k>=0) {
+			values[k]=value;
+			return true;
+		}
+		return value==0.0;
+	}
+
+	/**
+	 * Returns a line as a new immutable sparse vector
+	 */
+	protected final AVector lineVector(int line) {
+		int start=pointers[line];
+		int end=pointers[line+1];
+		int len=lineLength();
+		if (start==end) return ZeroVector.create(len);
+		return SparseImmutableVector.wrap(len, Index.wrap(Arrays.copyOfRange(indexes, start, end)), Arrays.copyOfRange(values, start, end));
+	}
+
+	protected final void copyLineTo(int line, double[] dest, int destOffset) {
+		Arrays.fill(dest, destOffset, destOffset+lineLength(), 0.0);
+		for (int k=pointers[line], end=pointers[line+1]; k<end; k++) {
+			dest[destOffset+indexes[k]]=values[k];
+		}
+	}
+
+	@Override
+	public boolean isSparse() {
+		return true;
+	}
+
+	@Override
+	public final boolean isMutable() {
+		return true;
+	}
+
+	@Override
+	public final boolean isFullyMutable() {
+		return false;
+	}
+
+	@Override
+	public boolean isZero() {
+		for (int k=0, n=storedElementCount(); k<n; k++) {
+			if (values[k]!=0.0) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public long nonZeroCount() {
+		long result=0;
+		for (int k=0, n=storedElementCount(); k<n; k++) {
+			if (values[k]!=0.0) result++;
+		}
+		return result;
+	}
+
+	@Override
+	public double density() {
+		long n=elementCount();
+		if (n==0) return 0.0;
+		return ((double)nonZeroCount())/n;
+	}
+
+	@Override
+	public double elementSum() {
+		double result=0.0;
+		for (int k=0, n=storedElementCount(); k<n; k++) {
+			result+=values[k];
+		}
+		return result;
+	}
+
+	@Override
+	public double elementSquaredSum() {
+		double result=0.0;
+		for (int k=0, n=storedElementCount(); k<n; k++) {
+			double v=values[k];
+			result+=v*v;
+		}
+		return result;
+	}
+
+	@Override
+	public void multiply(double factor) {
+		for (int k=0, n=storedElementCount(); k<n; k++) {
+			values[k]*=factor;
+		}
+	}
+
+	@Override
+	public void transformInPlace(AVector v) {
+		if (rows!=cols) throw new UnsupportedOperationException("Cannot transform in place with a non-square transformation");
+		if (v.length()!=rows) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(this,v));
+		Vector result=Vector.createLength(rows);
+		transform(Vector.create(v),result);
+		v.set(result);
+	}
+
+	@Override
+	public double[] toDoubleArray() {
+		double[] result=Matrix.createStorage(rows,cols);
+		addToArray(result,0);
+		return result;
+	}
+
+	@Override
+	public Matrix toMatrix() {
+		Matrix m=Matrix.create(rows, cols);
+		addToArray(m.data,0);
+		return m;
+	}
+
+	@Override
+	public Matrix dense() {
+		return toMatrix();
+	}
+
+	@Override
+	public AMatrix sparse() {
+		return this;
+	}
+
+	@Override
+	public void validate() {
+		super.validate();
+		int lc=lineCount();
+		int len=lineLength();
+		if (pointers.length!=lc+1) throw new VectorzException("Wrong length pointer array: "+pointers.length);
+		if (pointers[0]!=0) throw new VectorzException("First pointer must be zero");
+		if (pointers[lc]>indexes.length) throw new VectorzException("Index array too short: "+indexes.length);
+		if (pointers[lc]>values.length) throw new VectorzException("Value array too short: "+values.length);
+		for (int i=0; i<lc; i++) {
+			int start=pointers[i];
+			int end=pointers[i+1];
+			if (end<start) throw new VectorzException("Decreasing pointer at line: "+i);
+			for (int k=start; k<end; k++) {
+				int ix=indexes[k];
+				if ((ix<0)||(ix>=len)) throw new VectorzException("Index out of bounds: "+ix+" at line: "+i);
+				if ((k>start)&&(ix<=indexes[k-1])) throw new VectorzException("Indexes not sorted and distinct at line: "+i);
+			}
+		}
+	}
+
+	/**
+	 * Switches compressed storage between row-major and column-major orientation using a counting sort.
+	 * The destination arrays must be preallocated: tptr with length lineLength+1, tixs and tvals with at least
+	 * as many elements as are stored in the source.
+	 *
+	 * @param lineCount Number of lines in the source storage
+	 * @param lineLength Length of each line in the source storage, i.e. number of lines in the destination
+	 */
+	static void transposeStorage(int lineCount, int lineLength, int[] ptr, int[] ixs, double[] vals,
+			int[] tptr, int[] tixs, double[] tvals) {
+		int n=ptr[lineCount];
+		Arrays.fill(tptr, 0);
+		for (int k=0; k<n; k++) {
+			tptr[ixs[k]+1]++;
+		}
+		for (int j=0; j<lineLength; j++) {
+			tptr[j+1]+=tptr[j];
+		}
+		int[] next=Arrays.copyOf(tptr, lineLength);
+		for (int i=0; i<lineCount; i++) {
+			for (int k=ptr[i], end=ptr[i+1]; k<end; k++) {
+				int d=next[ixs[k]]++;
+				tixs[d]=i;
+				tvals[d]=vals[k];
+			}
+		}
+	}
+}
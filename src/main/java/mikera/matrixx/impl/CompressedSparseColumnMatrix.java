@@ -0,0 +1,226 @@
+package mikera.matrixx.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import mikera.indexz.Index;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.SparseMatrixMult;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.impl.SparseIndexedVector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Sparse matrix in compressed sparse column (CSC) format.
+ *
+ * Column j has its non-zero elements stored at positions columnPointers[j] to columnPointers[j+1]-1 of the
+ * rowIndexes and values arrays, in increasing row order. This format is especially efficient for:
+ * - Column access and column-oriented algorithms (e.g. sparse factorisations)
+ * - Sparse matrix-vector transforms that skip zero elements of the source vector
+ * - Transposing into CompressedSparseRowMatrix (zero copy)
+ *
+ * getColumn() returns an immutable copy of the column. Use getColumnView() for a mutable view.
+ *
+ * @author Mike
+ *
+ */
+public class CompressedSparseColumnMatrix extends ACompressedSparseMatrix implements IFastColumns {
+	private static final long serialVersionUID = -6003516311367604553L;
+
+	protected CompressedSparseColumnMatrix(int rows, int cols, int[] columnPointers, int[] rowIndexes, double[] values) {
+		super(rows, cols, columnPointers, rowIndexes, values);
+	}
+
+	/**
+	 * Wraps CSC arrays as a CompressedSparseColumnMatrix.
+	 *
+	 * WARNING: Performs no checking - see validate() for the required invariants.
+	 */
+	public static CompressedSparseColumnMatrix wrap(int rows, int cols, int[] columnPointers, int[] rowIndexes, double[] values) {
+		return new CompressedSparseColumnMatrix(rows, cols, columnPointers, rowIndexes, values);
+	}
+
+	/**
+	 * Creates a CompressedSparseColumnMatrix from copies of the given CSC arrays, checking that they are valid.
+	 */
+	public static CompressedSparseColumnMatrix create(int rows, int cols, int[] columnPointers, int[] rowIndexes, double[] values) {
+		if (columnPointers.length!=cols+1) throw new IllegalArgumentException("Column pointer array must have length "+(cols+1));
+		int n=columnPointers[cols];
+		CompressedSparseColumnMatrix m=wrap(rows, cols, columnPointers.clone(), Arrays.copyOf(rowIndexes, n), Arrays.copyOf(values, n));
+		m.validate();
+		return m;
+	}
+
+	/**
+	 * Creates a CompressedSparseColumnMatrix containing the non-zero elements of the given matrix
+	 */
+	public static CompressedSparseColumnMatrix create(AMatrix source) {
+		if (source instanceof CompressedSparseColumnMatrix) return ((CompressedSparseColumnMatrix)source).exactClone();
+		if (source instanceof CompressedSparseRowMatrix) return ((CompressedSparseRowMatrix)source).toCompressedColumns();
+		// columns of the source are the rows of its transpose
+		return CompressedSparseRowMatrix.create(source.getTransposeView()).getTransposeView();
+	}
+
+	/**
+	 * Returns the internal column pointer array, of length columnCount()+1
+	 */
+	public int[] getColumnPointers() {
+		return pointers;
+	}
+
+	/**
+	 * Returns the internal row index array. Only the first storedElementCount() elements are used.
+	 */
+	public int[] getRowIndexes() {
+		return indexes;
+	}
+
+	@Override
+	protected int lineCount() {
+		return cols;
+	}
+
+	@Override
+	protected int lineLength() {
+		return rows;
+	}
+
+	@Override
+	public double get(int i, int j) {
+		if ((i<0)||(i>=rows)||(j<0)||(j>=cols)) throw new IndexOutOfBoundsException(ErrorMessages.position(i,j));
+		return lineGet(j,i);
+	}
+
+	@Override
+	public double unsafeGet(int i, int j) {
+		return lineGet(j,i);
+	}
+
+	@Override
+	public void set(int i, int j, double value) {
+		if ((i<0)||(i>=rows)||(j<0)||(j>=cols)) throw new IndexOutOfBoundsException(ErrorMessages.position(i,j));
+		unsafeSet(i,j,value);
+	}
+
+	@Override
+	public void unsafeSet(int i, int j, double value) {
+		if (!lineSet(j,i,value)) throw new UnsupportedOperationException(ErrorMessages.notFullyMutable(this, i, j));
+	}
+
+	@Override
+	public AVector getColumn(int j) {
+		if ((j<0)||(j>=cols)) throw new IndexOutOfBoundsException(ErrorMessages.invalidSlice(this, 1, j));
+		return lineVector(j);
+	}
+
+	@Override
+	public void copyColumnTo(int j, double[] dest, int destOffset) {
+		copyLineTo(j,dest,destOffset);
+	}
+
+	@Override
+	public void addToArray(double[] data, int offset) {
+		for (int j=0; j<cols; j++) {
+			int dj=offset+j;
+			for (int k=pointers[j], end=pointers[j+1]; k<end; k++) {
+				data[dj+indexes[k]*cols]+=values[k];
+			}
+		}
+	}
+
+	@Override
+	public void transform(Vector source, Vector dest) {
+		if (source.length()!=cols) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(source));
+		if (dest.length()!=rows) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(dest));
+		if (source==dest) {
+			transformInPlace(dest);
+			return;
+		}
+		sparseTransform(source.getArray(),dest.getArray());
+	}
+
+	@Override
+	public void transform(AVector source, AVector dest) {
+		if ((source instanceof Vector)&&(dest instanceof Vector)) {
+			transform((Vector)source, (Vector)dest);
+			return;
+		}
+		if (source.length()!=cols) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(source));
+		if (dest.length()!=rows) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(dest));
+		double[] result=new double[rows];
+		sparseTransform(source.toDoubleArray(),result);
+		dest.setElements(result);
+	}
+
+	/**
+	 * Sparse matrix-vector kernel: y = A.x, accumulated column by column.
+	 * Columns corresponding to zero elements of x are skipped.
+	 */
+	private void sparseTransform(double[] x, double[] y) {
+		Arrays.fill(y, 0, rows, 0.0);
+		for (int j=0; j<cols; j++) {
+			double xj=x[j];
+			if (xj==0.0) continue;
+			for (int k=pointers[j], end=pointers[j+1]; k<end; k++) {
+				y[indexes[k]]+=values[k]*xj;
+			}
+		}
+	}
+
+	@Override
+	public AMatrix innerProduct(AMatrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
+
+	@Override
+	public Matrix innerProduct(Matrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
+
+	/**
+	 * Returns a transposed view of this matrix as a CompressedSparseRowMatrix, sharing the same storage.
+	 */
+	@Override
+	public CompressedSparseRowMatrix getTransposeView() {
+		return CompressedSparseRowMatrix.wrap(cols, rows, pointers, indexes, values);
+	}
+
+	@Override
+	public CompressedSparseRowMatrix getTranspose() {
+		return getTransposeView();
+	}
+
+	/**
+	 * Converts this matrix to row-compressed (CSR) format
+	 */
+	public CompressedSparseRowMatrix toCompressedRows() {
+		int n=storedElementCount();
+		int[] ptr=new int[rows+1];
+		int[] ixs=new int[n];
+		double[] vals=new double[n];
+		transposeStorage(cols, rows, pointers, indexes, values, ptr, ixs, vals);
+		return CompressedSparseRowMatrix.wrap(rows, cols, ptr, ixs, vals);
+	}
+
+	/**
+	 * Converts this matrix to a SparseColumnMatrix, with one SparseIndexedVector per non-empty column
+	 */
+	public SparseColumnMatrix toSparseColumnMatrix() {
+		HashMap<Integer,AVector> data=new HashMap<Integer,AVector>();
+		for (int j=0; j<cols; j++) {
+			int start=pointers[j];
+			int end=pointers[j+1];
+			if (start==end) continue;
+			data.put(j, SparseIndexedVector.wrap(rows, Index.wrap(Arrays.copyOfRange(indexes, start, end)), Arrays.copyOfRange(values, start, end)));
+		}
+		return SparseColumnMatrix.wrap(data, rows, cols);
+	}
+
+	@Override
+	public CompressedSparseColumnMatrix exactClone() {
+		int n=storedElementCount();
+		return wrap(rows, cols, pointers.clone(), Arrays.copyOf(indexes, n), Arrays.copyOf(values, n));
+	}
+}
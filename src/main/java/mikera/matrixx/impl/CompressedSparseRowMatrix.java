@@ -0,0 +1,280 @@
+package mikera.matrixx.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import mikera.indexz.Index;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.SparseMatrixMult;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.impl.ASparseVector;
+import mikera.vectorz.impl.SparseIndexedVector;
+import mikera.vectorz.util.ErrorMessages;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) format.
+ *
+ * Row i has its non-zero elements stored at positions rowPointers[i] to rowPointers[i+1]-1 of the
+ * columnIndexes and values arrays, in increasing column order. There is no per-row object overhead,
+ * and all elements are stored contiguously, so this format is especially efficient for:
+ * - Sparse matrix-vector transforms
+ * - Scanning rows in order
+ * - Transposing into CompressedSparseColumnMatrix (zero copy)
+ *
+ * getRow() returns an immutable copy of the row. Use getRowView() for a mutable view.
+ *
+ * @author Mike
+ *
+ */
+public class CompressedSparseRowMatrix extends ACompressedSparseMatrix implements IFastRows {
+	private static final long serialVersionUID = 3478722374538962101L;
+
+	protected CompressedSparseRowMatrix(int rows, int cols, int[] rowPointers, int[] columnIndexes, double[] values) {
+		super(rows, cols, rowPointers, columnIndexes, values);
+	}
+
+	/**
+	 * Wraps CSR arrays as a CompressedSparseRowMatrix.
+	 *
+	 * WARNING: Performs no checking - see validate() for the required invariants.
+	 */
+	public static CompressedSparseRowMatrix wrap(int rows, int cols, int[] rowPointers, int[] columnIndexes, double[] values) {
+		return new CompressedSparseRowMatrix(rows, cols, rowPointers, columnIndexes, values);
+	}
+
+	/**
+	 * Creates a CompressedSparseRowMatrix from copies of the given CSR arrays, checking that they are valid.
+	 */
+	public static CompressedSparseRowMatrix create(int rows, int cols, int[] rowPointers, int[] columnIndexes, double[] values) {
+		if (rowPointers.length!=rows+1) throw new IllegalArgumentException("Row pointer array must have length "+(rows+1));
+		int n=rowPointers[rows];
+		CompressedSparseRowMatrix m=wrap(rows, cols, rowPointers.clone(), Arrays.copyOf(columnIndexes, n), Arrays.copyOf(values, n));
+		m.validate();
+		return m;
+	}
+
+	/**
+	 * Creates a CompressedSparseRowMatrix containing the non-zero elements of the given matrix
+	 */
+	public static CompressedSparseRowMatrix create(AMatrix source) {
+		if (source instanceof CompressedSparseRowMatrix) return ((CompressedSparseRowMatrix)source).exactClone();
+		if (source instanceof CompressedSparseColumnMatrix) return ((CompressedSparseColumnMatrix)source).toCompressedRows();
+		int rc=source.rowCount();
+		int cc=source.columnCount();
+		int[] ptr=new int[rc+1];
+		int capacity=Math.max(16, rc);
+		int[] ixs=new int[capacity];
+		double[] vals=new double[capacity];
+		double[] buf=null;
+		int n=0;
+		for (int i=0; i<rc; i++) {
+			AVector row=source.getRow(i);
+			if (row instanceof ASparseVector) {
+				ASparseVector sv=(ASparseVector)row;
+				int[] six=sv.nonSparseIndexes().data;
+				AVector svals=sv.nonSparseValues();
+				int sn=six.length;
+				if (n+sn>capacity) {
+					capacity=Math.max(capacity*2, n+sn);
+					ixs=Arrays.copyOf(ixs, capacity);
+					vals=Arrays.copyOf(vals, capacity);
+				}
+				for (int k=0; k<sn; k++) {
+					double v=svals.unsafeGet(k);
+					if (v==0.0) continue;
+					ixs[n]=six[k];
+					vals[n++]=v;
+				}
+			} else {
+				if (buf==null) buf=new double[cc];
+				row.getElements(buf, 0);
+				for (int j=0; j<cc; j++) {
+					double v=buf[j];
+					if (v==0.0) continue;
+					if (n==capacity) {
+						capacity*=2;
+						ixs=Arrays.copyOf(ixs, capacity);
+						vals=Arrays.copyOf(vals, capacity);
+					}
+					ixs[n]=j;
+					vals[n++]=v;
+				}
+			}
+			ptr[i+1]=n;
+		}
+		return wrap(rc, cc, ptr, Arrays.copyOf(ixs, n), Arrays.copyOf(vals, n));
+	}
+
+	/**
+	 * Returns the internal row pointer array, of length rowCount()+1
+	 */
+	public int[] getRowPointers() {
+		return pointers;
+	}
+
+	/**
+	 * Returns the internal column index array. Only the first storedElementCount() elements are used.
+	 */
+	public int[] getColumnIndexes() {
+		return indexes;
+	}
+
+	@Override
+	protected int lineCount() {
+		return rows;
+	}
+
+	@Override
+	protected int lineLength() {
+		return cols;
+	}
+
+	@Override
+	public double get(int i, int j) {
+		if ((i<0)||(i>=rows)||(j<0)||(j>=cols)) throw new IndexOutOfBoundsException(ErrorMessages.position(i,j));
+		return lineGet(i,j);
+	}
+
+	@Override
+	public double unsafeGet(int i, int j) {
+		return lineGet(i,j);
+	}
+
+	@Override
+	public void set(int i, int j, double value) {
+		if ((i<0)||(i>=rows)||(j<0)||(j>=cols)) throw new IndexOutOfBoundsException(ErrorMessages.position(i,j));
+		unsafeSet(i,j,value);
+	}
+
+	@Override
+	public void unsafeSet(int i, int j, double value) {
+		if (!lineSet(i,j,value)) throw new UnsupportedOperationException(ErrorMessages.notFullyMutable(this, i, j));
+	}
+
+	@Override
+	public AVector getRow(int i) {
+		if ((i<0)||(i>=rows)) throw new IndexOutOfBoundsException(ErrorMessages.invalidSlice(this, 0, i));
+		return lineVector(i);
+	}
+
+	@Override
+	public void copyRowTo(int i, double[] dest, int destOffset) {
+		copyLineTo(i,dest,destOffset);
+	}
+
+	@Override
+	public void addToArray(double[] data, int offset) {
+		for (int i=0; i<rows; i++) {
+			int di=offset+i*cols;
+			for (int k=pointers[i], end=pointers[i+1]; k<end; k++) {
+				data[di+indexes[k]]+=values[k];
+			}
+		}
+	}
+
+	@Override
+	public void transform(Vector source, Vector dest) {
+		if (source.length()!=cols) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(source));
+		if (dest.length()!=rows) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(dest));
+		if (source==dest) {
+			transformInPlace(dest);
+			return;
+		}
+		sparseTransform(source.getArray(),dest.getArray());
+	}
+
+	@Override
+	public void transform(AVector source, AVector dest) {
+		if ((source instanceof Vector)&&(dest instanceof Vector)) {
+			transform((Vector)source, (Vector)dest);
+			return;
+		}
+		if (source.length()!=cols) throw new IllegalArgumentException(ErrorMessages.wrongSourceLength(source));
+		if (dest.length()!=rows) throw new IllegalArgumentException(ErrorMessages.wrongDestLength(dest));
+		double[] result=new double[rows];
+		sparseTransform(source.toDoubleArray(),result);
+		dest.setElements(result);
+	}
+
+	/**
+	 * Sparse matrix-vector kernel: y = A.x
+	 */
+	private void sparseTransform(double[] x, double[] y) {
+		for (int i=0; i<rows; i++) {
+			double acc=0.0;
+			for (int k=pointers[i], end=pointers[i+1]; k<end; k++) {
+				acc+=values[k]*x[indexes[k]];
+			}
+			y[i]=acc;
+		}
+	}
+
+	@Override
+	public AMatrix innerProduct(AMatrix a) {
+		if (a instanceof CompressedSparseRowMatrix) {
+			return innerProduct((CompressedSparseRowMatrix) a);
+		} else if (a instanceof CompressedSparseColumnMatrix) {
+			return innerProduct(((CompressedSparseColumnMatrix) a).toCompressedRows());
+		}
+		return SparseMatrixMult.multiply(this, a);
+	}
+
+	/**
+	 * Multiplies by another CSR matrix, giving a sparse CSR result
+	 */
+	public CompressedSparseRowMatrix innerProduct(CompressedSparseRowMatrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
+
+	@Override
+	public Matrix innerProduct(Matrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
+
+	/**
+	 * Returns a transposed view of this matrix as a CompressedSparseColumnMatrix, sharing the same storage.
+	 */
+	@Override
+	public CompressedSparseColumnMatrix getTransposeView() {
+		return CompressedSparseColumnMatrix.wrap(cols, rows, pointers, indexes, values);
+	}
+
+	@Override
+	public CompressedSparseColumnMatrix getTranspose() {
+		return getTransposeView();
+	}
+
+	/**
+	 * Converts this matrix to column-compressed (CSC) format
+	 */
+	public CompressedSparseColumnMatrix toCompressedColumns() {
+		int n=storedElementCount();
+		int[] ptr=new int[cols+1];
+		int[] ixs=new int[n];
+		double[] vals=new double[n];
+		transposeStorage(rows, cols, pointers, indexes, values, ptr, ixs, vals);
+		return CompressedSparseColumnMatrix.wrap(rows, cols, ptr, ixs, vals);
+	}
+
+	/**
+	 * Converts this matrix to a SparseRowMatrix, with one SparseIndexedVector per non-empty row
+	 */
+	public SparseRowMatrix toSparseRowMatrix() {
+		HashMap<Integer,AVector> data=new HashMap<Integer,AVector>();
+		for (int i=0; i<rows; i++) {
+			int start=pointers[i];
+			int end=pointers[i+1];
+			if (start==end) continue;
+			data.put(i, SparseIndexedVector.wrap(cols, Index.wrap(Arrays.copyOfRange(indexes, start, end)), Arrays.copyOfRange(values, start, end)));
+		}
+		return SparseRowMatrix.wrap(data, rows, cols);
+	}
+
+	@Override
+	public CompressedSparseRowMatrix exactClone() {
+		int n=storedElementCount();
+		return wrap(rows, cols, pointers.clone(), Arrays.copyOf(indexes, n), Arrays.copyOf(values, n));
+	}
+}
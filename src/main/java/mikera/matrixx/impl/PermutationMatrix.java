@@ -53,6 +53,14 @@ public final class PermutationMatrix extends ABooleanMatrix implements IFastRows
 		return new PermutationMatrix(index);
 	}
 	
+	/**
+	 * Returns a copy of the permutation index. Row i of this matrix has a 1.0 in the column given by
+	 * element i of the index.
+	 */
+	public Index getPermutation() {
+		return perm.clone();
+	}
+
 	@Override
 	public void addToArray(double[] data, int offset) {
 		for (int i=0; i<size; i++) {
@@ -8,6 +8,7 @@ import java.util.Map.Entry;
 import mikera.arrayz.ISparse;
 import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.mult.SparseMatrixMult;
 import mikera.vectorz.AVector;
 import mikera.vectorz.Op;
 import mikera.vectorz.Vectorz;
@@ -193,6 +194,16 @@ public class SparseColumnMatrix extends ASparseRCMatrix implements ISparse, IFas
 		return SparseRowMatrix.wrap(data,cols,rows);
 	}
 	
+	@Override
+	public AMatrix innerProduct(AMatrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
+	
+	@Override
+	public Matrix innerProduct(Matrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
+	
 	@Override
 	public void applyOp(Op op) {
 		for (int i=0; i<cols; i++) {
@@ -9,7 +9,7 @@ import java.util.Map.Entry;
 import mikera.arrayz.ISparse;
 import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
-import mikera.matrixx.Matrixx;
+import mikera.matrixx.algo.mult.SparseMatrixMult;
 import mikera.vectorz.AVector;
 import mikera.vectorz.Op;
 import mikera.vectorz.Vector;
@@ -200,19 +200,15 @@ public class SparseRowMatrix extends ASparseRCMatrix implements ISparse,
 	public AMatrix innerProduct(AMatrix a) {
 		if (a instanceof SparseColumnMatrix) {
 			return innerProduct((SparseColumnMatrix) a);
+		} else if (a instanceof SparseRowMatrix) {
+			return innerProduct((SparseRowMatrix) a);
 		}
-		int cc = a.columnCount();
-		Matrix r = Matrix.create(rows, cc);
-
-		for (Entry<Integer, AVector> eRow : data.entrySet()) {
-			int i = eRow.getKey();
-			AVector row = eRow.getValue();
-			for (int j = 0; j < cc; j++) {
-				double d= row.dotProduct(a.getColumn(j));
-				if (d!=0) r.unsafeSet(i, j, d);
-			}
-		}
-		return r;
+		return SparseMatrixMult.multiply(this, a);
+	}
+	
+	@Override
+	public Matrix innerProduct(Matrix a) {
+		return SparseMatrixMult.multiply(this, a);
 	}
 	
 	@Override
@@ -224,19 +220,12 @@ public class SparseRowMatrix extends ASparseRCMatrix implements ISparse,
 		return wrap(ndata,rows,cols);
 	}
 
-	public AMatrix innerProduct(SparseColumnMatrix a) {
-		AMatrix r = Matrixx.createSparse(rows, a.cols);
+	public SparseRowMatrix innerProduct(SparseColumnMatrix a) {
+		return SparseMatrixMult.multiply(this, a);
+	}
 
-		for (Entry<Integer, AVector> eRow : data.entrySet()) {
-			int i = eRow.getKey();
-			AVector row = eRow.getValue();
-			for (Entry<Integer, AVector> eCol : data.entrySet()) {
-				int j = eCol.getKey();
-				AVector acol = eCol.getValue();
-				r.unsafeSet(i, j, row.dotProduct(acol));
-			}
-		}
-		return r;
+	public SparseRowMatrix innerProduct(SparseRowMatrix a) {
+		return SparseMatrixMult.multiply(this, a);
 	}
 
 	@Override
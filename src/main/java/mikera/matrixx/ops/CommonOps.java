@@ -21,10 +21,10 @@ package mikera.matrixx.ops;
 import mikera.matrixx.EjmlParameters;
 import mikera.matrixx.UtilEjml;
 import mikera.matrixx.algo.decompose.lu.impl.ALU;
-import mikera.matrixx.algo.decompose.lu.impl.AltLU;
+import mikera.matrixx.algo.decompose.lu.impl.BlockedLU;
 import mikera.matrixx.algo.linsol.ILinearSolver;
 import mikera.matrixx.algo.linsol.IReducedRowEchelonForm;
-import mikera.matrixx.algo.linsol.impl.HouseholderColumnQRLinearSolver;
+import mikera.matrixx.algo.linsol.LinearSolverFactory;
 import mikera.matrixx.algo.linsol.impl.LULinearSolver;
 import mikera.matrixx.algo.linsol.impl.PseudoInverseSVDLinearSolver;
 import mikera.matrixx.algo.linsol.impl.SafeLinearSolver;
@@ -522,12 +522,7 @@ public class CommonOps {
    * @return true if it could invert the matrix false if it could not.
    */
   public static boolean solve(Matrix a, Matrix b, Matrix x) {
-    ILinearSolver solver;
-    if (a.rowCount() == a.columnCount()) {
-      solver = new LULinearSolver(new AltLU());
-    } else {
-      solver = new HouseholderColumnQRLinearSolver();
-    }
+    ILinearSolver solver = LinearSolverFactory.linear(a);
 
     // make sure the inputs 'a' and 'b' are not modified
     solver = new SafeLinearSolver(solver);
@@ -623,7 +618,7 @@ public class CommonOps {
 
   /**
    * Returns the determinant of the matrix. If the inverse of the matrix is also
-   * needed, then using {@link AltLU} directly (or any similar algorithm) can be
+   * needed, then using {@link BlockedLU} directly (or any similar algorithm) can be
    * more efficient.
    * 
    * @param mat The matrix whose determinant is to be computed. Not modified.
@@ -646,7 +641,7 @@ public class CommonOps {
         return mat.get(0);
       }
     } else {
-      ALU alg = new AltLU();
+      ALU alg = new BlockedLU();
 
       if (alg.inputModified()) {
         mat = mat.clone();
@@ -688,7 +683,7 @@ public class CommonOps {
         mat.set(0, 1.0 / mat.get(0));
       }
     } else {
-      AltLU alg = new AltLU();
+      BlockedLU alg = new BlockedLU();
       LULinearSolver solver = new LULinearSolver(alg);
       if (solver.setA(mat)) {
         solver.invert(mat);
@@ -734,7 +729,7 @@ public class CommonOps {
         result.set(0, 1.0 / mat.get(0));
       }
     } else {
-      AltLU alg = new AltLU();
+      BlockedLU alg = new BlockedLU();
       LULinearSolver solver = new LULinearSolver(alg);
 
       if (solver.modifiesA())
@@ -1174,11 +1169,12 @@ public class CommonOps {
    * @return The max abs element value of the matrix.
    */
   public static double elementMaxAbs(Matrix a) {
-    final long size = a.elementCount();
+    final int size = (int) a.elementCount();
+    final double[] data = a.data;
 
     double max = 0;
     for (int i = 0; i < size; i++) {
-      double val = Math.abs(a.get(i));
+      double val = Math.abs(data[i]);
       if (val > max) {
         max = val;
       }
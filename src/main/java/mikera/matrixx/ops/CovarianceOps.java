@@ -21,8 +21,6 @@ package mikera.matrixx.ops;
 import java.util.Random;
 
 import mikera.matrixx.Matrix;
-import mikera.matrixx.algo.decompose.chol.impl.ACholesky;
-import mikera.matrixx.algo.decompose.chol.impl.InnerCholesky;
 import mikera.matrixx.algo.linsol.ILinearSolver;
 import mikera.matrixx.algo.linsol.impl.CholLinearSolver;
 import mikera.matrixx.algo.linsol.impl.SafeLinearSolver;
@@ -104,10 +102,8 @@ public class CovarianceOps {
         cov_inv.data[0] = 1.0 / cov_inv.data[0];
 
     } else {
-      ACholesky decomp = new InnerCholesky(true);
-      ILinearSolver solver = new CholLinearSolver(decomp);// wrap it to make
-                                                          // sure the covariance
-                                                          // is not modified.
+      ILinearSolver solver = new CholLinearSolver();
+      // wrap it to make sure the covariance is not modified.
       solver = new SafeLinearSolver(solver);
       if (!solver.setA(cov))
         return false;
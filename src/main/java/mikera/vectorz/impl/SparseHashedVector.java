@@ -1,9 +1,6 @@
 package mikera.vectorz.impl;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import mikera.indexz.Index;
 import mikera.matrixx.AMatrix;
@@ -21,21 +18,41 @@ import mikera.vectorz.util.VectorzException;
  * Mutable in all elements, but performance will be reduced if density is high. In general, if density 
  * is more than about 10% then a dense Vector is likely to be better.
  * 
+ * Elements are stored in a primitive open-addressing hash table (linear probing, int keys and double values)
+ * so no objects are allocated per element. Elements set back to zero are removed by shifting later entries
+ * in the probe sequence backwards, so no tombstones are left behind. Operations over the non-zero elements
+ * visit them in table order.
+ * 
  * @author Mike
  *
  */
 public class SparseHashedVector extends ASparseVector {
 	private static final long serialVersionUID = 750093598603613879L;
 
-	private HashMap<Integer,Double> hash;
+	private static final int EMPTY=-1;
+	private static final int MIN_CAPACITY=8;
+	
+	// hash table storage. Capacity is always a power of two, and kept at most half full
+	private int[] keys;
+	private double[] values;
+	private int size;
+	private int shift;
 	
 	private SparseHashedVector(int length) {
-		this(length, new HashMap<Integer,Double>());
+		this(length, 0);
+	}
+	
+	private SparseHashedVector(int length, int expectedSize) {
+		super(length);
+		allocate(capacityFor(expectedSize));
 	}
 	
-	private SparseHashedVector(int length, HashMap<Integer, Double> hashMap) {
+	private SparseHashedVector(int length, int[] keys, double[] values, int size) {
 		super(length);
-		hash=hashMap;
+		this.keys=keys;
+		this.values=values;
+		this.size=size;
+		this.shift=Integer.numberOfLeadingZeros(keys.length)+1;
 	}
 
 	/**
@@ -45,12 +62,12 @@ public class SparseHashedVector extends ASparseVector {
 	public static SparseHashedVector create(AVector v) {
 		int n=v.length();
 		if (n==0) throw new IllegalArgumentException(ErrorMessages.incompatibleShape(v));
-		HashMap<Integer,Double> hm=new HashMap<Integer,Double>();
+		SparseHashedVector hv=new SparseHashedVector(n);
 		for (int i=0; i<n; i++) {
 			double val=v.unsafeGet(i);
-			if (val!=0) hm.put(i,val);
+			if (val!=0) hv.put(i,val);
 		}
-		return new SparseHashedVector(n,hm);
+		return hv;
 	}
 	
 	/**
@@ -59,13 +76,13 @@ public class SparseHashedVector extends ASparseVector {
 	public static SparseHashedVector create(int length, Index index, Vector values) {
 		int n=index.length();
 		if (values.length()!=n) throw new IllegalArgumentException("Mismatched values length: "+values.length());
-		HashMap<Integer,Double> hm=new HashMap<Integer,Double>();
+		SparseHashedVector hv=new SparseHashedVector(length,n);
 		for (int i=0; i<n; i++) {
 			double v=values.get(i);
-			if (v!=0.0) hm.put(index.get(i), v);
+			if (v!=0.0) hv.put(index.get(i), v);
 		}
 		
-		return new SparseHashedVector(length, hm);
+		return hv;
 	}
 	
 	public static SparseHashedVector createLength(int length) {
@@ -77,14 +94,130 @@ public class SparseHashedVector extends ASparseVector {
 		return create(m.getRow(row));
 	}
 	
+	private static int capacityFor(int n) {
+		int cap=MIN_CAPACITY;
+		while (cap<2*n) cap<<=1;
+		return cap;
+	}
+	
+	private void allocate(int capacity) {
+		keys=new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		values=new double[capacity];
+		size=0;
+		shift=Integer.numberOfLeadingZeros(capacity)+1;
+	}
+	
+	/**
+	 * Home slot for an index, using Fibonacci hashing so that runs of consecutive indexes
+	 * are spread across the table
+	 */
+	private int slot(int i) {
+		return (i*0x9E3779B9)>>>shift;
+	}
+	
+	/**
+	 * Returns the table slot containing index i, or -1 if not present
+	 */
+	private int find(int i) {
+		int mask=keys.length-1;
+		int s=slot(i);
+		while (true) {
+			int k=keys[s];
+			if (k==i) return s;
+			if (k==EMPTY) return -1;
+			s=(s+1)&mask;
+		}
+	}
+	
+	private double lookup(int i) {
+		int s=find(i);
+		return (s<0)?0.0:values[s];
+	}
+	
+	/**
+	 * Stores a non-zero value for index i
+	 */
+	private void put(int i, double value) {
+		int mask=keys.length-1;
+		int s=slot(i);
+		while (true) {
+			int k=keys[s];
+			if (k==i) {
+				values[s]=value;
+				return;
+			}
+			if (k==EMPTY) break;
+			s=(s+1)&mask;
+		}
+		keys[s]=i;
+		values[s]=value;
+		size++;
+		if (2*size>keys.length) rehash(keys.length*2);
+	}
+	
+	/**
+	 * Removes index i if present. Later entries in the same probe sequence are shifted back
+	 * into the freed slot, so lookups never need to skip deleted entries.
+	 */
+	private void remove(int i) {
+		int s=find(i);
+		if (s<0) return;
+		int mask=keys.length-1;
+		int hole=s;
+		int j=s;
+		while (true) {
+			j=(j+1)&mask;
+			int k=keys[j];
+			if (k==EMPTY) break;
+			// entry at j can fill the hole if the hole lies between its home slot and j
+			if (((j-slot(k))&mask)>=((j-hole)&mask)) {
+				keys[hole]=k;
+				values[hole]=values[j];
+				hole=j;
+			}
+		}
+		keys[hole]=EMPTY;
+		values[hole]=0.0;
+		size--;
+	}
+	
+	private void store(int i, double value) {
+		if (value!=0.0) {	
+			put(i, value);
+		} else {
+			remove(i);
+		}
+	}
+	
+	private void rehash(int capacity) {
+		int[] oldKeys=keys;
+		double[] oldValues=values;
+		allocate(capacity);
+		for (int s=0; s<oldKeys.length; s++) {
+			int k=oldKeys[s];
+			if (k!=EMPTY) put(k,oldValues[s]);
+		}
+	}
+	
+	private void clear() {
+		if (keys.length==MIN_CAPACITY) {
+			Arrays.fill(keys, EMPTY);
+			Arrays.fill(values, 0.0);
+			size=0;
+		} else {
+			allocate(MIN_CAPACITY);
+		}
+	}
+	
 	@Override
 	public int nonSparseElementCount() {
-		return hash.size();
+		return size;
 	}
 	
 	@Override
 	public boolean isZero() {
-		return hash.size()==0;
+		return size==0;
 	}
 	
 	@Override
@@ -95,21 +228,12 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public double get(int i) {
 		if ((i<0)||(i>=length)) throw new IndexOutOfBoundsException(ErrorMessages.invalidIndex(this,i));
-		return unsafeGet(i);
+		return lookup(i);
 	}
 	
 	@Override
 	public double unsafeGet(int i) {
-		Double d= hash.get(i);
-		if (d!=null) return d;
-		return 0.0;
-	}
-	
-	@Override
-	public double unsafeGetInteger(Integer i) {
-		Double d= hash.get(i);
-		if (d!=null) return d;
-		return 0.0;
+		return lookup(i);
 	}
 	
 	@Override
@@ -124,19 +248,18 @@ public class SparseHashedVector extends ASparseVector {
 	
 	@Override
 	public long nonZeroCount() {
-		return hash.size();
+		return size;
 	}
 	
 	@Override
 	public void multiply (double d) {
 		if (d==1.0) return;
 		if (d==0.0) {
-			hash.clear();
+			clear();
 			return;
 		}
-		for (Entry<Integer,Double> e:hash.entrySet()) {
-			double r=e.getValue()*d;
-			e.setValue(r);
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]!=EMPTY) values[s]*=d;
 		}
 	}
 	
@@ -144,8 +267,9 @@ public class SparseHashedVector extends ASparseVector {
 	public double dotProduct(AVector v) {
 		if (length!=v.length()) throw new IllegalArgumentException(ErrorMessages.incompatibleShapes(this, v));
 		double result=0.0;
-		for (int i: hash.keySet()) {
-			result+=hash.get(i)*v.unsafeGet(i);
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i!=EMPTY) result+=values[s]*v.unsafeGet(i);
 		}
 		return result;
 	}
@@ -153,8 +277,9 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public double dotProduct(double[] data, int offset) {
 		double result=0.0;
-		for (int i: hash.keySet()) {
-			result+=hash.get(i)*data[offset+i];
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i!=EMPTY) result+=values[s]*data[offset+i];
 		}
 		return result;
 	}
@@ -169,9 +294,10 @@ public class SparseHashedVector extends ASparseVector {
 	public void addMultipleToArray(double factor,int offset, double[] array, int arrayOffset, int length) {
 		int aOffset=arrayOffset-offset;
 
-		for (int i: hash.keySet()) {
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
 			if ((i<offset)||(i>=(offset+length))) continue;
-			array[aOffset+i]+=factor*hash.get(i);
+			array[aOffset+i]+=factor*values[s];
 		}
 	}
 	
@@ -179,17 +305,18 @@ public class SparseHashedVector extends ASparseVector {
 	public void addToArray(int offset, double[] array, int arrayOffset, int length) {
 		int aOffset=arrayOffset-offset;
 		
-		for (int i: hash.keySet()) {
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
 			if ((i<offset)||(i>=(offset+length))) continue;
-			array[aOffset+i]+=hash.get(i);
+			array[aOffset+i]+=values[s];
 		}
 	}
 	
 	@Override
 	public void addToArray(double[] dest, int offset, int stride) {
-		for (Entry<Integer,Double> e: hash.entrySet()) {
-			int i=e.getKey();
-			dest[offset+i*stride]+=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i!=EMPTY) dest[offset+i*stride]+=values[s];
 		}
 	}
 	
@@ -198,11 +325,10 @@ public class SparseHashedVector extends ASparseVector {
 		int aOffset=arrayOffset-offset;
 		int oOffset=otherOffset-offset;
 
-		for (Entry<Integer,Double> e: hash.entrySet()) {
-			Integer io=e.getKey();
-			int i=io;
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
 			if ((i<offset)||(i>=(offset+length))) continue;
-			array[aOffset+i]+=factor*e.getValue()*other.get(i+oOffset);
+			array[aOffset+i]+=factor*values[s]*other.get(i+oOffset);
 		}
 	}
 	
@@ -212,12 +338,11 @@ public class SparseHashedVector extends ASparseVector {
 		int oArrayOffset=other.getArrayOffset()+otherOffset-offset;
 		double[] oArray=other.getArray();
 		
-		for (Entry<Integer,Double> e: hash.entrySet()) {
-			Integer io=e.getKey();
-			int i=io;
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
 			if ((i<offset)||(i>=(offset+length))) continue;
 			double ov=oArray[i+oArrayOffset];
-			if (ov!=0.0) array[aOffset+i]+=factor*e.getValue()*ov;
+			if (ov!=0.0) array[aOffset+i]+=factor*values[s]*ov;
 		}
 	}
 	
@@ -227,9 +352,9 @@ public class SparseHashedVector extends ASparseVector {
 	}
 	
 	public void copySparseValuesTo(double[] array, int offset) {
-		for (Entry<Integer,Double> e: hash.entrySet()) {
-			int i=e.getKey();
-			array[offset+i]=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i!=EMPTY) array[offset+i]=values[s];
 		}
 	}
 	
@@ -239,20 +364,16 @@ public class SparseHashedVector extends ASparseVector {
 			getElements(av.getArray(),av.getArrayOffset()+offset);
 		}
 		v.fillRange(offset,length,0.0);
-		for (Entry<Integer,Double> e: hash.entrySet()) {
-			int i=e.getKey();
-			v.unsafeSet(offset+i,e.getValue());
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i!=EMPTY) v.unsafeSet(offset+i,values[s]);
 		}
 	}
 
 	@Override
 	public void set(int i, double value) {
 		if ((i<0)||(i>=length))  throw new IndexOutOfBoundsException(ErrorMessages.invalidIndex(this, i));
-		if (value!=0.0) {	
-			hash.put(i, value);
-		} else {
-			hash.remove(i);
-		}
+		store(i,value);
 	}
 	
 	@Override
@@ -263,50 +384,51 @@ public class SparseHashedVector extends ASparseVector {
 			return;
 		}
 		
-		hash=new HashMap<Integer, Double>();
+		clear();
 		
 		for (int i=0; i<length; i++) {
 			double val=v.unsafeGet(i);
 			if (val!=0) {
-				hash.put(i, val);
+				put(i, val);
 			}
 		}
 	}
 	
 	public void set(SparseHashedVector v) {
-		hash=(HashMap<Integer, Double>) v.hash.clone();
+		if (v==this) return;
+		keys=v.keys.clone();
+		values=v.values.clone();
+		size=v.size;
+		shift=v.shift;
 	}
 
-	
 	@Override
 	public void unsafeSet(int i, double value) {
-		if (value!=0.0) {	
-			hash.put(i, value);
-		} else {
-			hash.remove(i);
-		}
+		store(i,value);
 	}
 	
 	@Override
-	public void unsafeSetInteger(Integer i, double value) {
-		if (value!=0.0) {	
-			hash.put(i, value);
+	public void addAt(int i, double value) {
+		if (value==0.0) return;
+		int s=find(i);
+		if (s<0) {
+			put(i,value);
 		} else {
-			hash.remove(i);
+			double r=values[s]+value;
+			if (r!=0.0) {
+				values[s]=r;
+			} else {
+				remove(i);
+			}
 		}
 	}
 	
-	@Override
-	public void addAt(int i, double value) {
-		Integer ind=i;
-		unsafeSetInteger(ind, value+unsafeGetInteger(ind));
-	}
-	
 	@Override
 	public double maxAbsElement() {
 		double result=0.0;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=Math.abs(e.getValue());
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]==EMPTY) continue;
+			double d=Math.abs(values[s]);
 			if (d>result) {
 				result=d; 
 			}
@@ -317,13 +439,14 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public double elementMax() {
 		double result=-Double.MAX_VALUE;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]==EMPTY) continue;
+			double d=values[s];
 			if (d>result) {
 				result=d; 
 			}
 		}
-		if ((result<0)&&(hash.size()<length)) {
+		if ((result<0)&&(size<length)) {
 			return 0.0;
 		}
 		return result;
@@ -333,13 +456,14 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public double elementMin() {
 		double result=Double.MAX_VALUE;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]==EMPTY) continue;
+			double d=values[s];
 			if (d<result) {
 				result=d; 
 			}
 		}
-		if ((result>0)&&(hash.size()<length)) {
+		if ((result>0)&&(size<length)) {
 			return 0.0;
 		}
 		return result;
@@ -347,17 +471,18 @@ public class SparseHashedVector extends ASparseVector {
 	
 	@Override
 	public int maxElementIndex(){
-		if (hash.size()==0) return 0;
+		if (size==0) return 0;
 		int ind=0;
 		double result=-Double.MAX_VALUE;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]==EMPTY) continue;
+			double d=values[s];
 			if (d>result) {
 				result=d; 
-				ind=e.getKey();
+				ind=keys[s];
 			}
 		}
-		if ((result<0)&&(hash.size()<length)) {
+		if ((result<0)&&(size<length)) {
 			return sparseElementIndex();
 		}
 		return ind;
@@ -366,14 +491,15 @@ public class SparseHashedVector extends ASparseVector {
  
 	@Override
 	public int maxAbsElementIndex(){
-		if (hash.size()==0) return 0;
+		if (size==0) return 0;
 		int ind=0;
 		double result=unsafeGet(0);
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=Math.abs(e.getValue());
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]==EMPTY) continue;
+			double d=Math.abs(values[s]);
 			if (d>result) {
 				result=d; 
-				ind=e.getKey();
+				ind=keys[s];
 			}
 		}
 		return ind;
@@ -381,17 +507,18 @@ public class SparseHashedVector extends ASparseVector {
 	
 	@Override
 	public int minElementIndex(){
-		if (hash.size()==0) return 0;
+		if (size==0) return 0;
 		int ind=0;
 		double result=Double.MAX_VALUE;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			if (keys[s]==EMPTY) continue;
+			double d=values[s];
 			if (d<result) {
 				result=d; 
-				ind=e.getKey();
+				ind=keys[s];
 			}
 		}
-		if ((result>0)&&(hash.size()<length)) {
+		if ((result>0)&&(size<length)) {
 			return sparseElementIndex();
 		}
 		return ind;
@@ -402,11 +529,11 @@ public class SparseHashedVector extends ASparseVector {
 	 * @return
 	 */
 	private int sparseElementIndex() {
-		if (hash.size()==length) {
+		if (size==length) {
 			return -1;
 		}
 		for (int i=0; i<length; i++) {
-			if (!hash.containsKey(i)) return i;
+			if (find(i)<0) return i;
 		}
 		throw new VectorzException(ErrorMessages.impossible());
 	}
@@ -414,9 +541,8 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public double elementSum() {
 		double result=0.0;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=e.getValue();
-			result+=d;
+		for (int s=0; s<keys.length; s++) {
+			result+=values[s];
 		}
 		return result;
 	}
@@ -424,8 +550,8 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public double magnitudeSquared() {
 		double result=0.0;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			double d=e.getValue();
+		for (int s=0; s<keys.length; s++) {
+			double d=values[s];
 			result+=d*d;
 		}
 		return result;
@@ -433,22 +559,22 @@ public class SparseHashedVector extends ASparseVector {
 
 	@Override
 	public Vector nonSparseValues() {
-		int n=hash.size();
+		int[] ixs=nonZeroIndices();
+		int n=ixs.length;
 		double[] vs=new double[n];
-		Index index=nonSparseIndexes();
 		for (int i=0; i<n; i++) {
-			vs[i]=hash.get(index.get(i));
+			vs[i]=lookup(ixs[i]);
 		}
 		return Vector.wrap(vs);
 	}
 	
 	@Override
 	public int[] nonZeroIndices() {
-		int n=hash.size();
-		int[] ret=new int[n];
+		int[] ret=new int[size];
 		int di=0;
-		for (Entry<Integer,Double> e: hash.entrySet()) {
-			ret[di++]=e.getKey();
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i!=EMPTY) ret[di++]=i;
 		}
 		Arrays.sort(ret);
 		return ret;
@@ -456,20 +582,12 @@ public class SparseHashedVector extends ASparseVector {
 	
 	@Override
 	public Index nonSparseIndexes() {
-		int n=hash.size();
-		int[] in=new int[n];
-		int di=0;
-		for (Map.Entry<Integer,Double> e:hash.entrySet()) {
-			in[di++]=e.getKey();
-		}
-		Index result=Index.wrap(in);
-		result.sort();
-		return result;
+		return Index.wrap(nonZeroIndices());
 	}
 
 	@Override
 	public boolean includesIndex(int i) {
-		return hash.containsKey(i);
+		return find(i)>=0;
 	}
 
 	@Override
@@ -484,16 +602,16 @@ public class SparseHashedVector extends ASparseVector {
 
 	@Override
 	public boolean equalsArray(double[] data, int offset) {
+		int n=0;
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i==EMPTY) continue;
+			if (data[offset+i]!=values[s]) return false;
+		}
 		for (int i=0; i<length; i++) {
-			double v=data[offset+i];
-			if (v==0.0) {
-				if (hash.containsKey(i)) return false;
-			} else {
-				Double d=hash.get(i);
-				if ((d==null)||(d!=v)) return false;
-			}
+			if (data[offset+i]!=0.0) n++;
 		}
-		return true;
+		return n==size;
 	}
 	
 	@Override
@@ -505,7 +623,7 @@ public class SparseHashedVector extends ASparseVector {
 	
 	@Override
 	public SparseHashedVector exactClone() {
-		return new SparseHashedVector(length,(HashMap<Integer, Double>) hash.clone());
+		return new SparseHashedVector(length,keys.clone(),values.clone(),size);
 	}
 	
 	@Override
@@ -516,11 +634,19 @@ public class SparseHashedVector extends ASparseVector {
 	@Override
 	public void validate() {
 		if (length<=0) throw new VectorzException("Illegal length: "+length);
-		for (Entry<Integer, Double> e:hash.entrySet()) {
-			int i=e.getKey();
+		int count=0;
+		for (int s=0; s<keys.length; s++) {
+			int i=keys[s];
+			if (i==EMPTY) {
+				if (values[s]!=0.0) throw new VectorzException("Unexpected value in empty slot: "+s);
+				continue;
+			}
+			count++;
 			if ((i<0)||(i>=length)) throw new VectorzException(ErrorMessages.invalidIndex(this, i));
-			if (e.getValue()==0) throw new VectorzException("Unexpected zero at index: "+i);
+			if (values[s]==0) throw new VectorzException("Unexpected zero at index: "+i);
+			if (find(i)!=s) throw new VectorzException("Index not reachable from its hash slot: "+i);
 		}
+		if (count!=size) throw new VectorzException("Wrong element count: "+size);
 		super.validate();
 	}
 }
@@ -0,0 +1,197 @@
+package mikera.matrix.algo;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.Matrixx;
+import mikera.matrixx.algo.decompose.banded.BandedCholesky;
+import mikera.matrixx.algo.decompose.banded.BandedLU;
+import mikera.matrixx.algo.decompose.banded.TridiagonalSolver;
+import mikera.matrixx.algo.linsol.ILinearSolver;
+import mikera.matrixx.algo.linsol.LinearSolverFactory;
+import mikera.matrixx.algo.linsol.impl.BandedLinearSolver;
+import mikera.matrixx.algo.linsol.impl.LULinearSolver;
+import mikera.matrixx.impl.BandedMatrix;
+import mikera.matrixx.ops.CommonOps;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+
+import org.junit.Test;
+
+public class TestBandedSolvers {
+
+	static BandedMatrix randomBanded(Random rand, int n, int kl, int ku, double diag) {
+		BandedMatrix m=BandedMatrix.create(n, n, -kl, ku);
+		for (int b=-kl; b<=ku; b++) {
+			AVector band=m.getBand(b);
+			for (int i=0; i<band.length(); i++) band.set(i, rand.nextDouble()-0.5);
+		}
+		m.getBand(0).add(diag);
+		return m;
+	}
+
+	static void checkSolution(AMatrix a, AVector x, AVector b) {
+		Vector r=Vector.createLength(a.rowCount());
+		a.transform(x, r);
+		// residual relative to ||A||.||x||, so the check does not depend on conditioning
+		double normA=0.0;
+		for (int band=-a.lowerBandwidthLimit(); band<=a.upperBandwidthLimit(); band++) {
+			normA+=a.getBand(band).magnitudeSquared();
+		}
+		normA=Math.sqrt(normA);
+		assertTrue(r.epsilonEquals(b, 1e-12*normA*x.maxAbsElement()));
+	}
+
+	static Vector testVector(int n) {
+		Vector v=Vector.createLength(n);
+		for (int i=0; i<n; i++) v.set(i, Math.sin(i)+0.5);
+		return v;
+	}
+
+	@Test public void testTridiagonal() {
+		BandedMatrix m=randomBanded(new Random(1), 50, 1, 1, 3.0);
+		Vector b=testVector(50);
+		TridiagonalSolver t=TridiagonalSolver.decompose(m);
+		checkSolution(m, t.solve(b), b);
+		assertEquals(CommonOps.det(m.toMatrix()), t.determinant(), 1e-6*Math.abs(t.determinant()));
+
+		Vector x=TridiagonalSolver.solve(m.getBand(-1), m.getBand(0), m.getBand(1), b);
+		checkSolution(m, x, b);
+
+		// in place solve
+		Vector y=b.clone();
+		t.solve(y, y);
+		assertTrue(y.epsilonEquals(x, 1e-12));
+	}
+
+	@Test public void testLargeTridiagonal() {
+		int n=200000;
+		BandedMatrix m=BandedMatrix.create(n, n, -1, 1);
+		m.getBand(-1).fill(-1.0);
+		m.getBand(0).fill(4.0);
+		m.getBand(1).fill(-1.0);
+		Vector b=Vector.createLength(n);
+		b.fill(1.0);
+		BandedLinearSolver solver=new BandedLinearSolver();
+		assertTrue(solver.setA(m));
+		Matrix bm=Matrix.wrap(n, 1, b.getArray());
+		Matrix x=Matrix.create(n, 1);
+		solver.solve(bm, x);
+		checkSolution(m, x.getColumn(0), b);
+	}
+
+	@Test public void testBandedCholesky() {
+		int n=40;
+		BandedMatrix m=BandedMatrix.create(n, n, -2, 2);
+		m.getBand(0).fill(6.0);
+		m.getBand(1).fill(-2.0);
+		m.getBand(-1).fill(-2.0);
+		m.getBand(2).fill(1.0);
+		m.getBand(-2).fill(1.0);
+		BandedCholesky chol=BandedCholesky.decompose(m);
+		assertEquals(2, chol.bandwidth());
+		Vector b=testVector(n);
+		checkSolution(m, chol.solve(b), b);
+		assertEquals(CommonOps.det(m.toMatrix()), chol.determinant(), 1e-6*Math.abs(chol.determinant()));
+
+		m.getBand(0).set(5, -1.0);
+		try {
+			BandedCholesky.decompose(m);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK, not positive definite
+		}
+	}
+
+	@Test public void testBandedLU() {
+		Random rand=new Random(14);
+		for (int kl=0; kl<=3; kl++) {
+			for (int ku=0; ku<=3; ku++) {
+				// weak diagonal forces row interchanges
+				BandedMatrix m=randomBanded(rand, 30, kl, ku, 0.0);
+				BandedLU lu=BandedLU.decompose(m);
+				Vector b=testVector(30);
+				checkSolution(m, lu.solve(b), b);
+				double det=CommonOps.det(m.toMatrix());
+				assertEquals(det, lu.determinant(), 1e-8*Math.max(1.0, Math.abs(det)));
+			}
+		}
+
+		BandedMatrix singular=BandedMatrix.create(4, 4, -1, 1);
+		singular.getBand(0).fill(1.0);
+		singular.getBand(0).set(2, 0.0);
+		singular.getBand(1).set(2, 0.0);
+		singular.getBand(-1).set(1, 0.0);
+		try {
+			BandedLU.decompose(singular);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+
+	@Test public void testWrongLengthRightHandSide() {
+		BandedMatrix m=randomBanded(new Random(3), 10, 2, 2, 6.0);
+		BandedMatrix sym=BandedMatrix.create(10, 10, -1, 1);
+		sym.getBand(0).fill(4.0);
+		sym.getBand(1).fill(-1.0);
+		sym.getBand(-1).fill(-1.0);
+		BandedLU lu=BandedLU.decompose(m);
+		BandedCholesky chol=BandedCholesky.decompose(sym);
+		TridiagonalSolver tri=TridiagonalSolver.decompose(sym);
+		for (int len: new int[] {9,11}) {
+			Vector b=testVector(len);
+			try {
+				lu.solve(b);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// OK
+			}
+			try {
+				chol.solve(b);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// OK
+			}
+			try {
+				tri.solve(b);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// OK
+			}
+		}
+	}
+
+	@Test public void testSolverDispatch() {
+		BandedMatrix banded=randomBanded(new Random(2), 40, 2, 1, 4.0);
+		Matrix dense=banded.toMatrix();
+		assertTrue(LinearSolverFactory.isSmallBandwidth(banded));
+		assertTrue(LinearSolverFactory.linear(dense) instanceof BandedLinearSolver);
+		assertTrue(LinearSolverFactory.linear(Matrixx.createRandomSquareMatrix(10)) instanceof LULinearSolver);
+		assertFalse(LinearSolverFactory.isSmallBandwidth(Matrixx.createRandomSquareMatrix(10)));
+
+		ILinearSolver solver=LinearSolverFactory.linear(dense);
+		assertTrue(solver.setA(dense));
+		assertTrue(solver.quality()>0.0);
+		Matrix inv=Matrix.create(40, 40);
+		solver.invert(inv);
+		assertTrue(inv.innerProduct(dense).epsilonEquals(Matrixx.createIdentityMatrix(40), 1e-8));
+
+		Matrix b=Matrix.create(40, 3);
+		for (int j=0; j<3; j++) b.getColumnView(j).set(testVector(40));
+		Matrix x=Matrix.create(40, 3);
+		assertTrue(CommonOps.solve(dense, b, x));
+		assertTrue(dense.innerProduct(x).epsilonEquals(b, 1e-8));
+
+		// dense matrices go through LU
+		Matrix full=Matrixx.createRandomSquareMatrix(40);
+		full.add(Matrixx.createScaleMatrix(40, 5.0));
+		assertTrue(CommonOps.solve(full, b, x));
+		assertTrue(full.innerProduct(x).epsilonEquals(b, 1e-8));
+	}
+}
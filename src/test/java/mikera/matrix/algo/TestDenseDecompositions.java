@@ -0,0 +1,835 @@
+package mikera.matrix.algo;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.Matrixx;
+import mikera.matrixx.algo.Cholesky;
+import mikera.matrixx.algo.Determinant;
+import mikera.matrixx.algo.LU;
+import mikera.matrixx.algo.QR;
+import mikera.matrixx.algo.RandomizedSVD;
+import mikera.matrixx.algo.TSQR;
+import mikera.matrixx.algo.ThinSVD;
+import mikera.matrixx.algo.decompose.TriangularSolver;
+import mikera.matrixx.algo.decompose.chol.impl.BlockCholesky;
+import mikera.matrixx.algo.decompose.chol.impl.CholeskyUpdate;
+import mikera.matrixx.algo.decompose.chol.impl.InnerCholesky;
+import mikera.matrixx.algo.decompose.lu.impl.AltLU;
+import mikera.matrixx.algo.decompose.lu.impl.BlockedLU;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
+import mikera.matrixx.algo.decompose.qr.impl.QRUpdate;
+import mikera.matrixx.algo.linsol.ILinearSolver;
+import mikera.matrixx.algo.linsol.LinearSolverCache;
+import mikera.matrixx.algo.linsol.LinearSolverFactory;
+import mikera.matrixx.algo.linsol.impl.ALinearSolver;
+import mikera.matrixx.algo.linsol.impl.BandedLinearSolver;
+import mikera.matrixx.algo.linsol.impl.BlockQRLinearSolver;
+import mikera.matrixx.algo.linsol.impl.CholLinearSolver;
+import mikera.matrixx.algo.linsol.impl.HouseholderColumnQRLinearSolver;
+import mikera.matrixx.algo.linsol.impl.LULinearSolver;
+import mikera.matrixx.algo.linsol.impl.SafeLinearSolver;
+import mikera.matrixx.algo.linsol.impl.UpdatableQRLinearSolver;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+import mikera.matrixx.impl.SparseRowMatrix;
+import mikera.matrixx.ops.CommonOps;
+
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.util.ErrorMessages;
+
+import org.junit.Test;
+
+public class TestDenseDecompositions {
+
+	@Test public void testBlockedLU() {
+		int oldBlock=BlockedLU.BLOCK_SIZE;
+		long oldThreshold=ParallelMatrixMult.PARALLEL_THRESHOLD;
+		try {
+			// small blocks so that several panels and GEMM updates are exercised
+			BlockedLU.BLOCK_SIZE=8;
+			ParallelMatrixMult.PARALLEL_THRESHOLD=1000;
+			int[][] shapes={{1,1},{7,7},{37,37},{50,20},{20,50},{130,130}};
+			for (int[] s: shapes) {
+				Matrix a=Matrix.create(Matrixx.createRandomMatrix(s[0], s[1]));
+				for (boolean parallel: new boolean[] {false,true}) {
+					Matrix lu=a.clone();
+					int[] indx=new int[Math.min(s[0],s[1])];
+					int[] perm=new int[s[0]];
+					BlockedLU.decomposeInPlace(lu, indx, perm, parallel?ParallelMatrixMult.getDefaultPool():null);
+					checkLU(a, lu, perm);
+				}
+			}
+		} finally {
+			BlockedLU.BLOCK_SIZE=oldBlock;
+			ParallelMatrixMult.PARALLEL_THRESHOLD=oldThreshold;
+		}
+	}
+
+	private static void checkLU(Matrix a, Matrix lu, int[] perm) {
+		int m=a.rowCount();
+		int n=a.columnCount();
+		int mn=Math.min(m,n);
+		Matrix l=Matrix.create(m, mn);
+		Matrix u=Matrix.create(mn, n);
+		for (int i=0; i<m; i++) {
+			for (int j=0; j<n; j++) {
+				if (j<i) {
+					if (j<mn) l.set(i,j,lu.get(i,j));
+				} else {
+					if (i<mn) u.set(i,j,lu.get(i,j));
+				}
+			}
+			if (i<mn) l.set(i,i,1.0);
+		}
+		Matrix pa=Matrix.create(m, n);
+		for (int i=0; i<m; i++) {
+			pa.getRow(i).set(a.getRow(perm[i]));
+		}
+		assertTrue(l.innerProduct(u).epsilonEquals(pa, 1e-10));
+	}
+
+	@Test public void testBlockedLUMatchesAltLU() {
+		int oldBlock=BlockedLU.BLOCK_SIZE;
+		try {
+			BlockedLU.BLOCK_SIZE=16;
+			Matrix a=Matrixx.createRandomSquareMatrix(70);
+			BlockedLU blocked=new BlockedLU();
+			AltLU alt=new AltLU();
+			assertTrue(blocked.decompose(a));
+			assertTrue(alt.decompose(a));
+			assertEquals(alt.computeDeterminant(), blocked.computeDeterminant(), 1e-8*Math.abs(alt.computeDeterminant()));
+			assertTrue(blocked.getLU().epsilonEquals(alt.getLU(), 1e-8));
+
+			LULinearSolver solver=new LULinearSolver();
+			assertTrue(solver.setA(a));
+			Matrix b=Matrix.create(Matrixx.createRandomMatrix(70, 3));
+			Matrix x=Matrix.create(70, 3);
+			solver.solve(b, x);
+			assertTrue(a.innerProduct(x).epsilonEquals(b, 1e-8));
+		} finally {
+			BlockedLU.BLOCK_SIZE=oldBlock;
+		}
+	}
+
+	@Test public void testDecomposeLUP() {
+		Matrix a=Matrixx.createRandomSquareMatrix(100);
+		AMatrix[] ms=LU.decomposeLUP(a);
+		assertTrue(ms[2].innerProduct(a).epsilonEquals(ms[0].innerProduct(ms[1]), 1e-10));
+		assertTrue(ms[0].isLowerTriangular());
+		assertTrue(ms[1].isUpperTriangular());
+	}
+
+	static Matrix randomSPD(int n) {
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(n, n));
+		Matrix spd=a.innerProduct(a.getTranspose());
+		for (int i=0; i<n; i++) spd.addAt(i, i, n);
+		return spd;
+	}
+
+	@Test public void testBlockCholesky() {
+		int oldBlock=BlockCholesky.BLOCK_SIZE;
+		long oldThreshold=ParallelMatrixMult.PARALLEL_THRESHOLD;
+		try {
+			BlockCholesky.BLOCK_SIZE=16;
+			ParallelMatrixMult.PARALLEL_THRESHOLD=1000;
+			for (int n: new int[] {1,5,16,17,90}) {
+				Matrix a=randomSPD(n);
+				InnerCholesky inner=new InnerCholesky(true);
+				assertTrue(inner.decompose(a.clone()));
+				for (boolean parallel: new boolean[] {false,true}) {
+					BlockCholesky chol=new BlockCholesky(true);
+					chol.setParallel(parallel);
+					assertTrue(chol.decompose(a.clone()));
+					Matrix l=chol.getT();
+					assertTrue(l.isLowerTriangular());
+					assertTrue(l.epsilonEquals(inner.getT(), 1e-10));
+					assertTrue(l.innerProduct(l.getTranspose()).epsilonEquals(a, 1e-8));
+
+					BlockCholesky upper=new BlockCholesky(false);
+					upper.setParallel(parallel);
+					assertTrue(upper.decompose(a.clone()));
+					assertTrue(upper.getT().epsilonEquals(l.getTranspose(), 1e-10));
+				}
+			}
+
+			Matrix notPD=randomSPD(40);
+			notPD.set(30, 30, -1.0);
+			assertFalse(new BlockCholesky().decompose(notPD));
+		} finally {
+			BlockCholesky.BLOCK_SIZE=oldBlock;
+			ParallelMatrixMult.PARALLEL_THRESHOLD=oldThreshold;
+		}
+	}
+
+	@Test public void testLargeCholesky() {
+		int n=BlockCholesky.BLOCKED_THRESHOLD+10;
+		Matrix a=randomSPD(n);
+		Matrix l=Cholesky.decompose(a);
+		assertTrue(l.innerProduct(l.getTranspose()).epsilonEquals(a, 1e-8));
+
+		CholLinearSolver solver=new CholLinearSolver();
+		assertTrue(solver.setA(a.clone()));
+		Matrix b=Matrix.create(Matrixx.createRandomMatrix(n, 2));
+		Matrix x=Matrix.create(n, 2);
+		solver.solve(b, x);
+		assertTrue(a.innerProduct(x).epsilonEquals(b, 1e-8));
+	}
+
+	@Test public void testCholeskyNotPositiveDefinite() {
+		// small and blocked paths report failure the same way
+		for (int n: new int[] {10, BlockCholesky.BLOCKED_THRESHOLD+10}) {
+			Matrix a=randomSPD(n);
+			a.set(n/2, n/2, -1.0);
+			try {
+				Cholesky.decompose(a);
+				fail("Matrix of size "+n+" is not positive definite");
+			} catch (IllegalArgumentException e) {
+				// OK
+			}
+		}
+
+		// NaN pivots are rejected rather than propagated
+		Matrix nan=randomSPD(12);
+		nan.set(5, 5, Double.NaN);
+		assertFalse(new BlockCholesky().decompose(nan.clone()));
+		try {
+			Cholesky.decompose(nan);
+			fail("NaN pivot should be rejected");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+
+	@Test public void testBlockHouseholderQR() {
+		int oldBlock=BlockHouseholderQR.BLOCK_SIZE;
+		try {
+			BlockHouseholderQR.BLOCK_SIZE=8;
+			int[][] shapes={{1,1},{6,6},{40,40},{100,30},{30,9},{10,25}};
+			for (int[] s: shapes) {
+				int m=s[0], n=s[1], k=Math.min(m,n);
+				Matrix a=Matrix.create(Matrixx.createRandomMatrix(m, n));
+				BlockHouseholderQR qr=new BlockHouseholderQR();
+				assertTrue(qr.decompose(a));
+
+				Matrix q=qr.getQ(true);
+				Matrix r=qr.getR(true);
+				assertEquals(k, q.columnCount());
+				assertTrue(r.isUpperTriangular());
+				assertTrue(q.getTranspose().innerProduct(q).epsilonEquals(Matrixx.createIdentityMatrix(k), 1e-10));
+				assertTrue(q.innerProduct(r).epsilonEquals(a, 1e-10));
+
+				Matrix fullQ=qr.getQ(false);
+				assertTrue(fullQ.getTranspose().innerProduct(fullQ).epsilonEquals(Matrixx.createIdentityMatrix(m), 1e-10));
+				assertTrue(fullQ.innerProduct(qr.getR(false)).epsilonEquals(a, 1e-10));
+
+				Matrix b=Matrix.create(Matrixx.createRandomMatrix(m, 3));
+				Matrix c=b.clone();
+				qr.applyQTranspose(c);
+				assertTrue(c.epsilonEquals(fullQ.getTranspose().innerProduct(b), 1e-10));
+				qr.applyQ(c);
+				assertTrue(c.epsilonEquals(b, 1e-10));
+			}
+		} finally {
+			BlockHouseholderQR.BLOCK_SIZE=oldBlock;
+		}
+
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(50, 20));
+		Matrix[] ms=QR.decompose(a);
+		assertTrue(ms[0].innerProduct(ms[1]).epsilonEquals(a, 1e-10));
+	}
+
+	@Test public void testBlockQRLeastSquares() {
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(200, 40));
+		Matrix b=Matrix.create(Matrixx.createRandomMatrix(200, 3));
+		Matrix x=Matrix.create(40, 3);
+		BlockQRLinearSolver solver=new BlockQRLinearSolver();
+		assertTrue(solver.setA(a));
+		assertTrue(solver.quality()>0.0);
+		solver.solve(b, x);
+
+		// residual is orthogonal to the column space of A
+		Matrix residual=a.innerProduct(x);
+		residual.sub(b);
+		assertTrue(a.getTranspose().innerProduct(residual).epsilonEquals(Matrix.create(40, 3), 1e-10));
+	}
+
+	private static Matrix gram(Matrix r) {
+		return r.getTranspose().innerProduct(r);
+	}
+
+	@Test public void testTSQR() {
+		int oldRows=TSQR.BLOCK_ROWS;
+		try {
+			TSQR.BLOCK_ROWS=50;
+			Matrix a=Matrix.create(Matrixx.createRandomMatrix(1037, 12));
+			Matrix[] qr=TSQR.decompose(a);
+			Matrix q=qr[0];
+			Matrix r=qr[1];
+			assertTrue(r.isUpperTriangular());
+			assertTrue(q.hasOrthonormalColumns());
+			assertTrue(q.innerProduct(r).epsilonEquals(a, 1e-10));
+
+			// R is unique up to the signs of its rows, so compare R^T.R = A^T.A
+			Matrix ata=a.getTranspose().innerProduct(a);
+			assertTrue(gram(TSQR.computeR(a)).epsilonEquals(ata, 1e-8));
+
+			// streaming in uneven chunks, including chunks smaller than the column count
+			ArrayList<AMatrix> chunks=new ArrayList<AMatrix>();
+			int[] sizes={5,100,3,400,529};
+			int start=0;
+			for (int size: sizes) {
+				chunks.add(a.subMatrix(start, size, 0, 12));
+				start+=size;
+			}
+			TSQR.Accumulator acc=new TSQR.Accumulator();
+			for (AMatrix c: chunks) acc.add(c);
+			assertEquals(1037L, acc.rowCount());
+			assertTrue(gram(acc.getR()).epsilonEquals(ata, 1e-8));
+			assertTrue(gram(TSQR.computeR(chunks.iterator())).epsilonEquals(ata, 1e-8));
+		} finally {
+			TSQR.BLOCK_ROWS=oldRows;
+		}
+	}
+
+	@Test public void testTSQRAccumulatorEmptyChunks() {
+		TSQR.Accumulator acc=new TSQR.Accumulator();
+		try {
+			acc.getR();
+			fail("No chunks have been added");
+		} catch (IllegalStateException e) {
+			// OK
+		}
+
+		// only empty chunks give a zero R
+		acc.add(Matrix.create(0, 4));
+		acc.add(Matrix.create(0, 4));
+		assertEquals(0L, acc.rowCount());
+		Matrix r=acc.getR();
+		assertEquals(4, r.rowCount());
+		assertTrue(r.isZero());
+
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(10, 4));
+		acc.add(a);
+		assertTrue(gram(acc.getR()).epsilonEquals(gram(a), 1e-10));
+	}
+
+	@Test public void testTallThinSVD() {
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(2000, 6));
+		assertTrue(TSQR.isTall(a));
+		Matrix[] svd=ThinSVD.decompose(a);
+		Matrix u=svd[0];
+		assertEquals(2000, u.rowCount());
+		assertTrue(u.hasOrthonormalColumns());
+		assertTrue(svd[2].isOrthogonal());
+		Matrix usvt=u.innerProduct(svd[1].innerProduct(svd[2].getTranspose()));
+		assertTrue(usvt.epsilonEquals(a, 1e-10));
+	}
+
+	@Test public void testRandomizedSVD() {
+		// A = U0.diag(sigma).V0^T with geometrically decaying singular values
+		int m=300, n=80, k=5;
+		Random r=new Random(1234);
+		Matrix u0=orthonormalColumns(m, n, r);
+		Matrix v0=orthonormalColumns(n, n, r);
+		Matrix sigma=Matrix.create(n, n);
+		for (int i=0; i<n; i++) sigma.set(i, i, Math.pow(0.5, i));
+		Matrix a=u0.innerProduct(sigma).innerProduct(v0.getTranspose());
+
+		Matrix[] svd=RandomizedSVD.decompose(a, k, 10, 2, r);
+		Matrix u=svd[0], s=svd[1], v=svd[2];
+		assertEquals(m, u.rowCount());
+		assertEquals(k, u.columnCount());
+		assertEquals(n, v.rowCount());
+		assertEquals(k, v.columnCount());
+		assertTrue(u.hasOrthonormalColumns());
+		assertTrue(v.hasOrthonormalColumns());
+		for (int i=0; i<k; i++) {
+			assertEquals(sigma.get(i, i), s.get(i, i), 1e-10);
+		}
+		// rank k approximation error is bounded by the (k+1)th singular value
+		Matrix diff=u.innerProduct(s).innerProduct(v.getTranspose());
+		diff.sub(a);
+		diff.abs();
+		assertTrue(diff.elementMax()<=sigma.get(k, k)*(1+1e-6));
+	}
+
+	@Test public void testRandomizedSVDSparse() {
+		// at most one non-zero per row and column, so the singular values are the absolute values
+		int m=500, n=200;
+		Random r=new Random(42);
+		SparseRowMatrix a=SparseRowMatrix.create(m, n);
+		for (int i=0; i<40; i++) {
+			a.set(3*i+1, (7*i)%n, ((i%2==0)?1:-1)*Math.pow(0.6, i));
+		}
+		Matrix[] svd=RandomizedSVD.decompose(a, 4, 8, 2, r);
+		for (int i=0; i<4; i++) {
+			assertEquals(Math.pow(0.6, i), svd[1].get(i, i), 1e-10);
+		}
+		// singular vectors are unit vectors at the non-zero positions, up to sign
+		for (int i=0; i<4; i++) {
+			assertEquals(1.0, Math.abs(svd[0].get(3*i+1, i)), 1e-10);
+			assertEquals(1.0, Math.abs(svd[2].get((7*i)%n, i)), 1e-10);
+		}
+	}
+
+	private static Matrix orthonormalColumns(int m, int n, Random r) {
+		Matrix g=Matrix.create(m, n);
+		for (int i=0; i<g.data.length; i++) g.data[i]=r.nextGaussian();
+		BlockHouseholderQR qr=new BlockHouseholderQR();
+		qr.decompose(g);
+		return qr.getQ(true);
+	}
+
+	@Test public void testDeterminant() {
+		// general matrix, matches the LU determinant and is consistent with the log form
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(40, 40));
+		double det=a.determinant();
+		assertEquals(CommonOps.det(a), det, 1e-10*Math.abs(det));
+		double[] sl=a.signedLogDeterminant();
+		assertEquals(Math.signum(det), sl[0], 0.0);
+		assertEquals(Math.log(Math.abs(det)), sl[1], 1e-10);
+
+		// swapping two rows flips the sign only
+		a.swapRows(0, 1);
+		double[] swapped=a.signedLogDeterminant();
+		assertEquals(-sl[0], swapped[0], 0.0);
+		assertEquals(sl[1], swapped[1], 1e-10);
+
+		// symmetric indefinite matrices fall back from Cholesky to LU
+		Matrix s=a.clone();
+		s.add(a.getTranspose());
+		assertEquals(CommonOps.det(s), Determinant.calculate(s), 1e-9*Math.abs(CommonOps.det(s)));
+
+		// small, triangular and singular cases
+		Matrix small=Matrix.create(new double[][] {{2,1},{1,3}});
+		assertEquals(5.0, small.determinant(), 0.0);
+		Matrix upper=Matrix.create(10, 10);
+		for (int i=0; i<10; i++) {
+			for (int j=i; j<10; j++) upper.set(i, j, j+1);
+		}
+		assertEquals(3628800.0, upper.determinant(), 1e-6);
+		Matrix singular=Matrix.create(Matrixx.createRandomMatrix(20, 20));
+		singular.getRow(3).fill(0.0);
+		double[] sls=singular.signedLogDeterminant();
+		assertEquals(0.0, sls[0], 0.0);
+		assertEquals(Double.NEGATIVE_INFINITY, sls[1], 0.0);
+	}
+
+	@Test public void testLogDeterminantLarge() {
+		// SPD matrix whose determinant overflows: log|cA| = n.log(c) + log|A|
+		int n=300;
+		Matrix g=Matrix.create(Matrixx.createRandomMatrix(n, n));
+		Matrix a=g.getTranspose().innerProduct(g);
+		for (int i=0; i<n; i++) a.addAt(i, i, 1.0);
+		double logDet=a.logDeterminant();
+		Matrix scaled=a.clone();
+		scaled.multiply(1000.0);
+		assertEquals(Double.POSITIVE_INFINITY, scaled.determinant(), 0.0);
+		assertEquals(logDet+n*Math.log(1000.0), scaled.logDeterminant(), 1e-8*Math.abs(logDet));
+
+		// matches the LU path for the same matrix
+		Matrix lu=a.clone();
+		double sign=BlockedLU.decomposeInPlace(lu, new int[n], new int[n], null);
+		double luLog=0.0;
+		for (int i=0; i<n; i++) {
+			double d=lu.get(i, i);
+			if (d<0) sign=-sign;
+			luLog+=Math.log(Math.abs(d));
+		}
+		assertEquals(1.0, sign, 0.0);
+		assertEquals(luLog, logDet, 1e-8*Math.abs(logDet));
+	}
+
+	@Test public void testCholeskyUpdate() {
+		int n=30;
+		Matrix a=randomSPD(n);
+		Vector x=Vector.createLength(n);
+		for (int i=0; i<n; i++) x.set(i, Math.random()-0.5);
+		Matrix xxt=Matrix.create(n, n);
+		for (int i=0; i<n; i++) {
+			for (int j=0; j<n; j++) xxt.set(i, j, x.get(i)*x.get(j));
+		}
+
+		// lower factor through the Cholesky facade
+		Matrix l=Cholesky.decompose(a);
+		Cholesky.update(l, x);
+		Matrix updated=a.clone();
+		updated.add(xxt);
+		assertTrue(l.isLowerTriangular());
+		assertTrue(l.innerProduct(l.getTranspose()).epsilonEquals(updated, 1e-10));
+		Cholesky.downdate(l, x);
+		assertTrue(l.innerProduct(l.getTranspose()).epsilonEquals(a, 1e-10));
+
+		// upper factor through ACholesky
+		InnerCholesky chol=new InnerCholesky(false);
+		assertTrue(chol.decompose(a.clone()));
+		chol.update(x);
+		Matrix r=chol.getT(null);
+		assertTrue(r.isUpperTriangular());
+		assertTrue(r.getTranspose().innerProduct(r).epsilonEquals(updated, 1e-10));
+		assertTrue(chol.downdate(x));
+		r=chol.getT(null);
+		assertTrue(r.getTranspose().innerProduct(r).epsilonEquals(a, 1e-10));
+		for (int i=0; i<n; i++) assertTrue(r.get(i, i)>0.0);
+	}
+
+	@Test public void testCholeskyRankKUpdate() {
+		int n=25, k=4;
+		Matrix a=randomSPD(n);
+		Matrix x=Matrix.create(Matrixx.createRandomMatrix(n, k));
+		Matrix xxt=x.innerProduct(x.getTranspose());
+		Matrix l=Cholesky.decompose(a);
+		CholeskyUpdate.update(l, x, true);
+		Matrix updated=a.clone();
+		updated.add(xxt);
+		assertTrue(l.innerProduct(l.getTranspose()).epsilonEquals(updated, 1e-10));
+		assertTrue(CholeskyUpdate.downdate(l, x, true));
+		assertTrue(l.innerProduct(l.getTranspose()).epsilonEquals(a, 1e-9));
+	}
+
+	@Test public void testCholeskyDowndateLosesDefiniteness() {
+		int n=10;
+		Matrix a=Matrix.create(n, n);
+		for (int i=0; i<n; i++) a.set(i, i, 1.0);
+		Matrix l=Cholesky.decompose(a);
+		Matrix original=l.clone();
+
+		// I - x.x^T is singular for unit x
+		Vector x=Vector.createLength(n);
+		x.set(3, 1.0);
+		assertFalse(CholeskyUpdate.downdate(l, x));
+		assertTrue(l.equals(original));
+		try {
+			Cholesky.downdate(l, x);
+			fail("Expected loss of definiteness");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+
+		// rank-k downdates are applied atomically
+		Matrix xs=Matrix.create(n, 2);
+		xs.set(0, 0, 0.5);
+		xs.set(0, 1, 0.9);
+		assertFalse(CholeskyUpdate.downdate(l, xs, true));
+		assertTrue(l.equals(original));
+	}
+
+	private static void checkQR(Matrix[] qr, Matrix a) {
+		Matrix q=qr[0];
+		Matrix r=qr[1];
+		assertEquals(a.rowCount(), q.rowCount());
+		assertTrue(q.isSquare());
+		assertTrue(q.hasOrthonormalColumns());
+		assertTrue(r.isUpperTriangular());
+		assertTrue(q.innerProduct(r).epsilonEquals(a, 1e-10));
+	}
+
+	@Test public void testQRUpdate() {
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(12, 5));
+		BlockHouseholderQR decomp=new BlockHouseholderQR();
+		decomp.decompose(a);
+		Matrix[] qr={decomp.getQ(false),decomp.getR(false)};
+		checkQR(qr,a);
+
+		// add rows at the start, middle and end
+		for (int index: new int[] {0,6,14}) {
+			AVector row=Vector.createLength(5);
+			for (int j=0; j<5; j++) row.set(j, Math.random());
+			qr=QRUpdate.addRow(qr[0], qr[1], index, row);
+			Matrix na=Matrix.create(a.rowCount()+1, 5);
+			for (int i=0; i<na.rowCount(); i++) {
+				na.getRow(i).set((i<index)?a.getRow(i):((i==index)?row:a.getRow(i-1)));
+			}
+			a=na;
+			checkQR(qr,a);
+		}
+
+		// remove rows from the middle, start and end
+		for (int index: new int[] {3,0,12}) {
+			qr=QRUpdate.removeRow(qr[0], qr[1], index);
+			Matrix na=Matrix.create(a.rowCount()-1, 5);
+			for (int i=0; i<na.rowCount(); i++) {
+				na.getRow(i).set(a.getRow((i<index)?i:(i+1)));
+			}
+			a=na;
+			checkQR(qr,a);
+		}
+
+		// add and remove columns
+		AVector col=Vector.createLength(a.rowCount());
+		for (int i=0; i<col.length(); i++) col.set(i, Math.random());
+		qr=QRUpdate.addColumn(qr[0], qr[1], 2, col);
+		Matrix na=Matrix.create(a.rowCount(), 6);
+		for (int j=0; j<6; j++) {
+			na.getColumn(j).set((j<2)?a.getColumn(j):((j==2)?col:a.getColumn(j-1)));
+		}
+		a=na;
+		checkQR(qr,a);
+		qr=QRUpdate.removeColumn(qr[0], qr[1], 0);
+		a=Matrix.create(a.subMatrix(0, a.rowCount(), 1, 5));
+		checkQR(qr,a);
+	}
+
+	@Test public void testUpdatableQRSlidingWindow() {
+		int n=4;
+		Matrix data=Matrix.create(Matrixx.createRandomMatrix(40, n));
+		Matrix y=Matrix.create(Matrixx.createRandomMatrix(40, 1));
+		int window=10;
+		UpdatableQRLinearSolver solver=new UpdatableQRLinearSolver();
+		UpdatableQRLinearSolver full=new UpdatableQRLinearSolver(true);
+		assertTrue(solver.setA(Matrix.create(data.subMatrix(0, window, 0, n)), Matrix.create(y.subMatrix(0, window, 0, 1))));
+		assertTrue(full.setA(Matrix.create(data.subMatrix(0, window, 0, n))));
+		for (int start=0; start+window<40; start++) {
+			// slide the window by one row
+			solver.addRow(data.getRow(start+window), y.getRow(start+window));
+			solver.removeRow(data.getRow(start), y.getRow(start));
+			full.addRow(window, data.getRow(start+window));
+			full.removeRow(0);
+			assertEquals(n, solver.getR().rowCount());
+
+			Matrix a=Matrix.create(data.subMatrix(start+1, window, 0, n));
+			Matrix b=Matrix.create(y.subMatrix(start+1, window, 0, 1));
+			BlockQRLinearSolver fresh=new BlockQRLinearSolver();
+			assertTrue(fresh.setA(a));
+			Matrix expected=Matrix.create(n, 1);
+			fresh.solve(b, expected);
+			assertTrue(solver.getSolution().epsilonEquals(expected, 1e-8));
+			Matrix x=Matrix.create(n, 1);
+			full.solve(b, x);
+			assertTrue(x.epsilonEquals(expected, 1e-8));
+		}
+
+		// dropping a column keeps the thin factors consistent
+		solver.removeColumn(1);
+		Matrix a=Matrix.create(data.subMatrix(40-window, window, 0, n));
+		Matrix reduced=Matrix.create(window, n-1);
+		for (int j=0; j<n-1; j++) reduced.getColumn(j).set(a.getColumn((j<1)?j:(j+1)));
+		BlockQRLinearSolver fresh=new BlockQRLinearSolver();
+		assertTrue(fresh.setA(reduced));
+		Matrix expected=Matrix.create(n-1, 1);
+		fresh.solve(Matrix.create(y.subMatrix(40-window, window, 0, 1)), expected);
+		assertTrue(solver.getSolution().epsilonEquals(expected, 1e-8));
+
+		// a thin solver can start from no rows at all
+		UpdatableQRLinearSolver empty=new UpdatableQRLinearSolver();
+		assertTrue(empty.setA(Matrix.create(0, n), Matrix.create(0, 1)));
+		for (int i=0; i<window; i++) empty.addRow(data.getRow(i), y.getRow(i));
+		fresh=new BlockQRLinearSolver();
+		assertTrue(fresh.setA(Matrix.create(data.subMatrix(0, window, 0, n))));
+		expected=Matrix.create(n, 1);
+		fresh.solve(Matrix.create(y.subMatrix(0, window, 0, 1)), expected);
+		assertTrue(empty.getSolution().epsilonEquals(expected, 1e-8));
+	}
+
+	@Test public void testLinearSolverCache() {
+		LinearSolverCache cache=new LinearSolverCache(2);
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(20, 20));
+		a.add(Matrixx.createScaleMatrix(20, 5.0));
+		Matrix spd=Matrix.create(a.innerProduct(a.getTranspose()));
+		AVector b=Vector.createLength(20);
+		for (int i=0; i<20; i++) b.set(i, Math.random());
+
+		AVector x=cache.solve(a, b);
+		assertTrue(a.innerProduct(x).epsilonEquals(b, 1e-8));
+		ILinearSolver s=cache.getSolver(a);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertTrue(cache.getSolver(a)==s);
+		assertTrue(cache.inverse(spd).innerProduct(spd).epsilonEquals(Matrixx.createIdentityMatrix(20), 1e-8));
+		assertTrue(cache.getSolver(spd) instanceof CholLinearSolver);
+		assertEquals(2, cache.size());
+
+		// modifying the matrix invalidates the cached factorisation
+		a.set(3, 4, a.get(3, 4)+1.0);
+		assertTrue(cache.getSolver(a)!=s);
+		assertTrue(a.innerProduct(cache.solve(a, b)).epsilonEquals(b, 1e-8));
+		assertEquals(3, cache.getMisses());
+
+		// a third matrix evicts the least recently used entry, which is spd
+		Matrix c=Matrix.create(Matrixx.createRandomMatrix(5, 5));
+		c.add(Matrixx.createScaleMatrix(5, 5.0));
+		cache.getSolver(c, 1L);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		cache.getSolver(a);
+		cache.getSolver(spd);
+		assertEquals(5, cache.getMisses());
+
+		// version stamps are trusted in place of contents
+		c.set(0, 0, 100.0);
+		ILinearSolver sc=cache.getSolver(c, 1L);
+		assertTrue(cache.getSolver(c, 1L)==sc);
+		assertTrue(cache.getSolver(c, 2L)!=sc);
+		ILinearSolver smin=cache.getSolver(c, Long.MIN_VALUE);
+		assertTrue(cache.getSolver(c, Long.MIN_VALUE)==smin);
+		assertTrue(cache.getSolver(c)!=smin);
+
+		cache.invalidate(c);
+		assertEquals(1, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test public void testInverseUsesSharedCache() {
+		LinearSolverCache shared=LinearSolverCache.shared();
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(10, 10));
+		a.add(Matrixx.createScaleMatrix(10, 5.0));
+		AMatrix inv=a.inverse();
+		long hits=shared.getHits();
+		assertTrue(a.inverse().equals(inv));
+		assertEquals(hits+1, shared.getHits());
+		assertTrue(a.innerProduct(inv).epsilonEquals(Matrixx.createIdentityMatrix(10), 1e-8));
+
+		a.set(2, 2, a.get(2, 2)+1.0);
+		assertTrue(a.innerProduct(a.inverse()).epsilonEquals(Matrixx.createIdentityMatrix(10), 1e-8));
+
+		Matrix singular=Matrix.create(3, 3);
+		singular.setRow(0, Vector.of(1, 2, 3));
+		singular.setRow(1, Vector.of(2, 4, 6));
+		singular.setRow(2, Vector.of(1, 0, 1));
+		try {
+			singular.inverse();
+			fail("Singular matrix should not be invertible");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+
+		// diagonal matrices take the banded path, which reports singularity the same way
+		Matrix diag=Matrix.create(3, 3);
+		diag.set(0, 0, 1.0);
+		diag.set(2, 2, 1.0);
+		try {
+			diag.inverse();
+			fail("Singular matrix should not be invertible");
+		} catch (IllegalArgumentException e) {
+			assertEquals(ErrorMessages.singularMatrix(), e.getMessage());
+		}
+		shared.clear();
+	}
+
+	@Test public void testLinearSolverCacheWeakKeys() throws InterruptedException {
+		LinearSolverCache cache=new LinearSolverCache(4);
+		Matrix kept=Matrix.create(Matrixx.createRandomMatrix(5, 5));
+		kept.add(Matrixx.createScaleMatrix(5, 5.0));
+		cache.getSolver(kept);
+		Matrix dropped=Matrix.create(Matrixx.createRandomMatrix(5, 5));
+		dropped.add(Matrixx.createScaleMatrix(5, 5.0));
+		cache.getSolver(dropped);
+		assertEquals(2, cache.size());
+
+		// the cache does not keep the caller's matrix alive
+		dropped=null;
+		for (int i=0; (i<50)&&(cache.size()>1); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, cache.size());
+		assertTrue(cache.getSolver(kept)!=null);
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test public void testBlockedMultiSolve() {
+		int oldBlock=TriangularSolver.BLOCK_SIZE;
+		int oldColumns=TriangularSolver.COLUMN_BLOCK;
+		try {
+			// small blocks so that several diagonal blocks, GEMM updates and column panels are exercised
+			TriangularSolver.BLOCK_SIZE=16;
+			TriangularSolver.COLUMN_BLOCK=24;
+			int n=70;
+			Matrix a=Matrix.create(Matrixx.createRandomMatrix(n, n));
+			a.add(Matrixx.createScaleMatrix(n, 5.0));
+			Matrix spd=Matrix.create(a.innerProduct(a.getTranspose()));
+			Matrix tall=Matrix.create(Matrixx.createRandomMatrix(90, n));
+			Matrix b=Matrix.create(Matrixx.createRandomMatrix(n, 50));
+			Matrix bt=Matrix.create(Matrixx.createRandomMatrix(90, 50));
+
+			checkMultiSolve(new LULinearSolver(), a, b);
+			checkMultiSolve(new LULinearSolver(new AltLU()), a, b);
+			checkMultiSolve(new CholLinearSolver(), spd, b);
+			checkMultiSolve(new CholLinearSolver(new InnerCholesky(false)), spd, b);
+			checkMultiSolve(new CholLinearSolver(new BlockCholesky(false)), spd, b);
+			checkMultiSolve(new SafeLinearSolver(new CholLinearSolver()), spd, b);
+			checkMultiSolve(new BlockQRLinearSolver(), tall, bt);
+			checkMultiSolve(new HouseholderColumnQRLinearSolver(), tall, bt);
+			checkMultiSolve(new UpdatableQRLinearSolver(true), tall, bt);
+
+			// convenience solve(B) on concrete solvers allocates X of the right shape
+			LULinearSolver lus=new LULinearSolver();
+			assertTrue(lus.setA(a.clone()));
+			Matrix x=lus.solve(b.clone());
+			assertEquals(n, x.rowCount());
+			assertEquals(b.columnCount(), x.columnCount());
+			SafeLinearSolver safe=new SafeLinearSolver(new BlockQRLinearSolver());
+			assertTrue(safe.setA(tall));
+			Matrix bc=bt.clone();
+			x=safe.solve(bc);
+			assertEquals(n, x.rowCount());
+			assertTrue(bc.equals(bt));
+
+			// inverse via blocked solve of the identity
+			LULinearSolver lu=new LULinearSolver();
+			assertTrue(lu.setA(a));
+			Matrix inv=Matrix.create(n, n);
+			lu.invert(inv);
+			assertTrue(inv.innerProduct(a).epsilonEquals(Matrixx.createIdentityMatrix(n), 1e-8));
+		} finally {
+			TriangularSolver.BLOCK_SIZE=oldBlock;
+			TriangularSolver.COLUMN_BLOCK=oldColumns;
+		}
+	}
+
+	@Test public void testEmptyRightHandSide() {
+		Matrix a=Matrix.create(Matrixx.createRandomMatrix(3, 3));
+		a.add(Matrixx.createScaleMatrix(3, 5.0));
+		Matrix spd=randomSPD(3);
+		ALinearSolver[] solvers={new LULinearSolver(),new CholLinearSolver(),new BlockQRLinearSolver(),
+				new HouseholderColumnQRLinearSolver(),new UpdatableQRLinearSolver(true)};
+		for (ALinearSolver solver: solvers) {
+			Matrix m=(solver instanceof CholLinearSolver)?spd:a;
+			assertTrue(solver.setA(m.clone()));
+			Matrix x=solver.solve(Matrix.create(3, 0));
+			assertEquals(3, x.rowCount());
+			assertEquals(0, x.columnCount());
+		}
+
+		// an empty system is a no-op too
+		LULinearSolver lu=new LULinearSolver();
+		assertTrue(lu.setA(Matrix.create(0, 0)));
+		assertEquals(0, lu.solve(Matrix.create(0, 2)).rowCount());
+
+		// solvers from the factory and the cache expose solve(B) directly
+		Matrix b=Matrix.create(Matrixx.createRandomMatrix(3, 2));
+		ALinearSolver solver=LinearSolverFactory.linear(a);
+		assertTrue(solver.setA(a.clone()));
+		assertTrue(a.innerProduct(solver.solve(b)).epsilonEquals(b, 1e-8));
+		Matrix diag=Matrix.create(Matrixx.createScaleMatrix(3, 2.0));
+		assertTrue(LinearSolverFactory.linear(diag) instanceof BandedLinearSolver);
+		assertTrue(diag.innerProduct(new LinearSolverCache().getSolver(diag).solve(b)).epsilonEquals(b, 1e-12));
+	}
+
+	private static void checkMultiSolve(ILinearSolver solver, Matrix a, Matrix b) {
+		assertTrue(solver.setA(solver.modifiesA()?a.clone():a));
+		Matrix x=Matrix.create(a.columnCount(), b.columnCount());
+		solver.solve(b.clone(), x);
+		// normal equations hold for both square and least squares systems
+		Matrix residual=Matrix.create(a.innerProduct(x));
+		residual.sub(b);
+		assertTrue(a.getTranspose().innerProduct(residual).epsilonEquals(Matrix.create(a.columnCount(), b.columnCount()), 1e-6));
+
+		// each column matches a single right hand side solve
+		for (int j=0; j<b.columnCount(); j+=17) {
+			Matrix bj=Matrix.create(b.rowCount(), 1);
+			bj.getColumn(0).set(b.getColumn(j));
+			Matrix xj=Matrix.create(a.columnCount(), 1);
+			solver.solve(bj, xj);
+			assertTrue(xj.getColumn(0).epsilonEquals(x.getColumn(j), 1e-8));
+		}
+	}
+}
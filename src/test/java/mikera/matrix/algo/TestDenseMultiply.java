@@ -1,9 +1,23 @@
 package mikera.matrix.algo;
 
 import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import mikera.matrixx.AMatrix;
 import mikera.matrixx.Matrix;
 import mikera.matrixx.Matrixx;
+import mikera.matrixx.algo.MultiplicationTuner;
 import mikera.matrixx.algo.Multiplications;
+import mikera.matrixx.algo.mult.PackedMatrixMult;
+import mikera.matrixx.impl.TransposedMatrix;
+import mikera.matrixx.algo.mult.ParallelMatrixMult;
+import mikera.matrixx.algo.mult.StrassenMatrixMult;
+import mikera.vectorz.util.VectorzException;
 
 import org.junit.Test;
 
@@ -44,4 +58,181 @@ public class TestDenseMultiply {
 		assertEquals(ip,Multiplications.blockedMultiply(mt, m));
 		assertEquals(ip,Multiplications.naiveMultiply(mt, m));
 	}
+	
+	@Test public void testPackedMul() {
+		// odd sizes to exercise edge tiles
+		Matrix a=(Matrix)Matrixx.createRandomMatrix(37, 61);
+		Matrix b=(Matrix)Matrixx.createRandomMatrix(61, 23);
+		Matrix ip=Multiplications.naiveMultiply(a, b).toMatrix();
+		assertEquals(ip,Multiplications.packedMultiply(a, b));
+		assertEquals(ip,PackedMatrixMult.multiply(a.getTransposeView().getTransposeView(), b));
+		assertEquals(ip,PackedMatrixMult.multiply(a, b.toMatrixTranspose().getTransposeView()));
+		assertEquals(ip,PackedMatrixMult.multiply(a.sparseClone(), b.sparseClone()));
+		
+		Matrix c=Matrix.create(37, 23);
+		c.fill(1.0);
+		PackedMatrixMult.gemm(2.0, a, b, 3.0, c);
+		Matrix expected=ip.clone();
+		expected.multiply(2.0);
+		expected.add(3.0);
+		assertTrue(expected.epsilonEquals(c));
+	}
+	
+	@Test public void testPackedBlocking() {
+		int oldM=PackedMatrixMult.BLOCK_M;
+		int oldK=PackedMatrixMult.BLOCK_K;
+		int oldN=PackedMatrixMult.BLOCK_N;
+		try {
+			PackedMatrixMult.BLOCK_M=8;
+			PackedMatrixMult.BLOCK_K=5;
+			PackedMatrixMult.BLOCK_N=12;
+			Matrix a=(Matrix)Matrixx.createRandomMatrix(19, 17);
+			Matrix b=(Matrix)Matrixx.createRandomMatrix(17, 29);
+			assertEquals(Multiplications.naiveMultiply(a, b),PackedMatrixMult.multiply(a, b));
+		} finally {
+			PackedMatrixMult.BLOCK_M=oldM;
+			PackedMatrixMult.BLOCK_K=oldK;
+			PackedMatrixMult.BLOCK_N=oldN;
+		}
+	}
+	
+	@Test public void testParallelMul() {
+		long oldTaskSize=ParallelMatrixMult.TASK_SIZE;
+		ForkJoinPool pool=new ForkJoinPool(4);
+		try {
+			ParallelMatrixMult.TASK_SIZE=1000;
+			Matrix a=(Matrix)Matrixx.createRandomMatrix(53, 41);
+			Matrix b=(Matrix)Matrixx.createRandomMatrix(41, 67);
+			assertEquals(Multiplications.naiveMultiply(a, b),ParallelMatrixMult.multiply(a, b, pool));
+			Matrix at=a.toMatrixTranspose();
+			assertEquals(Multiplications.naiveMultiply(b.getTransposeView(), at),ParallelMatrixMult.multiply(b.getTransposeView(), at, pool));
+		} finally {
+			ParallelMatrixMult.TASK_SIZE=oldTaskSize;
+			pool.shutdown();
+		}
+	}
+	
+	@Test public void testMultiplyInto() {
+		Matrix a=(Matrix)Matrixx.createRandomMatrix(7, 20);
+		Matrix b=(Matrix)Matrixx.createRandomMatrix(20, 16);
+		Matrix at=a.toMatrixTranspose();
+		Matrix bt=b.toMatrixTranspose();
+		Matrix ab=Multiplications.naiveMultiply(a, b).toMatrix();
+		
+		Matrix init=(Matrix)Matrixx.createRandomMatrix(7, 16);
+		Matrix expected=ab.clone();
+		expected.multiply(0.5);
+		expected.addMultiple(init, 2.0);
+		
+		for (int t=0; t<4; t++) {
+			boolean transA=(t&1)!=0;
+			boolean transB=(t&2)!=0;
+			AMatrix x=transA?at:a;
+			AMatrix y=transB?bt:b;
+			
+			Matrix c=Matrix.create(7, 16);
+			x.multiplyInto(y, c, 1.0, 0.0, transA, transB);
+			assertTrue(ab.epsilonEquals(c));
+			
+			c=init.clone();
+			x.multiplyInto(y, c, 0.5, 2.0, transA, transB);
+			assertTrue(expected.epsilonEquals(c));
+			
+			// non-dense arguments
+			AMatrix sc=init.sparseClone();
+			x.sparseClone().multiplyInto(y, sc, 0.5, 2.0, transA, transB);
+			assertTrue(expected.epsilonEquals(sc));
+		}
+	}
+	
+	@Test public void testTransposedViews() {
+		Matrix a=(Matrix)Matrixx.createRandomMatrix(9, 5);
+		Matrix b=(Matrix)Matrixx.createRandomMatrix(9, 6);
+		Matrix at=a.toMatrixTranspose();
+		Matrix bt=b.toMatrixTranspose();
+		
+		AMatrix atb=Multiplications.naiveMultiply(at, b);
+		assertEquals(atb,Multiplications.multiply(a.getTransposeView(), b));
+		assertEquals(atb,Multiplications.multiply(TransposedMatrix.wrap(a), b));
+		assertEquals(atb,Multiplications.transposeMultiply(a, b));
+		assertEquals(atb,a.transposeInnerProduct(b));
+		
+		AMatrix abt=Multiplications.naiveMultiply(at, b).getTranspose();
+		assertEquals(abt,Multiplications.multiply(bt, a));
+		assertEquals(abt,Multiplications.multiplyTranspose(bt, at));
+		assertEquals(abt,bt.innerProduct(at.getTransposeView()));
+		assertEquals(abt,Multiplications.multiply(b.getTransposeView(), TransposedMatrix.wrap(at)));
+		
+		AMatrix ata=Multiplications.naiveMultiply(at, a);
+		assertEquals(ata,a.getTransposeView().innerProduct(a));
+		assertEquals(ata,a.transposeInnerProduct(a));
+	}
+	
+	@Test public void testStrassenMul() {
+		int oldCutoff=StrassenMatrixMult.CUTOFF;
+		try {
+			StrassenMatrixMult.CUTOFF=8;
+			Matrix a=(Matrix)Matrixx.createRandomMatrix(41, 37);
+			Matrix b=(Matrix)Matrixx.createRandomMatrix(37, 50);
+			AMatrix expected=Multiplications.naiveMultiply(a, b);
+			assertTrue(expected.epsilonEquals(StrassenMatrixMult.multiply(a, b)));
+			
+			Matrix sq=(Matrix)Matrixx.createRandomMatrix(64, 64);
+			assertTrue(Multiplications.naiveMultiply(sq, sq).epsilonEquals(StrassenMatrixMult.multiply(sq, sq)));
+		} finally {
+			StrassenMatrixMult.CUTOFF=oldCutoff;
+		}
+	}
+	
+	@Test public void testTuningProfile() throws IOException {
+		Properties original=MultiplicationTuner.getProfile();
+		try {
+			Properties p=new Properties();
+			p.setProperty("packed.block.k", "77");
+			MultiplicationTuner.applyProfile(p);
+			assertEquals(77,PackedMatrixMult.BLOCK_K);
+			
+			ByteArrayOutputStream out=new ByteArrayOutputStream();
+			MultiplicationTuner.save(out);
+			MultiplicationTuner.applyProfile(original);
+			assertEquals(Integer.parseInt(original.getProperty("packed.block.k")),PackedMatrixMult.BLOCK_K);
+			MultiplicationTuner.load(new ByteArrayInputStream(out.toByteArray()));
+			assertEquals(77,PackedMatrixMult.BLOCK_K);
+
+			// a profile with any invalid entry is rejected without changing settings
+			Properties bad=new Properties();
+			bad.setProperty("packed.block.m", "64");
+			bad.setProperty("packed.block.k", "-1");
+			try {
+				MultiplicationTuner.applyProfile(bad);
+				fail("Negative block size should be rejected");
+			} catch (VectorzException e) {
+				// OK
+			}
+			bad.setProperty("packed.block.k", "32");
+			bad.setProperty("no.such.setting", "5");
+			try {
+				MultiplicationTuner.applyProfile(bad);
+				fail("Unknown key should be rejected");
+			} catch (VectorzException e) {
+				// OK
+			}
+			assertEquals(77,PackedMatrixMult.BLOCK_K);
+			assertEquals(Integer.parseInt(original.getProperty("packed.block.m")),PackedMatrixMult.BLOCK_M);
+
+			// "never switch" thresholds from calibration are valid profile values
+			Properties never=new Properties();
+			never.setProperty("parallel.threshold", Long.toString(Long.MAX_VALUE));
+			never.setProperty("mult.tranab.column.switch", Integer.toString(Integer.MAX_VALUE));
+			MultiplicationTuner.applyProfile(never);
+			assertEquals(Long.MAX_VALUE,ParallelMatrixMult.PARALLEL_THRESHOLD);
+			Matrix m=(Matrix)Matrixx.createRandomMatrix(40, 40);
+			assertTrue(m.innerProduct(m).epsilonEquals(Multiplications.naiveMultiply(m, m)));
+
+			// no profile was named, so there is no load error
+			assertNull(MultiplicationTuner.getProfileLoadError());
+		} finally {
+			MultiplicationTuner.applyProfile(original);
+		}
+	}
 }
@@ -0,0 +1,221 @@
+package mikera.matrix.algo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.Matrixx;
+import mikera.matrixx.algo.linsol.iterative.AIterativeSolver;
+import mikera.matrixx.algo.linsol.iterative.BiCGStabSolver;
+import mikera.matrixx.algo.linsol.iterative.ConjugateGradientSolver;
+import mikera.matrixx.algo.linsol.iterative.GMRESSolver;
+import mikera.matrixx.algo.linsol.iterative.ILU0Preconditioner;
+import mikera.matrixx.algo.linsol.iterative.IPreconditioner;
+import mikera.matrixx.algo.linsol.iterative.IncompleteCholeskyPreconditioner;
+import mikera.matrixx.algo.linsol.iterative.JacobiPreconditioner;
+import mikera.matrixx.algo.linsol.iterative.SSORPreconditioner;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.CompressedSparseRowMatrix;
+import mikera.matrixx.impl.SparseRowMatrix;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+
+import org.junit.Test;
+
+public class TestIterativeSolvers {
+
+	/**
+	 * 5-point finite difference operator on a k*k grid, with an optional convection term
+	 * that makes the matrix non-symmetric
+	 */
+	static CompressedSparseRowMatrix laplacian(int k, double convection) {
+		int n=k*k;
+		SparseRowMatrix m=SparseRowMatrix.create(n, n);
+		for (int i=0; i<k; i++) {
+			for (int j=0; j<k; j++) {
+				int p=i*k+j;
+				m.set(p, p, 4.0);
+				if (i>0) m.set(p, p-k, -1.0-convection);
+				if (i<k-1) m.set(p, p+k, -1.0+convection);
+				if (j>0) m.set(p, p-1, -1.0);
+				if (j<k-1) m.set(p, p+1, -1.0);
+			}
+		}
+		return CompressedSparseRowMatrix.create(m);
+	}
+
+	static void checkSolve(AIterativeSolver solver, AMatrix a) {
+		int n=a.rowCount();
+		Vector expected=Vector.createLength(n);
+		for (int i=0; i<n; i++) expected.set(i, Math.sin(i));
+		Vector b=Vector.createLength(n);
+		a.transform(expected, b);
+
+		solver.setTolerance(1e-10);
+		AVector x=solver.solve(a, b);
+		assertTrue(solver.isConverged());
+		assertTrue(solver.getIterationCount()<=solver.getMaxIterations());
+		assertTrue(solver.getResidualNorm()<=1e-10*b.magnitude());
+		assertTrue(x.epsilonEquals(expected, 1e-6));
+
+		Vector r=Vector.createLength(n);
+		a.transform(x, r);
+		assertTrue(r.epsilonEquals(b, 1e-6));
+	}
+
+	@Test public void testConjugateGradient() {
+		AMatrix a=laplacian(12, 0.0);
+		checkSolve(new ConjugateGradientSolver(), a);
+
+		ConjugateGradientSolver cg=new ConjugateGradientSolver();
+		cg.setRestart(10);
+		checkSolve(cg, a);
+	}
+
+	@Test public void testBiCGStab() {
+		checkSolve(new BiCGStabSolver(), laplacian(12, 0.0));
+		checkSolve(new BiCGStabSolver(), laplacian(12, 0.4));
+	}
+
+	@Test public void testGMRES() {
+		AMatrix a=laplacian(12, 0.4);
+		checkSolve(new GMRESSolver(), a);
+		checkSolve(new GMRESSolver(5), a);
+		checkSolve(new GMRESSolver(0), a);
+
+		// dense non-symmetric matrix, kept well conditioned by a dominant diagonal
+		Matrix d=Matrixx.createRandomSquareMatrix(6);
+		for (int i=0; i<6; i++) d.addAt(i, i, 6.0);
+		checkSolve(new GMRESSolver(), d);
+	}
+
+	@Test public void testInitialGuess() {
+		AMatrix a=laplacian(6, 0.0);
+		Vector b=Vector.createLength(36);
+		b.fill(1.0);
+		ConjugateGradientSolver cg=new ConjugateGradientSolver();
+		Vector x=cg.solve(a, b);
+
+		// solving again from the solution needs no iterations
+		assertTrue(cg.solve(a, b, x));
+		assertEquals(0, cg.getIterationCount());
+
+		// zero right hand side gives zero solution
+		Vector z=Vector.createLength(36);
+		assertTrue(cg.solve(a, z, x));
+		assertTrue(x.isZero());
+	}
+
+	@Test public void testIterationCap() {
+		AMatrix a=laplacian(12, 0.0);
+		Vector b=Vector.createLength(144);
+		b.fill(1.0);
+		ConjugateGradientSolver cg=new ConjugateGradientSolver();
+		cg.setMaxIterations(3);
+		cg.solve(a, b);
+		assertFalse(cg.isConverged());
+		assertEquals(3, cg.getIterationCount());
+
+		GMRESSolver gm=new GMRESSolver(2);
+		gm.setMaxIterations(5);
+		gm.solve(a, b);
+		assertFalse(gm.isConverged());
+		assertEquals(5, gm.getIterationCount());
+	}
+
+	@Test public void testPreconditionedCG() {
+		AMatrix a=laplacian(20, 0.0);
+		ConjugateGradientSolver cg=new ConjugateGradientSolver();
+		checkSolve(cg, a);
+		int plain=cg.getIterationCount();
+
+		IPreconditioner[] ps=new IPreconditioner[] {
+			new JacobiPreconditioner(a),
+			new SSORPreconditioner(a, 1.5),
+			new IncompleteCholeskyPreconditioner(a),
+			new IncompleteCholeskyPreconditioner(((CompressedSparseRowMatrix)a).toSparseRowMatrix())};
+		for (IPreconditioner p: ps) {
+			cg.setPreconditioner(p);
+			checkSolve(cg, a);
+			assertTrue(cg.getIterationCount()<=plain);
+		}
+		// IC(0) should beat unpreconditioned CG on the Laplacian
+		cg.setPreconditioner(new IncompleteCholeskyPreconditioner(a));
+		checkSolve(cg, a);
+		assertTrue(cg.getIterationCount()<plain);
+	}
+
+	@Test public void testPreconditionedNonSymmetric() {
+		AMatrix a=laplacian(20, 0.4);
+		AMatrix csc=CompressedSparseColumnMatrix.create(a);
+		AIterativeSolver[] solvers=new AIterativeSolver[] {new BiCGStabSolver(), new GMRESSolver()};
+		for (AIterativeSolver solver: solvers) {
+			checkSolve(solver, a);
+			int plain=solver.getIterationCount();
+			solver.setPreconditioner(new ILU0Preconditioner(csc));
+			checkSolve(solver, a);
+			assertTrue(solver.getIterationCount()<plain);
+			solver.setPreconditioner(new JacobiPreconditioner(a));
+			checkSolve(solver, a);
+		}
+	}
+
+	@Test public void testExactFactorisation() {
+		// incomplete factorisations of a tridiagonal matrix have no dropped fill, so are exact
+		int n=50;
+		SparseRowMatrix m=SparseRowMatrix.create(n, n);
+		for (int i=0; i<n; i++) {
+			m.set(i, i, 3.0);
+			if (i>0) m.set(i, i-1, -1.0);
+			if (i<n-1) m.set(i, i+1, -1.5);
+		}
+		AMatrix sym=m.toMatrix();
+		sym.add(m.getTranspose());
+
+		ConjugateGradientSolver cg=new ConjugateGradientSolver();
+		cg.setPreconditioner(new IncompleteCholeskyPreconditioner(sym));
+		checkSolve(cg, sym);
+		assertEquals(1, cg.getIterationCount());
+
+		GMRESSolver gm=new GMRESSolver();
+		gm.setPreconditioner(new ILU0Preconditioner(m));
+		checkSolve(gm, m);
+		assertEquals(1, gm.getIterationCount());
+	}
+
+	@Test public void testPreconditionerErrors() {
+		SparseRowMatrix m=SparseRowMatrix.create(3, 3);
+		m.set(0, 0, 1.0);
+		m.set(1, 2, 1.0);
+		m.set(2, 2, 1.0);
+		try {
+			new ILU0Preconditioner(m);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK, missing diagonal
+		}
+		AMatrix indefinite=Matrixx.createScaleMatrix(3, -1.0);
+		try {
+			new IncompleteCholeskyPreconditioner(indefinite);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK, not positive definite
+		}
+		try {
+			new SSORPreconditioner(Matrixx.createIdentityMatrix(3), 2.0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK, bad relaxation factor
+		}
+		ConjugateGradientSolver cg=new ConjugateGradientSolver();
+		cg.setPreconditioner(new JacobiPreconditioner(Matrixx.createIdentityMatrix(4)));
+		try {
+			cg.solve(Matrixx.createIdentityMatrix(3), Vector.of(1, 2, 3));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK, wrong dimension
+		}
+	}
+}
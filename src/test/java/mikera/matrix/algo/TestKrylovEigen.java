@@ -0,0 +1,156 @@
+package mikera.matrix.algo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.eig.impl.AKrylovEigen;
+import mikera.matrixx.algo.decompose.eig.impl.AKrylovEigen.Which;
+import mikera.matrixx.algo.decompose.eig.impl.ArnoldiEigen;
+import mikera.matrixx.algo.decompose.eig.impl.LanczosEigen;
+import mikera.matrixx.algo.decompose.qr.impl.BlockHouseholderQR;
+import mikera.matrixx.data.Eigenpair;
+import mikera.matrixx.impl.SparseRowMatrix;
+
+import org.junit.Test;
+
+public class TestKrylovEigen {
+
+	/**
+	 * Laplacian of a path graph, with eigenvalues 2-2cos(pi.j/n) for j=0..n-1
+	 */
+	private static SparseRowMatrix pathLaplacian(int n) {
+		SparseRowMatrix a=SparseRowMatrix.create(n, n);
+		for (int i=0; i<n; i++) {
+			double deg=0;
+			if (i>0) {
+				a.set(i, i-1, -1.0);
+				deg++;
+			}
+			if (i<n-1) {
+				a.set(i, i+1, -1.0);
+				deg++;
+			}
+			a.set(i, i, deg);
+		}
+		return a;
+	}
+
+	private static void checkEigenpairs(AMatrix a, Eigenpair[] pairs, double tolerance) {
+		for (Eigenpair p: pairs) {
+			Matrix x=p.vector;
+			assertEquals(1.0, x.elementSquaredSum(), 1e-10);
+			Matrix r=Matrix.create(a.innerProduct(x));
+			r.addMultiple(x, -p.value);
+			r.abs();
+			assertTrue(r.elementMax()<=tolerance);
+		}
+	}
+
+	@Test public void testLanczosSparseLaplacian() {
+		int n=100;
+		SparseRowMatrix a=pathLaplacian(n);
+		for (Which which: new Which[] {Which.LARGEST, Which.SMALLEST}) {
+			LanczosEigen lanczos=new LanczosEigen(4,which);
+			lanczos.setRandom(new Random(1));
+			Eigenpair[] pairs=lanczos.compute(a);
+			assertTrue(lanczos.isConverged());
+			assertEquals(4, pairs.length);
+			for (int i=0; i<4; i++) {
+				int j=(which==Which.LARGEST)?(n-1-i):i;
+				assertEquals(2.0-2.0*Math.cos(Math.PI*j/n), pairs[i].value, 1e-8);
+			}
+			checkEigenpairs(a,pairs,1e-8);
+		}
+	}
+
+	@Test public void testLanczosDense() {
+		// symmetric Q.D.Q^T with known spectrum and a repeated eigenvalue
+		int n=120;
+		Random r=new Random(7);
+		Matrix q=orthogonal(n,r);
+		double[] d=new double[n];
+		for (int i=0; i<n; i++) d[i]=(i<3)?(10.0-i):(r.nextDouble()-0.5);
+		d[3]=d[2];
+		Matrix a=scaledProduct(q,d,q.getTranspose());
+		LanczosEigen lanczos=new LanczosEigen(4,Which.LARGEST_MAGNITUDE);
+		lanczos.setRandom(r);
+		Eigenpair[] pairs=lanczos.compute(a);
+		assertTrue(lanczos.isConverged());
+		double[] expected={10.0,9.0,8.0,8.0};
+		for (int i=0; i<4; i++) {
+			assertEquals(expected[i], pairs[i].value, 1e-9);
+		}
+		checkEigenpairs(a,pairs,1e-8);
+	}
+
+	@Test public void testArnoldi() {
+		// non-symmetric S.D.S^-1, with a complex pair of largest magnitude in D
+		int n=80;
+		Random r=new Random(3);
+		Matrix s=Matrix.create(n, n);
+		for (int i=0; i<n; i++) {
+			for (int j=0; j<n; j++) {
+				s.set(i, j, ((i==j)?1.0:0.0)+0.3*r.nextGaussian()/Math.sqrt(n));
+			}
+		}
+		Matrix d=Matrix.create(n, n);
+		d.set(0, 0, 0.0);
+		d.set(0, 1, 20.0);
+		d.set(1, 0, -20.0);
+		double[] top={12.0,-11.0,10.5,9.0};
+		for (int i=2; i<n; i++) {
+			d.set(i, i, (i<6)?top[i-2]:(r.nextDouble()*4-2));
+		}
+		Matrix a=s.innerProduct(d).innerProduct(s.inverse());
+
+		ArnoldiEigen arnoldi=new ArnoldiEigen(4);
+		arnoldi.setRandom(r);
+		Eigenpair[] pairs=arnoldi.compute(a);
+		assertTrue(arnoldi.isConverged());
+		assertEquals(4, pairs.length);
+		for (int i=0; i<4; i++) {
+			assertEquals(top[i], pairs[i].value, 1e-8);
+		}
+		checkEigenpairs(a,pairs,1e-7);
+
+		ArnoldiEigen largest=new ArnoldiEigen(2,Which.LARGEST);
+		largest.setRandom(r);
+		pairs=largest.compute(a);
+		assertEquals(12.0, pairs[0].value, 1e-8);
+		assertEquals(10.5, pairs[1].value, 1e-8);
+	}
+
+	@Test public void testSmallMatrix() {
+		// subspace covers the whole space, so the result is exact after one expansion
+		Matrix a=Matrix.create(new double[][] {{2,1,0},{1,3,1},{0,1,4}});
+		AKrylovEigen lanczos=new LanczosEigen(3,Which.SMALLEST);
+		Eigenpair[] pairs=lanczos.compute(a);
+		assertEquals(3, pairs.length);
+		assertEquals(0, lanczos.getRestarts());
+		assertTrue(pairs[0].value<=pairs[1].value);
+		assertEquals(9.0, pairs[0].value+pairs[1].value+pairs[2].value, 1e-12);
+		checkEigenpairs(a,pairs,1e-12);
+	}
+
+	private static Matrix orthogonal(int n, Random r) {
+		Matrix g=Matrix.create(n, n);
+		for (int i=0; i<g.data.length; i++) g.data[i]=r.nextGaussian();
+		BlockHouseholderQR qr=new BlockHouseholderQR();
+		qr.decompose(g);
+		return qr.getQ(false);
+	}
+
+	private static Matrix scaledProduct(Matrix a, double[] d, AMatrix b) {
+		Matrix ad=a.clone();
+		for (int i=0; i<ad.rowCount(); i++) {
+			for (int j=0; j<d.length; j++) {
+				ad.set(i, j, ad.get(i, j)*d[j]);
+			}
+		}
+		return ad.innerProduct(b.toMatrix());
+	}
+}
@@ -0,0 +1,175 @@
+package mikera.matrix.algo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.algo.decompose.sparse.AMD;
+import mikera.matrixx.algo.decompose.sparse.SparseCholesky;
+import mikera.matrixx.algo.decompose.sparse.SparseLU;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.PermutationMatrix;
+import mikera.matrixx.impl.SparseRowMatrix;
+import mikera.vectorz.Vector;
+
+import org.junit.Test;
+
+public class TestSparseDecompositions {
+
+	/**
+	 * Arrowhead matrix with a dense first row and column. Eliminating node 0 first fills the whole matrix.
+	 */
+	static SparseRowMatrix arrow(int n) {
+		SparseRowMatrix m=SparseRowMatrix.create(n, n);
+		for (int i=0; i<n; i++) {
+			m.set(i, i, n+1.0);
+			if (i>0) {
+				m.set(0, i, 1.0);
+				m.set(i, 0, 1.0);
+			}
+		}
+		return m;
+	}
+
+	static Vector testVector(int n) {
+		Vector v=Vector.createLength(n);
+		for (int i=0; i<n; i++) v.set(i, Math.cos(i));
+		return v;
+	}
+
+	@Test public void testAMD() {
+		int n=30;
+		SparseRowMatrix a=arrow(n);
+		PermutationMatrix p=AMD.order(a);
+		p.validate();
+		// the dense node is eliminated last, or tied with the last leaf
+		assertTrue(p.getPermutation().find(0)>=n-2);
+
+		SparseCholesky natural=SparseCholesky.analyse(a, PermutationMatrix.createIdentity(n));
+		SparseCholesky ordered=SparseCholesky.analyse(a);
+		assertEquals(n*(n+1)/2, natural.nonZeroCount());
+		assertEquals(2*n-1, ordered.nonZeroCount());
+
+		// a 2D grid should also get a fill-reducing order
+		AMatrix grid=TestIterativeSolvers.laplacian(15, 0.0);
+		assertTrue(SparseCholesky.analyse(grid).nonZeroCount()<SparseCholesky.analyse(grid, PermutationMatrix.createIdentity(225)).nonZeroCount());
+	}
+
+	@Test public void testCholesky() {
+		AMatrix a=TestIterativeSolvers.laplacian(10, 0.0);
+		int n=a.rowCount();
+		SparseCholesky chol=SparseCholesky.decompose(a);
+		CompressedSparseColumnMatrix l=chol.getL();
+		l.validate();
+		assertTrue(l.isLowerTriangular());
+		assertEquals(chol.nonZeroCount(), l.storedElementCount());
+
+		PermutationMatrix p=chol.getPermutation();
+		AMatrix pap=p.innerProduct(a).innerProduct(p.getTranspose());
+		assertTrue(pap.epsilonEquals(l.innerProduct(l.getTranspose()), 1e-10));
+
+		Vector x=testVector(n);
+		Vector b=Vector.createLength(n);
+		a.transform(x, b);
+		assertTrue(chol.solve(b).epsilonEquals(x, 1e-10));
+	}
+
+	@Test public void testCholeskyRefactor() {
+		SparseRowMatrix a=arrow(20);
+		SparseCholesky chol=SparseCholesky.analyse(a);
+		chol.factor(a);
+		Vector x=testVector(20);
+
+		// same pattern, new values
+		SparseRowMatrix a2=arrow(20);
+		for (int i=0; i<20; i++) a2.set(i, i, 30.0+i);
+		a2.set(0, 5, -2.0);
+		a2.set(5, 0, -2.0);
+		chol.factor(a2);
+		Vector b=Vector.createLength(20);
+		a2.transform(x, b);
+		assertTrue(chol.solve(b).epsilonEquals(x, 1e-10));
+
+		// different pattern is rejected
+		a2.set(3, 4, 1.0);
+		a2.set(4, 3, 1.0);
+		try {
+			chol.factor(a2);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+
+		// matrix that is not positive definite
+		SparseRowMatrix a3=arrow(20);
+		a3.set(7, 7, -1.0);
+		try {
+			chol.factor(a3);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+
+	@Test public void testLU() {
+		AMatrix a=TestIterativeSolvers.laplacian(10, 0.4);
+		checkLU(a);
+
+		// needs row pivoting: zero diagonal
+		SparseRowMatrix m=SparseRowMatrix.create(6, 6);
+		for (int i=0; i<6; i++) {
+			m.set(i, (i+1)%6, 2.0+i);
+			m.set(i, (i+3)%6, 1.0);
+		}
+		checkLU(m);
+
+		SparseLU lu=SparseLU.analyse(a, PermutationMatrix.createIdentity(100));
+		lu.setPivotTolerance(0.1);
+		lu.factor(a);
+		Vector x=testVector(100);
+		Vector b=Vector.createLength(100);
+		a.transform(x, b);
+		assertTrue(lu.solve(b).epsilonEquals(x, 1e-10));
+
+		// refactor with new values
+		Matrix dense=a.toMatrix();
+		dense.multiply(3.0);
+		lu.factor(dense);
+		x.multiply(1.0/3.0);
+		assertTrue(lu.solve(b).epsilonEquals(x, 1e-10));
+	}
+
+	static void checkLU(AMatrix a) {
+		int n=a.rowCount();
+		SparseLU lu=SparseLU.decompose(a);
+		CompressedSparseColumnMatrix l=lu.getL();
+		CompressedSparseColumnMatrix u=lu.getU();
+		l.validate();
+		u.validate();
+		assertTrue(l.isLowerTriangular());
+		assertTrue(u.isUpperTriangular());
+		for (int i=0; i<n; i++) assertEquals(1.0, l.get(i, i), 0.0);
+
+		AMatrix paq=lu.getRowPermutation().innerProduct(a).innerProduct(lu.getColumnPermutation());
+		assertTrue(paq.epsilonEquals(l.innerProduct(u), 1e-10));
+
+		Vector x=testVector(n);
+		Vector b=Vector.createLength(n);
+		a.transform(x, b);
+		assertTrue(lu.solve(b).epsilonEquals(x, 1e-10));
+	}
+
+	@Test public void testSingularLU() {
+		SparseRowMatrix m=SparseRowMatrix.create(3, 3);
+		m.set(0, 0, 1.0);
+		m.set(1, 0, 1.0);
+		m.set(2, 2, 1.0);
+		try {
+			SparseLU.decompose(m);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+}
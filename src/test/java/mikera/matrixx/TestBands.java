@@ -67,6 +67,16 @@ public class TestBands {
 		assertEquals(Matrixx.createIdentityMatrix(4),bm);
 	}
 	
+	@Test public void testBandedMatrixBandwidth() {
+		BandedMatrix bm=BandedMatrix.create(5, 5, -2, 1);
+		assertEquals(0,bm.lowerBandwidth());
+		assertEquals(0,bm.upperBandwidth());
+		bm.getBand(-2).set(1, 3.0);
+		bm.getBand(1).set(0, 1.0);
+		assertEquals(2,bm.lowerBandwidth());
+		assertEquals(1,bm.upperBandwidth());
+	}
+	
 	@Test public void testBandedCase() {
 		AMatrix m=BandedMatrix.create(3, 3, 0, 1);
 		assertTrue(m.isSymmetric());
@@ -11,6 +11,8 @@ import mikera.matrixx.impl.AVectorMatrix;
 import mikera.matrixx.impl.BandedMatrix;
 import mikera.matrixx.impl.BlockDiagonalMatrix;
 import mikera.matrixx.impl.ColumnMatrix;
+import mikera.matrixx.impl.CompressedSparseColumnMatrix;
+import mikera.matrixx.impl.CompressedSparseRowMatrix;
 import mikera.matrixx.impl.IdentityMatrix;
 import mikera.matrixx.impl.ImmutableMatrix;
 import mikera.matrixx.impl.PermutationMatrix;
@@ -746,6 +748,10 @@ public class TestMatrixx {
 		doGenericTests(SparseRowMatrix.create(Matrixx.createRandomSquareMatrix(3)));
 		doGenericTests(SparseColumnMatrix.create(Vector.of(0,1,2),AxisVector.create(2, 3)));
 		doGenericTests(SparseColumnMatrix.create(Matrixx.createRandomSquareMatrix(4)));
+		doGenericTests(CompressedSparseRowMatrix.create(SparseRowMatrix.create(Vector.of(0,1,2),AxisVector.create(2, 3))));
+		doGenericTests(CompressedSparseRowMatrix.create(Matrixx.createRandomMatrix(3, 4)));
+		doGenericTests(CompressedSparseColumnMatrix.create(Matrixx.createRandomMatrix(4, 3)));
+		doGenericTests(CompressedSparseColumnMatrix.create(Matrixx.createScaleMatrix(3, 2.0)));
 		
 		// Immutable matrices
 		doGenericTests(new ImmutableMatrix(Matrixx.createRandomMatrix(4, 5)));
@@ -0,0 +1,115 @@
+package mikera.matrixx.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.Matrixx;
+import mikera.vectorz.AVector;
+import mikera.vectorz.Vector;
+import mikera.vectorz.Vectorz;
+import mikera.vectorz.impl.AxisVector;
+import mikera.vectorz.util.VectorzException;
+
+public class TestCompressedSparseMatrix {
+
+	private static Matrix randomSparse(int rows, int cols, double density) {
+		Matrix m=Matrix.create(rows, cols);
+		for (int i=0; i<rows; i++) {
+			for (int j=0; j<cols; j++) {
+				if (Math.random()<density) m.set(i,j,Math.random()-0.5);
+			}
+		}
+		return m;
+	}
+	
+	@Test public void testCreate() {
+		CompressedSparseRowMatrix m=CompressedSparseRowMatrix.create(3, 4, 
+				new int[] {0,2,2,3}, new int[] {1,3,0}, new double[] {1,2,3});
+		assertEquals(Matrix.create(new double[][] {{0,1,0,2},{0,0,0,0},{3,0,0,0}}),m);
+		assertEquals(3,m.nonZeroCount());
+		assertEquals(0.25,m.density(),0.0);
+		assertEquals(Vector.of(0,1,0,2),m.getRow(0));
+		assertTrue(m.getRow(1).isZero());
+		
+		try {
+			CompressedSparseRowMatrix.create(2, 2, new int[] {0,2,2}, new int[] {1,0}, new double[] {1,2});
+			fail("Unsorted indexes should fail validation");
+		} catch (VectorzException e) {/* OK */}
+	}
+	
+	@Test public void testConversions() {
+		Matrix m=randomSparse(13,17,0.2);
+		CompressedSparseRowMatrix csr=CompressedSparseRowMatrix.create(m);
+		CompressedSparseColumnMatrix csc=CompressedSparseColumnMatrix.create(m);
+		csr.validate();
+		csc.validate();
+		assertEquals(m,csr);
+		assertEquals(m,csc);
+		assertEquals(m.nonZeroCount(),csr.nonZeroCount());
+		
+		assertEquals(m,csr.toCompressedColumns());
+		assertEquals(m,csc.toCompressedRows());
+		assertEquals(m,CompressedSparseRowMatrix.create(csc));
+		assertEquals(m,csr.toSparseRowMatrix());
+		assertEquals(m,csc.toSparseColumnMatrix());
+		assertEquals(m,CompressedSparseRowMatrix.create(SparseRowMatrix.create(m)));
+		assertEquals(m,CompressedSparseColumnMatrix.create(SparseColumnMatrix.create(m)));
+		
+		for (int j=0; j<17; j++) {
+			assertEquals(m.getColumn(j),csc.getColumn(j));
+		}
+	}
+	
+	@Test public void testTranspose() {
+		Matrix m=randomSparse(7,5,0.3);
+		CompressedSparseRowMatrix csr=CompressedSparseRowMatrix.create(m);
+		CompressedSparseColumnMatrix t=csr.getTransposeView();
+		assertEquals(m.getTranspose(),t);
+		
+		// transpose shares storage
+		int[] ptr=csr.getRowPointers();
+		if (ptr[1]>ptr[0]) {
+			int j=csr.getColumnIndexes()[0];
+			csr.set(0, j, 10.0);
+			assertEquals(10.0,t.get(j,0),0.0);
+		}
+	}
+	
+	@Test public void testTransform() {
+		Matrix m=randomSparse(20,30,0.1);
+		AVector v=Vectorz.createUniformRandomVector(30);
+		AVector expected=m.transform(v);
+		
+		assertTrue(expected.epsilonEquals(CompressedSparseRowMatrix.create(m).transform(v)));
+		assertTrue(expected.epsilonEquals(CompressedSparseColumnMatrix.create(m).transform(v)));
+		
+		AVector dest=Vectorz.newVector(20).subVector(0, 20);
+		CompressedSparseColumnMatrix.create(m).transform(v.subVector(0, 30),dest);
+		assertTrue(expected.epsilonEquals(dest));
+		
+		AVector expectedT=m.getTranspose().transform(expected);
+		assertTrue(expectedT.epsilonEquals(CompressedSparseRowMatrix.create(m).getTransposeView().transform(expected)));
+	}
+	
+	@Test public void testStructure() {
+		CompressedSparseRowMatrix m=CompressedSparseRowMatrix.create(SparseRowMatrix.create(Vector.of(0,1,2),AxisVector.create(2, 3)));
+		assertEquals(3,m.storedElementCount());
+		m.set(0, 1, 5.0);
+		m.set(1, 1, 0.0);
+		assertEquals(5.0,m.get(0,1),0.0);
+		
+		try {
+			m.set(1, 1, 1.0);
+			fail("Should not be able to add a new non-zero element");
+		} catch (UnsupportedOperationException e) {/* OK */}
+		
+		AMatrix m2=m.exactClone();
+		m2.scale(2.0);
+		assertEquals(10.0,m2.get(0,1),0.0);
+		assertEquals(5.0,m.get(0,1),0.0);
+		assertEquals(Matrixx.createSparse(m),m);
+	}
+}
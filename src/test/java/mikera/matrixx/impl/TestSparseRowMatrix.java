@@ -4,6 +4,10 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import mikera.matrixx.AMatrix;
+import mikera.matrixx.Matrix;
+import mikera.matrixx.Matrixx;
+import mikera.matrixx.algo.mult.SparseMatrixMult;
 import mikera.vectorz.Ops;
 import mikera.vectorz.Vector;
 import mikera.vectorz.impl.AxisVector;
@@ -30,4 +34,63 @@ public class TestSparseRowMatrix {
 		
 		assertEquals(m,m2);
 	}
+	
+	@Test public void testDenseProduct() {
+		Matrix d=Matrix.create(new double[][] {{0,2,0,0},{0,0,0,0},{1,0,0,-3},{0,0,4,0},{5,0,0,0}});
+		Matrix b=Matrixx.createRandomMatrix(4, 6).toMatrix();
+		Matrix expected=d.innerProduct(b);
+		
+		assertTrue(expected.epsilonEquals(SparseRowMatrix.create(d).innerProduct(b)));
+		assertTrue(expected.epsilonEquals(SparseColumnMatrix.create(d).innerProduct(b)));
+		assertTrue(expected.epsilonEquals(CompressedSparseRowMatrix.create(d).innerProduct(b)));
+		assertTrue(expected.epsilonEquals(CompressedSparseColumnMatrix.create(d).innerProduct(b)));
+		
+		// non-strided and sparse operands
+		AMatrix bt=b.toMatrixTranspose().getTransposeView();
+		assertTrue(expected.epsilonEquals(SparseRowMatrix.create(d).innerProduct(bt)));
+		assertTrue(expected.epsilonEquals(SparseRowMatrix.create(d).innerProduct(SparseRowMatrix.create(b))));
+		assertTrue(expected.epsilonEquals(SparseColumnMatrix.create(d).innerProduct(VectorMatrixMN.create(b))));
+	}
+	
+	@Test public void testSparseProduct() {
+		Matrix a=Matrix.create(new double[][] {{0,2,0,0},{0,0,0,0},{1,0,0,-3},{0,0,4,0},{5,0,0,1}});
+		Matrix b=Matrix.create(new double[][] {{0,1,0},{3,0,0},{0,0,0},{0,2,-1}});
+		Matrix expected=a.innerProduct(b);
+		
+		SparseRowMatrix sa=SparseRowMatrix.create(a);
+		SparseRowMatrix r1=sa.innerProduct(SparseRowMatrix.create(b));
+		SparseRowMatrix r2=sa.innerProduct((SparseColumnMatrix)SparseColumnMatrix.create(b));
+		r1.validate();
+		assertEquals(expected,r1);
+		assertEquals(expected,r2);
+		assertEquals(expected.nonZeroCount(),r1.nonZeroCount());
+		assertEquals(expected,sa.innerProduct(SparseColumnMatrix.create(b)));
+		
+		CompressedSparseRowMatrix r3=CompressedSparseRowMatrix.create(a).innerProduct(CompressedSparseRowMatrix.create(b));
+		r3.validate();
+		assertEquals(expected,r3);
+		assertEquals(expected,CompressedSparseRowMatrix.create(a).innerProduct((AMatrix)CompressedSparseColumnMatrix.create(b)));
+		
+		// exact cancellation leaves no stored element
+		SparseRowMatrix c=SparseRowMatrix.create(Matrix.create(new double[][] {{1,1}}));
+		SparseRowMatrix d=SparseRowMatrix.create(Matrix.create(new double[][] {{2},{-2}}));
+		assertTrue(c.innerProduct(d).isZero());
+		assertEquals(0,CompressedSparseRowMatrix.create(c).innerProduct(CompressedSparseRowMatrix.create(d)).storedElementCount());
+	}
+	
+	@Test public void testHashedAccumulator() {
+		int old=SparseMatrixMult.DENSE_ACCUMULATOR_LIMIT;
+		try {
+			SparseMatrixMult.DENSE_ACCUMULATOR_LIMIT=0;
+			Matrix a=Matrixx.createRandomMatrix(6, 5).toMatrix();
+			Matrix b=Matrixx.createRandomMatrix(5, 7).toMatrix();
+			a.set(1,2,0.0);
+			b.set(3,4,0.0);
+			Matrix expected=a.innerProduct(b);
+			assertTrue(expected.epsilonEquals(SparseRowMatrix.create(a).innerProduct(SparseRowMatrix.create(b))));
+			assertTrue(expected.epsilonEquals(CompressedSparseRowMatrix.create(a).innerProduct(CompressedSparseRowMatrix.create(b))));
+		} finally {
+			SparseMatrixMult.DENSE_ACCUMULATOR_LIMIT=old;
+		}
+	}
 }
@@ -1,6 +1,9 @@
 package mikera.vectorz.impl;
 
 import static org.junit.Assert.*;
+
+import java.util.Random;
+
 import mikera.indexz.Index;
 import mikera.vectorz.AVector;
 import mikera.vectorz.Vector;
@@ -77,4 +80,32 @@ public class TestSparseHashedVector {
 		v2.add(v);
 		assertEquals(39.0,v2.get(10),0.0);
 	}
+	
+	@Test public void testInsertRemove() {
+		int n=1000;
+		SparseHashedVector sv=SparseHashedVector.createLength(n);
+		Vector v=Vector.createLength(n);
+		Random r=new Random(7);
+		for (int t=0; t<20000; t++) {
+			int i=r.nextInt(n);
+			double x=(r.nextInt(3)==0)?0.0:r.nextInt(5)-2;
+			sv.set(i,x);
+			v.set(i,x);
+			if (r.nextInt(4)==0) {
+				sv.addAt(i, -v.get(i)); // cancels to zero
+				v.set(i,0.0);
+			}
+		}
+		sv.validate();
+		assertEquals(v,sv);
+		assertEquals(v.nonZeroCount(),sv.nonZeroCount());
+		assertEquals(v.elementSum(),sv.elementSum(),0.0);
+		
+		for (int i=0; i<n; i++) {
+			sv.set(i,0.0);
+		}
+		sv.validate();
+		assertTrue(sv.isZero());
+		assertEquals(0,sv.nonSparseIndexes().length());
+	}
 }